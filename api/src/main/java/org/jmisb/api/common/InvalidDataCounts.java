@@ -0,0 +1,78 @@
+package org.jmisb.api.common;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of invalid data reported to the {@link InvalidDataHandler}.
+ *
+ * <p>The handler keeps counts for all threads (see {@link InvalidDataHandler#getCounts()}), and can
+ * also count on behalf of a single thread (see {@link
+ * InvalidDataHandler#setThreadCounts(InvalidDataCounts)}), for example to attribute errors to the
+ * input whose thread parsed the data. Counts are updated whatever strategy handles the error.
+ */
+public class InvalidDataCounts {
+    private final LongAdder invalidChecksums = new LongAdder();
+    private final LongAdder missingChecksums = new LongAdder();
+    private final LongAdder overruns = new LongAdder();
+    private final LongAdder invalidFieldEncodings = new LongAdder();
+
+    /**
+     * Get the number of invalid checksums.
+     *
+     * @return The number of checksums present but incorrect
+     */
+    public long getInvalidChecksumCount() {
+        return invalidChecksums.sum();
+    }
+
+    /**
+     * Get the number of missing checksums.
+     *
+     * @return The number of required checksums that were not present
+     */
+    public long getMissingChecksumCount() {
+        return missingChecksums.sum();
+    }
+
+    /**
+     * Get the number of data overruns.
+     *
+     * @return The number of times parsing needed more data than was available
+     */
+    public long getOverrunCount() {
+        return overruns.sum();
+    }
+
+    /**
+     * Get the number of invalid field encodings.
+     *
+     * @return The number of fields that could not be decoded
+     */
+    public long getInvalidFieldEncodingCount() {
+        return invalidFieldEncodings.sum();
+    }
+
+    /** Reset the counts to zero. */
+    public void reset() {
+        invalidChecksums.reset();
+        missingChecksums.reset();
+        overruns.reset();
+        invalidFieldEncodings.reset();
+    }
+
+    void invalidChecksum() {
+        invalidChecksums.increment();
+    }
+
+    void missingChecksum() {
+        missingChecksums.increment();
+    }
+
+    void overrun() {
+        overruns.increment();
+    }
+
+    void invalidFieldEncoding() {
+        invalidFieldEncodings.increment();
+    }
+}
@@ -1,5 +1,6 @@
 package org.jmisb.api.common;
 
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 
 /**
@@ -16,6 +17,8 @@ public class InvalidDataHandler {
     private IInvalidDataHandlerStrategy dataOverrunStrategy = new ThrowOnInvalidDataStrategy();
     private IInvalidDataHandlerStrategy invalidFieldEncodingStrategy =
             new ThrowOnInvalidDataStrategy();
+    private final InvalidDataCounts counts = new InvalidDataCounts();
+    private final ThreadLocal<InvalidDataCounts> threadCounts = new ThreadLocal<>();
 
     private InvalidDataHandler() {}
 
@@ -28,6 +31,48 @@ public class InvalidDataHandler {
         return INSTANCE;
     }
 
+    /**
+     * Get the counts of invalid data handled on all threads.
+     *
+     * @return The counts since the application started
+     */
+    public InvalidDataCounts getCounts() {
+        return counts;
+    }
+
+    /**
+     * Also count invalid data handled on the current thread.
+     *
+     * <p>This allows a thread that parses data from a single source to attribute errors to that
+     * source, since this handler is shared by the whole application.
+     *
+     * @param counts The counts to update, or null to stop counting for this thread
+     */
+    public void setThreadCounts(InvalidDataCounts counts) {
+        if (counts == null) {
+            threadCounts.remove();
+        } else {
+            threadCounts.set(counts);
+        }
+    }
+
+    /**
+     * Get the counts that invalid data handled on the current thread is also attributed to.
+     *
+     * @return The counts set by {@link #setThreadCounts(InvalidDataCounts)}, or null if none
+     */
+    public InvalidDataCounts getThreadCounts() {
+        return threadCounts.get();
+    }
+
+    private void count(Consumer<InvalidDataCounts> increment) {
+        increment.accept(counts);
+        InvalidDataCounts thread = threadCounts.get();
+        if (thread != null) {
+            increment.accept(thread);
+        }
+    }
+
     /**
      * Set the strategy to use in case of an invalid checksum.
      *
@@ -78,6 +123,7 @@ public class InvalidDataHandler {
      * @throws KlvParseException if the handling strategy chooses to throw.
      */
     public void handleInvalidChecksum(Logger logger, String message) throws KlvParseException {
+        count(InvalidDataCounts::invalidChecksum);
         this.invalidChecksumStrategy.process(logger, message);
     }
 
@@ -95,6 +141,7 @@ public class InvalidDataHandler {
      * @throws KlvParseException if the handling strategy chooses to throw.
      */
     public void handleMissingChecksum(Logger logger, String message) throws KlvParseException {
+        count(InvalidDataCounts::missingChecksum);
         this.missingChecksumStrategy.process(logger, message);
     }
 
@@ -112,6 +159,7 @@ public class InvalidDataHandler {
      * @throws KlvParseException if the handling strategy chooses to throw.
      */
     public void handleOverrun(Logger logger, String message) throws KlvParseException {
+        count(InvalidDataCounts::overrun);
         this.dataOverrunStrategy.process(logger, message);
     }
 
@@ -124,6 +172,7 @@ public class InvalidDataHandler {
      * @throws KlvParseException if the handling strategy chooses to throw.
      */
     public void handleInvalidFieldEncoding(Logger logger, String message) throws KlvParseException {
+        count(InvalidDataCounts::invalidFieldEncoding);
         this.invalidFieldEncodingStrategy.process(logger, message);
     }
 }
@@ -1,5 +1,7 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
+
 /** Decode data using Basic Encoding Rules (BER). */
 public class BerDecoder {
     private BerDecoder() {}
@@ -15,27 +17,44 @@ public class BerDecoder {
      */
     public static BerField decode(byte[] data, int offset, boolean isOid)
             throws IllegalArgumentException {
+        return decode(ByteBuffer.wrap(data), offset, isOid);
+    }
+
+    /**
+     * Decode a field (length and value) from an encoded buffer.
+     *
+     * <p>The buffer is read using absolute indexing, so its position and limit are not modified.
+     * The buffer limit is treated as the end of the available data.
+     *
+     * @param data Buffer holding the BER-encoded data
+     * @param offset Absolute index of the first byte of the buffer to decode
+     * @param isOid true if the data is encoded using BER-OID
+     * @return decoded The decoded field
+     * @throws IllegalArgumentException if the encoded data is invalid
+     */
+    public static BerField decode(ByteBuffer data, int offset, boolean isOid)
+            throws IllegalArgumentException {
         final int length, value;
 
-        // logger.debug("First byte of BER: " + String.format("%02X ", data[offset]));
-        if (data.length <= offset) {
+        // logger.debug("First byte of BER: " + String.format("%02X ", data.get(offset)));
+        if (data.limit() <= offset) {
             throw new IllegalArgumentException("Cannot read BER from beyond array limit");
         }
         if (!isOid) {
-            if ((data[offset] & 0x80) == 0) {
+            if ((data.get(offset) & 0x80) == 0) {
                 // BER Short Form. If the first bit of the BER is 0 then the BER is 1-byte and the
                 // value is encoded directly in that byte. This means the short form encodes values
                 // from 0 to 127.
                 length = 1;
-                value = data[offset] & 0x7f;
+                value = data.get(offset) & 0x7f;
             } else {
                 // BER Long Form (variable length). If the first bit of the BER is 1 then the rest
                 // of the first byte encodes the length of the BER in bytes and the value is read
                 // from that number of bytes immediately following. Theoretically the long form
                 // encodes values 128 to 2^(8*127), but for our purposes we handle 128 to 2^32,
                 // which should be plenty for a length field.
-                int berLength = data[offset] & 0x7f;
-                if (data.length < offset + 1 + berLength) {
+                int berLength = data.get(offset) & 0x7f;
+                if (data.limit() < offset + 1 + berLength) {
                     throw new IllegalArgumentException(
                             "BER long form: BER length overruns packet size");
                 }
@@ -46,7 +65,7 @@ public class BerDecoder {
                 }
                 int val = 0;
                 for (int i = 0; i < berLength; ++i) {
-                    int b = 0x00FF & data[offset + i + 1];
+                    int b = 0x00FF & data.get(offset + i + 1);
                     val = (val << 8) | b;
                 }
                 length = berLength + 1;
@@ -58,10 +77,10 @@ public class BerDecoder {
             int tag = 0;
             int i = 0;
             do {
-                if (offset + i >= data.length) {
+                if (offset + i >= data.limit()) {
                     throw new IllegalArgumentException("BER-OID: out of bytes");
                 }
-                read = data[offset + i];
+                read = data.get(offset + i);
                 int highbits = (tag << 7);
                 int lowbits = (read & 0x7F);
                 tag = highbits + lowbits;
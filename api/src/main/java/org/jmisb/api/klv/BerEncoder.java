@@ -1,5 +1,6 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /** Encode data using Basic Encoding Rules (BER). */
@@ -86,4 +87,100 @@ public class BerEncoder {
         Ber ber = (value <= SHORT_FORM_MAX_LENGTH) ? Ber.SHORT_FORM : Ber.LONG_FORM;
         return encode(value, ber);
     }
+
+    /**
+     * Get the number of bytes needed to encode an integer using Basic Encoding Rules (BER).
+     *
+     * @param value The value to encode (must be non-negative)
+     * @param ber Encoding type
+     * @return The length of the encoded value, in bytes
+     * @throws IllegalArgumentException If a negative value is specified, or the value cannot be
+     *     represented in short form
+     */
+    public static int encodedLength(int value, Ber ber) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value cannot be negative");
+        }
+        if (ber == Ber.SHORT_FORM) {
+            if (value > SHORT_FORM_MAX_LENGTH) {
+                throw new IllegalArgumentException(
+                        "BER short form can only represent the range [0,127]");
+            }
+            return 1;
+        } else if (ber == Ber.LONG_FORM) {
+            if (value <= 255) {
+                return 2;
+            } else if (value <= 65535) {
+                return 3;
+            } else if (value <= 16777215) {
+                return 4;
+            }
+            return 5;
+        } else {
+            // BER-OID: 7 bits per byte
+            int length = 1;
+            while ((value >>>= 7) != 0) {
+                length++;
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Get the number of bytes needed to encode an integer using short or long form, whichever is
+     * more compact.
+     *
+     * @param value The value to encode (must be non-negative)
+     * @return The length of the encoded value, in bytes
+     * @throws IllegalArgumentException If a negative value is specified
+     */
+    public static int encodedLength(int value) {
+        Ber ber = (value <= SHORT_FORM_MAX_LENGTH) ? Ber.SHORT_FORM : Ber.LONG_FORM;
+        return encodedLength(value, ber);
+    }
+
+    /**
+     * Encode an integer using Basic Encoding Rules (BER) into a buffer.
+     *
+     * <p>This produces the same bytes as {@link #encode(int, Ber)}, written at the buffer's
+     * position, without allocating.
+     *
+     * @param value The value to encode (must be non-negative)
+     * @param ber Encoding type
+     * @param buffer The buffer to write to
+     * @return The number of bytes written
+     * @throws IllegalArgumentException If a negative value is specified
+     * @throws java.nio.BufferOverflowException If the buffer does not have enough space remaining
+     */
+    public static int encode(int value, Ber ber, ByteBuffer buffer) {
+        final int length = encodedLength(value, ber);
+        if (ber == Ber.SHORT_FORM) {
+            buffer.put((byte) value);
+        } else if (ber == Ber.LONG_FORM) {
+            buffer.put((byte) (0x80 | (length - 1)));
+            for (int shift = 8 * (length - 2); shift >= 0; shift -= 8) {
+                buffer.put((byte) (value >>> shift));
+            }
+        } else {
+            for (int shift = 7 * (length - 1); shift > 0; shift -= 7) {
+                buffer.put((byte) (0x80 | ((value >>> shift) & 0x7f)));
+            }
+            buffer.put((byte) (value & 0x7f));
+        }
+        return length;
+    }
+
+    /**
+     * Encode an integer using short or long form, whichever is more compact, into a buffer.
+     *
+     * @param value The value to encode (must be non-negative)
+     * @param buffer The buffer to write to
+     * @return The number of bytes written
+     * @throws IllegalArgumentException If a negative value is specified
+     * @throws java.nio.BufferOverflowException If the buffer does not have enough space remaining
+     */
+    public static int encode(int value, ByteBuffer buffer) {
+        Ber ber = (value <= SHORT_FORM_MAX_LENGTH) ? Ber.SHORT_FORM : Ber.LONG_FORM;
+        return encode(value, ber, buffer);
+    }
 }
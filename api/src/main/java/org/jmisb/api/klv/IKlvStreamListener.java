@@ -0,0 +1,20 @@
+package org.jmisb.api.klv;
+
+/** Receives messages and errors from a {@link KlvStreamReader}. */
+public interface IKlvStreamListener {
+    /**
+     * Called when a message has been parsed.
+     *
+     * @param message The message
+     */
+    void onMessage(IMisbMessage message);
+
+    /**
+     * Called when a problem has been found in the stream.
+     *
+     * <p>The default implementation does nothing; the reader has already resynchronised.
+     *
+     * @param error The error
+     */
+    default void onError(KlvStreamError error) {}
+}
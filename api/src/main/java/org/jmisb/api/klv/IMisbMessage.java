@@ -1,5 +1,8 @@
 package org.jmisb.api.klv;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 /** A packet containing MISB-compliant metadata. */
 public interface IMisbMessage extends INestedKlvValue {
     /**
@@ -18,6 +21,45 @@ public interface IMisbMessage extends INestedKlvValue {
      */
     byte[] frameMessage(boolean isNested);
 
+    /**
+     * Get the length of the framed message.
+     *
+     * <p>This is the number of bytes {@link #frameMessage(boolean, ByteBuffer)} will write. The
+     * default implementation frames the message to find out; implementations should override it if
+     * they can compute the length more cheaply.
+     *
+     * @param isNested If true, the key and length field are omitted
+     * @return The length in bytes
+     */
+    default int getFramedLength(boolean isNested) {
+        return frameMessage(isNested).length;
+    }
+
+    /**
+     * Frame the message into a buffer.
+     *
+     * <p>The message is written at the buffer's position, which is advanced past it. The bytes are
+     * identical to those returned by {@link #frameMessage(boolean)}, but implementations that
+     * override this method write them directly into the buffer (heap or direct) with no
+     * intermediate arrays, so the same buffer can be reused for every message.
+     *
+     * <p>If the buffer does not have enough space remaining, nothing is written.
+     *
+     * @param isNested If true, the key and length field are omitted, and only the value will be
+     *     written
+     * @param buffer The buffer to write to
+     * @return The number of bytes written
+     * @throws BufferOverflowException If the buffer does not have enough space remaining
+     */
+    default int frameMessage(boolean isNested, ByteBuffer buffer) {
+        byte[] bytes = frameMessage(isNested);
+        if (buffer.remaining() < bytes.length) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(bytes);
+        return bytes.length;
+    }
+
     /**
      * A display header for the message type.
      *
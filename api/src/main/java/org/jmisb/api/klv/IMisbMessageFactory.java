@@ -1,9 +1,30 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
 import org.jmisb.api.common.KlvParseException;
 
-/** Interface for IMisbMessage factory creation. */
+/**
+ * Interface for IMisbMessage factory creation.
+ *
+ * <p>Factories are registered with the {@link MisbMessageFactory}, either explicitly using {@link
+ * MisbMessageFactory#registerHandler(UniversalLabel, IMisbMessageFactory)}, or automatically using
+ * {@link java.util.ServiceLoader}. For automatic registration, the implementation needs a public
+ * no-argument constructor, must return its label from {@link #getUniversalLabel()}, and must be
+ * listed in a {@code META-INF/services/org.jmisb.api.klv.IMisbMessageFactory} resource.
+ */
 public interface IMisbMessageFactory {
+    /**
+     * Get the Universal Label of the messages this factory creates.
+     *
+     * <p>This is used to register factories found by {@link java.util.ServiceLoader}. The default
+     * implementation returns null, in which case the factory has to be registered explicitly.
+     *
+     * @return the Universal Label, or null if not known
+     */
+    default UniversalLabel getUniversalLabel() {
+        return null;
+    }
+
     /**
      * Create a new {@link IMisbMessage} instance from encoded bytes.
      *
@@ -15,4 +36,26 @@ public interface IMisbMessageFactory {
      * @throws KlvParseException if the parsing failed.
      */
     IMisbMessage create(byte[] bytes) throws KlvParseException;
+
+    /**
+     * Create a new {@link IMisbMessage} instance from an encoded buffer.
+     *
+     * <p>The message is the bytes between the position and the limit of {@code buffer}, starting
+     * with the 16-byte {@link UniversalLabel}. The position and limit of {@code buffer} are not
+     * modified.
+     *
+     * <p>The default implementation copies the bytes and calls {@link #create(byte[])}. Factories
+     * for frequently occurring messages can override this to parse directly from the buffer.
+     * Implementations must not retain a reference to {@code buffer}, since the caller may reuse it
+     * once this method returns.
+     *
+     * @param buffer the encoded bytes.
+     * @return IMisbMessage implementation.
+     * @throws KlvParseException if the parsing failed.
+     */
+    default IMisbMessage create(ByteBuffer buffer) throws KlvParseException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return create(bytes);
+    }
 }
@@ -0,0 +1,361 @@
+package org.jmisb.api.klv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.jmisb.api.common.KlvParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parallel decoding of large amounts of concatenated KLV.
+ *
+ * <p>{@link KlvParser#parseBytes(ByteBuffer)} decodes on a single thread and returns a list, so the
+ * whole input and all of its messages have to fit in memory. The methods here instead return a
+ * parallel {@link Stream}, for files of top-level messages (such as ST 0601 local sets) stored back
+ * to back with no container, for example extracted data streams:
+ *
+ * <pre>{@code
+ * try (Stream<IMisbMessage> messages = KlvBulkDecoder.decode(Paths.get("day.klv"))) {
+ *     messages.forEachOrdered(message -> index(message));
+ * }
+ * }</pre>
+ *
+ * <p>The file is memory-mapped, and a fast first pass reads only the key and length of each message
+ * to find the message boundaries. The messages are then decoded in parallel by the {@link
+ * java.util.concurrent.ForkJoinPool} running the stream, which is the common pool (using all cores)
+ * unless the terminal operation is run as a task in another pool. The stream is ordered, so {@code
+ * forEachOrdered}, {@code collect} and similar operations see the messages in file order.
+ *
+ * <p>Bytes that do not start with a Universal Label, or a message whose length is implausible (see
+ * {@link KlvStreamReader}), are logged and skipped up to the next UL. Messages that fail to parse
+ * are logged and omitted from the stream.
+ */
+public class KlvBulkDecoder {
+    private static Logger logger = LoggerFactory.getLogger(KlvBulkDecoder.class);
+
+    /** Size of each memory mapping; larger messages get a mapping of their own. */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /** Messages below which a range is decoded on one thread. */
+    private static final int MIN_SPLIT = 256;
+
+    /** Longest key and BER length field examined when finding boundaries. */
+    private static final int MAX_HEADER_LENGTH = UniversalLabel.LENGTH + 1 + 4;
+
+    private KlvBulkDecoder() {}
+
+    /**
+     * Decode a file of concatenated KLV.
+     *
+     * @param file The file, which is kept open until the stream is closed
+     * @return A parallel stream of the messages
+     * @throws IOException if the file could not be read
+     */
+    public static Stream<IMisbMessage> decode(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            Source source = new Source(channel, null, channel.size());
+            Index index = Index.build(source);
+            return StreamSupport.stream(new MessageSpliterator(source, index, 0, index.count), true)
+                    .onClose(
+                            () -> {
+                                try {
+                                    channel.close();
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decode a buffer of concatenated KLV.
+     *
+     * <p>The messages are the bytes between the position and the limit of {@code buffer}, which can
+     * be a heap, direct or memory-mapped buffer. The position and limit are not modified. The
+     * buffer must not be changed until the stream has been consumed.
+     *
+     * @param buffer The buffer
+     * @return A parallel stream of the messages
+     */
+    public static Stream<IMisbMessage> decode(ByteBuffer buffer) {
+        ByteBuffer slice = buffer.slice();
+        Source source = new Source(null, slice, slice.remaining());
+        Index index;
+        try {
+            index = Index.build(source);
+        } catch (IOException e) {
+            // Not reachable, since nothing is read from a file
+            throw new UncheckedIOException(e);
+        }
+        return StreamSupport.stream(new MessageSpliterator(source, index, 0, index.count), true);
+    }
+
+    /** The input, either a file channel or a buffer. */
+    private static final class Source {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final long size;
+
+        Source(FileChannel channel, ByteBuffer buffer, long size) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A view of part of the input.
+     *
+     * <p>Each thread uses its own window, so mappings are never shared while they are being moved.
+     */
+    private static final class Window {
+        private final Source source;
+        private ByteBuffer buffer;
+        private long start;
+        private long end;
+
+        Window(Source source) {
+            this.source = source;
+            if (source.channel == null) {
+                buffer = source.buffer;
+                end = source.size;
+            }
+        }
+
+        /**
+         * Make part of the input available.
+         *
+         * @param offset Offset of the first byte from the start of the input
+         * @param length Number of bytes required, which must not extend past the end of the input
+         * @return Absolute index of the byte at {@code offset} in {@link #buffer}
+         * @throws IOException if the file could not be mapped
+         */
+        int locate(long offset, int length) throws IOException {
+            if (offset < start || offset + length > end) {
+                long mapLength = Math.min(Math.max(WINDOW_SIZE, length), source.size - offset);
+                buffer = source.channel.map(FileChannel.MapMode.READ_ONLY, offset, mapLength);
+                start = offset;
+                end = offset + mapLength;
+            }
+            return (int) (offset - start);
+        }
+    }
+
+    /** The offset and length of every message in the input. */
+    private static final class Index {
+        private long[] offsets = new long[1024];
+        private int[] lengths = new int[1024];
+        private int count;
+
+        private void add(long offset, int length) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+            count++;
+        }
+
+        /**
+         * Find the boundaries of all messages.
+         *
+         * @param source The input
+         * @return The index
+         * @throws IOException if the input could not be read
+         */
+        static Index build(Source source) throws IOException {
+            Index index = new Index();
+            Window window = new Window(source);
+            long pos = 0;
+            while (pos < source.size) {
+                int headerLength = (int) Math.min(MAX_HEADER_LENGTH, source.size - pos);
+                int i = window.locate(pos, headerLength);
+                long length = messageLength(window.buffer, i, headerLength);
+                if (length > 0
+                        && length <= source.size - pos
+                        && isBoundary(source, window, pos, (int) length)) {
+                    index.add(pos, (int) length);
+                    pos += length;
+                } else {
+                    pos = resync(source, window, pos);
+                }
+            }
+            return index;
+        }
+
+        /**
+         * Get the length of a message from its header.
+         *
+         * @param buffer The buffer
+         * @param index Absolute index of the start of the message
+         * @param available Number of bytes available from {@code index}, up to the longest header
+         * @return The total length of the message, or -1 if the header is not valid
+         */
+        private static long messageLength(ByteBuffer buffer, int index, int available) {
+            if (available <= UniversalLabel.LENGTH
+                    || KlvStreamReader.findSync(buffer, index, index + 4) != index) {
+                return -1;
+            }
+            int first = buffer.get(index + UniversalLabel.LENGTH) & 0xFF;
+            if ((first & 0x80) == 0) {
+                return UniversalLabel.LENGTH + 1 + first;
+            }
+            int lengthLength = first & 0x7F;
+            if (lengthLength == 0
+                    || lengthLength > 4
+                    || available < UniversalLabel.LENGTH + 1 + lengthLength) {
+                return -1;
+            }
+            long value = 0;
+            for (int k = 1; k <= lengthLength; ++k) {
+                value = (value << 8) | (buffer.get(index + UniversalLabel.LENGTH + k) & 0xFF);
+            }
+            long total = UniversalLabel.LENGTH + 1 + lengthLength + value;
+            return total <= Integer.MAX_VALUE ? total : -1;
+        }
+
+        /**
+         * Check that a message ends at a plausible boundary.
+         *
+         * <p>As in {@link KlvStreamReader}, a corrupt length usually runs into, or stops short of,
+         * the next message. So the message must be followed by a UL or the end of the input, or
+         * else contain no UL itself.
+         *
+         * @param source The input
+         * @param window The window to use
+         * @param offset Offset of the message
+         * @param length Length of the message
+         * @return True if the length is plausible
+         * @throws IOException if the input could not be read
+         */
+        private static boolean isBoundary(Source source, Window window, long offset, int length)
+                throws IOException {
+            long next = offset + length;
+            if (next == source.size) {
+                return true;
+            }
+            int available = (int) Math.min(4, source.size - next);
+            int i = window.locate(next, available);
+            if (KlvStreamReader.findSync(window.buffer, i, i + available) == i) {
+                return true;
+            }
+            i = window.locate(offset, length);
+            return KlvStreamReader.findSync(window.buffer, i + 4, i + length) == i + length;
+        }
+
+        /**
+         * Skip to the next Universal Label after an invalid message.
+         *
+         * @param source The input
+         * @param window The window to use
+         * @param from Offset of the invalid message
+         * @return Offset of the next UL, or the size of the input if there is none
+         * @throws IOException if the input could not be read
+         */
+        private static long resync(Source source, Window window, long from) throws IOException {
+            long pos = from + 1;
+            while (pos < source.size) {
+                int length = (int) Math.min(WINDOW_SIZE, source.size - pos);
+                int i = window.locate(pos, length);
+                int found = KlvStreamReader.findSync(window.buffer, i, i + length);
+                // A UL split across windows is returned as a partial match at the end
+                pos += found - i;
+                if (found < i + length) {
+                    break;
+                }
+            }
+            logger.warn("Skipped " + (pos - from) + " bytes of invalid KLV at offset " + from);
+            return pos;
+        }
+    }
+
+    /** Decodes a range of the index, splitting it in half for other threads. */
+    private static final class MessageSpliterator implements Spliterator<IMisbMessage> {
+        private final Index index;
+        private final Window window;
+        private int next;
+        private final int end;
+
+        MessageSpliterator(Source source, Index index, int next, int end) {
+            this.index = index;
+            this.window = new Window(source);
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super IMisbMessage> action) {
+            while (next < end) {
+                IMisbMessage message = decode(next++);
+                if (message != null) {
+                    action.accept(message);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super IMisbMessage> action) {
+            while (next < end) {
+                IMisbMessage message = decode(next++);
+                if (message != null) {
+                    action.accept(message);
+                }
+            }
+        }
+
+        private IMisbMessage decode(int i) {
+            long offset = index.offsets[i];
+            int length = index.lengths[i];
+            try {
+                int start = window.locate(offset, length);
+                ByteBuffer view = window.buffer.duplicate();
+                view.limit(start + length);
+                view.position(start);
+                return MisbMessageFactory.getInstance().handleMessage(view);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (KlvParseException | RuntimeException e) {
+                logger.warn("Could not parse message at offset " + offset + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        @Override
+        public Spliterator<IMisbMessage> trySplit() {
+            if (end - next < 2 * MIN_SPLIT) {
+                return null;
+            }
+            int middle = (next + end) >>> 1;
+            MessageSpliterator prefix = new MessageSpliterator(window.source, index, next, middle);
+            next = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics() {
+            // Not SIZED, since messages that fail to parse are skipped
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import org.jmisb.api.common.KlvParseException;
 import org.slf4j.Logger;
@@ -27,19 +27,40 @@ public class KlvParser {
      * @throws KlvParseException if a parsing exception occurs
      */
     public static List<IMisbMessage> parseBytes(byte[] bytes) throws KlvParseException {
+        return parseBytes(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Parse a buffer containing one or more {@link IMisbMessage}s.
+     *
+     * <p>This is equivalent to {@link #parseBytes(byte[])}, but operates on the bytes between the
+     * position and the limit of a heap, direct or memory-mapped buffer. Top-level messages are
+     * handed to the {@link MisbMessageFactory} as views onto {@code buffer}, so they are not copied
+     * unless the message handler needs to retain the encoded bytes. The position and limit of
+     * {@code buffer} are not modified.
+     *
+     * @param buffer The buffer
+     * @return List of {@link IMisbMessage}s
+     * @throws KlvParseException if a parsing exception occurs
+     */
+    public static List<IMisbMessage> parseBytes(ByteBuffer buffer) throws KlvParseException {
         List<IMisbMessage> messages = new ArrayList<>();
 
-        if (logger.isDebugEnabled()) logger.debug("len: " + bytes.length);
+        if (logger.isDebugEnabled()) logger.debug("len: " + buffer.remaining());
 
-        int pos = 0;
+        ByteBuffer view = buffer.duplicate();
+        int pos = buffer.position();
+        final int end = buffer.limit();
 
-        while (pos < bytes.length) {
+        while (pos < end) {
             // Get the next full message including UL (key), length, and value
-            byte[] nextMessage = getNextMessage(bytes);
-            pos += nextMessage.length;
+            int messageLength = getNextMessageLength(buffer, pos);
+            view.limit(pos + messageLength);
+            view.position(pos);
+            pos += messageLength;
 
             try {
-                IMisbMessage message = MisbMessageFactory.getInstance().handleMessage(nextMessage);
+                IMisbMessage message = MisbMessageFactory.getInstance().handleMessage(view);
                 if (logger.isDebugEnabled()) logger.debug("Parsed as " + message.displayHeader());
                 messages.add(message);
             } catch (IllegalArgumentException ex) {
@@ -52,25 +73,22 @@ public class KlvParser {
     }
 
     /**
-     * Extract the next top-level message.
+     * Find the extent of the next top-level message.
      *
-     * @param bytes The original byte array, assumed to begin with 16-byte UL
-     * @return Byte array containing the full top-level message, including UL key, length, and value
+     * @param buffer The buffer, assumed to contain a 16-byte UL at {@code start}
+     * @param start Absolute index of the start of the message
+     * @return Number of bytes in the full top-level message, including UL key, length, and value
      * @throws KlvParseException if a parsing error occurs
      */
-    private static byte[] getNextMessage(byte[] bytes) throws KlvParseException {
+    private static int getNextMessageLength(ByteBuffer buffer, int start) throws KlvParseException {
         // Length of the key field (UL)
         final int keyLength = UniversalLabel.LENGTH;
-        BerField lengthField = BerDecoder.decode(bytes, keyLength, false);
+        BerField lengthField = BerDecoder.decode(buffer, start + keyLength, false);
         final int totalLength = keyLength + lengthField.getLength() + lengthField.getValue();
 
-        // If the lengths are equal, just return the original array; otherwise copy a subrange.
-        if (totalLength > bytes.length) {
+        if (start + totalLength > buffer.limit()) {
             throw new KlvParseException("Length exceeds available bytes");
-        } else if (totalLength == bytes.length) {
-            return bytes;
-        } else {
-            return Arrays.copyOfRange(bytes, 0, totalLength);
         }
+        return totalLength;
     }
 }
@@ -0,0 +1,102 @@
+package org.jmisb.api.klv;
+
+/**
+ * A problem found by a {@link KlvStreamReader}.
+ *
+ * <p>Errors are reported to {@link IKlvStreamListener#onError(KlvStreamError)}, and the reader then
+ * resynchronises on the next Universal Label, so a single error does not cost the messages that
+ * follow.
+ */
+public class KlvStreamError {
+    /** The kind of error. */
+    public enum Type {
+        /** Bytes that were not part of any message were skipped while looking for a UL. */
+        SKIPPED_BYTES,
+        /**
+         * A UL was found, but its length was invalid, too large, or inconsistent with the data that
+         * follows. The reader resumes scanning just after the start of the UL.
+         */
+        INVALID_LENGTH,
+        /** A complete message was found, but could not be parsed. The message is skipped. */
+        PARSE_FAILED,
+        /** The input ended part way through a message. */
+        TRUNCATED
+    }
+
+    private final Type type;
+    private final long offset;
+    private final int length;
+    private final String description;
+    private final Exception cause;
+
+    /**
+     * Constructor.
+     *
+     * @param type The kind of error
+     * @param offset The offset of the affected bytes from the start of the input
+     * @param length The number of bytes affected
+     * @param description A description of the error
+     * @param cause The exception that caused the error, or null
+     */
+    public KlvStreamError(Type type, long offset, int length, String description, Exception cause) {
+        this.type = type;
+        this.offset = offset;
+        this.length = length;
+        this.description = description;
+        this.cause = cause;
+    }
+
+    /**
+     * Get the kind of error.
+     *
+     * @return The type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the offset of the affected bytes from the start of the input.
+     *
+     * @return The offset in bytes
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get the number of bytes affected.
+     *
+     * <p>For {@link Type#INVALID_LENGTH} this is the length of the message as declared (or as much
+     * of it as was available), not the number of bytes skipped; those are reported by a separate
+     * {@link Type#SKIPPED_BYTES} error.
+     *
+     * @return The length in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get a description of the error.
+     *
+     * @return The description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Get the exception that caused the error.
+     *
+     * @return The cause, or null if none
+     */
+    public Exception getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return type + " at offset " + offset + " (" + length + " bytes): " + description;
+    }
+}
@@ -0,0 +1,468 @@
+package org.jmisb.api.klv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import org.jmisb.api.common.KlvParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streaming KLV reader that resynchronises after corrupt data.
+ *
+ * <p>{@link KlvParser} requires its input to start exactly on a Universal Label, and abandons the
+ * rest of the input if a length is corrupt. This class instead scans for the {@code 06 0E 2B 34}
+ * prefix that starts every SMPTE Universal Label, so that after a bit error it recovers at the next
+ * message:
+ *
+ * <ul>
+ *   <li>Bytes before a UL are skipped and reported as {@link KlvStreamError.Type#SKIPPED_BYTES}.
+ *   <li>A message is only accepted if its length is plausible and it is followed by another UL or
+ *       the end of the data received so far, or does not run into the start of another message. A
+ *       UL inside the message whose own BER length ends within the message, such as a nested set or
+ *       the key of a universal set element, is not the start of another message. Otherwise the
+ *       length is assumed to be corrupt, a {@link KlvStreamError.Type#INVALID_LENGTH} error is
+ *       reported, and scanning resumes inside the rejected message, so no later message is lost.
+ *   <li>A message that fails to parse is reported as {@link KlvStreamError.Type#PARSE_FAILED} and
+ *       skipped.
+ * </ul>
+ *
+ * <p>Data can be pushed in arbitrary pieces using {@link #feed(ByteBuffer)}, for example the
+ * payload of each PES packet; messages split across pieces are reassembled. {@link #flush()} marks
+ * the end of the input. Alternatively {@link #read(InputStream)} and {@link
+ * #read(ReadableByteChannel)} read a whole input. Messages and errors are delivered to the {@link
+ * IKlvStreamListener} on the calling thread.
+ *
+ * <p>When no partial message is held, data passed to {@link #feed(ByteBuffer)} is parsed in place
+ * without being copied.
+ *
+ * <p>This class is not thread-safe; use one reader per input.
+ */
+public class KlvStreamReader {
+    private static Logger logger = LoggerFactory.getLogger(KlvStreamReader.class);
+
+    /** Default maximum message length, in bytes. */
+    public static final int DEFAULT_MAX_MESSAGE_LENGTH = 256 * 1024;
+
+    /** The first four bytes of every SMPTE Universal Label. */
+    private static final int UL_PREFIX = 0x060E2B34;
+
+    private static final int UL_PREFIX_LENGTH = 4;
+    private static final byte UL_FIRST_BYTE = 0x06;
+    private static final long BYTES_0x06 = 0x0606060606060606L;
+    private static final long BYTES_0x01 = 0x0101010101010101L;
+    private static final long BYTES_0x80 = 0x8080808080808080L;
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    private final IKlvStreamListener listener;
+    private int maxMessageLength = DEFAULT_MAX_MESSAGE_LENGTH;
+    private byte[] pending = new byte[4096];
+    private int pendingLength;
+    /** Offset from the start of the input of the first unconsumed byte. */
+    private long consumed;
+
+    /**
+     * Constructor.
+     *
+     * @param listener The listener receiving messages and errors
+     */
+    public KlvStreamReader(IKlvStreamListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the maximum length of a message, including the key and length fields.
+     *
+     * <p>A longer declared length is treated as corrupt. While a message is incomplete, later
+     * messages are held back until it has been received, so a smaller limit bounds both the memory
+     * used and the delay caused by a corrupt length.
+     *
+     * @param maxMessageLength The maximum length in bytes
+     * @throws IllegalArgumentException if the length is too small to hold a message
+     */
+    public void setMaxMessageLength(int maxMessageLength) {
+        if (maxMessageLength < UniversalLabel.LENGTH + 1) {
+            throw new IllegalArgumentException("Maximum message length is too small");
+        }
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * Get the maximum length of a message, including the key and length fields.
+     *
+     * @return The maximum length in bytes
+     */
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    /**
+     * Get the number of bytes consumed so far.
+     *
+     * <p>This excludes bytes held back as part of a message that has not yet been completed.
+     *
+     * @return The number of bytes
+     */
+    public long getBytesConsumed() {
+        return consumed;
+    }
+
+    /**
+     * Add data to the stream.
+     *
+     * <p>All complete messages are delivered before this method returns. The bytes between the
+     * position and limit of {@code data} are used, and the position is advanced to the limit.
+     *
+     * @param data The data
+     */
+    public void feed(ByteBuffer data) {
+        final int end = data.limit();
+        if (pendingLength == 0) {
+            int start = data.position();
+            int stop = process(data, start, end, false);
+            consumed += stop - start;
+            data.position(stop);
+            append(data);
+        } else {
+            append(data);
+            processPending(false);
+        }
+        data.position(end);
+    }
+
+    /**
+     * Add data to the stream.
+     *
+     * @param data The array holding the data
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     */
+    public void feed(byte[] data, int offset, int length) {
+        feed(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Mark the end of the input.
+     *
+     * <p>Any incomplete message is reported as {@link KlvStreamError.Type#TRUNCATED}, after which
+     * the reader is ready for a new input.
+     */
+    public void flush() {
+        processPending(true);
+        pendingLength = 0;
+        consumed = 0;
+    }
+
+    /**
+     * Read a complete input.
+     *
+     * <p>Reads until the end of the stream, then calls {@link #flush()}. The stream is not closed.
+     *
+     * @param input The stream
+     * @throws IOException if the stream could not be read
+     */
+    public void read(InputStream input) throws IOException {
+        byte[] chunk = new byte[READ_CHUNK_SIZE];
+        int count;
+        while ((count = input.read(chunk)) >= 0) {
+            feed(chunk, 0, count);
+        }
+        flush();
+    }
+
+    /**
+     * Read a complete input.
+     *
+     * <p>Reads until the end of the channel, then calls {@link #flush()}. The channel is not
+     * closed.
+     *
+     * @param channel The channel
+     * @throws IOException if the channel could not be read
+     */
+    public void read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK_SIZE);
+        while (channel.read(chunk) >= 0) {
+            chunk.flip();
+            feed(chunk);
+            chunk.clear();
+        }
+        flush();
+    }
+
+    private void append(ByteBuffer data) {
+        int count = data.remaining();
+        if (pendingLength + count > pending.length) {
+            byte[] larger = new byte[Math.max(pendingLength + count, pending.length * 2)];
+            System.arraycopy(pending, 0, larger, 0, pendingLength);
+            pending = larger;
+        }
+        data.get(pending, pendingLength, count);
+        pendingLength += count;
+    }
+
+    private void processPending(boolean endOfInput) {
+        int stop = process(ByteBuffer.wrap(pending), 0, pendingLength, endOfInput);
+        consumed += stop;
+        pendingLength -= stop;
+        System.arraycopy(pending, stop, pending, 0, pendingLength);
+    }
+
+    /**
+     * Deliver all complete messages in part of a buffer.
+     *
+     * @param buffer The buffer
+     * @param start Absolute index of the first byte, at stream offset {@link #consumed}
+     * @param end Absolute index just past the last byte
+     * @param endOfInput True if no more data will follow
+     * @return Absolute index of the first byte not consumed
+     */
+    private int process(ByteBuffer buffer, int start, int end, boolean endOfInput) {
+        int pos = start;
+        while (pos < end) {
+            int sync = findSync(buffer, pos, end);
+            if (sync > pos) {
+                report(KlvStreamError.Type.SKIPPED_BYTES, start, pos, sync - pos, "No UL", null);
+                pos = sync;
+            }
+            int available = end - pos;
+            if (available < UniversalLabel.LENGTH + 1) {
+                // A partial UL, or nothing
+                if (endOfInput && available > 0) {
+                    report(KlvStreamError.Type.TRUNCATED, start, pos, available, "Short UL", null);
+                    pos = end;
+                }
+                break;
+            }
+
+            // Decode the length field
+            int first = buffer.get(pos + UniversalLabel.LENGTH) & 0xFF;
+            int lengthLength = (first & 0x80) == 0 ? 1 : 1 + (first & 0x7F);
+            if (lengthLength == 1 && first == 0x80 || lengthLength > 5) {
+                report(
+                        KlvStreamError.Type.INVALID_LENGTH,
+                        start,
+                        pos,
+                        UniversalLabel.LENGTH + 1,
+                        "Unsupported BER length",
+                        null);
+                pos++;
+                continue;
+            }
+            int headerLength = UniversalLabel.LENGTH + lengthLength;
+            if (available < headerLength) {
+                if (endOfInput) {
+                    report(
+                            KlvStreamError.Type.TRUNCATED,
+                            start,
+                            pos,
+                            available,
+                            "Truncated length",
+                            null);
+                    pos++;
+                    continue;
+                }
+                break;
+            }
+            long messageLength =
+                    headerLength + readLength(buffer, pos + UniversalLabel.LENGTH, lengthLength);
+            if (messageLength > maxMessageLength) {
+                report(
+                        KlvStreamError.Type.INVALID_LENGTH,
+                        start,
+                        pos,
+                        Math.min(available, maxMessageLength),
+                        "Length " + messageLength + " exceeds maximum " + maxMessageLength,
+                        null);
+                pos++;
+                continue;
+            }
+            int length = (int) messageLength;
+            if (available < length) {
+                if (endOfInput) {
+                    report(
+                            KlvStreamError.Type.TRUNCATED,
+                            start,
+                            pos,
+                            available,
+                            "Length " + length + " exceeds available bytes",
+                            null);
+                    pos++;
+                    continue;
+                }
+                break;
+            }
+
+            // A corrupt length usually runs into, or stops short of, the next message
+            int next = pos + length;
+            if (!isBoundary(buffer, next, end)
+                    && containsMessageStart(buffer, pos + UL_PREFIX_LENGTH, next)) {
+                report(
+                        KlvStreamError.Type.INVALID_LENGTH,
+                        start,
+                        pos,
+                        length,
+                        "Message is not followed by a UL",
+                        null);
+                pos++;
+                continue;
+            }
+
+            ByteBuffer message = buffer.duplicate();
+            message.limit(next);
+            message.position(pos);
+            IMisbMessage parsed = null;
+            try {
+                parsed = MisbMessageFactory.getInstance().handleMessage(message);
+            } catch (KlvParseException | RuntimeException e) {
+                report(
+                        KlvStreamError.Type.PARSE_FAILED,
+                        start,
+                        pos,
+                        length,
+                        String.valueOf(e.getMessage()),
+                        e);
+            }
+            pos = next;
+            if (parsed != null) {
+                listener.onMessage(parsed);
+            }
+        }
+        return pos;
+    }
+
+    private void report(
+            KlvStreamError.Type type,
+            int start,
+            int index,
+            int length,
+            String description,
+            Exception cause) {
+        KlvStreamError error =
+                new KlvStreamError(type, consumed + index - start, length, description, cause);
+        if (logger.isDebugEnabled()) {
+            logger.debug(error.toString());
+        }
+        listener.onError(error);
+    }
+
+    /**
+     * Decode a BER length.
+     *
+     * @param buffer The buffer
+     * @param index Absolute index of the first byte of the length field
+     * @param lengthLength The size of the length field, from its first byte
+     * @return The value length
+     */
+    private static long readLength(ByteBuffer buffer, int index, int lengthLength) {
+        long valueLength = buffer.get(index) & 0xFF;
+        if (lengthLength > 1) {
+            valueLength = 0;
+            for (int i = 1; i < lengthLength; ++i) {
+                valueLength = (valueLength << 8) | (buffer.get(index + i) & 0xFF);
+            }
+        }
+        return valueLength;
+    }
+
+    /**
+     * Check whether part of a candidate message contains the start of another message.
+     *
+     * <p>Nested sets and universal set elements also start with a UL. A UL whose BER length ends
+     * within the candidate is taken to be one of these, and its value is skipped. A UL that is
+     * incomplete, has an invalid length, or whose length runs past the end of the candidate, is
+     * taken to be a following message that the candidate's corrupt length has run into.
+     *
+     * @param buffer The buffer
+     * @param from Absolute index to start searching from
+     * @param next Absolute index just past the end of the candidate
+     * @return True if another message starts within the candidate
+     */
+    private static boolean containsMessageStart(ByteBuffer buffer, int from, int next) {
+        int index = from;
+        while ((index = findSync(buffer, index, next)) < next) {
+            if (next - index < UniversalLabel.LENGTH + 1) {
+                return true;
+            }
+            int first = buffer.get(index + UniversalLabel.LENGTH) & 0xFF;
+            int lengthLength = (first & 0x80) == 0 ? 1 : 1 + (first & 0x7F);
+            if (lengthLength == 1 && first == 0x80 || lengthLength > 5) {
+                return true;
+            }
+            int headerLength = UniversalLabel.LENGTH + lengthLength;
+            if (next - index < headerLength) {
+                return true;
+            }
+            long valueLength = readLength(buffer, index + UniversalLabel.LENGTH, lengthLength);
+            if (valueLength > next - index - headerLength) {
+                return true;
+            }
+            index += headerLength + (int) valueLength;
+        }
+        return false;
+    }
+
+    /**
+     * Check whether an index is a plausible message boundary.
+     *
+     * @param buffer The buffer
+     * @param index Absolute index just past the end of a message
+     * @param end Absolute index just past the last available byte
+     * @return True if the bytes at {@code index} are a UL prefix, or as much of one as is available
+     */
+    private static boolean isBoundary(ByteBuffer buffer, int index, int end) {
+        return index == end || (buffer.get(index) == UL_FIRST_BYTE && matches(buffer, index, end));
+    }
+
+    /**
+     * Find the next UL prefix.
+     *
+     * <p>The buffer is scanned eight bytes at a time for the first byte of the prefix, so runs of
+     * unrelated data are skipped quickly.
+     *
+     * @param buffer The buffer
+     * @param from Absolute index to start searching from
+     * @param end Absolute index just past the last byte to search
+     * @return Absolute index of the first prefix (which may be a partial prefix running up to
+     *     {@code end}), or {@code end} if there is none
+     */
+    static int findSync(ByteBuffer buffer, int from, int end) {
+        int i = from;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            // Non-zero if any byte of the word is 0x06; exact, and independent of byte order
+            long x = buffer.getLong(i) ^ BYTES_0x06;
+            if (((x - BYTES_0x01) & ~x & BYTES_0x80) != 0) {
+                for (int j = i; j < i + Long.BYTES; ++j) {
+                    if (buffer.get(j) == UL_FIRST_BYTE && matches(buffer, j, end)) {
+                        return j;
+                    }
+                }
+            }
+        }
+        for (; i < end; ++i) {
+            if (buffer.get(i) == UL_FIRST_BYTE && matches(buffer, i, end)) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Check for a UL prefix.
+     *
+     * @param buffer The buffer
+     * @param index Absolute index of the candidate prefix
+     * @param end Absolute index just past the last available byte
+     * @return True if the available bytes, up to the length of the prefix, match
+     */
+    private static boolean matches(ByteBuffer buffer, int index, int end) {
+        int count = Math.min(UL_PREFIX_LENGTH, end - index);
+        for (int k = 0; k < count; ++k) {
+            byte expected = (byte) (UL_PREFIX >>> (8 * (UL_PREFIX_LENGTH - 1 - k)));
+            if (buffer.get(index + k) != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,10 +1,26 @@
 package org.jmisb.api.klv;
 
-/** Local Data Set field, comprised of a tag (the key) and its value. */
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Local Data Set field, comprised of a tag (the key) and its value.
+ *
+ * <p>The value may be backed by a view into the buffer the field was parsed from, in which case the
+ * bytes are only copied when they are requested using {@link #getData()}.
+ */
 public class LdsField {
     private final int tag;
 
-    private final byte[] data;
+    /** Backing array of a heap buffer, or null if the value is held in {@link #data}. */
+    private final byte[] array;
+
+    private final int offset;
+
+    private final int length;
+
+    /** Read-only view of a buffer without an accessible array, or null. */
+    private final ByteBuffer data;
 
     /**
      * Create an LDS field.
@@ -14,7 +30,35 @@ public class LdsField {
      */
     public LdsField(int tag, byte[] data) {
         this.tag = tag;
-        this.data = data.clone();
+        this.array = data.clone();
+        this.offset = 0;
+        this.length = data.length;
+        this.data = null;
+    }
+
+    /**
+     * Create an LDS field as a view onto an existing buffer.
+     *
+     * <p>The value is the bytes between the position and the limit of {@code data} at the time of
+     * the call. The bytes are not copied, so the caller must not modify the underlying content
+     * while the field is in use. Later changes to the position or limit of {@code data} do not
+     * affect the field.
+     *
+     * @param tag The integer tag
+     * @param data Buffer containing the value
+     */
+    public LdsField(int tag, ByteBuffer data) {
+        this.tag = tag;
+        this.length = data.remaining();
+        if (data.hasArray()) {
+            this.array = data.array();
+            this.offset = data.arrayOffset() + data.position();
+            this.data = null;
+        } else {
+            this.array = null;
+            this.offset = 0;
+            this.data = data.asReadOnlyBuffer();
+        }
     }
 
     /**
@@ -32,6 +76,32 @@ public class LdsField {
      * @return The value stored as a byte array
      */
     public byte[] getData() {
-        return data.clone();
+        if (array != null) {
+            return Arrays.copyOfRange(array, offset, offset + length);
+        }
+        byte[] bytes = new byte[length];
+        data.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Get the value without copying it.
+     *
+     * @return read-only buffer, with the value between the position and the limit
+     */
+    public ByteBuffer getDataBuffer() {
+        if (array != null) {
+            return ByteBuffer.wrap(array, offset, length).slice().asReadOnlyBuffer();
+        }
+        return data.duplicate();
+    }
+
+    /**
+     * Get the length of the value.
+     *
+     * @return The number of bytes in the value
+     */
+    public int getLength() {
+        return length;
     }
 }
@@ -1,7 +1,7 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import org.jmisb.api.common.InvalidDataHandler;
 import org.jmisb.api.common.KlvParseException;
@@ -25,33 +25,56 @@ public class LdsParser {
      */
     public static List<LdsField> parseFields(byte[] bytes, int start, int length)
             throws KlvParseException {
+        return parseFields(ByteBuffer.wrap(bytes), start, length);
+    }
+
+    /**
+     * Parse {@link LdsField}s from a buffer without copying the field values.
+     *
+     * <p>The buffer may be a heap, direct or memory-mapped buffer. It is read using absolute
+     * indexing, so its position and limit are not modified. Each returned field is a read-only view
+     * onto the buffer, so the buffer content must not be modified while the fields are in use.
+     *
+     * @param buffer Buffer to parse
+     * @param start Absolute index of the first byte to parse
+     * @param length Number of bytes to parse
+     * @return List of parsed fields
+     * @throws KlvParseException If a parsing error occurs
+     */
+    public static List<LdsField> parseFields(ByteBuffer buffer, int start, int length)
+            throws KlvParseException {
         StringBuilder debugMessageStringBuilder = new StringBuilder();
         if (logger.isDebugEnabled()) {
             debugMessageStringBuilder.append("Tags: ");
         }
 
+        // Single view used to produce the field slices, so the caller's buffer is left untouched
+        ByteBuffer view = buffer.duplicate();
         List<LdsField> fields = new ArrayList<>();
         final int last = start + length;
         int offset = start;
         while (offset < last) {
             // Get the BER-OID encoded Key (tag)
-            BerField tagField = BerDecoder.decode(bytes, offset, true);
+            BerField tagField = BerDecoder.decode(buffer, offset, true);
             int tag = tagField.getValue();
             offset += tagField.getLength();
 
             // Get the Length (BER short or long form-encoded)
             int lengthFieldOffset = offset;
-            BerField lengthField = BerDecoder.decode(bytes, lengthFieldOffset, false);
+            BerField lengthField = BerDecoder.decode(buffer, lengthFieldOffset, false);
             // Get the Value
             int begin = lengthFieldOffset + lengthField.getLength();
             int end = begin + lengthField.getValue();
-            if (end > bytes.length) {
+            if (end > buffer.limit()) {
                 InvalidDataHandler.getInstance()
                         .handleOverrun(logger, "Overrun encountered while parsing LDS fields");
+                // Not strict, so keep what is available and zero-fill the rest
+                fields.add(new LdsField(tag, paddedCopy(buffer, begin, end)));
+            } else {
+                view.limit(end);
+                view.position(begin);
+                fields.add(new LdsField(tag, view));
             }
-
-            byte[] value = Arrays.copyOfRange(bytes, begin, end);
-            fields.add(new LdsField(tag, value));
             offset = end;
             if (logger.isDebugEnabled()) {
                 debugMessageStringBuilder.append(tag);
@@ -63,4 +86,12 @@ public class LdsParser {
 
         return fields;
     }
+
+    private static byte[] paddedCopy(ByteBuffer buffer, int begin, int end) {
+        byte[] value = new byte[end - begin];
+        for (int i = begin; i < Math.min(end, buffer.limit()); ++i) {
+            value[i - begin] = buffer.get(i);
+        }
+        return value;
+    }
 }
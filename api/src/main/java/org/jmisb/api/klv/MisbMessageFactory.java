@@ -1,37 +1,78 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
 import org.jmisb.api.common.KlvParseException;
-import org.jmisb.api.klv.eg0104.PredatorUavMessageFactory;
-import org.jmisb.api.klv.st0102.localset.SecurityMetadataLocalSetFactory;
-import org.jmisb.api.klv.st0102.universalset.SecurityMetadataUniversalSetFactory;
-import org.jmisb.api.klv.st0601.UasDatalinkMessageFactory;
-import org.jmisb.api.klv.st0808.AncillaryTextLocalSetFactory;
-import org.jmisb.api.klv.st0903.vtrack.VTrackLocalSetFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Factory class for {@link IMisbMessage} instances.
  *
  * <p>This singleton provides the ability to get an IMisbMessage class instance corresponding to a
- * provided {@link UniversalLabel}. Built-in implementations will be registered automatically.
- * Additional implementations (e.g. for proprietary extensions) can be registered as required.
+ * provided {@link UniversalLabel}. Built-in implementations, and any other {@link
+ * IMisbMessageFactory} implementations listed in a {@code
+ * META-INF/services/org.jmisb.api.klv.IMisbMessageFactory} resource, are registered automatically
+ * using {@link ServiceLoader}. Additional implementations (e.g. for proprietary extensions) can
+ * also be registered as required.
+ *
+ * <p>This class is thread-safe. Handlers are looked up in an immutable table keyed on the raw label
+ * bytes, so looking up a handler does not allocate or lock; registering a handler replaces the
+ * table.
  */
 public class MisbMessageFactory {
-    private static final Map<UniversalLabel, IMisbMessageFactory> MESSAGE_HANDLERS =
-            new HashMap<>();
+    private static Logger logger = LoggerFactory.getLogger(MisbMessageFactory.class);
+
+    /** All registered handlers, guarded by {@code this}. */
+    private final Map<UniversalLabel, IMisbMessageFactory> registered = new LinkedHashMap<>();
+
+    /** Snapshot of {@link #registered} used for lookup. */
+    private volatile HandlerTable handlers = new HandlerTable(registered);
 
     private MisbMessageFactory() {
-        registerHandler(KlvConstants.UasDatalinkLocalUl, new UasDatalinkMessageFactory());
-        registerHandler(KlvConstants.AncillaryTextLocalSetUl, new AncillaryTextLocalSetFactory());
-        registerHandler(
-                KlvConstants.SecurityMetadataUniversalSetUl,
-                new SecurityMetadataUniversalSetFactory());
-        registerHandler(
-                KlvConstants.SecurityMetadataLocalSetUl, new SecurityMetadataLocalSetFactory());
-        registerHandler(KlvConstants.PredatorMetadataLocalSetUl, new PredatorUavMessageFactory());
-        registerHandler(KlvConstants.VTrackLocalSetUl, new VTrackLocalSetFactory());
+        Set<ClassLoader> loaders = new LinkedHashSet<>();
+        loaders.add(MisbMessageFactory.class.getClassLoader());
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        if (contextLoader != null) {
+            loaders.add(contextLoader);
+        }
+        for (ClassLoader loader : loaders) {
+            loadHandlers(loader);
+        }
+    }
+
+    private void loadHandlers(ClassLoader loader) {
+        Iterator<IMisbMessageFactory> factories =
+                ServiceLoader.load(IMisbMessageFactory.class, loader).iterator();
+        while (true) {
+            IMisbMessageFactory factory;
+            try {
+                if (!factories.hasNext()) {
+                    return;
+                }
+                factory = factories.next();
+            } catch (ServiceConfigurationError e) {
+                logger.warn("Could not load message factory: " + e.getMessage());
+                continue;
+            }
+            UniversalLabel ul = factory.getUniversalLabel();
+            if (ul == null) {
+                logger.warn(
+                        "Message factory "
+                                + factory.getClass().getName()
+                                + " does not provide a Universal Label, not registered");
+            } else {
+                registerHandler(ul, factory);
+            }
+        }
     }
 
     /**
@@ -46,11 +87,27 @@ public class MisbMessageFactory {
     /**
      * Register a handler for a given {@link UniversalLabel}.
      *
+     * <p>This replaces any handler previously registered for the same label. It is safe to call
+     * while other threads are handling messages; they see either the old or the new handler.
+     *
      * @param universalLabel the universal label
      * @param factory the corresponding factory to use
      */
-    public final void registerHandler(UniversalLabel universalLabel, IMisbMessageFactory factory) {
-        MESSAGE_HANDLERS.put(universalLabel, factory);
+    public final synchronized void registerHandler(
+            UniversalLabel universalLabel, IMisbMessageFactory factory) {
+        registered.put(universalLabel, factory);
+        handlers = new HandlerTable(registered);
+    }
+
+    /**
+     * Get the handler registered for a given {@link UniversalLabel}.
+     *
+     * @param universalLabel the universal label
+     * @return the factory, or null if none is registered
+     */
+    public IMisbMessageFactory getHandler(UniversalLabel universalLabel) {
+        byte[] bytes = universalLabel.getBytes();
+        return handlers.get(readLong(bytes, 0), readLong(bytes, Long.BYTES));
     }
 
     /**
@@ -64,13 +121,107 @@ public class MisbMessageFactory {
      * @throws KlvParseException if the message handler throws.
      */
     public IMisbMessage handleMessage(byte[] messageData) throws KlvParseException {
-        UniversalLabel ul =
-                new UniversalLabel(Arrays.copyOfRange(messageData, 0, UniversalLabel.LENGTH));
-        if (MESSAGE_HANDLERS.containsKey(ul)) {
-            IMisbMessageFactory factory = MESSAGE_HANDLERS.get(ul);
+        if (messageData.length < UniversalLabel.LENGTH) {
+            throw new IllegalArgumentException("Insufficient bytes for UL");
+        }
+        IMisbMessageFactory factory =
+                handlers.get(readLong(messageData, 0), readLong(messageData, Long.BYTES));
+        if (factory != null) {
             return factory.create(messageData);
         }
-        return new RawMisbMessage(ul, messageData);
+        return new RawMisbMessage(
+                new UniversalLabel(Arrays.copyOf(messageData, UniversalLabel.LENGTH)), messageData);
+    }
+
+    /**
+     * Lookup the appropriate message handler for this message, and process it.
+     *
+     * <p>The message is the bytes between the position and the limit of {@code messageData}. It is
+     * passed to the message handler without copying; handlers that need to retain the encoded bytes
+     * take their own copy. The position and limit of {@code messageData} are not modified.
+     *
+     * <p>If no matching message handler is available, the data will be returned as a {@link
+     * RawMisbMessage}.
+     *
+     * @param messageData the message data (starting at the universal label)
+     * @return the message instance
+     * @throws KlvParseException if the message handler throws.
+     */
+    public IMisbMessage handleMessage(ByteBuffer messageData) throws KlvParseException {
+        int offset = messageData.position();
+        if (messageData.limit() - offset < UniversalLabel.LENGTH) {
+            throw new IllegalArgumentException("Insufficient bytes for UL at offset " + offset);
+        }
+        IMisbMessageFactory factory =
+                handlers.get(
+                        readLong(messageData, offset), readLong(messageData, offset + Long.BYTES));
+        if (factory != null) {
+            return factory.create(messageData.slice());
+        }
+        byte[] bytes = new byte[messageData.remaining()];
+        messageData.duplicate().get(bytes);
+        return new RawMisbMessage(new UniversalLabel(messageData, offset), bytes);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + Long.BYTES; ++i) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long readLong(ByteBuffer buffer, int offset) {
+        long value = buffer.getLong(offset);
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value);
+    }
+
+    /**
+     * Immutable open addressing hash table from the two halves of a UL to a handler.
+     *
+     * <p>The table is at most half full, so a lookup usually examines a single slot.
+     */
+    private static final class HandlerTable {
+        private final long[] keys;
+        private final IMisbMessageFactory[] factories;
+        private final int mask;
+
+        HandlerTable(Map<UniversalLabel, IMisbMessageFactory> entries) {
+            int capacity = Integer.highestOneBit(Math.max(4, entries.size()) * 2) * 2;
+            keys = new long[capacity * 2];
+            factories = new IMisbMessageFactory[capacity];
+            mask = capacity - 1;
+            for (Map.Entry<UniversalLabel, IMisbMessageFactory> entry : entries.entrySet()) {
+                byte[] bytes = entry.getKey().getBytes();
+                long high = readLong(bytes, 0);
+                long low = readLong(bytes, Long.BYTES);
+                int slot = hash(high, low) & mask;
+                while (factories[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[2 * slot] = high;
+                keys[2 * slot + 1] = low;
+                factories[slot] = entry.getValue();
+            }
+        }
+
+        IMisbMessageFactory get(long high, long low) {
+            int slot = hash(high, low) & mask;
+            IMisbMessageFactory factory;
+            while ((factory = factories[slot]) != null) {
+                if (keys[2 * slot] == high && keys[2 * slot + 1] == low) {
+                    return factory;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int hash(long high, long low) {
+            // The first bytes of most ULs are the same, so mix both halves
+            long h = high * 0x9E3779B97F4A7C15L + low * 0xC2B2AE3D27D4EB4FL;
+            return (int) (h ^ (h >>> 29) ^ (h >>> 47));
+        }
     }
 
     private static class MisbFactoryHolder {
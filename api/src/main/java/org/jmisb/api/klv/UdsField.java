@@ -1,10 +1,26 @@
 package org.jmisb.api.klv;
 
-/** Universal Data Set field, comprised of its Universal Label (key) and its value. */
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Universal Data Set field, comprised of its Universal Label (key) and its value.
+ *
+ * <p>The value may be backed by a view into the buffer the field was parsed from, in which case the
+ * bytes are only copied when they are requested using {@link #getValue()}.
+ */
 public class UdsField {
     private final UniversalLabel key;
 
-    private final byte[] value;
+    /** Backing array of a heap buffer, or null if the value is held in {@link #value}. */
+    private final byte[] array;
+
+    private final int offset;
+
+    private final int length;
+
+    /** Read-only view of a buffer without an accessible array, or null. */
+    private final ByteBuffer value;
 
     /**
      * Constructor.
@@ -14,7 +30,34 @@ public class UdsField {
      */
     public UdsField(UniversalLabel key, byte[] value) {
         this.key = key;
-        this.value = value.clone();
+        this.array = value.clone();
+        this.offset = 0;
+        this.length = value.length;
+        this.value = null;
+    }
+
+    /**
+     * Constructor for a field that is a view onto an existing buffer.
+     *
+     * <p>The value is the bytes between the position and the limit of {@code value} at the time of
+     * the call. The bytes are not copied, so the caller must not modify the underlying content
+     * while the field is in use.
+     *
+     * @param key the Universal Label for the Universal Data Set
+     * @param value buffer containing the value associated with the metadata item
+     */
+    public UdsField(UniversalLabel key, ByteBuffer value) {
+        this.key = key;
+        this.length = value.remaining();
+        if (value.hasArray()) {
+            this.array = value.array();
+            this.offset = value.arrayOffset() + value.position();
+            this.value = null;
+        } else {
+            this.array = null;
+            this.offset = 0;
+            this.value = value.asReadOnlyBuffer();
+        }
     }
 
     /**
@@ -32,6 +75,32 @@ public class UdsField {
      * @return value of the metadata item
      */
     public byte[] getValue() {
-        return value.clone();
+        if (array != null) {
+            return Arrays.copyOfRange(array, offset, offset + length);
+        }
+        byte[] bytes = new byte[length];
+        value.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Value associated with the Universal Data Set metadata item, without copying.
+     *
+     * @return read-only buffer, with the value between the position and the limit
+     */
+    public ByteBuffer getValueBuffer() {
+        if (array != null) {
+            return ByteBuffer.wrap(array, offset, length).slice().asReadOnlyBuffer();
+        }
+        return value.duplicate();
+    }
+
+    /**
+     * Length of the value.
+     *
+     * @return the number of bytes in the value
+     */
+    public int getLength() {
+        return length;
     }
 }
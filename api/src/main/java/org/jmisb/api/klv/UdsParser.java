@@ -1,7 +1,7 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import org.jmisb.api.common.KlvParseException;
 
@@ -20,40 +20,63 @@ public class UdsParser {
      */
     public static List<UdsField> parseFields(byte[] bytes, int start, int length)
             throws KlvParseException {
+        return parseFields(ByteBuffer.wrap(bytes), start, length);
+    }
+
+    /**
+     * Parse {@link UdsField}s from a buffer without copying the field values.
+     *
+     * <p>The buffer may be a heap, direct or memory-mapped buffer. It is read using absolute
+     * indexing, so its position and limit are not modified. Each returned field value is a
+     * read-only view onto the buffer, so the buffer content must not be modified while the fields
+     * are in use.
+     *
+     * @param buffer Buffer containing encoded UDS bytes
+     * @param start Absolute index to start parsing (must be at the start of a 16-byte UL)
+     * @param length Number of bytes to parse
+     * @return List of fields
+     * @throws KlvParseException If a parsing error occurs
+     */
+    public static List<UdsField> parseFields(ByteBuffer buffer, int start, int length)
+            throws KlvParseException {
         List<UdsField> fields = new ArrayList<>();
 
+        ByteBuffer view = buffer.duplicate();
+        final int last = start + length;
         int offset = start;
-        while (offset < length) {
+        while (offset < last) {
             // Get the Key (UL)
-            UniversalLabel key =
-                    new UniversalLabel(
-                            Arrays.copyOfRange(bytes, offset, offset + UniversalLabel.LENGTH));
+            if (offset + UniversalLabel.LENGTH > buffer.limit()) {
+                throw new KlvParseException("Overrun encountered while parsing UDS fields");
+            }
+            UniversalLabel key = new UniversalLabel(buffer, offset);
             // increment offset by the number of bytes in the UL key.
             offset += UniversalLabel.LENGTH;
 
             // Get the length
-            if (offset >= bytes.length) {
+            if (offset >= buffer.limit()) {
                 // TODO: we will probably need a non-strict option to return the fields that were
                 // actually parsed
                 throw new KlvParseException("Overrun encountered while parsing UDS fields");
             }
-            BerField lengthField = BerDecoder.decode(bytes, offset, false);
+            BerField lengthField = BerDecoder.decode(buffer, offset, false);
             // increment offset by the number of bytes in the length
             offset += lengthField.getLength();
 
             // Get the value
             int end = offset + lengthField.getValue();
-            byte[] value = Arrays.copyOfRange(bytes, offset, end);
-            if (end > bytes.length) {
+            if (end > buffer.limit()) {
                 // TODO: we will probably need a non-strict option to return the fields that were
                 // actually parsed
                 throw new KlvParseException("Overrun encountered while parsing UDS fields");
             }
+            view.limit(end);
+            view.position(offset);
 
             // Add to fields
-            fields.add(new UdsField(key, value));
+            fields.add(new UdsField(key, view));
             // Increment offset by the number of bytes in the value.
-            offset += value.length;
+            offset = end;
         }
 
         return fields;
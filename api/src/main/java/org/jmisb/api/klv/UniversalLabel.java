@@ -1,5 +1,6 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /** Represents a 16-byte Universal Label (UL). */
@@ -22,6 +23,27 @@ public class UniversalLabel {
         this.bytes = bytes.clone();
     }
 
+    /**
+     * Construct a UL from 16 bytes of a buffer.
+     *
+     * <p>The buffer is read using absolute indexing, so its position and limit are not modified.
+     *
+     * @param buffer The buffer containing the UL
+     * @param offset Absolute index of the first byte of the UL
+     * @throws IllegalArgumentException if the buffer does not contain a valid UL at {@code offset}
+     */
+    public UniversalLabel(ByteBuffer buffer, int offset) {
+        if (offset < 0 || buffer.limit() - offset < LENGTH) {
+            throw new IllegalArgumentException("Insufficient bytes for UL at offset " + offset);
+        }
+        byte[] ulBytes = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; ++i) {
+            ulBytes[i] = buffer.get(offset + i);
+        }
+        testValidity(ulBytes);
+        this.bytes = ulBytes;
+    }
+
     /**
      * Get the byte array.
      *
@@ -31,6 +53,19 @@ public class UniversalLabel {
         return bytes.clone();
     }
 
+    /**
+     * Write the bytes of the Universal Label into a buffer.
+     *
+     * <p>Unlike {@link #getBytes()}, this does not copy the label.
+     *
+     * @param buffer The buffer to write to, at its position
+     * @throws java.nio.BufferOverflowException If the buffer has less than {@link #LENGTH} bytes
+     *     remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(bytes);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -2,10 +2,17 @@ package org.jmisb.api.klv.eg0104;
 
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IMisbMessageFactory;
+import org.jmisb.api.klv.KlvConstants;
+import org.jmisb.api.klv.UniversalLabel;
 
 /** Factory method for PredatorUavMessage. */
 public class PredatorUavMessageFactory implements IMisbMessageFactory {
 
+    @Override
+    public UniversalLabel getUniversalLabel() {
+        return KlvConstants.PredatorMetadataLocalSetUl;
+    }
+
     @Override
     public PredatorUavMessage create(byte[] bytes) throws KlvParseException {
         return new PredatorUavMessage(bytes);
@@ -3,6 +3,7 @@ package org.jmisb.api.klv.st0102.localset;
 import static org.jmisb.api.klv.KlvConstants.SecurityMetadataLocalSetUl;
 import static org.jmisb.core.klv.ArrayUtils.arrayFromChunks;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.*;
 import org.jmisb.api.common.InvalidDataHandler;
@@ -50,8 +51,33 @@ public class SecurityMetadataLocalSet extends SecurityMetadataMessage {
             valueLength = lengthField.getValue();
         }
 
-        // Parse fields out of the array
-        List<LdsField> fields = LdsParser.parseFields(bytes, offset, valueLength);
+        parse(ByteBuffer.wrap(bytes), offset, valueLength);
+    }
+
+    /**
+     * Create a Security Metadata Local Set message by parsing the value of a nested local set.
+     *
+     * <p>The value is the bytes between the position and the limit of {@code value}, without the
+     * key and length. The bytes are not copied, and the position and limit are not modified.
+     *
+     * @param value Buffer containing the local set value
+     * @throws KlvParseException if a parsing error occurs
+     */
+    public SecurityMetadataLocalSet(ByteBuffer value) throws KlvParseException {
+        parse(value, value.position(), value.remaining());
+    }
+
+    /**
+     * Parse the fields of the local set.
+     *
+     * @param buffer Buffer containing the local set value
+     * @param offset Absolute index of the first field
+     * @param valueLength Length of the local set value
+     * @throws KlvParseException if a parsing error occurs
+     */
+    private void parse(ByteBuffer buffer, int offset, int valueLength) throws KlvParseException {
+        // Parse fields out of the buffer
+        List<LdsField> fields = LdsParser.parseFields(buffer, offset, valueLength);
 
         // Convert field data based on ST 0102
         for (LdsField field : fields) {
@@ -2,10 +2,17 @@ package org.jmisb.api.klv.st0102.localset;
 
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IMisbMessageFactory;
+import org.jmisb.api.klv.KlvConstants;
+import org.jmisb.api.klv.UniversalLabel;
 
 /** Factory method for SecurityMetadataLocalSet. */
 public class SecurityMetadataLocalSetFactory implements IMisbMessageFactory {
 
+    @Override
+    public UniversalLabel getUniversalLabel() {
+        return KlvConstants.SecurityMetadataLocalSetUl;
+    }
+
     @Override
     public SecurityMetadataLocalSet create(byte[] bytes) throws KlvParseException {
         return new SecurityMetadataLocalSet(bytes, true);
@@ -2,6 +2,8 @@ package org.jmisb.api.klv.st0102.universalset;
 
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IMisbMessageFactory;
+import org.jmisb.api.klv.KlvConstants;
+import org.jmisb.api.klv.UniversalLabel;
 
 /** Factory method for SecurityMetadataUniversalSet. */
 public class SecurityMetadataUniversalSetFactory implements IMisbMessageFactory {
@@ -9,6 +11,11 @@ public class SecurityMetadataUniversalSetFactory implements IMisbMessageFactory
     static {
     }
 
+    @Override
+    public UniversalLabel getUniversalLabel() {
+        return KlvConstants.SecurityMetadataUniversalSetUl;
+    }
+
     @Override
     public SecurityMetadataUniversalSet create(byte[] bytes) throws KlvParseException {
         return new SecurityMetadataUniversalSet(bytes);
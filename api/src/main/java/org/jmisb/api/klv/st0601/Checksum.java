@@ -1,6 +1,7 @@
 package org.jmisb.api.klv.st0601;
 
 import java.nio.ByteBuffer;
+import org.jmisb.core.klv.Checksum16;
 
 /** Compute checksum for ST 0601 packet. */
 public class Checksum {
@@ -19,20 +20,7 @@ public class Checksum {
      * @return 2-byte checksum
      */
     public static byte[] compute(byte[] fullMessage, boolean insert) {
-        int sum = 0;
-        final int lastShortIndex = fullMessage.length - 4;
-
-        // TODO: optimize
-        for (int i = 0; i <= lastShortIndex; i += 2) {
-            sum += Short.toUnsignedInt(ByteBuffer.wrap(fullMessage, i, 2).getShort());
-        }
-
-        // Add final byte if there's an odd number of bytes
-        if (fullMessage.length % 2 == 1) {
-            int last = Short.toUnsignedInt(fullMessage[fullMessage.length - 3]);
-            sum += (last << 8);
-        }
-
+        int sum = Checksum16.sum(fullMessage, 0, fullMessage.length - 2);
         if (insert) {
             fullMessage[fullMessage.length - 2] = (byte) (sum >>> 8);
             fullMessage[fullMessage.length - 1] = (byte) sum;
@@ -40,4 +28,81 @@ public class Checksum {
 
         return new byte[] {(byte) (sum >>> 8), (byte) sum};
     }
+
+    /**
+     * Compute checksum for a message held in a buffer.
+     *
+     * <p>The message is the bytes between the position and the limit of {@code fullMessage}, and
+     * the last two bytes are assumed to be the checksum value. The buffer is read using absolute
+     * indexing, so its position and limit are not modified.
+     *
+     * @param fullMessage Buffer containing the full message packet
+     * @return 2-byte checksum
+     */
+    public static byte[] compute(ByteBuffer fullMessage) {
+        int sum = sum(fullMessage, fullMessage.position(), fullMessage.remaining());
+        return new byte[] {(byte) (sum >>> 8), (byte) sum};
+    }
+
+    /**
+     * Compute the checksum for a message held in a buffer, as an unsigned 16-bit value.
+     *
+     * @param fullMessage Buffer containing the full message packet, including the checksum value
+     * @param start Absolute index of the start of the message
+     * @param length Number of bytes in the message
+     * @return the checksum, in the lower 16 bits
+     */
+    static int sum(ByteBuffer fullMessage, int start, int length) {
+        return Checksum16.sum(fullMessage, start, length - 2);
+    }
+
+    /**
+     * Verify the checksum of a message.
+     *
+     * @param fullMessage Byte array of the full message packet, ending with the checksum value
+     * @return true if the checksum value matches the message
+     */
+    public static boolean verify(byte[] fullMessage) {
+        final int length = fullMessage.length;
+        if (length < 2) {
+            return false;
+        }
+        int expected = ((fullMessage[length - 2] & 0xFF) << 8) | (fullMessage[length - 1] & 0xFF);
+        return Checksum16.sum(fullMessage, 0, length - 2) == expected;
+    }
+
+    /**
+     * Verify the checksum of a message held in a buffer.
+     *
+     * <p>The buffer is read using absolute indexing, so its position and limit are not modified.
+     *
+     * @param fullMessage Buffer containing the full message packet, ending with the checksum value
+     * @param start Absolute index of the start of the message
+     * @param length Number of bytes in the message
+     * @return true if the checksum value matches the message
+     */
+    public static boolean verify(ByteBuffer fullMessage, int start, int length) {
+        if (length < 2) {
+            return false;
+        }
+        final int end = start + length;
+        int expected = ((fullMessage.get(end - 2) & 0xFF) << 8) | (fullMessage.get(end - 1) & 0xFF);
+        return sum(fullMessage, start, length) == expected;
+    }
+
+    /**
+     * Compute the checksum for a message held in a buffer, and write it into the last two bytes.
+     *
+     * <p>The buffer is written using absolute indexing, so its position and limit are not modified.
+     *
+     * @param fullMessage Buffer containing the full message packet, ending with the checksum key,
+     *     length and a two byte placeholder for the value
+     * @param start Absolute index of the start of the message
+     * @param length Number of bytes in the message
+     */
+    public static void insert(ByteBuffer fullMessage, int start, int length) {
+        int sum = sum(fullMessage, start, length);
+        fullMessage.put(start + length - 2, (byte) (sum >>> 8));
+        fullMessage.put(start + length - 1, (byte) sum);
+    }
 }
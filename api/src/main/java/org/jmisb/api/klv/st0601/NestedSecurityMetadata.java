@@ -1,5 +1,6 @@
 package org.jmisb.api.klv.st0601;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IKlvKey;
@@ -41,8 +42,18 @@ public class NestedSecurityMetadata implements IUasDatalinkValue, INestedKlvValu
      * @throws KlvParseException if a parsing error occurs
      */
     public NestedSecurityMetadata(byte[] bytes) throws KlvParseException {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Create from encoded bytes, without copying them.
+     *
+     * @param value Buffer containing a nested ST 0102 local set, between its position and limit
+     * @throws KlvParseException if a parsing error occurs
+     */
+    public NestedSecurityMetadata(ByteBuffer value) throws KlvParseException {
         try {
-            this.localSet = new SecurityMetadataLocalSet(bytes, false);
+            this.localSet = new SecurityMetadataLocalSet(value);
         } catch (IllegalArgumentException ex) {
             throw new KlvParseException(ex.getMessage());
         }
@@ -1,5 +1,6 @@
 package org.jmisb.api.klv.st0601;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IKlvKey;
@@ -49,6 +50,16 @@ public class NestedVmtiLocalSet implements IUasDatalinkValue, INestedKlvValue {
         this.vmtiLocalSet = new VmtiLocalSet(bytes);
     }
 
+    /**
+     * Create from encoded bytes, without copying them.
+     *
+     * @param value Buffer containing the nested VMTI local set, between its position and limit
+     * @throws KlvParseException if the input is invalid
+     */
+    public NestedVmtiLocalSet(ByteBuffer value) throws KlvParseException {
+        this.vmtiLocalSet = new VmtiLocalSet(value);
+    }
+
     @Override
     public byte[] getBytes() {
         return this.vmtiLocalSet.frameMessage(true);
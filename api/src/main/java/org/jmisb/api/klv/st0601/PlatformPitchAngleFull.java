@@ -55,10 +55,24 @@ public class PlatformPitchAngleFull implements IUasDatalinkValue {
             degrees = Double.POSITIVE_INFINITY;
         } else {
             int intVal = PrimitiveConverter.toInt32(bytes);
-            this.degrees = (intVal / INT_RANGE) * FLOAT_RANGE;
+            this.degrees = fromEncoded(intVal);
         }
     }
 
+    /**
+     * Convert the encoded integer value to degrees.
+     *
+     * @param intVal the encoded value
+     * @return the value in degrees, or {@code Double.POSITIVE_INFINITY} if the error indicator was
+     *     encoded
+     */
+    static double fromEncoded(int intVal) {
+        if (intVal == Integer.MIN_VALUE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (intVal / INT_RANGE) * FLOAT_RANGE;
+    }
+
     /**
      * Get the value in degrees.
      *
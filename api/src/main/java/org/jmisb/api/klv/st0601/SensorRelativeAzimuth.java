@@ -47,7 +47,17 @@ public class SensorRelativeAzimuth implements IUasDatalinkValue {
                     "Sensor Relative Azimuth encoding is a 4-byte unsigned int");
         }
         long longVal = PrimitiveConverter.toUint32(bytes);
-        this.degrees = (longVal / MAXINT) * RANGE;
+        this.degrees = fromEncoded(longVal);
+    }
+
+    /**
+     * Convert the encoded integer value to degrees.
+     *
+     * @param longVal the encoded value
+     * @return the value in degrees
+     */
+    static double fromEncoded(long longVal) {
+        return (longVal / MAXINT) * RANGE;
     }
 
     /**
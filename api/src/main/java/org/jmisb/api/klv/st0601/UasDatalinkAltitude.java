@@ -48,7 +48,17 @@ public abstract class UasDatalinkAltitude implements IUasDatalinkValue {
         }
 
         int intVal = PrimitiveConverter.toUint16(bytes);
-        meters = ((intVal / MAXINT) * RANGE) + MIN_VALUE;
+        meters = fromEncoded(intVal);
+    }
+
+    /**
+     * Convert the encoded integer value to meters.
+     *
+     * @param intVal the encoded value
+     * @return the value in meters
+     */
+    static double fromEncoded(int intVal) {
+        return ((intVal / MAXINT) * RANGE) + MIN_VALUE;
     }
 
     /**
@@ -48,7 +48,17 @@ public abstract class UasDatalinkAngle360 implements IUasDatalinkValue {
         }
 
         int intVal = PrimitiveConverter.toUint16(bytes);
-        this.degrees = (intVal / MAXINT) * RANGE;
+        this.degrees = fromEncoded(intVal);
+    }
+
+    /**
+     * Convert the encoded integer value to degrees.
+     *
+     * @param intVal the encoded value
+     * @return the value in degrees
+     */
+    static double fromEncoded(int intVal) {
+        return (intVal / MAXINT) * RANGE;
     }
 
     /**
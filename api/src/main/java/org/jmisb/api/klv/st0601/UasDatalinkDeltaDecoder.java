@@ -0,0 +1,91 @@
+package org.jmisb.api.klv.st0601;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Stateful decoder that reconstructs complete ST 0601 messages from packets omitting unchanged
+ * values.
+ *
+ * <p>ST 0601 receivers hold the last value received for each tag, since producers may omit values
+ * that have not changed (see {@link UasDatalinkDeltaEncoder}). For each message passed to {@link
+ * #decode(UasDatalinkMessage)}, this class merges the values received into its state and returns a
+ * message holding the latest value of every tag.
+ *
+ * <p>A packet cannot say that a tag has been removed, so by default a value is held until it is
+ * replaced. If the producer sends periodic key frames, {@link #setExpiryPackets(int)} can be set to
+ * the key frame interval so that values not refreshed by a key frame are dropped.
+ *
+ * <p>This class is not thread-safe; use one decoder per input stream.
+ */
+public class UasDatalinkDeltaDecoder {
+    private final SortedMap<UasDatalinkTag, IUasDatalinkValue> state = new TreeMap<>();
+    private final Map<UasDatalinkTag, Long> lastReceived = new EnumMap<>(UasDatalinkTag.class);
+    private int expiryPackets;
+    private long packetCount;
+
+    /**
+     * Set the number of packets after which a value that has not been received is dropped.
+     *
+     * @param packets The number of packets, or 0 to hold values until replaced
+     * @throws IllegalArgumentException if the number of packets is negative
+     */
+    public void setExpiryPackets(int packets) {
+        if (packets < 0) {
+            throw new IllegalArgumentException("Expiry cannot be negative");
+        }
+        this.expiryPackets = packets;
+    }
+
+    /**
+     * Get the number of packets after which a value that has not been received is dropped.
+     *
+     * @return The number of packets, or 0 if values are held until replaced
+     */
+    public int getExpiryPackets() {
+        return expiryPackets;
+    }
+
+    /** Forget all values received. */
+    public void reset() {
+        state.clear();
+        lastReceived.clear();
+        packetCount = 0;
+    }
+
+    /**
+     * Decode a message, filling in values omitted because they had not changed.
+     *
+     * @param message The message as received
+     * @return A message holding the latest value of every tag
+     */
+    public UasDatalinkMessage decode(UasDatalinkMessage message) {
+        packetCount++;
+        for (UasDatalinkTag tag : message.getIdentifiers()) {
+            if (tag == UasDatalinkTag.Checksum) {
+                continue;
+            }
+            IUasDatalinkValue value = message.getField(tag);
+            if (value != null) {
+                state.put(tag, value);
+                lastReceived.put(tag, packetCount);
+            }
+        }
+
+        if (expiryPackets > 0) {
+            for (Iterator<Map.Entry<UasDatalinkTag, Long>> it = lastReceived.entrySet().iterator();
+                    it.hasNext(); ) {
+                Map.Entry<UasDatalinkTag, Long> entry = it.next();
+                if (packetCount - entry.getValue() >= expiryPackets) {
+                    state.remove(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+
+        return new UasDatalinkMessage(new TreeMap<>(state));
+    }
+}
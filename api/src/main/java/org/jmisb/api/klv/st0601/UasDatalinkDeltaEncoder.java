@@ -0,0 +1,293 @@
+package org.jmisb.api.klv.st0601;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Stateful encoder that omits unchanged values from successive ST 0601 packets.
+ *
+ * <p>ST 0601 allows a producer to leave out values that have not changed since they were last sent,
+ * with receivers holding the last value received for each tag. This class remembers the encoded
+ * value last sent for each tag and, for each message passed to {@link #encode(UasDatalinkMessage)},
+ * returns a message containing only the tags that have changed. On a low-rate datalink most
+ * platform and sensor values change slowly, so this typically removes most of each packet.
+ *
+ * <p>So that a receiver joining part way through (or after packet loss) can recover the full state,
+ * a complete "key frame" message is produced periodically: every {@link
+ * #setKeyFramePacketInterval(int)} packets, and every {@link #setKeyFrameTimeInterval(double)}
+ * seconds according to the {@link PrecisionTimeStamp} in the messages. A key frame can also be
+ * forced using {@link #requestKeyFrame()}. The first message is always a key frame.
+ *
+ * <p>Some tags are sent in every packet whether or not they have changed. By default these are the
+ * Precision Time Stamp and the UAS Datalink LS Version Number, which ST 0601 requires in every
+ * packet; others can be added with {@link #setAlwaysSent(UasDatalinkTag, boolean)}.
+ *
+ * <p>By default a value is considered changed if its encoding differs at all. For noisy values a
+ * per-tag threshold can be set with {@link #setChangeThreshold(UasDatalinkTag, long)}: the value is
+ * then only sent once its encoding differs from the value last sent by more than the threshold.
+ * Since the change is measured from the value last sent, slow drift is still sent eventually.
+ *
+ * <p>The matching receive side is {@link UasDatalinkDeltaDecoder}. This class is not thread-safe;
+ * use one encoder per output stream.
+ */
+public class UasDatalinkDeltaEncoder {
+    /** Default interval between key frames, in packets. */
+    public static final int DEFAULT_KEY_FRAME_PACKET_INTERVAL = 30;
+
+    /** Default interval between key frames, in seconds. */
+    public static final double DEFAULT_KEY_FRAME_TIME_INTERVAL = 10.0;
+
+    private final Map<UasDatalinkTag, byte[]> lastSent = new EnumMap<>(UasDatalinkTag.class);
+    private final Map<UasDatalinkTag, Long> thresholds = new EnumMap<>(UasDatalinkTag.class);
+    private final Set<UasDatalinkTag> alwaysSent =
+            EnumSet.of(UasDatalinkTag.PrecisionTimeStamp, UasDatalinkTag.UasLdsVersionNumber);
+    private int keyFramePacketInterval = DEFAULT_KEY_FRAME_PACKET_INTERVAL;
+    private double keyFrameTimeInterval = DEFAULT_KEY_FRAME_TIME_INTERVAL;
+    private boolean keyFrameRequested = true;
+    private boolean lastWasKeyFrame;
+    private int packetsSinceKeyFrame;
+    private long lastKeyFrameMicros;
+
+    /**
+     * Set the maximum number of packets between key frames.
+     *
+     * @param packets The interval in packets, or 0 to disable packet-based key frames
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public void setKeyFramePacketInterval(int packets) {
+        if (packets < 0) {
+            throw new IllegalArgumentException("Key frame interval cannot be negative");
+        }
+        this.keyFramePacketInterval = packets;
+    }
+
+    /**
+     * Get the maximum number of packets between key frames.
+     *
+     * @return The interval in packets, or 0 if disabled
+     */
+    public int getKeyFramePacketInterval() {
+        return keyFramePacketInterval;
+    }
+
+    /**
+     * Set the maximum time between key frames.
+     *
+     * <p>Time is measured using the Precision Time Stamp of the messages, so this has no effect for
+     * messages without one. A time stamp earlier than the last key frame (for example, when a
+     * recording is looped) also produces a key frame.
+     *
+     * @param seconds The interval in seconds, or 0 to disable time-based key frames
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public void setKeyFrameTimeInterval(double seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Key frame interval cannot be negative");
+        }
+        this.keyFrameTimeInterval = seconds;
+    }
+
+    /**
+     * Get the maximum time between key frames.
+     *
+     * @return The interval in seconds, or 0 if disabled
+     */
+    public double getKeyFrameTimeInterval() {
+        return keyFrameTimeInterval;
+    }
+
+    /**
+     * Set whether a tag is included in every packet, even if unchanged.
+     *
+     * @param tag The tag
+     * @param always true to send the tag in every packet
+     */
+    public void setAlwaysSent(UasDatalinkTag tag, boolean always) {
+        if (always) {
+            alwaysSent.add(tag);
+        } else {
+            alwaysSent.remove(tag);
+        }
+    }
+
+    /**
+     * Check whether a tag is included in every packet.
+     *
+     * @param tag The tag
+     * @return true if the tag is sent in every packet
+     */
+    public boolean isAlwaysSent(UasDatalinkTag tag) {
+        return alwaysSent.contains(tag);
+    }
+
+    /**
+     * Set the change threshold for a tag.
+     *
+     * <p>The threshold is in units of the encoded value: the value is read as a big-endian unsigned
+     * integer, and only counts as changed if it differs from the value last sent by more than the
+     * threshold. Since ST 0601 values are linear mappings, this corresponds to a fixed change in
+     * the real value; for example, a threshold of 10 on Platform Heading Angle (a 16-bit mapping of
+     * 0..360 degrees) ignores changes of up to about 0.055 degrees. Values longer than 8 bytes, or
+     * whose length changes, are always compared exactly.
+     *
+     * <p>Interpreting the encoding as unsigned is conservative: crossing zero for a signed value,
+     * or wrapping around for an angle, counts as a large change.
+     *
+     * @param tag The tag
+     * @param threshold The threshold in encoded units, or 0 to send any change
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public void setChangeThreshold(UasDatalinkTag tag, long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative");
+        }
+        if (threshold == 0) {
+            thresholds.remove(tag);
+        } else {
+            thresholds.put(tag, threshold);
+        }
+    }
+
+    /**
+     * Get the change threshold for a tag.
+     *
+     * @param tag The tag
+     * @return The threshold in encoded units, or 0 if any change is sent
+     */
+    public long getChangeThreshold(UasDatalinkTag tag) {
+        return thresholds.getOrDefault(tag, 0L);
+    }
+
+    /** Force the next message to be a key frame. */
+    public void requestKeyFrame() {
+        keyFrameRequested = true;
+    }
+
+    /**
+     * Forget all values sent, so the next message is a key frame.
+     *
+     * <p>Settings are not changed.
+     */
+    public void reset() {
+        lastSent.clear();
+        keyFrameRequested = true;
+        lastWasKeyFrame = false;
+        packetsSinceKeyFrame = 0;
+    }
+
+    /**
+     * Check whether the last message returned by {@link #encode(UasDatalinkMessage)} was a key
+     * frame.
+     *
+     * @return true if the last message contained every tag
+     */
+    public boolean wasKeyFrame() {
+        return lastWasKeyFrame;
+    }
+
+    /**
+     * Encode a message, omitting values that have not changed.
+     *
+     * @param message The complete message
+     * @return A message containing the changed values, or all values if this is a key frame
+     */
+    public UasDatalinkMessage encode(UasDatalinkMessage message) {
+        long micros = timeStamp(message);
+        boolean keyFrame = isKeyFrameDue(micros);
+
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        Set<UasDatalinkTag> tags = message.getIdentifiers();
+        for (UasDatalinkTag tag : tags) {
+            if (tag == UasDatalinkTag.Checksum) {
+                continue;
+            }
+            IUasDatalinkValue value = message.getField(tag);
+            if (value == null) {
+                continue;
+            }
+            byte[] bytes = value.getBytes();
+            if (keyFrame || alwaysSent.contains(tag) || hasChanged(tag, bytes)) {
+                values.put(tag, value);
+                lastSent.put(tag, bytes);
+            }
+        }
+
+        // Tags that have disappeared are sent again as soon as they reappear
+        for (Iterator<UasDatalinkTag> it = lastSent.keySet().iterator(); it.hasNext(); ) {
+            if (!tags.contains(it.next())) {
+                it.remove();
+            }
+        }
+
+        if (keyFrame) {
+            keyFrameRequested = false;
+            packetsSinceKeyFrame = 0;
+            if (micros >= 0) {
+                lastKeyFrameMicros = micros;
+            }
+        }
+        packetsSinceKeyFrame++;
+        lastWasKeyFrame = keyFrame;
+        return new UasDatalinkMessage(values);
+    }
+
+    private boolean isKeyFrameDue(long micros) {
+        if (keyFrameRequested) {
+            return true;
+        }
+        if (keyFramePacketInterval > 0 && packetsSinceKeyFrame >= keyFramePacketInterval) {
+            return true;
+        }
+        if (keyFrameTimeInterval > 0 && micros >= 0) {
+            long elapsed = micros - lastKeyFrameMicros;
+            return elapsed < 0 || elapsed >= keyFrameTimeInterval * 1e6;
+        }
+        return false;
+    }
+
+    private boolean hasChanged(UasDatalinkTag tag, byte[] bytes) {
+        byte[] previous = lastSent.get(tag);
+        if (previous == null) {
+            return true;
+        }
+        Long threshold = thresholds.get(tag);
+        if (threshold == null
+                || previous.length != bytes.length
+                || bytes.length > Long.BYTES
+                || bytes.length == 0) {
+            return !Arrays.equals(previous, bytes);
+        }
+        long a = toUnsigned(previous);
+        long b = toUnsigned(bytes);
+        long difference = Long.compareUnsigned(a, b) >= 0 ? a - b : b - a;
+        return Long.compareUnsigned(difference, threshold) > 0;
+    }
+
+    private static long toUnsigned(byte[] bytes) {
+        long value = 0;
+        for (byte b : bytes) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Get the time stamp of a message.
+     *
+     * @param message The message
+     * @return The Precision Time Stamp in microseconds, or -1 if not present
+     */
+    private static long timeStamp(UasDatalinkMessage message) {
+        IUasDatalinkValue value = message.getField(UasDatalinkTag.PrecisionTimeStamp);
+        if (value instanceof PrecisionTimeStamp) {
+            return ((PrecisionTimeStamp) value).getMicroseconds();
+        }
+        return -1;
+    }
+}
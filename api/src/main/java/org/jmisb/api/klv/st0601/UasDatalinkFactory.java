@@ -1,11 +1,35 @@
 package org.jmisb.api.klv.st0601;
 
 import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.LdsField;
 
 /** Dynamically create {@link IUasDatalinkValue}s from {@link UasDatalinkTag}s. */
 public class UasDatalinkFactory {
     private UasDatalinkFactory() {}
 
+    /**
+     * Create a {@link IUasDatalinkValue} instance from a parsed field.
+     *
+     * <p>Nested local sets are parsed directly from the field's value, without copying it.
+     *
+     * @param tag The tag defining the value type
+     * @param field The field holding the encoded value
+     * @return The new instance
+     * @throws IllegalArgumentException if input is invalid
+     * @throws KlvParseException if a parsing error occurs
+     */
+    public static IUasDatalinkValue createValue(UasDatalinkTag tag, LdsField field)
+            throws KlvParseException {
+        switch (tag) {
+            case SecurityLocalMetadataSet:
+                return new NestedSecurityMetadata(field.getDataBuffer());
+            case VmtiLocalDataSet:
+                return new NestedVmtiLocalSet(field.getDataBuffer());
+            default:
+                return createValue(tag, field.getData());
+        }
+    }
+
     /**
      * Create a {@link IUasDatalinkValue} instance from encoded bytes.
      *
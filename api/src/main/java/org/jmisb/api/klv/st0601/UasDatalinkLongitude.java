@@ -51,10 +51,24 @@ public abstract class UasDatalinkLongitude implements IUasDatalinkValue {
             degrees = Double.POSITIVE_INFINITY;
         } else {
             int intVal = PrimitiveConverter.toInt32(bytes);
-            this.degrees = (intVal / MAX_INT) * FLOAT_RANGE;
+            this.degrees = fromEncoded(intVal);
         }
     }
 
+    /**
+     * Convert the encoded integer value to degrees.
+     *
+     * @param intVal the encoded value
+     * @return the value in degrees, or {@code Double.POSITIVE_INFINITY} if the error indicator was
+     *     encoded
+     */
+    static double fromEncoded(int intVal) {
+        if (intVal == Integer.MIN_VALUE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (intVal / MAX_INT) * FLOAT_RANGE;
+    }
+
     /**
      * Get the longitude in degrees.
      *
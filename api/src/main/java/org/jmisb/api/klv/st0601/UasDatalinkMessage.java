@@ -1,9 +1,11 @@
 package org.jmisb.api.klv.st0601;
 
 import static org.jmisb.api.klv.KlvConstants.UasDatalinkLocalUl;
-import static org.jmisb.core.klv.ArrayUtils.arrayFromChunks;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import org.jmisb.api.common.InvalidDataCounts;
 import org.jmisb.api.common.InvalidDataHandler;
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.*;
@@ -19,12 +21,33 @@ import org.slf4j.LoggerFactory;
 public class UasDatalinkMessage implements IMisbMessage {
     private static Logger logger = LoggerFactory.getLogger(UasDatalinkMessage.class);
 
+    /** Length of the checksum key, length and value. */
+    private static final int CHECKSUM_FIELD_LENGTH = 4;
+
+    /**
+     * Per-thread scratch space for encoded values, indexed by tag ordinal.
+     *
+     * <p>Values are encoded once to find the message length, then written directly to the output.
+     */
+    private static final ThreadLocal<byte[][]> VALUE_SCRATCH =
+            ThreadLocal.withInitial(() -> new byte[UasDatalinkTag.values().length][]);
+
     // TODO: should we make this class immutable? May have benefits for stability in multi-threaded
     // environments.
 
     /** Map containing all data elements in the message (except, normally, the checksum). */
     private SortedMap<UasDatalinkTag, IUasDatalinkValue> map = new TreeMap<>();
 
+    /**
+     * Fields that have been located but not yet decoded, when lazy parsing is in use.
+     *
+     * <p>Entries are moved into {@link #map} as they are materialized.
+     */
+    private final Map<UasDatalinkTag, LdsField> pendingFields;
+
+    /** Invalid data counts of the thread that parsed the message, for lazy decoding errors. */
+    private final InvalidDataCounts parserCounts;
+
     /**
      * Create the message from the given key/value pairs.
      *
@@ -32,6 +55,8 @@ public class UasDatalinkMessage implements IMisbMessage {
      */
     public UasDatalinkMessage(SortedMap<UasDatalinkTag, IUasDatalinkValue> values) {
         this.map = values;
+        this.pendingFields = null;
+        this.parserCounts = null;
     }
 
     /**
@@ -41,14 +66,68 @@ public class UasDatalinkMessage implements IMisbMessage {
      * @throws KlvParseException if a parsing error occurs, or checksum is missing/invalid
      */
     public UasDatalinkMessage(byte[] bytes) throws KlvParseException {
+        this(ByteBuffer.wrap(bytes), false);
+    }
+
+    /**
+     * Create the message by parsing the given buffer.
+     *
+     * <p>The message is the bytes between the position and the limit of {@code buffer}. Field
+     * values are parsed directly from the buffer, and only copied as each value is created. The
+     * buffer is not retained, and its position and limit are not modified.
+     *
+     * @param buffer Buffer containing a UAS Datalink message
+     * @throws KlvParseException if a parsing error occurs, or checksum is missing/invalid
+     */
+    public UasDatalinkMessage(ByteBuffer buffer) throws KlvParseException {
+        this(buffer, false);
+    }
+
+    /**
+     * Create the message by parsing the given buffer, optionally deferring value decoding.
+     *
+     * <p>The message is the bytes between the position and the limit of {@code buffer}. The
+     * position and limit of {@code buffer} are not modified.
+     *
+     * <p>If {@code lazy} is true, the message bytes are copied once and the location of each tag is
+     * indexed, but values are not decoded until they are first requested via {@link
+     * #getField(UasDatalinkTag)}. Decoded values are cached. This is much cheaper when only a few
+     * tags are read, particularly if the message contains nested local sets such as VMTI. The
+     * checksum is still verified during construction. An invalid value encoding is reported to the
+     * {@link InvalidDataHandler} when the value is first decoded, and attributed to the invalid
+     * data counts of the thread that constructed the message. If the strategy for invalid field
+     * encodings throws, {@link #getField(UasDatalinkTag)} throws an {@link
+     * IllegalArgumentException} wrapping the {@link KlvParseException}; use {@link
+     * #decodePendingFields()} to decode everything up front with a checked exception instead.
+     *
+     * @param buffer Buffer containing a UAS Datalink message
+     * @param lazy true to defer decoding of values until they are requested
+     * @throws KlvParseException if a parsing error occurs, or checksum is missing/invalid
+     */
+    public UasDatalinkMessage(ByteBuffer buffer, boolean lazy) throws KlvParseException {
+        if (lazy) {
+            // The fields will outlive the caller's buffer, so take a private copy
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            buffer = ByteBuffer.wrap(bytes);
+            pendingFields = new EnumMap<>(UasDatalinkTag.class);
+            parserCounts = InvalidDataHandler.getInstance().getThreadCounts();
+        } else {
+            pendingFields = null;
+            parserCounts = null;
+        }
+        final int start = buffer.position();
+        final int end = buffer.limit();
+
         // Parse the length field
-        BerField lengthField = BerDecoder.decode(bytes, UniversalLabel.LENGTH, false);
+        BerField lengthField = BerDecoder.decode(buffer, start + UniversalLabel.LENGTH, false);
         int lengthLength = lengthField.getLength();
         int valueLength = lengthField.getValue();
 
-        // Parse fields out of the array
+        // Parse fields out of the buffer
         List<LdsField> fields =
-                LdsParser.parseFields(bytes, UniversalLabel.LENGTH + lengthLength, valueLength);
+                LdsParser.parseFields(
+                        buffer, start + UniversalLabel.LENGTH + lengthLength, valueLength);
 
         boolean checksumFound = false;
         for (LdsField field : fields) {
@@ -57,14 +136,15 @@ public class UasDatalinkMessage implements IMisbMessage {
                 logger.info("Unknown UAS Datalink tag: " + field.getTag());
             } else if (tag == UasDatalinkTag.Checksum) {
                 checksumFound = true;
-                byte[] expected = Checksum.compute(bytes, false);
-                byte[] actual = Arrays.copyOfRange(bytes, bytes.length - 2, bytes.length);
-                if (!Arrays.equals(expected, actual)) {
+                if (!Checksum.verify(buffer, start, end - start)) {
                     InvalidDataHandler.getInstance().handleInvalidChecksum(logger, "Bad checksum");
                 }
+            } else if (lazy) {
+                // Later occurrences replace earlier ones, as they would in the eager map
+                pendingFields.put(tag, field);
             } else {
                 try {
-                    IUasDatalinkValue value = UasDatalinkFactory.createValue(tag, field.getData());
+                    IUasDatalinkValue value = UasDatalinkFactory.createValue(tag, field);
                     setField(tag, value);
                 } catch (KlvParseException | IllegalArgumentException ex) {
                     InvalidDataHandler.getInstance()
@@ -83,13 +163,99 @@ public class UasDatalinkMessage implements IMisbMessage {
         map.put(tag, value);
     }
 
+    /**
+     * Decode a pending field, if there is one for the given tag.
+     *
+     * @param tag the tag to materialize
+     * @throws KlvParseException if the value is invalid and the invalid field encoding strategy
+     *     throws
+     */
+    private synchronized void materialize(UasDatalinkTag tag) throws KlvParseException {
+        LdsField field = pendingFields.remove(tag);
+        if (field == null) {
+            return;
+        }
+        try {
+            setField(tag, UasDatalinkFactory.createValue(tag, field));
+        } catch (KlvParseException | IllegalArgumentException ex) {
+            // Attribute the error to the input the message was parsed from
+            InvalidDataHandler handler = InvalidDataHandler.getInstance();
+            InvalidDataCounts callerCounts = handler.getThreadCounts();
+            handler.setThreadCounts(parserCounts);
+            try {
+                handler.handleInvalidFieldEncoding(logger, ex.getMessage());
+            } finally {
+                handler.setThreadCounts(callerCounts);
+            }
+        }
+    }
+
+    /**
+     * Decode a pending field, reporting a strict invalid data failure as an unchecked exception.
+     *
+     * @param tag the tag to materialize
+     */
+    private void materializeUnchecked(UasDatalinkTag tag) {
+        try {
+            materialize(tag);
+        } catch (KlvParseException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Decode all values that have not yet been decoded.
+     *
+     * <p>This has no effect unless the message was parsed in lazy mode. Invalid values are reported
+     * to the {@link InvalidDataHandler}, as they would be by an eager parse.
+     *
+     * @throws KlvParseException if a value is invalid and the invalid field encoding strategy
+     *     throws
+     */
+    public synchronized void decodePendingFields() throws KlvParseException {
+        if (pendingFields == null) {
+            return;
+        }
+        for (UasDatalinkTag tag : new ArrayList<>(pendingFields.keySet())) {
+            materialize(tag);
+        }
+    }
+
+    /** Decode all pending fields, reporting a strict failure as an unchecked exception. */
+    private void materializeAll() {
+        try {
+            decodePendingFields();
+        } catch (KlvParseException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Check whether this message was parsed in lazy mode and still has undecoded values.
+     *
+     * @return true if at least one value has not yet been decoded
+     */
+    public synchronized boolean hasPendingFields() {
+        return pendingFields != null && !pendingFields.isEmpty();
+    }
+
     /**
      * Get the value of a given tag.
      *
+     * <p>If the message was parsed in lazy mode, the value is decoded on the first request.
+     *
      * @param tag Tag of the value to retrieve
-     * @return The value, or null if no value was set
+     * @return The value, or null if no value was set, or the value was invalid
+     * @throws IllegalArgumentException in lazy mode, if the value is invalid and the invalid field
+     *     encoding strategy throws
      */
     public IUasDatalinkValue getField(UasDatalinkTag tag) {
+        if (pendingFields != null) {
+            synchronized (this) {
+                materializeUnchecked(tag);
+                return map.get(tag);
+            }
+        }
         return map.get(tag);
     }
 
@@ -101,14 +267,33 @@ public class UasDatalinkMessage implements IMisbMessage {
     /**
      * Get the set of tags with populated values.
      *
-     * @return The set of tags for which values have been set
+     * @return The set of tags for which values have been set; see {@link #getIdentifiers()} for
+     *     lazy parsing
      */
     public Collection<UasDatalinkTag> getTags() {
         return this.getIdentifiers();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the message was parsed in lazy mode, this includes tags that have not been decoded yet,
+     * without decoding them. A tag whose value turns out to be invalid is dropped when it is
+     * decoded, so {@link #getField(UasDatalinkTag)} may return null for a tag listed here. Call
+     * {@link #decodePendingFields()} first to get exactly the tags with valid values.
+     */
     @Override
     public Set<UasDatalinkTag> getIdentifiers() {
+        if (pendingFields != null) {
+            synchronized (this) {
+                if (!pendingFields.isEmpty()) {
+                    // Undecoded tags are reported without decoding them
+                    SortedSet<UasDatalinkTag> tags = new TreeSet<>(map.keySet());
+                    tags.addAll(pendingFields.keySet());
+                    return tags;
+                }
+            }
+        }
         return map.keySet();
     }
 
@@ -119,13 +304,53 @@ public class UasDatalinkMessage implements IMisbMessage {
 
     @Override
     public byte[] frameMessage(boolean isNested) {
-        // List representing all tags and values as primitive byte arrays. Avoids boxing/unboxing
-        // individual bytes for efficiency.
-        List<byte[]> chunks = new ArrayList<>();
+        byte[][] values = VALUE_SCRATCH.get();
+        try {
+            int valueLength = collectValues(values);
+            byte[] array = new byte[framedLength(valueLength, isNested)];
+            writeMessage(values, valueLength, isNested, ByteBuffer.wrap(array));
+            return array;
+        } finally {
+            Arrays.fill(values, null);
+        }
+    }
 
-        // Note: we will insert key/length fields into chunks after all value fields have been added
+    @Override
+    public int getFramedLength(boolean isNested) {
+        byte[][] values = VALUE_SCRATCH.get();
+        try {
+            return framedLength(collectValues(values), isNested);
+        } finally {
+            Arrays.fill(values, null);
+        }
+    }
+
+    @Override
+    public int frameMessage(boolean isNested, ByteBuffer buffer) {
+        byte[][] values = VALUE_SCRATCH.get();
+        try {
+            int valueLength = collectValues(values);
+            int length = framedLength(valueLength, isNested);
+            if (buffer.remaining() < length) {
+                throw new BufferOverflowException();
+            }
+            writeMessage(values, valueLength, isNested, buffer);
+            return length;
+        } finally {
+            Arrays.fill(values, null);
+        }
+    }
 
-        // Add all values from map
+    /**
+     * Encode all values, ready for framing.
+     *
+     * @param values Array indexed by tag ordinal, to receive the encoded values. Entries are left
+     *     null for tags that will not be written.
+     * @return The length of the local set value, including the checksum
+     */
+    private int collectValues(byte[][] values) {
+        materializeAll();
+        int valueLength = CHECKSUM_FIELD_LENGTH;
         for (Map.Entry<UasDatalinkTag, IUasDatalinkValue> entry : map.entrySet()) {
             UasDatalinkTag tag = entry.getKey();
 
@@ -135,54 +360,58 @@ public class UasDatalinkMessage implements IMisbMessage {
                 continue;
             }
 
-            IUasDatalinkValue value = entry.getValue();
-            byte[] bytes = value.getBytes();
+            byte[] bytes = entry.getValue().getBytes();
             if (bytes != null && bytes.length > 0) {
-                // Add key, length, value to chunks
-                chunks.add(BerEncoder.encode(tag.getCode(), Ber.OID));
-                chunks.add(BerEncoder.encode(bytes.length));
-                chunks.add(bytes.clone());
+                values[tag.ordinal()] = bytes;
+                valueLength +=
+                        BerEncoder.encodedLength(tag.getCode(), Ber.OID)
+                                + BerEncoder.encodedLength(bytes.length)
+                                + bytes.length;
             }
         }
+        return valueLength;
+    }
 
-        // Add Key and Length of checksum with placeholder for value - Checksum must be final
-        // element
-        byte[] checksum = new byte[2];
-        chunks.add(new byte[] {(byte) UasDatalinkTag.Checksum.getCode()});
-        chunks.add(BerEncoder.encode(checksum.length, Ber.SHORT_FORM));
-        chunks.add(checksum);
-
-        // Figure out value length
-        final int keyLength = UniversalLabel.LENGTH;
-        int valueLength = 0;
-        for (byte[] chunk : chunks) {
-            valueLength += chunk.length;
-        }
-
-        // Determine total length
-        int totalLength;
+    private static int framedLength(int valueLength, boolean isNested) {
         if (isNested) {
             // NOTE: nesting ST 0601 seems unlikely, but we'll support it anyway
-            totalLength = valueLength;
-        } else {
-            // Prepend length field into front of the list
-            byte[] lengthField = BerEncoder.encode(valueLength);
-            chunks.add(0, lengthField);
-
-            // Prepend key field (UL) into front of the list
-            chunks.add(0, UasDatalinkLocalUl.getBytes());
-
-            // Compute full message length
-            totalLength = keyLength + lengthField.length + valueLength;
+            return valueLength;
         }
+        return UniversalLabel.LENGTH + BerEncoder.encodedLength(valueLength) + valueLength;
+    }
 
-        // Allocate array and write all chunks
-        byte[] array = arrayFromChunks(chunks, totalLength);
+    /**
+     * Write the framed message, which the caller has checked will fit in the buffer.
+     *
+     * @param values Encoded values, as filled in by {@link #collectValues(byte[][])}
+     * @param valueLength The length of the local set value
+     * @param isNested If true, the key and length field are omitted
+     * @param buffer The buffer to write to
+     */
+    private void writeMessage(
+            byte[][] values, int valueLength, boolean isNested, ByteBuffer buffer) {
+        final int start = buffer.position();
+        if (!isNested) {
+            UasDatalinkLocalUl.writeTo(buffer);
+            BerEncoder.encode(valueLength, buffer);
+        }
+        for (UasDatalinkTag tag : map.keySet()) {
+            byte[] bytes = values[tag.ordinal()];
+            if (bytes != null) {
+                BerEncoder.encode(tag.getCode(), Ber.OID, buffer);
+                BerEncoder.encode(bytes.length, buffer);
+                buffer.put(bytes);
+            }
+        }
 
-        // Compute the checksum and replace the last two bytes of array
-        Checksum.compute(array, true);
+        // Key and Length of checksum with placeholder for value - Checksum must be final element
+        buffer.put((byte) UasDatalinkTag.Checksum.getCode());
+        buffer.put((byte) 2);
+        buffer.put((byte) 0);
+        buffer.put((byte) 0);
 
-        return array;
+        // Compute the checksum and replace the placeholder
+        Checksum.insert(buffer, start, buffer.position() - start);
     }
 
     @Override
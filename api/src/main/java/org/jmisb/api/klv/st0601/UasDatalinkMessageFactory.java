@@ -1,12 +1,46 @@
 package org.jmisb.api.klv.st0601;
 
+import java.nio.ByteBuffer;
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IMisbMessageFactory;
+import org.jmisb.api.klv.KlvConstants;
+import org.jmisb.api.klv.UniversalLabel;
 
 /** Factory method for UasDatalinkMessages. */
 public class UasDatalinkMessageFactory implements IMisbMessageFactory {
+    private final boolean lazy;
+
+    /** Constructor for a factory that fully decodes each message. */
+    public UasDatalinkMessageFactory() {
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>To parse ST 0601 messages lazily, register a lazy factory with the {@link
+     * org.jmisb.api.klv.MisbMessageFactory} for {@link
+     * org.jmisb.api.klv.KlvConstants#UasDatalinkLocalUl}.
+     *
+     * @param lazy true to create messages that only decode values when they are requested
+     * @see UasDatalinkMessage#UasDatalinkMessage(ByteBuffer, boolean)
+     */
+    public UasDatalinkMessageFactory(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    @Override
+    public UniversalLabel getUniversalLabel() {
+        return KlvConstants.UasDatalinkLocalUl;
+    }
+
     @Override
     public UasDatalinkMessage create(byte[] bytes) throws KlvParseException {
-        return new UasDatalinkMessage(bytes);
+        return new UasDatalinkMessage(ByteBuffer.wrap(bytes), lazy);
+    }
+
+    @Override
+    public UasDatalinkMessage create(ByteBuffer buffer) throws KlvParseException {
+        return new UasDatalinkMessage(buffer, lazy);
     }
 }
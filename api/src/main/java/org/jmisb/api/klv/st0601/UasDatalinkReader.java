@@ -0,0 +1,592 @@
+package org.jmisb.api.klv.st0601;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.jmisb.api.common.InvalidDataHandler;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.KlvConstants;
+import org.jmisb.api.klv.UniversalLabel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streaming reader for ST 0601 packets with primitive accessors.
+ *
+ * <p>This is an alternative to {@link UasDatalinkMessage} for applications that process large
+ * numbers of packets but only need numeric values for a few tags. Rather than building an {@link
+ * IUasDatalinkValue} for each tag, {@link #reset(ByteBuffer)} indexes the location of each field in
+ * a single pass, and the accessors decode values directly from the buffer using the same scaling
+ * rules as the corresponding value classes. Once constructed, the reader does not allocate.
+ *
+ * <p>Typical usage is:
+ *
+ * <pre>{@code
+ * UasDatalinkReader reader = new UasDatalinkReader();
+ * for (ByteBuffer packet : packets) {
+ *     reader.reset(packet);
+ *     double lat = reader.sensorLatitude();
+ *     double lon = reader.sensorLongitude();
+ *     long time = reader.precisionTimeStampMicros();
+ * }
+ * }</pre>
+ *
+ * <p>Accessors returning {@code double} return {@code Double.NaN} if the tag is not present in the
+ * packet, or has the wrong length. Where the ST defines an error indicator, the value is {@code
+ * Double.POSITIVE_INFINITY}, consistent with the value classes.
+ *
+ * <p>The fields can also be visited in packet order using {@link #getFieldCount()}, {@link
+ * #getTagCode(int)}, {@link #getValueOffset(int)} and {@link #getValueLength(int)}.
+ *
+ * <p>The reader holds a reference to the buffer passed to {@link #reset(ByteBuffer)}, so the buffer
+ * content must not be modified while values are being read. This class is not thread-safe; use one
+ * reader per thread.
+ */
+public class UasDatalinkReader {
+    private static Logger logger = LoggerFactory.getLogger(UasDatalinkReader.class);
+
+    /** Largest tag code that can be looked up by tag. Larger tags are only visible by index. */
+    private static final int MAX_INDEXED_TAG = 255;
+
+    private static final int MAX_TAG_BYTES = 4;
+
+    private static final int INITIAL_FIELD_CAPACITY = 64;
+
+    private static final byte[] UL_BYTES = KlvConstants.UasDatalinkLocalUl.getBytes();
+
+    private ByteBuffer buffer;
+    private int fieldCount;
+    private int[] fieldTags = new int[INITIAL_FIELD_CAPACITY];
+    private int[] fieldOffsets = new int[INITIAL_FIELD_CAPACITY];
+    private int[] fieldLengths = new int[INITIAL_FIELD_CAPACITY];
+
+    /** Index into the field arrays for each tag code, or -1 if not present. */
+    private final int[] tagIndex = new int[MAX_INDEXED_TAG + 1];
+
+    /** Create a reader. */
+    public UasDatalinkReader() {
+        Arrays.fill(tagIndex, -1);
+    }
+
+    /**
+     * Index a new packet.
+     *
+     * <p>The packet is the bytes between the position and the limit of {@code packet}, starting
+     * with the ST 0601 Universal Label. The position and limit are not modified. The checksum is
+     * verified, and a missing or invalid checksum or a length overrun is reported via the {@link
+     * InvalidDataHandler}.
+     *
+     * @param packet buffer containing the packet
+     * @throws KlvParseException if the packet is not an ST 0601 packet, or is invalid
+     */
+    public void reset(ByteBuffer packet) throws KlvParseException {
+        clear();
+        buffer = packet;
+        final int start = packet.position();
+        final int end = packet.limit();
+
+        if (end - start < UniversalLabel.LENGTH + 1) {
+            throw new KlvParseException("Insufficient bytes for UAS Datalink message");
+        }
+        for (int i = 0; i < UniversalLabel.LENGTH; ++i) {
+            if (packet.get(start + i) != UL_BYTES[i]) {
+                throw new KlvParseException("Not a UAS Datalink Local Set");
+            }
+        }
+
+        // Parse the length field, which may be long form
+        int offset = start + UniversalLabel.LENGTH;
+        long setLength = readBerLength(offset, end);
+        offset += berLengthSize(offset);
+        int last = (int) Math.min(offset + setLength, end);
+        if (offset + setLength > end) {
+            InvalidDataHandler.getInstance()
+                    .handleOverrun(logger, "Overrun encountered while parsing UAS Datalink");
+        }
+
+        boolean checksumFound = false;
+        while (offset < last) {
+            // BER-OID tag, limited to four bytes so the tag cannot overflow
+            int tag = 0;
+            int tagBytes = 0;
+            int read;
+            do {
+                if (offset >= last) {
+                    throw new KlvParseException("BER-OID: out of bytes");
+                }
+                if (++tagBytes > MAX_TAG_BYTES) {
+                    throw new KlvParseException("BER-OID: tag exceeds 4 bytes");
+                }
+                read = packet.get(offset++);
+                tag = (tag << 7) | (read & 0x7F);
+            } while ((read & 0x80) == 0x80);
+
+            // BER length
+            if (offset >= last) {
+                throw new KlvParseException("Overrun encountered while parsing UAS Datalink");
+            }
+            long valueLength = readBerLength(offset, last);
+            offset += berLengthSize(offset);
+            if (offset + valueLength > last) {
+                InvalidDataHandler.getInstance()
+                        .handleOverrun(logger, "Overrun encountered while parsing UAS Datalink");
+                break;
+            }
+
+            addField(tag, offset, (int) valueLength);
+            offset += (int) valueLength;
+
+            if (tag == UasDatalinkTag.Checksum.getCode()) {
+                checksumFound = true;
+                int messageLength = offset - start;
+                int expected = Checksum.sum(packet, start, messageLength);
+                if (valueLength != 2 || expected != uint16(offset - 2)) {
+                    InvalidDataHandler.getInstance().handleInvalidChecksum(logger, "Bad checksum");
+                }
+            }
+        }
+
+        if (!checksumFound) {
+            InvalidDataHandler.getInstance().handleMissingChecksum(logger, "Missing checksum");
+        }
+    }
+
+    /** Forget the current packet. */
+    public void clear() {
+        for (int i = 0; i < fieldCount; ++i) {
+            int tag = fieldTags[i];
+            if (isIndexed(tag)) {
+                tagIndex[tag] = -1;
+            }
+        }
+        fieldCount = 0;
+        buffer = null;
+    }
+
+    /**
+     * Get the number of fields in the current packet, including the checksum and unknown tags.
+     *
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Get the tag code of a field.
+     *
+     * @param index the field index, in packet order, in the range [0, {@link #getFieldCount()})
+     * @return the tag code
+     */
+    public int getTagCode(int index) {
+        checkIndex(index);
+        return fieldTags[index];
+    }
+
+    /**
+     * Get the absolute offset of the value of a field within the packet buffer.
+     *
+     * @param index the field index, in packet order, in the range [0, {@link #getFieldCount()})
+     * @return the absolute index of the first value byte
+     */
+    public int getValueOffset(int index) {
+        checkIndex(index);
+        return fieldOffsets[index];
+    }
+
+    /**
+     * Get the length of the value of a field.
+     *
+     * @param index the field index, in packet order, in the range [0, {@link #getFieldCount()})
+     * @return the number of value bytes
+     */
+    public int getValueLength(int index) {
+        checkIndex(index);
+        return fieldLengths[index];
+    }
+
+    /**
+     * Check whether the current packet contains a tag.
+     *
+     * @param tag the tag
+     * @return true if the tag is present
+     */
+    public boolean hasField(UasDatalinkTag tag) {
+        int code = tag.getCode();
+        return isIndexed(code) && tagIndex[code] >= 0;
+    }
+
+    /**
+     * Precision Time Stamp (ST 0601 Item 2).
+     *
+     * @return microseconds since the epoch, or -1 if not present
+     */
+    public long precisionTimeStampMicros() {
+        int i = indexOf(UasDatalinkTag.PrecisionTimeStamp);
+        if (i < 0 || fieldLengths[i] < 1 || fieldLengths[i] > 8) {
+            return -1;
+        }
+        long value = 0;
+        final int offset = fieldOffsets[i];
+        for (int j = 0; j < fieldLengths[i]; ++j) {
+            value = (value << 8) | (buffer.get(offset + j) & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Platform Heading Angle (ST 0601 Item 5).
+     *
+     * @return heading in degrees [0, 360]
+     */
+    public double platformHeadingDegrees() {
+        int offset = valueOffset(UasDatalinkTag.PlatformHeadingAngle, 2);
+        return offset < 0 ? Double.NaN : UasDatalinkAngle360.fromEncoded(uint16(offset));
+    }
+
+    /**
+     * Platform Pitch Angle (ST 0601 Item 6).
+     *
+     * @return pitch in degrees [-20, 20]
+     */
+    public double platformPitchDegrees() {
+        int offset = valueOffset(UasDatalinkTag.PlatformPitchAngle, 2);
+        return offset < 0 ? Double.NaN : UasDatalinkAngle.fromEncoded(int16(offset));
+    }
+
+    /**
+     * Platform Roll Angle (ST 0601 Item 7).
+     *
+     * @return roll in degrees [-50, 50]
+     */
+    public double platformRollDegrees() {
+        int offset = valueOffset(UasDatalinkTag.PlatformRollAngle, 2);
+        return offset < 0 ? Double.NaN : PlatformRollAngle.fromEncoded(int16(offset));
+    }
+
+    /**
+     * Platform True Airspeed (ST 0601 Item 8).
+     *
+     * @return speed in meters/second [0, 255]
+     */
+    public double platformTrueAirspeed() {
+        return uint8Value(UasDatalinkTag.PlatformTrueAirspeed);
+    }
+
+    /**
+     * Platform Indicated Airspeed (ST 0601 Item 9).
+     *
+     * @return speed in meters/second [0, 255]
+     */
+    public double platformIndicatedAirspeed() {
+        return uint8Value(UasDatalinkTag.PlatformIndicatedAirspeed);
+    }
+
+    /**
+     * Sensor Latitude (ST 0601 Item 13).
+     *
+     * @return latitude in degrees [-90, 90]
+     */
+    public double sensorLatitude() {
+        return latitude(UasDatalinkTag.SensorLatitude);
+    }
+
+    /**
+     * Sensor Longitude (ST 0601 Item 14).
+     *
+     * @return longitude in degrees [-180, 180]
+     */
+    public double sensorLongitude() {
+        return longitude(UasDatalinkTag.SensorLongitude);
+    }
+
+    /**
+     * Sensor True Altitude (ST 0601 Item 15).
+     *
+     * @return altitude in meters [-900, 19000]
+     */
+    public double sensorTrueAltitude() {
+        return altitude(UasDatalinkTag.SensorTrueAltitude);
+    }
+
+    /**
+     * Sensor Horizontal Field of View (ST 0601 Item 16).
+     *
+     * @return field of view in degrees [0, 180]
+     */
+    public double horizontalFovDegrees() {
+        int offset = valueOffset(UasDatalinkTag.SensorHorizontalFov, 2);
+        return offset < 0 ? Double.NaN : HorizontalFov.fromEncoded(uint16(offset));
+    }
+
+    /**
+     * Sensor Vertical Field of View (ST 0601 Item 17).
+     *
+     * @return field of view in degrees [0, 180]
+     */
+    public double verticalFovDegrees() {
+        int offset = valueOffset(UasDatalinkTag.SensorVerticalFov, 2);
+        return offset < 0 ? Double.NaN : VerticalFov.fromEncoded(uint16(offset));
+    }
+
+    /**
+     * Sensor Relative Azimuth Angle (ST 0601 Item 18).
+     *
+     * @return azimuth in degrees [0, 360]
+     */
+    public double sensorRelativeAzimuthDegrees() {
+        int offset = valueOffset(UasDatalinkTag.SensorRelativeAzimuthAngle, 4);
+        return offset < 0 ? Double.NaN : SensorRelativeAzimuth.fromEncoded(uint32(offset));
+    }
+
+    /**
+     * Sensor Relative Elevation Angle (ST 0601 Item 19).
+     *
+     * @return elevation in degrees [-180, 180]
+     */
+    public double sensorRelativeElevationDegrees() {
+        int offset = valueOffset(UasDatalinkTag.SensorRelativeElevationAngle, 4);
+        return offset < 0 ? Double.NaN : SensorRelativeElevation.fromEncoded(int32(offset));
+    }
+
+    /**
+     * Sensor Relative Roll Angle (ST 0601 Item 20).
+     *
+     * @return roll in degrees [0, 360]
+     */
+    public double sensorRelativeRollDegrees() {
+        int offset = valueOffset(UasDatalinkTag.SensorRelativeRollAngle, 4);
+        return offset < 0 ? Double.NaN : SensorRelativeRoll.fromEncoded(uint32(offset));
+    }
+
+    /**
+     * Slant Range (ST 0601 Item 21).
+     *
+     * @return range in meters [0, 5000000]
+     */
+    public double slantRangeMeters() {
+        int offset = valueOffset(UasDatalinkTag.SlantRange, 4);
+        return offset < 0 ? Double.NaN : UasRange.fromEncoded(uint32(offset));
+    }
+
+    /**
+     * Frame Center Latitude (ST 0601 Item 23).
+     *
+     * @return latitude in degrees [-90, 90]
+     */
+    public double frameCenterLatitude() {
+        return latitude(UasDatalinkTag.FrameCenterLatitude);
+    }
+
+    /**
+     * Frame Center Longitude (ST 0601 Item 24).
+     *
+     * @return longitude in degrees [-180, 180]
+     */
+    public double frameCenterLongitude() {
+        return longitude(UasDatalinkTag.FrameCenterLongitude);
+    }
+
+    /**
+     * Frame Center Elevation (ST 0601 Item 25).
+     *
+     * @return elevation in meters [-900, 19000]
+     */
+    public double frameCenterElevation() {
+        return altitude(UasDatalinkTag.FrameCenterElevation);
+    }
+
+    /**
+     * Target Location Latitude (ST 0601 Item 40).
+     *
+     * @return latitude in degrees [-90, 90]
+     */
+    public double targetLocationLatitude() {
+        return latitude(UasDatalinkTag.TargetLocationLatitude);
+    }
+
+    /**
+     * Target Location Longitude (ST 0601 Item 41).
+     *
+     * @return longitude in degrees [-180, 180]
+     */
+    public double targetLocationLongitude() {
+        return longitude(UasDatalinkTag.TargetLocationLongitude);
+    }
+
+    /**
+     * Target Location Elevation (ST 0601 Item 42).
+     *
+     * @return elevation in meters [-900, 19000]
+     */
+    public double targetLocationElevation() {
+        return altitude(UasDatalinkTag.TargetLocationElevation);
+    }
+
+    /**
+     * Platform Ground Speed (ST 0601 Item 56).
+     *
+     * @return speed in meters/second [0, 255]
+     */
+    public double platformGroundSpeed() {
+        return uint8Value(UasDatalinkTag.PlatformGroundSpeed);
+    }
+
+    /**
+     * UAS Datalink LS Version Number (ST 0601 Item 65).
+     *
+     * @return the version number, or -1 if not present
+     */
+    public int uasLdsVersion() {
+        int offset = valueOffset(UasDatalinkTag.UasLdsVersionNumber, 1);
+        return offset < 0 ? -1 : buffer.get(offset) & 0xFF;
+    }
+
+    /**
+     * Sensor Ellipsoid Height (ST 0601 Item 75).
+     *
+     * @return height in meters [-900, 19000]
+     */
+    public double sensorEllipsoidHeight() {
+        return altitude(UasDatalinkTag.SensorEllipsoidHeight);
+    }
+
+    /**
+     * Frame Center Height Above Ellipsoid (ST 0601 Item 78).
+     *
+     * @return height in meters [-900, 19000]
+     */
+    public double frameCenterHae() {
+        return altitude(UasDatalinkTag.FrameCenterHae);
+    }
+
+    /**
+     * Platform Pitch Angle (Full) (ST 0601 Item 90).
+     *
+     * @return pitch in degrees [-90, 90]
+     */
+    public double platformPitchFullDegrees() {
+        int offset = valueOffset(UasDatalinkTag.PlatformPitchAngleFull, 4);
+        return offset < 0 ? Double.NaN : PlatformPitchAngleFull.fromEncoded(int32(offset));
+    }
+
+    /**
+     * Platform Roll Angle (Full) (ST 0601 Item 91).
+     *
+     * @return roll in degrees [-90, 90]
+     */
+    public double platformRollFullDegrees() {
+        int offset = valueOffset(UasDatalinkTag.PlatformRollAngleFull, 4);
+        return offset < 0 ? Double.NaN : PlatformRollAngleFull.fromEncoded(int32(offset));
+    }
+
+    private double latitude(UasDatalinkTag tag) {
+        int offset = valueOffset(tag, 4);
+        return offset < 0 ? Double.NaN : UasDatalinkLatitude.fromEncoded(int32(offset));
+    }
+
+    private double longitude(UasDatalinkTag tag) {
+        int offset = valueOffset(tag, 4);
+        return offset < 0 ? Double.NaN : UasDatalinkLongitude.fromEncoded(int32(offset));
+    }
+
+    private double altitude(UasDatalinkTag tag) {
+        int offset = valueOffset(tag, 2);
+        return offset < 0 ? Double.NaN : UasDatalinkAltitude.fromEncoded(uint16(offset));
+    }
+
+    private double uint8Value(UasDatalinkTag tag) {
+        int offset = valueOffset(tag, 1);
+        return offset < 0 ? Double.NaN : buffer.get(offset) & 0xFF;
+    }
+
+    private int indexOf(UasDatalinkTag tag) {
+        int code = tag.getCode();
+        return isIndexed(code) ? tagIndex[code] : -1;
+    }
+
+    private static boolean isIndexed(int code) {
+        return code >= 0 && code <= MAX_INDEXED_TAG;
+    }
+
+    /**
+     * Find the value of a fixed length field.
+     *
+     * @param tag the tag
+     * @param length the required value length
+     * @return the absolute offset of the value, or -1 if absent or of the wrong length
+     */
+    private int valueOffset(UasDatalinkTag tag, int length) {
+        int i = indexOf(tag);
+        if (i < 0 || fieldLengths[i] != length) {
+            return -1;
+        }
+        return fieldOffsets[i];
+    }
+
+    private void addField(int tag, int offset, int length) {
+        if (fieldCount == fieldTags.length) {
+            int capacity = fieldTags.length * 2;
+            fieldTags = Arrays.copyOf(fieldTags, capacity);
+            fieldOffsets = Arrays.copyOf(fieldOffsets, capacity);
+            fieldLengths = Arrays.copyOf(fieldLengths, capacity);
+        }
+        fieldTags[fieldCount] = tag;
+        fieldOffsets[fieldCount] = offset;
+        fieldLengths[fieldCount] = length;
+        // Later occurrences replace earlier ones, as in UasDatalinkMessage
+        if (isIndexed(tag)) {
+            tagIndex[tag] = fieldCount;
+        }
+        fieldCount++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field index " + index + " of " + fieldCount);
+        }
+    }
+
+    private int berLengthSize(int offset) {
+        int first = buffer.get(offset);
+        return (first & 0x80) == 0 ? 1 : 1 + (first & 0x7F);
+    }
+
+    private long readBerLength(int offset, int limit) throws KlvParseException {
+        int first = buffer.get(offset);
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+        int berLength = first & 0x7F;
+        if (berLength > 4) {
+            throw new KlvParseException(
+                    "BER long form: BER length is >5 bytes; data is probably corrupt");
+        }
+        if (offset + 1 + berLength > limit) {
+            throw new KlvParseException("BER long form: BER length overruns packet size");
+        }
+        long value = 0;
+        for (int i = 1; i <= berLength; ++i) {
+            value = (value << 8) | (buffer.get(offset + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private int int16(int offset) {
+        return (short) uint16(offset);
+    }
+
+    private int uint16(int offset) {
+        return ((buffer.get(offset) & 0xFF) << 8) | (buffer.get(offset + 1) & 0xFF);
+    }
+
+    private int int32(int offset) {
+        return ((buffer.get(offset) & 0xFF) << 24)
+                | ((buffer.get(offset + 1) & 0xFF) << 16)
+                | ((buffer.get(offset + 2) & 0xFF) << 8)
+                | (buffer.get(offset + 3) & 0xFF);
+    }
+
+    private long uint32(int offset) {
+        return int32(offset) & 0xFFFFFFFFL;
+    }
+}
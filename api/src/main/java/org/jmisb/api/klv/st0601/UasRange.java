@@ -47,7 +47,17 @@ public abstract class UasRange implements IUasDatalinkValue {
                     this.getDisplayName() + " encoding is a 4-byte unsigned int");
         }
         long longVal = PrimitiveConverter.toUint32(bytes);
-        this.meters = (longVal / MAXINT) * MAX_VAL;
+        this.meters = fromEncoded(longVal);
+    }
+
+    /**
+     * Convert the encoded integer value to meters.
+     *
+     * @param longVal the encoded value
+     * @return the value in meters
+     */
+    static double fromEncoded(long longVal) {
+        return (longVal / MAXINT) * MAX_VAL;
     }
 
     /**
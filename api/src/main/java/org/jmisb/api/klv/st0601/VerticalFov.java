@@ -48,7 +48,17 @@ public class VerticalFov implements IUasDatalinkValue {
         }
 
         int intVal = PrimitiveConverter.toUint16(bytes);
-        degrees = ((intVal / MAXINT) * RANGE);
+        degrees = fromEncoded(intVal);
+    }
+
+    /**
+     * Convert the encoded integer value to degrees.
+     *
+     * @param intVal the encoded value
+     * @return the value in degrees
+     */
+    static double fromEncoded(int intVal) {
+        return ((intVal / MAXINT) * RANGE);
     }
 
     /**
@@ -3,6 +3,7 @@ package org.jmisb.api.klv.st0806;
 import static org.jmisb.api.klv.KlvConstants.RvtLocalSetUl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,7 +12,6 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import org.jmisb.api.common.InvalidDataHandler;
 import org.jmisb.api.common.KlvParseException;
-import org.jmisb.api.klv.ArrayBuilder;
 import org.jmisb.api.klv.Ber;
 import org.jmisb.api.klv.BerDecoder;
 import org.jmisb.api.klv.BerEncoder;
@@ -145,13 +145,17 @@ public class RvtLocalSet implements IMisbMessage {
                     break;
                 case CRC32:
                     if (was0601Nested) {
-                        // We need to add the tag and length back in, apparently
-                        ArrayBuilder builder =
-                                new ArrayBuilder()
-                                        .appendAsOID(UasDatalinkTag.RvtLocalDataSet.getCode())
-                                        .appendAsBerLength(bytes.length)
-                                        .append(bytes);
-                        if (!CRC32MPEG2.verify(builder.toBytes(), field.getData())) {
+                        // We need to add the tag and length back in, apparently. Feed them to
+                        // the CRC ahead of the value rather than copying the whole local set.
+                        CRC32MPEG2 crc = new CRC32MPEG2();
+                        byte[] tagBytes =
+                                BerEncoder.encode(
+                                        UasDatalinkTag.RvtLocalDataSet.getCode(), Ber.OID);
+                        byte[] lengthBytes = BerEncoder.encode(bytes.length);
+                        crc.update(tagBytes, 0, tagBytes.length);
+                        crc.update(lengthBytes, 0, lengthBytes.length);
+                        crc.update(bytes, 0, bytes.length - 4);
+                        if (!Arrays.equals(crc.getCRC32(), field.getData())) {
                             InvalidDataHandler handler = InvalidDataHandler.getInstance();
                             handler.handleInvalidChecksum(LOGGER, "Bad checksum");
                         }
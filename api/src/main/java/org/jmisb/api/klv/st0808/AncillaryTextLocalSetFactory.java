@@ -2,6 +2,8 @@ package org.jmisb.api.klv.st0808;
 
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IMisbMessageFactory;
+import org.jmisb.api.klv.KlvConstants;
+import org.jmisb.api.klv.UniversalLabel;
 
 /** Factory method for AncillaryTextLocalSet. */
 public class AncillaryTextLocalSetFactory implements IMisbMessageFactory {
@@ -9,6 +11,11 @@ public class AncillaryTextLocalSetFactory implements IMisbMessageFactory {
     static {
     }
 
+    @Override
+    public UniversalLabel getUniversalLabel() {
+        return KlvConstants.AncillaryTextLocalSetUl;
+    }
+
     @Override
     public AncillaryTextLocalSet create(byte[] bytes) throws KlvParseException {
         return new AncillaryTextLocalSet(bytes);
@@ -0,0 +1,942 @@
+package org.jmisb.api.klv.st0903;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.jmisb.api.common.InvalidDataHandler;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.Ber;
+import org.jmisb.api.klv.BerEncoder;
+import org.jmisb.api.klv.st0903.shared.EncodingMode;
+import org.jmisb.api.klv.st0903.shared.LocationPack;
+import org.jmisb.api.klv.st0903.vtarget.TargetLocation;
+import org.jmisb.api.klv.st0903.vtarget.VTargetMetadataKey;
+import org.jmisb.api.klv.st1201.FpEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Columnar (struct of arrays) view of a VMTI VTarget Series.
+ *
+ * <p>{@link VTargetSeries} builds a {@link org.jmisb.api.klv.st0903.vtarget.VTargetPack} map of
+ * value objects for every target. For frames with many targets, where the application processes the
+ * same few fields for every target, that is a lot of allocation. This class instead decodes the
+ * commonly used VTarget fields straight from the encoded bytes into parallel primitive arrays,
+ * indexed by the position of the target in the series:
+ *
+ * <ul>
+ *   <li>Target identifier
+ *   <li>Target Centroid Pixel Number (Tag 1) and Centroid Pixel Row / Column (Tags 19 and 20)
+ *   <li>Boundary Top Left and Bottom Right Pixel Numbers (Tags 2 and 3)
+ *   <li>Target Priority (Tag 4) and Target Confidence Level (Tag 5)
+ *   <li>Target Location (Tag 17), including the standard deviations and correlations
+ * </ul>
+ *
+ * <p>Other VTarget fields are skipped. Use {@link VTargetSeries} if they are required.
+ *
+ * <p>An instance can be reused for each frame; the arrays are only reallocated when a frame has
+ * more targets than any previous frame. The arrays returned by the getters are the backing arrays,
+ * and are only valid up to {@link #size()}. Use the {@code has} methods to check whether a field
+ * was present for a given target.
+ *
+ * <p>The columns can also be encoded, and since this class is a {@link IVmtiMetadataValue}, it can
+ * be used directly as the {@link VmtiMetadataKey#VTargetSeries} value in a {@link VmtiLocalSet}.
+ *
+ * <p>This class is not thread safe.
+ */
+public class VTargetColumns implements IVmtiMetadataValue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VTargetColumns.class);
+
+    private static final int CENTROID = 1;
+    private static final int BOUNDARY_TOP_LEFT = 1 << 1;
+    private static final int BOUNDARY_BOTTOM_RIGHT = 1 << 2;
+    private static final int PRIORITY = 1 << 3;
+    private static final int CONFIDENCE = 1 << 4;
+    private static final int LOCATION = 1 << 5;
+    private static final int LOCATION_SIGMAS = 1 << 6;
+    private static final int LOCATION_CORRELATIONS = 1 << 7;
+    private static final int CENTROID_ROW = 1 << 8;
+    private static final int CENTROID_COLUMN = 1 << 9;
+
+    private static final long MAX_PIXEL_NUMBER = 281_474_976_710_655L;
+    private static final long MAX_PIXEL_INDEX = 4294967295L;
+    private static final int PIXEL_NUMBER_MAX_BYTES = 6;
+    private static final int PIXEL_INDEX_MAX_BYTES = 4;
+    private static final int COORDINATES_GROUP_LEN = 10;
+    private static final int STANDARD_DEVIATIONS_GROUP_LEN = 6;
+    private static final int CORRELATION_GROUP_LEN = 6;
+    private static final int VERSION_TAG = VmtiMetadataKey.VersionNumber.getIdentifier();
+    private static final int TARGET_SERIES_TAG = VmtiMetadataKey.VTargetSeries.getIdentifier();
+
+    // Same IMAPB mappings as TargetLocation
+    private static final FpEncoder LAT_ENCODER = new FpEncoder(-90.0, 90.0, 4);
+    private static final FpEncoder LON_ENCODER = new FpEncoder(-180.0, 180.0, 4);
+    private static final FpEncoder HAE_ENCODER = new FpEncoder(-900.0, 19000.0, 2);
+    private static final FpEncoder SIGMA_ENCODER = new FpEncoder(0.0, 650.0, 2);
+    private static final FpEncoder RHO_ENCODER = new FpEncoder(-1.0, 1.0, 2);
+
+    private int size;
+    private int[] fields;
+    private int[] targetIds;
+    private long[] centroids;
+    private long[] boundaryTopLeft;
+    private long[] boundaryBottomRight;
+    private long[] centroidRows;
+    private long[] centroidColumns;
+    private int[] priorities;
+    private int[] confidences;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] haes;
+    private double[] sigEast;
+    private double[] sigNorth;
+    private double[] sigUp;
+    private double[] rhoEastNorth;
+    private double[] rhoEastUp;
+    private double[] rhoNorthUp;
+
+    /** Read position while decoding. */
+    private int position;
+
+    /** Create an empty instance. */
+    public VTargetColumns() {
+        this(16);
+    }
+
+    /**
+     * Create an empty instance, with space for a given number of targets.
+     *
+     * @param capacity the number of targets to allocate space for
+     */
+    public VTargetColumns(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Decode the VTarget Series in a VMTI Local Set.
+     *
+     * @param bytes the VMTI Local Set value, as accepted by {@link
+     *     VmtiLocalSet#VmtiLocalSet(byte[])}
+     * @return the targets, which will be empty if there is no VTarget Series
+     * @throws KlvParseException if the bytes could not be parsed
+     */
+    public static VTargetColumns fromLocalSet(byte[] bytes) throws KlvParseException {
+        VTargetColumns columns = new VTargetColumns();
+        columns.decodeLocalSet(bytes, 0, bytes.length);
+        return columns;
+    }
+
+    /**
+     * Decode the VTarget Series in a VMTI Local Set, replacing the current contents.
+     *
+     * <p>The ST0903 version in the local set determines whether location values are decoded using
+     * the legacy (pre ST0903.4) encoding or IMAPB.
+     *
+     * @param bytes the array containing the VMTI Local Set value
+     * @param offset the offset of the local set value in {@code bytes}
+     * @param length the length of the local set value
+     * @throws KlvParseException if the bytes could not be parsed
+     */
+    public void decodeLocalSet(byte[] bytes, int offset, int length) throws KlvParseException {
+        clear();
+        final int end = checkRange(bytes, offset, length);
+        EncodingMode encodingMode = EncodingMode.IMAPB;
+        int seriesOffset = -1;
+        int seriesLength = 0;
+        position = offset;
+        while (position < end) {
+            int tag = readOid(bytes, end);
+            int valueLength = readLength(bytes, end);
+            if (position + valueLength > end) {
+                InvalidDataHandler.getInstance()
+                        .handleOverrun(LOGGER, "Overrun encountered while parsing VMTI fields");
+                break;
+            }
+            if (tag == VERSION_TAG && (valueLength == 1 || valueLength == 2)) {
+                if (readUnsigned(bytes, position, valueLength) < 4) {
+                    encodingMode = EncodingMode.LEGACY;
+                }
+            } else if (tag == TARGET_SERIES_TAG) {
+                seriesOffset = position;
+                seriesLength = valueLength;
+            }
+            position += valueLength;
+        }
+        if (seriesOffset >= 0) {
+            decodeSeries(bytes, seriesOffset, seriesLength, encodingMode);
+        }
+    }
+
+    /**
+     * Decode a VTarget Series value, replacing the current contents.
+     *
+     * @param bytes the array containing the VTarget Series value (VMTI Local Set Tag 101)
+     * @param offset the offset of the series value in {@code bytes}
+     * @param length the length of the series value
+     * @param encodingMode which encoding mode the {@code bytes} parameter uses.
+     * @throws KlvParseException if the bytes could not be parsed
+     */
+    public void decodeSeries(byte[] bytes, int offset, int length, EncodingMode encodingMode)
+            throws KlvParseException {
+        clear();
+        final int end = checkRange(bytes, offset, length);
+        position = offset;
+        // Same termination rule as VTargetSeries
+        while (position < end - 1) {
+            int packLength = readLength(bytes, end);
+            int packEnd = position + packLength;
+            if (packEnd > end) {
+                InvalidDataHandler.getInstance()
+                        .handleOverrun(LOGGER, "Overrun encountered while parsing VTarget Series");
+                break;
+            }
+            decodePack(bytes, packEnd, encodingMode);
+            position = packEnd;
+        }
+    }
+
+    private void decodePack(byte[] bytes, int end, EncodingMode encodingMode)
+            throws KlvParseException {
+        int index = addTarget(readOid(bytes, end));
+        while (position < end) {
+            int tag = readOid(bytes, end);
+            int valueLength = readLength(bytes, end);
+            int valueStart = position;
+            if (valueStart + valueLength > end) {
+                InvalidDataHandler.getInstance()
+                        .handleOverrun(LOGGER, "Overrun encountered while parsing VTarget Pack");
+                break;
+            }
+            try {
+                decodeField(index, tag, bytes, valueStart, valueLength, encodingMode);
+            } catch (IllegalArgumentException ex) {
+                InvalidDataHandler.getInstance()
+                        .handleInvalidFieldEncoding(LOGGER, ex.getMessage());
+            }
+            position = valueStart + valueLength;
+        }
+    }
+
+    private void decodeField(
+            int index, int tag, byte[] bytes, int offset, int length, EncodingMode encodingMode) {
+        switch (VTargetMetadataKey.getKey(tag)) {
+            case TargetCentroid:
+                centroids[index] = readPixel(bytes, offset, length, PIXEL_NUMBER_MAX_BYTES);
+                fields[index] |= CENTROID;
+                break;
+            case BoundaryTopLeft:
+                boundaryTopLeft[index] = readPixel(bytes, offset, length, PIXEL_NUMBER_MAX_BYTES);
+                fields[index] |= BOUNDARY_TOP_LEFT;
+                break;
+            case BoundaryBottomRight:
+                boundaryBottomRight[index] =
+                        readPixel(bytes, offset, length, PIXEL_NUMBER_MAX_BYTES);
+                fields[index] |= BOUNDARY_BOTTOM_RIGHT;
+                break;
+            case TargetPriority:
+                priorities[index] = (int) readPixel(bytes, offset, length, 1);
+                fields[index] |= PRIORITY;
+                break;
+            case TargetConfidenceLevel:
+                confidences[index] = (int) readPixel(bytes, offset, length, 1);
+                fields[index] |= CONFIDENCE;
+                break;
+            case TargetLocation:
+                decodeLocation(index, bytes, offset, length, encodingMode);
+                break;
+            case CentroidPixRow:
+                centroidRows[index] = readPixel(bytes, offset, length, PIXEL_INDEX_MAX_BYTES);
+                fields[index] |= CENTROID_ROW;
+                break;
+            case CentroidPixColumn:
+                centroidColumns[index] = readPixel(bytes, offset, length, PIXEL_INDEX_MAX_BYTES);
+                fields[index] |= CENTROID_COLUMN;
+                break;
+            default:
+                // Not part of the columnar view
+                break;
+        }
+    }
+
+    private void decodeLocation(
+            int index, byte[] bytes, int offset, int length, EncodingMode encodingMode) {
+        if (length != COORDINATES_GROUP_LEN
+                && length != COORDINATES_GROUP_LEN + STANDARD_DEVIATIONS_GROUP_LEN
+                && length
+                        != COORDINATES_GROUP_LEN
+                                + STANDARD_DEVIATIONS_GROUP_LEN
+                                + CORRELATION_GROUP_LEN) {
+            throw new IllegalArgumentException(
+                    "Target Location Pack length must match one of 10, 16 or 22");
+        }
+        if (encodingMode == EncodingMode.LEGACY) {
+            // Legacy streams are rare, so reuse the existing decoder rather than duplicate it
+            LocationPack pack =
+                    TargetLocation.targetLocationPackFromBytes(
+                            Arrays.copyOfRange(bytes, offset, offset + length), encodingMode);
+            setLocation(index, pack.getLat(), pack.getLon(), pack.getHae());
+            if (pack.getSigEast() != null) {
+                setLocationSigmas(index, pack.getSigEast(), pack.getSigNorth(), pack.getSigUp());
+            }
+            if (pack.getRhoEastNorth() != null) {
+                setLocationCorrelations(
+                        index, pack.getRhoEastNorth(), pack.getRhoEastUp(), pack.getRhoNorthUp());
+            }
+            return;
+        }
+        latitudes[index] = LAT_ENCODER.decode(bytes, offset);
+        longitudes[index] = LON_ENCODER.decode(bytes, offset + 4);
+        haes[index] = HAE_ENCODER.decode(bytes, offset + 8);
+        fields[index] |= LOCATION;
+        if (length > COORDINATES_GROUP_LEN) {
+            sigEast[index] = SIGMA_ENCODER.decode(bytes, offset + 10);
+            sigNorth[index] = SIGMA_ENCODER.decode(bytes, offset + 12);
+            sigUp[index] = SIGMA_ENCODER.decode(bytes, offset + 14);
+            fields[index] |= LOCATION_SIGMAS;
+        }
+        if (length > COORDINATES_GROUP_LEN + STANDARD_DEVIATIONS_GROUP_LEN) {
+            rhoEastNorth[index] = RHO_ENCODER.decode(bytes, offset + 16);
+            rhoEastUp[index] = RHO_ENCODER.decode(bytes, offset + 18);
+            rhoNorthUp[index] = RHO_ENCODER.decode(bytes, offset + 20);
+            fields[index] |= LOCATION_CORRELATIONS;
+        }
+    }
+
+    private static int checkRange(byte[] bytes, int offset, int length) throws KlvParseException {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new KlvParseException("Offset and length are outside the array");
+        }
+        return offset + length;
+    }
+
+    private int readOid(byte[] bytes, int end) throws KlvParseException {
+        int value = 0;
+        int read;
+        do {
+            if (position >= end) {
+                throw new KlvParseException("BER-OID: out of bytes");
+            }
+            if (value > (Integer.MAX_VALUE >>> 7)) {
+                throw new KlvParseException("BER-OID: value too large");
+            }
+            read = bytes[position++];
+            value = (value << 7) | (read & 0x7f);
+        } while ((read & 0x80) == 0x80);
+        return value;
+    }
+
+    private int readLength(byte[] bytes, int end) throws KlvParseException {
+        if (position >= end) {
+            throw new KlvParseException("Cannot read BER from beyond array limit");
+        }
+        int first = bytes[position++] & 0xff;
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+        int berLength = first & 0x7f;
+        if (berLength > 4 || position + berLength > end) {
+            throw new KlvParseException("BER long form: invalid length");
+        }
+        int value = 0;
+        for (int i = 0; i < berLength; ++i) {
+            value = (value << 8) | (bytes[position++] & 0xff);
+        }
+        if (value < 0) {
+            throw new KlvParseException("BER: error decoding length");
+        }
+        return value;
+    }
+
+    private static long readPixel(byte[] bytes, int offset, int length, int maxBytes) {
+        if (length < 1 || length > maxBytes) {
+            throw new IllegalArgumentException(
+                    String.format("Encoding must be 1 to %d byte unsigned integer", maxBytes));
+        }
+        return readUnsigned(bytes, offset, length);
+    }
+
+    private static long readUnsigned(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; ++i) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        int length = 0;
+        for (int i = 0; i < size; ++i) {
+            int packLength = packLength(i);
+            length += BerEncoder.encodedLength(packLength) + packLength;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < size; ++i) {
+            BerEncoder.encode(packLength(i), buffer);
+            writePack(i, buffer);
+        }
+        return buffer.array();
+    }
+
+    /** Length of the encoded VTarget Pack, in the same layout as VTargetPack.getBytes(). */
+    private int packLength(int i) {
+        int f = fields[i];
+        // Each field has a single byte tag and a single byte length
+        int length = BerEncoder.encodedLength(targetIds[i], Ber.OID);
+        if ((f & CENTROID) != 0) {
+            length += 2 + unsignedLength(centroids[i]);
+        }
+        if ((f & BOUNDARY_TOP_LEFT) != 0) {
+            length += 2 + unsignedLength(boundaryTopLeft[i]);
+        }
+        if ((f & BOUNDARY_BOTTOM_RIGHT) != 0) {
+            length += 2 + unsignedLength(boundaryBottomRight[i]);
+        }
+        if ((f & PRIORITY) != 0) {
+            length += 3;
+        }
+        if ((f & CONFIDENCE) != 0) {
+            length += 3;
+        }
+        if ((f & LOCATION) != 0) {
+            length += 2 + locationLength(f);
+        }
+        if ((f & CENTROID_ROW) != 0) {
+            length += 2 + unsignedLength(centroidRows[i]);
+        }
+        if ((f & CENTROID_COLUMN) != 0) {
+            length += 2 + unsignedLength(centroidColumns[i]);
+        }
+        return length;
+    }
+
+    private static int locationLength(int f) {
+        int length = COORDINATES_GROUP_LEN;
+        if ((f & LOCATION_SIGMAS) != 0) {
+            length += STANDARD_DEVIATIONS_GROUP_LEN;
+            if ((f & LOCATION_CORRELATIONS) != 0) {
+                length += CORRELATION_GROUP_LEN;
+            }
+        }
+        return length;
+    }
+
+    private void writePack(int i, ByteBuffer buffer) {
+        int f = fields[i];
+        BerEncoder.encode(targetIds[i], Ber.OID, buffer);
+        if ((f & CENTROID) != 0) {
+            writeUnsigned(VTargetMetadataKey.TargetCentroid, centroids[i], buffer);
+        }
+        if ((f & BOUNDARY_TOP_LEFT) != 0) {
+            writeUnsigned(VTargetMetadataKey.BoundaryTopLeft, boundaryTopLeft[i], buffer);
+        }
+        if ((f & BOUNDARY_BOTTOM_RIGHT) != 0) {
+            writeUnsigned(VTargetMetadataKey.BoundaryBottomRight, boundaryBottomRight[i], buffer);
+        }
+        if ((f & PRIORITY) != 0) {
+            writeUnsigned(VTargetMetadataKey.TargetPriority, priorities[i], buffer);
+        }
+        if ((f & CONFIDENCE) != 0) {
+            writeUnsigned(VTargetMetadataKey.TargetConfidenceLevel, confidences[i], buffer);
+        }
+        if ((f & LOCATION) != 0) {
+            buffer.put((byte) VTargetMetadataKey.TargetLocation.getTag());
+            buffer.put((byte) locationLength(f));
+            LAT_ENCODER.encode(latitudes, i, 1, buffer);
+            LON_ENCODER.encode(longitudes, i, 1, buffer);
+            HAE_ENCODER.encode(haes, i, 1, buffer);
+            if ((f & LOCATION_SIGMAS) != 0) {
+                SIGMA_ENCODER.encode(sigEast, i, 1, buffer);
+                SIGMA_ENCODER.encode(sigNorth, i, 1, buffer);
+                SIGMA_ENCODER.encode(sigUp, i, 1, buffer);
+                if ((f & LOCATION_CORRELATIONS) != 0) {
+                    RHO_ENCODER.encode(rhoEastNorth, i, 1, buffer);
+                    RHO_ENCODER.encode(rhoEastUp, i, 1, buffer);
+                    RHO_ENCODER.encode(rhoNorthUp, i, 1, buffer);
+                }
+            }
+        }
+        if ((f & CENTROID_ROW) != 0) {
+            writeUnsigned(VTargetMetadataKey.CentroidPixRow, centroidRows[i], buffer);
+        }
+        if ((f & CENTROID_COLUMN) != 0) {
+            writeUnsigned(VTargetMetadataKey.CentroidPixColumn, centroidColumns[i], buffer);
+        }
+    }
+
+    private static int unsignedLength(long value) {
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) / 8);
+    }
+
+    private static void writeUnsigned(VTargetMetadataKey key, long value, ByteBuffer buffer) {
+        int length = unsignedLength(value);
+        buffer.put((byte) key.getTag());
+        buffer.put((byte) length);
+        for (int shift = 8 * (length - 1); shift >= 0; shift -= 8) {
+            buffer.put((byte) (value >>> shift));
+        }
+    }
+
+    @Override
+    public String getDisplayableValue() {
+        return "[Targets]";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Target Series";
+    }
+
+    /**
+     * Get the number of targets.
+     *
+     * @return the number of targets
+     */
+    public int size() {
+        return size;
+    }
+
+    /** Remove all targets, keeping the allocated arrays for reuse. */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add a target, with no fields set.
+     *
+     * @param targetId the target identifier
+     * @return the index of the new target
+     */
+    public int addTarget(int targetId) {
+        if (targetId < 0) {
+            throw new IllegalArgumentException("Target identifier must not be negative");
+        }
+        if (size == targetIds.length) {
+            grow(size + (size >> 1) + 1);
+        }
+        int index = size++;
+        targetIds[index] = targetId;
+        fields[index] = 0;
+        return index;
+    }
+
+    /**
+     * Set the target centroid pixel number (VTarget Tag 1).
+     *
+     * @param index the target index
+     * @param pixelNumber the pixel number (min 1, max 2^48-1)
+     */
+    public void setCentroid(int index, long pixelNumber) {
+        checkIndex(index);
+        centroids[index] = checkRange(pixelNumber, 1, MAX_PIXEL_NUMBER, "Target Centroid");
+        fields[index] |= CENTROID;
+    }
+
+    /**
+     * Set the target bounding box (VTarget Tags 2 and 3).
+     *
+     * @param index the target index
+     * @param topLeft the pixel number of the top left corner (min 1, max 2^48-1)
+     * @param bottomRight the pixel number of the bottom right corner (min 1, max 2^48-1)
+     */
+    public void setBoundary(int index, long topLeft, long bottomRight) {
+        checkIndex(index);
+        boundaryTopLeft[index] = checkRange(topLeft, 1, MAX_PIXEL_NUMBER, "Boundary Top Left");
+        boundaryBottomRight[index] =
+                checkRange(bottomRight, 1, MAX_PIXEL_NUMBER, "Boundary Bottom Right");
+        fields[index] |= BOUNDARY_TOP_LEFT | BOUNDARY_BOTTOM_RIGHT;
+    }
+
+    /**
+     * Set the target centroid as a pixel row and column (VTarget Tags 19 and 20).
+     *
+     * @param index the target index
+     * @param row the pixel row (min 1, max 2^32-1)
+     * @param column the pixel column (min 1, max 2^32-1)
+     */
+    public void setCentroidRowColumn(int index, long row, long column) {
+        checkIndex(index);
+        centroidRows[index] = checkRange(row, 1, MAX_PIXEL_INDEX, "Centroid Pixel Row");
+        centroidColumns[index] = checkRange(column, 1, MAX_PIXEL_INDEX, "Centroid Pixel Column");
+        fields[index] |= CENTROID_ROW | CENTROID_COLUMN;
+    }
+
+    /**
+     * Set the target priority (VTarget Tag 4).
+     *
+     * @param index the target index
+     * @param priority the priority (1 highest, 255 lowest)
+     */
+    public void setPriority(int index, int priority) {
+        checkIndex(index);
+        priorities[index] = (int) checkRange(priority, 1, 255, "Target Priority");
+        fields[index] |= PRIORITY;
+    }
+
+    /**
+     * Set the target confidence level (VTarget Tag 5).
+     *
+     * @param index the target index
+     * @param confidence the confidence as a percentage (0 lowest, 100 highest)
+     */
+    public void setConfidence(int index, int confidence) {
+        checkIndex(index);
+        confidences[index] = (int) checkRange(confidence, 0, 100, "Target Confidence");
+        fields[index] |= CONFIDENCE;
+    }
+
+    /**
+     * Set the target location (VTarget Tag 17).
+     *
+     * <p>This clears any standard deviations and correlations previously set for the target.
+     *
+     * @param index the target index
+     * @param lat Latitude in degrees with respect to the WGS84 datum.
+     * @param lon Longitude in degrees with respect to the WGS84 datum.
+     * @param hae Height in meters above the WGS84 Ellipsoid (HAE).
+     */
+    public void setLocation(int index, double lat, double lon, double hae) {
+        checkIndex(index);
+        latitudes[index] = lat;
+        longitudes[index] = lon;
+        haes[index] = hae;
+        fields[index] = (fields[index] & ~(LOCATION_SIGMAS | LOCATION_CORRELATIONS)) | LOCATION;
+    }
+
+    /**
+     * Set the standard deviations of the target location.
+     *
+     * <p>The location must already have been set.
+     *
+     * @param index the target index
+     * @param east Standard deviation with respect to the ENU coordinate system East axis.
+     * @param north Standard deviation with respect to the ENU coordinate system North axis.
+     * @param up Standard deviation with respect to the ENU coordinate system Up axis.
+     */
+    public void setLocationSigmas(int index, double east, double north, double up) {
+        checkIndex(index);
+        if (!hasLocation(index)) {
+            throw new IllegalStateException("Location must be set before standard deviations");
+        }
+        sigEast[index] = east;
+        sigNorth[index] = north;
+        sigUp[index] = up;
+        fields[index] |= LOCATION_SIGMAS;
+    }
+
+    /**
+     * Set the correlation coefficients of the target location.
+     *
+     * <p>The location standard deviations must already have been set.
+     *
+     * @param index the target index
+     * @param eastNorth Correlation coefficient between the East and North components of error.
+     * @param eastUp Correlation coefficient between East and Up components of error.
+     * @param northUp Correlation coefficient between North and Up components of error.
+     */
+    public void setLocationCorrelations(
+            int index, double eastNorth, double eastUp, double northUp) {
+        checkIndex(index);
+        if (!hasLocationSigmas(index)) {
+            throw new IllegalStateException("Standard deviations must be set before correlations");
+        }
+        rhoEastNorth[index] = eastNorth;
+        rhoEastUp[index] = eastUp;
+        rhoNorthUp[index] = northUp;
+        fields[index] |= LOCATION_CORRELATIONS;
+    }
+
+    /**
+     * Check whether the target has a centroid pixel number.
+     *
+     * @param index the target index
+     * @return true if {@link #getCentroids()} is valid for this target
+     */
+    public boolean hasCentroid(int index) {
+        return has(index, CENTROID);
+    }
+
+    /**
+     * Check whether the target has a complete bounding box.
+     *
+     * @param index the target index
+     * @return true if both boundary columns are valid for this target
+     */
+    public boolean hasBoundary(int index) {
+        return has(index, BOUNDARY_TOP_LEFT | BOUNDARY_BOTTOM_RIGHT);
+    }
+
+    /**
+     * Check whether the target has a centroid pixel row and column.
+     *
+     * @param index the target index
+     * @return true if both centroid row and column are valid for this target
+     */
+    public boolean hasCentroidRowColumn(int index) {
+        return has(index, CENTROID_ROW | CENTROID_COLUMN);
+    }
+
+    /**
+     * Check whether the target has a priority.
+     *
+     * @param index the target index
+     * @return true if {@link #getPriorities()} is valid for this target
+     */
+    public boolean hasPriority(int index) {
+        return has(index, PRIORITY);
+    }
+
+    /**
+     * Check whether the target has a confidence level.
+     *
+     * @param index the target index
+     * @return true if {@link #getConfidences()} is valid for this target
+     */
+    public boolean hasConfidence(int index) {
+        return has(index, CONFIDENCE);
+    }
+
+    /**
+     * Check whether the target has a location.
+     *
+     * @param index the target index
+     * @return true if the latitude, longitude and HAE are valid for this target
+     */
+    public boolean hasLocation(int index) {
+        return has(index, LOCATION);
+    }
+
+    /**
+     * Check whether the target location has standard deviations.
+     *
+     * @param index the target index
+     * @return true if the location standard deviations are valid for this target
+     */
+    public boolean hasLocationSigmas(int index) {
+        return has(index, LOCATION_SIGMAS);
+    }
+
+    /**
+     * Check whether the target location has correlation coefficients.
+     *
+     * @param index the target index
+     * @return true if the location correlations are valid for this target
+     */
+    public boolean hasLocationCorrelations(int index) {
+        return has(index, LOCATION_CORRELATIONS);
+    }
+
+    /**
+     * Get the target identifiers.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public int[] getTargetIds() {
+        return targetIds;
+    }
+
+    /**
+     * Get the target centroid pixel numbers.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public long[] getCentroids() {
+        return centroids;
+    }
+
+    /**
+     * Get the bounding box top left pixel numbers.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public long[] getBoundaryTopLeft() {
+        return boundaryTopLeft;
+    }
+
+    /**
+     * Get the bounding box bottom right pixel numbers.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public long[] getBoundaryBottomRight() {
+        return boundaryBottomRight;
+    }
+
+    /**
+     * Get the target centroid pixel rows.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public long[] getCentroidRows() {
+        return centroidRows;
+    }
+
+    /**
+     * Get the target centroid pixel columns.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public long[] getCentroidColumns() {
+        return centroidColumns;
+    }
+
+    /**
+     * Get the target priorities.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public int[] getPriorities() {
+        return priorities;
+    }
+
+    /**
+     * Get the target confidence levels.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public int[] getConfidences() {
+        return confidences;
+    }
+
+    /**
+     * Get the target location latitudes.
+     *
+     * @return the backing array of latitudes in degrees, valid up to {@link #size()}
+     */
+    public double[] getLatitudes() {
+        return latitudes;
+    }
+
+    /**
+     * Get the target location longitudes.
+     *
+     * @return the backing array of longitudes in degrees, valid up to {@link #size()}
+     */
+    public double[] getLongitudes() {
+        return longitudes;
+    }
+
+    /**
+     * Get the target location heights above ellipsoid.
+     *
+     * @return the backing array of HAE in meters, valid up to {@link #size()}
+     */
+    public double[] getHaes() {
+        return haes;
+    }
+
+    /**
+     * Get the target location standard deviations - East axis.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public double[] getSigEast() {
+        return sigEast;
+    }
+
+    /**
+     * Get the target location standard deviations - North axis.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public double[] getSigNorth() {
+        return sigNorth;
+    }
+
+    /**
+     * Get the target location standard deviations - Up axis.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public double[] getSigUp() {
+        return sigUp;
+    }
+
+    /**
+     * Get the target location East / North correlation coefficients.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public double[] getRhoEastNorth() {
+        return rhoEastNorth;
+    }
+
+    /**
+     * Get the target location East / Up correlation coefficients.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public double[] getRhoEastUp() {
+        return rhoEastUp;
+    }
+
+    /**
+     * Get the target location North / Up correlation coefficients.
+     *
+     * @return the backing array, valid up to {@link #size()}
+     */
+    public double[] getRhoNorthUp() {
+        return rhoNorthUp;
+    }
+
+    private boolean has(int index, int mask) {
+        checkIndex(index);
+        return (fields[index] & mask) == mask;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Target index " + index + ", size " + size);
+        }
+    }
+
+    private static long checkRange(long value, long min, long max, String name) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(
+                    String.format("%s value must be in range [%d,%d]", name, min, max));
+        }
+        return value;
+    }
+
+    private void allocate(int capacity) {
+        fields = new int[capacity];
+        targetIds = new int[capacity];
+        centroids = new long[capacity];
+        boundaryTopLeft = new long[capacity];
+        boundaryBottomRight = new long[capacity];
+        centroidRows = new long[capacity];
+        centroidColumns = new long[capacity];
+        priorities = new int[capacity];
+        confidences = new int[capacity];
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        haes = new double[capacity];
+        sigEast = new double[capacity];
+        sigNorth = new double[capacity];
+        sigUp = new double[capacity];
+        rhoEastNorth = new double[capacity];
+        rhoEastUp = new double[capacity];
+        rhoNorthUp = new double[capacity];
+    }
+
+    private void grow(int capacity) {
+        fields = Arrays.copyOf(fields, capacity);
+        targetIds = Arrays.copyOf(targetIds, capacity);
+        centroids = Arrays.copyOf(centroids, capacity);
+        boundaryTopLeft = Arrays.copyOf(boundaryTopLeft, capacity);
+        boundaryBottomRight = Arrays.copyOf(boundaryBottomRight, capacity);
+        centroidRows = Arrays.copyOf(centroidRows, capacity);
+        centroidColumns = Arrays.copyOf(centroidColumns, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        confidences = Arrays.copyOf(confidences, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        haes = Arrays.copyOf(haes, capacity);
+        sigEast = Arrays.copyOf(sigEast, capacity);
+        sigNorth = Arrays.copyOf(sigNorth, capacity);
+        sigUp = Arrays.copyOf(sigUp, capacity);
+        rhoEastNorth = Arrays.copyOf(rhoEastNorth, capacity);
+        rhoEastUp = Arrays.copyOf(rhoEastUp, capacity);
+        rhoNorthUp = Arrays.copyOf(rhoNorthUp, capacity);
+    }
+}
@@ -2,7 +2,8 @@ package org.jmisb.api.klv.st0903;
 
 import static org.jmisb.api.klv.KlvConstants.VmtiLocalSetUl;
 
-import java.util.ArrayList;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -11,7 +12,6 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import org.jmisb.api.common.InvalidDataHandler;
 import org.jmisb.api.common.KlvParseException;
-import org.jmisb.api.klv.Ber;
 import org.jmisb.api.klv.BerEncoder;
 import org.jmisb.api.klv.IKlvKey;
 import org.jmisb.api.klv.IMisbMessage;
@@ -21,13 +21,19 @@ import org.jmisb.api.klv.UniversalLabel;
 import org.jmisb.api.klv.st0601.Checksum;
 import org.jmisb.api.klv.st0903.shared.EncodingMode;
 import org.jmisb.api.klv.st0903.shared.VmtiTextString;
-import org.jmisb.core.klv.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class VmtiLocalSet implements IMisbMessage {
     private static final Logger LOGGER = LoggerFactory.getLogger(VmtiLocalSet.class);
 
+    /** Length of the checksum key, length and value. */
+    private static final int CHECKSUM_FIELD_LENGTH = 4;
+
+    /** Per-thread scratch space for encoded values, indexed by tag ordinal. */
+    private static final ThreadLocal<byte[][]> VALUE_SCRATCH =
+            ThreadLocal.withInitial(() -> new byte[VmtiMetadataKey.values().length][]);
+
     /**
      * Create a {@link IVmtiMetadataValue} instance from encoded bytes.
      *
@@ -119,9 +125,23 @@ public class VmtiLocalSet implements IMisbMessage {
      * @throws KlvParseException if parsing fails
      */
     public VmtiLocalSet(byte[] bytes) throws KlvParseException {
-        int offset = 0;
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Build a VMTI Local Set from a buffer.
+     *
+     * <p>The local set is the bytes between the position and the limit of {@code buffer}. The bytes
+     * are not copied, and the position and limit are not modified.
+     *
+     * @param buffer the buffer to build from
+     * @throws KlvParseException if parsing fails
+     */
+    public VmtiLocalSet(ByteBuffer buffer) throws KlvParseException {
+        final int start = buffer.position();
+        final int length = buffer.remaining();
         EncodingMode encodingMode = EncodingMode.IMAPB;
-        List<LdsField> fields = LdsParser.parseFields(bytes, offset, bytes.length);
+        List<LdsField> fields = LdsParser.parseFields(buffer, start, length);
         for (LdsField field : fields) {
             VmtiMetadataKey key = VmtiMetadataKey.getKey(field.getTag());
             if (key.equals(VmtiMetadataKey.VersionNumber)) {
@@ -139,9 +159,7 @@ public class VmtiLocalSet implements IMisbMessage {
                     LOGGER.info("Unknown VMTI Metadata tag: {}", field.getTag());
                     break;
                 case Checksum:
-                    byte[] expected = Checksum.compute(bytes, false);
-                    byte[] actual = Arrays.copyOfRange(bytes, bytes.length - 2, bytes.length);
-                    if (!Arrays.equals(expected, actual)) {
+                    if (!Checksum.verify(buffer, start, length)) {
                         InvalidDataHandler.getInstance()
                                 .handleInvalidChecksum(LOGGER, "Bad checksum");
                     }
@@ -161,54 +179,106 @@ public class VmtiLocalSet implements IMisbMessage {
 
     @Override
     public byte[] frameMessage(boolean isNested) {
+        byte[][] values = VALUE_SCRATCH.get();
+        try {
+            int valueLength = collectValues(values, isNested);
+            byte[] array = new byte[framedLength(valueLength, isNested)];
+            writeMessage(values, valueLength, isNested, ByteBuffer.wrap(array));
+            return array;
+        } finally {
+            Arrays.fill(values, null);
+        }
+    }
+
+    @Override
+    public int getFramedLength(boolean isNested) {
+        byte[][] values = VALUE_SCRATCH.get();
+        try {
+            return framedLength(collectValues(values, isNested), isNested);
+        } finally {
+            Arrays.fill(values, null);
+        }
+    }
+
+    @Override
+    public int frameMessage(boolean isNested, ByteBuffer buffer) {
+        byte[][] values = VALUE_SCRATCH.get();
+        try {
+            int valueLength = collectValues(values, isNested);
+            int length = framedLength(valueLength, isNested);
+            if (buffer.remaining() < length) {
+                throw new BufferOverflowException();
+            }
+            writeMessage(values, valueLength, isNested, buffer);
+            return length;
+        } finally {
+            Arrays.fill(values, null);
+        }
+    }
+
+    /**
+     * Encode all values, ready for framing.
+     *
+     * @param values Array indexed by tag ordinal, to receive the encoded values
+     * @param isNested If true, the checksum is omitted
+     * @return The length of the local set value
+     */
+    private int collectValues(byte[][] values, boolean isNested) {
         updateVersion();
-        int len = 0;
-        List<byte[]> chunks = new ArrayList<>();
-        for (VmtiMetadataKey tag : getIdentifiers()) {
+        int valueLength = isNested ? 0 : CHECKSUM_FIELD_LENGTH;
+        for (Map.Entry<VmtiMetadataKey, IVmtiMetadataValue> entry : map.entrySet()) {
+            VmtiMetadataKey tag = entry.getKey();
             if (tag == VmtiMetadataKey.Checksum) {
                 continue;
             }
-            chunks.add(new byte[] {(byte) tag.getIdentifier()});
-            len += 1;
-            IVmtiMetadataValue value = getField(tag);
-            byte[] bytes = value.getBytes();
-            byte[] lengthBytes = BerEncoder.encode(bytes.length);
-            chunks.add(lengthBytes);
-            len += lengthBytes.length;
-            chunks.add(bytes);
-            len += bytes.length;
+            byte[] bytes = entry.getValue().getBytes();
+            values[tag.ordinal()] = bytes;
+            valueLength += 1 + BerEncoder.encodedLength(bytes.length) + bytes.length;
         }
+        return valueLength;
+    }
 
-        // Figure out value length
-        final int keyLength = UniversalLabel.LENGTH;
-        int valueLength = 0;
-        valueLength =
-                chunks.stream().map((chunk) -> chunk.length).reduce(valueLength, Integer::sum);
-
+    private static int framedLength(int valueLength, boolean isNested) {
         if (isNested) {
-            return ArrayUtils.arrayFromChunks(chunks, valueLength);
-        } else {
-            // Add Key and Length of checksum with placeholder for value - Checksum must be final
-            // element
-            byte[] checksum = new byte[2];
-            chunks.add(new byte[] {(byte) VmtiMetadataKey.Checksum.getIdentifier()});
-            chunks.add(BerEncoder.encode(checksum.length, Ber.SHORT_FORM));
-            chunks.add(checksum);
-            valueLength += 4;
-
-            // Prepend length field into front of the list
-            byte[] lengthField = BerEncoder.encode(valueLength);
-            chunks.add(0, lengthField);
+            return valueLength;
+        }
+        return UniversalLabel.LENGTH + BerEncoder.encodedLength(valueLength) + valueLength;
+    }
 
-            // Prepend UL since this is standalone message
-            chunks.add(0, VmtiLocalSetUl.getBytes());
+    /**
+     * Write the framed message, which the caller has checked will fit in the buffer.
+     *
+     * @param values Encoded values, as filled in by {@link #collectValues(byte[][], boolean)}
+     * @param valueLength The length of the local set value
+     * @param isNested If true, the key, length field and checksum are omitted
+     * @param buffer The buffer to write to
+     */
+    private void writeMessage(
+            byte[][] values, int valueLength, boolean isNested, ByteBuffer buffer) {
+        final int start = buffer.position();
+        if (!isNested) {
+            // Prepend UL and length since this is standalone message
+            VmtiLocalSetUl.writeTo(buffer);
+            BerEncoder.encode(valueLength, buffer);
+        }
+        for (VmtiMetadataKey tag : map.keySet()) {
+            byte[] bytes = values[tag.ordinal()];
+            if (bytes != null) {
+                buffer.put((byte) tag.getIdentifier());
+                BerEncoder.encode(bytes.length, buffer);
+                buffer.put(bytes);
+            }
+        }
+        if (!isNested) {
+            // Key and Length of checksum with placeholder for value - Checksum must be final
+            // element
+            buffer.put((byte) VmtiMetadataKey.Checksum.getIdentifier());
+            buffer.put((byte) 2);
+            buffer.put((byte) 0);
+            buffer.put((byte) 0);
 
-            byte[] array =
-                    ArrayUtils.arrayFromChunks(
-                            chunks, keyLength + lengthField.length + valueLength);
-            // Compute the checksum and replace the last two bytes of array
-            Checksum.compute(array, true);
-            return array;
+            // Compute the checksum and replace the placeholder
+            Checksum.insert(buffer, start, buffer.position() - start);
         }
     }
 
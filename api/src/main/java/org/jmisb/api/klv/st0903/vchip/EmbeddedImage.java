@@ -4,6 +4,8 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import javax.imageio.ImageIO;
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.st0903.IVmtiMetadataValue;
@@ -14,12 +16,19 @@ import org.slf4j.LoggerFactory;
  * Embedded Image (ST0903 VChip Tag 3).
  *
  * <p>An image “chip” of the type specified by VChip Image Type Tag 1, embedded in the VMTI stream.
+ *
+ * <p>When parsed from encoded bytes, the chip keeps the encoded bytes and is only decoded when the
+ * image is first requested, so parsing VMTI does not pay for chips that are never looked at. The
+ * original bytes are also used on re-serialization. Decoding can be shared through an {@link
+ * EmbeddedImageCache}, or performed on another thread using {@link #getImageAsync(Executor)}.
  */
 public class EmbeddedImage implements IVmtiMetadataValue {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedImage.class);
 
+    private final byte[] encodedBytes;
     private BufferedImage embeddedImage;
+    private boolean decoded;
 
     /**
      * Create from image.
@@ -27,48 +36,115 @@ public class EmbeddedImage implements IVmtiMetadataValue {
      * @param image The image to embed.
      */
     public EmbeddedImage(BufferedImage image) {
+        encodedBytes = null;
         embeddedImage = image;
+        decoded = true;
     }
 
     /**
      * Create from encoded bytes.
      *
+     * <p>The image is not decoded until {@link #getImage()} is called.
+     *
      * @param bytes byte array corresponding to the image data.
      * @throws KlvParseException if the image could not be read or parsed
      */
     public EmbeddedImage(byte[] bytes) throws KlvParseException {
-        try {
-            ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-            embeddedImage = ImageIO.read(byteArrayInputStream);
-        } catch (IOException ex) {
-            LOGGER.error("", ex);
-            embeddedImage = null;
-        }
+        encodedBytes = bytes.clone();
+        decoded = false;
     }
 
     @Override
     public byte[] getBytes() {
+        if (encodedBytes != null) {
+            return encodedBytes.clone();
+        }
         return getBytes("png");
     }
 
     /**
      * Get the embedded image.
      *
-     * @return the image as a BufferedImage.
+     * <p>For a chip parsed from encoded bytes, the first call decodes the image, and subsequent
+     * calls return the same image.
+     *
+     * @return the image as a BufferedImage, or null if the image could not be decoded.
      */
-    public BufferedImage getImage() {
+    public synchronized BufferedImage getImage() {
+        if (!decoded) {
+            embeddedImage = decode(encodedBytes);
+            decoded = true;
+        }
         return embeddedImage;
     }
 
+    /**
+     * Get the embedded image, using a shared cache.
+     *
+     * <p>If the image has already been decoded by {@link #getImage()}, that image is returned.
+     * Otherwise the decoded image is held by the cache rather than by this chip.
+     *
+     * @param cache the cache of decoded images
+     * @return the image as a BufferedImage, or null if the image could not be decoded.
+     */
+    public BufferedImage getImage(EmbeddedImageCache cache) {
+        synchronized (this) {
+            if (decoded) {
+                return embeddedImage;
+            }
+        }
+        return cache.get(this);
+    }
+
+    /**
+     * Decode the embedded image asynchronously.
+     *
+     * @param executor the executor to decode on
+     * @return future that completes with the result of {@link #getImage()}
+     */
+    public CompletableFuture<BufferedImage> getImageAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(this::getImage, executor);
+    }
+
+    /**
+     * Decode the embedded image asynchronously, using a shared cache.
+     *
+     * @param cache the cache of decoded images
+     * @param executor the executor to decode on
+     * @return future that completes with the result of {@link #getImage(EmbeddedImageCache)}
+     */
+    public CompletableFuture<BufferedImage> getImageAsync(
+            EmbeddedImageCache cache, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> getImage(cache), executor);
+    }
+
+    /**
+     * Check whether the image has been decoded.
+     *
+     * <p>Decoding through an {@link EmbeddedImageCache} does not count, since the cache holds the
+     * image.
+     *
+     * @return true if the image is held by this chip, or decoding has been attempted.
+     */
+    public synchronized boolean isDecoded() {
+        return decoded;
+    }
+
     /**
      * Get the encoded bytes.
      *
+     * <p>This always encodes the image, even if the chip was parsed from encoded bytes.
+     *
      * @param format the output format (e.g. "png" or "jpeg")
      * @return The encoded byte array
      */
     public byte[] getBytes(String format) {
+        BufferedImage image = getImage();
+        if (image == null) {
+            return null;
+        }
         try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            ImageIO.write(embeddedImage, format, byteArrayOutputStream);
+            ImageIO.write(image, format, byteArrayOutputStream);
             byteArrayOutputStream.flush();
             return byteArrayOutputStream.toByteArray();
         } catch (IOException ex) {
@@ -86,4 +162,23 @@ public class EmbeddedImage implements IVmtiMetadataValue {
     public String getDisplayName() {
         return "Embedded Image";
     }
+
+    /**
+     * Get the encoded bytes without copying.
+     *
+     * @return the encoded bytes, or null if the chip was created from an image
+     */
+    byte[] getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    static BufferedImage decode(byte[] bytes) {
+        try {
+            ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
+            return ImageIO.read(byteArrayInputStream);
+        } catch (IOException ex) {
+            LOGGER.error("", ex);
+            return null;
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package org.jmisb.api.klv.st0903.vchip;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of decoded {@link EmbeddedImage} chips.
+ *
+ * <p>Chips are keyed by their encoded bytes, so the same chip repeated in successive VMTI packets
+ * is only decoded once while it stays in the cache. Decoded images are held by the cache rather
+ * than by the {@link EmbeddedImage}, so memory use is bounded by the cache size.
+ *
+ * <p>This class is thread safe. Images returned from the cache are shared, and should not be
+ * modified.
+ */
+public class EmbeddedImageCache {
+
+    private final int maxEntries;
+    private final Map<Key, BufferedImage> cache;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries the maximum number of decoded images to hold
+     */
+    public EmbeddedImageCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.cache =
+                new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+                        return size() > EmbeddedImageCache.this.maxEntries;
+                    }
+                };
+    }
+
+    /**
+     * Get the maximum number of decoded images.
+     *
+     * @return the maximum number of entries
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get the number of decoded images currently held.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /** Remove all decoded images. */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Get the decoded image for a chip.
+     *
+     * <p>Decoding is performed outside the cache lock, so several chips can be decoded
+     * concurrently.
+     *
+     * @param chip the chip
+     * @return the decoded image, or null if the chip could not be decoded
+     */
+    BufferedImage get(EmbeddedImage chip) {
+        Key key = new Key(chip.getEncodedBytes());
+        synchronized (this) {
+            BufferedImage image = cache.get(key);
+            if (image != null) {
+                return image;
+            }
+        }
+        BufferedImage image = EmbeddedImage.decode(key.bytes);
+        if (image != null) {
+            synchronized (this) {
+                cache.put(key, image);
+            }
+        }
+        return image;
+    }
+
+    private static final class Key {
+        private final byte[] bytes;
+        private final int hash;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
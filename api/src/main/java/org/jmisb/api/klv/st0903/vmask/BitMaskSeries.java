@@ -120,7 +120,7 @@ public class BitMaskSeries implements IVmtiMetadataValue {
             pixelNumber += ((int) valueBytes[i] & 0xFF);
         }
         index += lengthField.getValue();
-        BerField runField = BerDecoder.decode(valueBytes, index, true);
+        BerField runField = BerDecoder.decode(valueBytes, index, false);
         int runValue = runField.getValue();
         PixelRunPair run = new PixelRunPair(pixelNumber, runValue);
         return run;
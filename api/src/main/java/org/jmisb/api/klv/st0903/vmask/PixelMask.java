@@ -0,0 +1,874 @@
+package org.jmisb.api.klv.st0903.vmask;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.BerEncoder;
+
+/**
+ * Compact raster mask for VMTI targets.
+ *
+ * <p>The mask is a set of pixels, held as sorted, non-overlapping, non-adjacent runs of pixel
+ * numbers. Pixel numbers are as used by {@link BitMaskSeries} and {@link PixelPolygon}: numbering
+ * commences with 1 at the top left pixel, proceeding from left to right, top to bottom, so that
+ * pixel number = Column + ((Row - 1) x frame width). A run may continue from the end of one row
+ * onto the start of the next.
+ *
+ * <p>Masks can be decoded straight from encoded {@link BitMaskSeries} and {@link PixelPolygon}
+ * values without building the intermediate lists, rasterized into frame-sized bitmaps, built from
+ * bitmaps, and combined using set operations. Because the runs are kept in canonical form, {@link
+ * #toBitMaskSeriesBytes()} produces the minimal Bit Mask Series for the mask.
+ *
+ * <p>Instances are immutable.
+ */
+public class PixelMask {
+
+    private static final PixelMask EMPTY = new PixelMask(new long[0], new long[0], 0);
+    private static final int PIXEL_NUMBER_MAX_BYTES = 6;
+    private static final long MAX_PIXEL_NUMBER = 281_474_976_710_655L;
+
+    /** First pixel number of each run. */
+    private final long[] starts;
+    /** Pixel number after the last pixel of each run. */
+    private final long[] ends;
+
+    private final int numRuns;
+    private final long area;
+
+    private PixelMask(long[] starts, long[] ends, int numRuns) {
+        this.starts = starts;
+        this.ends = ends;
+        this.numRuns = numRuns;
+        long total = 0;
+        for (int i = 0; i < numRuns; ++i) {
+            total += ends[i] - starts[i];
+        }
+        this.area = total;
+    }
+
+    /**
+     * Get an empty mask.
+     *
+     * @return mask with no pixels
+     */
+    public static PixelMask empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a mask from pixel number and run pairs.
+     *
+     * <p>The runs may be in any order, and may overlap.
+     *
+     * @param runs the runs
+     * @return the mask
+     */
+    public static PixelMask fromRuns(List<PixelRunPair> runs) {
+        RunBuilder builder = new RunBuilder(runs.size());
+        for (PixelRunPair run : runs) {
+            builder.add(run.getPixelNumber(), run.getRun());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create a mask from a Bit Mask Series.
+     *
+     * @param series the series
+     * @return the mask
+     */
+    public static PixelMask fromBitMaskSeries(BitMaskSeries series) {
+        return fromRuns(series.getRuns());
+    }
+
+    /**
+     * Decode a mask directly from an encoded Bit Mask Series (VMask Tag 2).
+     *
+     * <p>This does not create any per-run objects.
+     *
+     * @param bytes the encoded Bit Mask Series value
+     * @return the mask
+     * @throws KlvParseException if the bytes could not be parsed
+     */
+    public static PixelMask fromBitMaskSeriesBytes(byte[] bytes) throws KlvParseException {
+        RunBuilder builder = new RunBuilder(Math.max(4, bytes.length / 4));
+        int index = 0;
+        // Same termination rule as BitMaskSeries
+        while (index < bytes.length - 1) {
+            long field = readBerLength(bytes, index, bytes.length);
+            index += fieldLength(field);
+            int end = index + fieldValue(field);
+            if (end > bytes.length) {
+                throw new KlvParseException("Bit Mask Series run overruns the array");
+            }
+            long pixelLength = readBerLength(bytes, index, end);
+            index += fieldLength(pixelLength);
+            int numBytes = fieldValue(pixelLength);
+            if (numBytes > PIXEL_NUMBER_MAX_BYTES || index + numBytes > end) {
+                throw new KlvParseException("Pixel number encoding is up to 6 bytes");
+            }
+            long pixelNumber = readUnsigned(bytes, index, numBytes);
+            index += numBytes;
+            long run = readBerLength(bytes, index, end);
+            builder.add(pixelNumber, fieldValue(run));
+            index = end;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create a mask by scan converting a polygon.
+     *
+     * @param polygon the polygon
+     * @param frameWidth the width of the frame in pixels
+     * @return the mask
+     */
+    public static PixelMask fromPolygon(PixelPolygon polygon, int frameWidth) {
+        List<Long> points = polygon.getPolygon();
+        long[] vertices = new long[points.size()];
+        for (int i = 0; i < vertices.length; ++i) {
+            vertices[i] = points.get(i);
+        }
+        return fromPolygon(vertices, frameWidth);
+    }
+
+    /**
+     * Decode a polygon directly from an encoded Pixel Polygon (VMask Tag 1), and scan convert it.
+     *
+     * @param bytes the encoded Pixel Polygon value
+     * @param frameWidth the width of the frame in pixels
+     * @return the mask
+     * @throws KlvParseException if the bytes could not be parsed
+     */
+    public static PixelMask fromPolygonBytes(byte[] bytes, int frameWidth)
+            throws KlvParseException {
+        long[] vertices = new long[Math.max(3, bytes.length / 2)];
+        int count = 0;
+        int index = 0;
+        // Same termination rule as PixelPolygon
+        while (index < bytes.length - 1) {
+            long field = readBerLength(bytes, index, bytes.length);
+            index += fieldLength(field);
+            int numBytes = fieldValue(field);
+            if (numBytes > PIXEL_NUMBER_MAX_BYTES || index + numBytes > bytes.length) {
+                throw new KlvParseException("Pixel number encoding is up to 6 bytes");
+            }
+            vertices[count++] = readUnsigned(bytes, index, numBytes);
+            index += numBytes;
+        }
+        if (count < 3) {
+            throw new KlvParseException("Pixel polygon requires at least three points");
+        }
+        return fromPolygon(Arrays.copyOf(vertices, count), frameWidth);
+    }
+
+    /**
+     * Create a mask by scan converting a polygon.
+     *
+     * <p>A pixel is in the mask if its centre is inside the polygon (using the even-odd rule), or
+     * if it lies on the polygon boundary. So a polygon whose vertices are the corners of a
+     * rectangle covers the whole rectangle, including the corner pixels. The vertices may be in
+     * either order.
+     *
+     * @param vertices the pixel numbers of the polygon vertices
+     * @param frameWidth the width of the frame in pixels
+     * @return the mask
+     * @throws IllegalArgumentException if there are fewer than three vertices, or a vertex is not a
+     *     valid pixel number
+     */
+    public static PixelMask fromPolygon(long[] vertices, int frameWidth) {
+        if (vertices.length < 3) {
+            throw new IllegalArgumentException("Pixel polygon requires at least three points");
+        }
+        checkFrameWidth(frameWidth);
+        final int n = vertices.length;
+        long[] rows = new long[n];
+        long[] columns = new long[n];
+        long minRow = Long.MAX_VALUE;
+        long maxRow = Long.MIN_VALUE;
+        for (int i = 0; i < n; ++i) {
+            if (vertices[i] < 1 || vertices[i] > MAX_PIXEL_NUMBER) {
+                throw new IllegalArgumentException("Invalid pixel number: " + vertices[i]);
+            }
+            rows[i] = (vertices[i] - 1) / frameWidth + 1;
+            columns[i] = (vertices[i] - 1) % frameWidth + 1;
+            minRow = Math.min(minRow, rows[i]);
+            maxRow = Math.max(maxRow, rows[i]);
+        }
+        RunBuilder builder = new RunBuilder((int) Math.min(1 << 16, 2 * (maxRow - minRow + 1) + n));
+        // Interior, sampled at pixel centres, using an active edge table
+        int[] edges = new int[n];
+        int numEdges = 0;
+        for (int i = 0; i < n; ++i) {
+            if (rows[i] != rows[(i + 1) % n]) {
+                edges[numEdges++] = i;
+            }
+        }
+        long[] edgeKeys = new long[numEdges];
+        for (int e = 0; e < numEdges; ++e) {
+            int i = edges[e];
+            long top = Math.min(rows[i], rows[(i + 1) % n]) - minRow;
+            edgeKeys[e] = (top << 32) | i;
+        }
+        Arrays.sort(edgeKeys);
+        int[] active = new int[numEdges];
+        int numActive = 0;
+        int nextEdge = 0;
+        double[] crossings = new double[numEdges];
+        for (long row = minRow; row <= maxRow; ++row) {
+            while (nextEdge < numEdges && (edgeKeys[nextEdge] >>> 32) + minRow == row) {
+                active[numActive++] = (int) edgeKeys[nextEdge++];
+            }
+            int numCrossings = 0;
+            int kept = 0;
+            for (int a = 0; a < numActive; ++a) {
+                int i = active[a];
+                int j = (i + 1) % n;
+                long y0 = rows[i];
+                long y1 = rows[j];
+                // Half-open in y, so that shared vertices are only counted once
+                if (row >= Math.max(y0, y1)) {
+                    continue;
+                }
+                active[kept++] = i;
+                crossings[numCrossings++] =
+                        columns[i]
+                                + (double) (row - y0)
+                                        * (columns[j] - columns[i])
+                                        / (double) (y1 - y0);
+            }
+            numActive = kept;
+            Arrays.sort(crossings, 0, numCrossings);
+            for (int c = 0; c + 1 < numCrossings; c += 2) {
+                long first = Math.max(1, (long) Math.ceil(crossings[c]));
+                long last = Math.min(frameWidth, (long) Math.floor(crossings[c + 1]));
+                if (first <= last) {
+                    builder.add(pixelNumber(row, first, frameWidth), last - first + 1);
+                }
+            }
+        }
+        // Boundary
+        for (int i = 0; i < n; ++i) {
+            int j = (i + 1) % n;
+            addLine(builder, rows[i], columns[i], rows[j], columns[j], frameWidth);
+        }
+        return builder.build();
+    }
+
+    /** Add the pixels on a line, using Bresenham's algorithm, one run per row. */
+    private static void addLine(
+            RunBuilder builder, long r0, long c0, long r1, long c1, int frameWidth) {
+        long dr = Math.abs(r1 - r0);
+        long dc = Math.abs(c1 - c0);
+        long stepR = r0 < r1 ? 1 : -1;
+        long stepC = c0 < c1 ? 1 : -1;
+        long error = dc - dr;
+        long r = r0;
+        long c = c0;
+        long runStart = c;
+        while (true) {
+            if (r == r1 && c == c1) {
+                break;
+            }
+            long e2 = 2 * error;
+            long nextR = r;
+            long nextC = c;
+            if (e2 > -dr) {
+                error -= dr;
+                nextC += stepC;
+            }
+            if (e2 < dc) {
+                error += dc;
+                nextR += stepR;
+            }
+            if (nextR != r) {
+                addSpan(builder, r, runStart, c, frameWidth);
+                runStart = nextC;
+            }
+            r = nextR;
+            c = nextC;
+        }
+        addSpan(builder, r, runStart, c, frameWidth);
+    }
+
+    private static void addSpan(RunBuilder builder, long row, long a, long b, int frameWidth) {
+        long first = Math.min(a, b);
+        long last = Math.max(a, b);
+        builder.add(pixelNumber(row, first, frameWidth), last - first + 1);
+    }
+
+    private static long pixelNumber(long row, long column, int frameWidth) {
+        return column + (row - 1) * frameWidth;
+    }
+
+    /**
+     * Create a mask from a bitmap.
+     *
+     * <p>The bitmap has one bit per pixel, with pixel number {@code p} at bit {@code (p - 1) % 64}
+     * of {@code bitmap[(p - 1) / 64]}. This is the same layout as {@link
+     * java.util.BitSet#toLongArray()}.
+     *
+     * @param bitmap the bitmap
+     * @return the mask
+     */
+    public static PixelMask fromBitmap(long[] bitmap) {
+        RunBuilder builder = new RunBuilder(16);
+        long runStart = -1;
+        for (int w = 0; w < bitmap.length; ++w) {
+            long word = bitmap[w];
+            long base = (long) w * Long.SIZE;
+            if (runStart < 0 && word == 0) {
+                continue;
+            }
+            if (runStart >= 0 && word == -1L) {
+                continue;
+            }
+            int bit = 0;
+            while (bit < Long.SIZE) {
+                if (runStart < 0) {
+                    // Looking for the next set bit
+                    long remaining = word >>> bit;
+                    if (remaining == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(remaining);
+                    runStart = base + bit;
+                } else {
+                    // Looking for the next clear bit
+                    long remaining = ~word >>> bit;
+                    if (remaining == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(remaining);
+                    builder.addRange(runStart + 1, base + bit + 1);
+                    runStart = -1;
+                }
+            }
+        }
+        if (runStart >= 0) {
+            builder.addRange(runStart + 1, (long) bitmap.length * Long.SIZE + 1);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create a mask from a frame-sized image, such as a segmentation output.
+     *
+     * @param pixels one byte per pixel in row-major order, where any non-zero value is in the mask
+     * @return the mask
+     */
+    public static PixelMask fromPixels(byte[] pixels) {
+        RunBuilder builder = new RunBuilder(16);
+        int i = 0;
+        while (i < pixels.length) {
+            while (i < pixels.length && pixels[i] == 0) {
+                ++i;
+            }
+            int start = i;
+            while (i < pixels.length && pixels[i] != 0) {
+                ++i;
+            }
+            if (i > start) {
+                builder.addRange(start + 1L, i + 1L);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Set the pixels of this mask in a bitmap.
+     *
+     * <p>Bits for pixels not in the mask are left unchanged, so several masks can be combined into
+     * the same bitmap. The layout is as described in {@link #fromBitmap(long[])}; for a frame of
+     * {@code width x height} pixels, the bitmap needs {@code (width * height + 63) / 64} elements.
+     *
+     * @param bitmap the bitmap to update
+     * @throws IllegalArgumentException if the mask extends beyond the bitmap
+     */
+    public void rasterize(long[] bitmap) {
+        if (numRuns > 0 && ends[numRuns - 1] - 1 > (long) bitmap.length * Long.SIZE) {
+            throw new IllegalArgumentException("Mask extends beyond the bitmap");
+        }
+        for (int i = 0; i < numRuns; ++i) {
+            long from = starts[i] - 1;
+            long to = ends[i] - 1;
+            int firstWord = (int) (from >>> 6);
+            int lastWord = (int) ((to - 1) >>> 6);
+            long firstMask = -1L << from;
+            long lastMask = -1L >>> -to;
+            if (firstWord == lastWord) {
+                bitmap[firstWord] |= firstMask & lastMask;
+            } else {
+                bitmap[firstWord] |= firstMask;
+                Arrays.fill(bitmap, firstWord + 1, lastWord, -1L);
+                bitmap[lastWord] |= lastMask;
+            }
+        }
+    }
+
+    /**
+     * Set the pixels of this mask in a frame-sized image.
+     *
+     * <p>Pixels not in the mask are left unchanged, so several masks can be drawn into the same
+     * image, for example with a different value for each target.
+     *
+     * @param pixels one byte per pixel in row-major order
+     * @param value the value to set for pixels in the mask
+     * @throws IllegalArgumentException if the mask extends beyond the image
+     */
+    public void rasterize(byte[] pixels, byte value) {
+        if (numRuns > 0 && ends[numRuns - 1] - 1 > pixels.length) {
+            throw new IllegalArgumentException("Mask extends beyond the image");
+        }
+        for (int i = 0; i < numRuns; ++i) {
+            Arrays.fill(pixels, (int) (starts[i] - 1), (int) (ends[i] - 1), value);
+        }
+    }
+
+    /**
+     * Check whether a pixel is in the mask.
+     *
+     * @param pixelNumber the pixel number
+     * @return true if the pixel is in the mask
+     */
+    public boolean contains(long pixelNumber) {
+        int index = Arrays.binarySearch(starts, 0, numRuns, pixelNumber);
+        if (index >= 0) {
+            return true;
+        }
+        int run = -index - 2;
+        return run >= 0 && pixelNumber < ends[run];
+    }
+
+    /**
+     * Get the number of pixels in the mask.
+     *
+     * @return the area in pixels
+     */
+    public long getArea() {
+        return area;
+    }
+
+    /**
+     * Check whether the mask has no pixels.
+     *
+     * @return true if the mask is empty
+     */
+    public boolean isEmpty() {
+        return numRuns == 0;
+    }
+
+    /**
+     * Get the number of runs.
+     *
+     * @return the number of runs in canonical form
+     */
+    public int getRunCount() {
+        return numRuns;
+    }
+
+    /**
+     * Get the first pixel number of a run.
+     *
+     * @param run the run index, from 0 to {@link #getRunCount()} - 1
+     * @return the pixel number
+     */
+    public long getRunStart(int run) {
+        checkRun(run);
+        return starts[run];
+    }
+
+    /**
+     * Get the length of a run.
+     *
+     * @param run the run index, from 0 to {@link #getRunCount()} - 1
+     * @return the number of pixels in the run
+     */
+    public long getRunLength(int run) {
+        checkRun(run);
+        return ends[run] - starts[run];
+    }
+
+    private void checkRun(int run) {
+        if (run < 0 || run >= numRuns) {
+            throw new IndexOutOfBoundsException("Run " + run + ", count " + numRuns);
+        }
+    }
+
+    /**
+     * Get the number of pixels in both this mask and another.
+     *
+     * @param other the other mask
+     * @return the area of the intersection in pixels
+     */
+    public long intersectionArea(PixelMask other) {
+        long total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < numRuns && j < other.numRuns) {
+            long from = Math.max(starts[i], other.starts[j]);
+            long to = Math.min(ends[i], other.ends[j]);
+            if (from < to) {
+                total += to - from;
+            }
+            if (ends[i] < other.ends[j]) {
+                ++i;
+            } else {
+                ++j;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the number of pixels in either this mask or another.
+     *
+     * @param other the other mask
+     * @return the area of the union in pixels
+     */
+    public long unionArea(PixelMask other) {
+        return area + other.area - intersectionArea(other);
+    }
+
+    /**
+     * Get the intersection over union (Jaccard index) of this mask and another.
+     *
+     * @param other the other mask
+     * @return the ratio of intersection area to union area, or 0 if both masks are empty
+     */
+    public double iou(PixelMask other) {
+        long intersection = intersectionArea(other);
+        long union = area + other.area - intersection;
+        return union == 0 ? 0.0 : (double) intersection / union;
+    }
+
+    /**
+     * Get the pixels in either this mask or another.
+     *
+     * @param other the other mask
+     * @return the union
+     */
+    public PixelMask union(PixelMask other) {
+        long[] newStarts = new long[numRuns + other.numRuns];
+        long[] newEnds = new long[numRuns + other.numRuns];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < numRuns || j < other.numRuns) {
+            long from;
+            long to;
+            if (j >= other.numRuns || (i < numRuns && starts[i] <= other.starts[j])) {
+                from = starts[i];
+                to = ends[i++];
+            } else {
+                from = other.starts[j];
+                to = other.ends[j++];
+            }
+            if (count > 0 && from <= newEnds[count - 1]) {
+                newEnds[count - 1] = Math.max(newEnds[count - 1], to);
+            } else {
+                newStarts[count] = from;
+                newEnds[count++] = to;
+            }
+        }
+        return new PixelMask(newStarts, newEnds, count);
+    }
+
+    /**
+     * Get the pixels in both this mask and another.
+     *
+     * @param other the other mask
+     * @return the intersection
+     */
+    public PixelMask intersection(PixelMask other) {
+        int capacity = numRuns + other.numRuns;
+        long[] newStarts = new long[capacity];
+        long[] newEnds = new long[capacity];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < numRuns && j < other.numRuns) {
+            long from = Math.max(starts[i], other.starts[j]);
+            long to = Math.min(ends[i], other.ends[j]);
+            if (from < to) {
+                newStarts[count] = from;
+                newEnds[count++] = to;
+            }
+            if (ends[i] < other.ends[j]) {
+                ++i;
+            } else {
+                ++j;
+            }
+        }
+        return new PixelMask(newStarts, newEnds, count);
+    }
+
+    /**
+     * Get the pixels in this mask that are not in another.
+     *
+     * @param other the other mask
+     * @return the difference
+     */
+    public PixelMask difference(PixelMask other) {
+        int capacity = numRuns + other.numRuns;
+        long[] newStarts = new long[capacity];
+        long[] newEnds = new long[capacity];
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < numRuns; ++i) {
+            long from = starts[i];
+            long to = ends[i];
+            while (j < other.numRuns && other.ends[j] <= from) {
+                ++j;
+            }
+            int k = j;
+            while (from < to && k < other.numRuns && other.starts[k] < to) {
+                if (other.starts[k] > from) {
+                    newStarts[count] = from;
+                    newEnds[count++] = other.starts[k];
+                }
+                from = Math.max(from, other.ends[k]);
+                ++k;
+            }
+            if (from < to) {
+                newStarts[count] = from;
+                newEnds[count++] = to;
+            }
+        }
+        return new PixelMask(newStarts, newEnds, count);
+    }
+
+    /**
+     * Get the runs as pixel number and run pairs.
+     *
+     * @return list of runs, in pixel number order
+     */
+    public List<PixelRunPair> getRuns() {
+        List<PixelRunPair> runs = new ArrayList<>(numRuns);
+        for (int i = 0; i < numRuns; ++i) {
+            long from = starts[i];
+            while (from < ends[i]) {
+                int length = (int) Math.min(Integer.MAX_VALUE, ends[i] - from);
+                runs.add(new PixelRunPair(from, length));
+                from += length;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Convert to a Bit Mask Series.
+     *
+     * @return the Bit Mask Series
+     */
+    public BitMaskSeries toBitMaskSeries() {
+        return new BitMaskSeries(getRuns());
+    }
+
+    /**
+     * Encode as a Bit Mask Series (VMask Tag 2) value.
+     *
+     * <p>This is the same encoding as {@link BitMaskSeries#getBytes()}, using the fewest runs
+     * possible for the mask.
+     *
+     * @return the encoded bytes
+     */
+    public byte[] toBitMaskSeriesBytes() {
+        int length = 0;
+        for (int i = 0; i < numRuns; ++i) {
+            for (long from = starts[i]; from < ends[i]; ) {
+                int run = (int) Math.min(Integer.MAX_VALUE, ends[i] - from);
+                int pairLength = pairLength(from, run);
+                length += BerEncoder.encodedLength(pairLength) + pairLength;
+                from += run;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < numRuns; ++i) {
+            for (long from = starts[i]; from < ends[i]; ) {
+                int run = (int) Math.min(Integer.MAX_VALUE, ends[i] - from);
+                int pixelBytes = unsignedLength(from);
+                BerEncoder.encode(pairLength(from, run), buffer);
+                BerEncoder.encode(pixelBytes, buffer);
+                for (int shift = 8 * (pixelBytes - 1); shift >= 0; shift -= 8) {
+                    buffer.put((byte) (from >>> shift));
+                }
+                BerEncoder.encode(run, buffer);
+                from += run;
+            }
+        }
+        return buffer.array();
+    }
+
+    private static int pairLength(long pixelNumber, int run) {
+        int pixelBytes = unsignedLength(pixelNumber);
+        return BerEncoder.encodedLength(pixelBytes) + pixelBytes + BerEncoder.encodedLength(run);
+    }
+
+    private static int unsignedLength(long value) {
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) / 8);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PixelMask)) {
+            return false;
+        }
+        PixelMask other = (PixelMask) obj;
+        if (numRuns != other.numRuns) {
+            return false;
+        }
+        for (int i = 0; i < numRuns; ++i) {
+            if (starts[i] != other.starts[i] || ends[i] != other.ends[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = numRuns;
+        for (int i = 0; i < numRuns; ++i) {
+            hash = 31 * hash + Long.hashCode(starts[i]);
+            hash = 31 * hash + Long.hashCode(ends[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PixelMask[%d pixels in %d runs]", area, numRuns);
+    }
+
+    private static void checkFrameWidth(int frameWidth) {
+        if (frameWidth < 1) {
+            throw new IllegalArgumentException("Frame width must be positive");
+        }
+    }
+
+    /**
+     * Read a BER short or long form value.
+     *
+     * @return the encoded length in the high 32 bits, and the value in the low 32 bits
+     */
+    private static long readBerLength(byte[] bytes, int index, int end) throws KlvParseException {
+        if (index >= end) {
+            throw new KlvParseException("Cannot read BER from beyond array limit");
+        }
+        int first = bytes[index] & 0xff;
+        if ((first & 0x80) == 0) {
+            return (1L << 32) | first;
+        }
+        int berLength = first & 0x7f;
+        if (berLength > 4 || index + 1 + berLength > end) {
+            throw new KlvParseException("BER long form: invalid length");
+        }
+        int value = 0;
+        for (int i = 1; i <= berLength; ++i) {
+            value = (value << 8) | (bytes[index + i] & 0xff);
+        }
+        if (value < 0) {
+            throw new KlvParseException("BER: error decoding length");
+        }
+        return ((long) (berLength + 1) << 32) | value;
+    }
+
+    private static int fieldLength(long field) {
+        return (int) (field >>> 32);
+    }
+
+    private static int fieldValue(long field) {
+        return (int) field;
+    }
+
+    private static long readUnsigned(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; ++i) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Collects runs in any order, and merges them into canonical form.
+     *
+     * <p>The union of the runs is found by sorting the start and end points separately and sweeping
+     * through them, which avoids creating an object per run.
+     */
+    private static final class RunBuilder {
+        private long[] starts;
+        private long[] ends;
+        private int count;
+
+        RunBuilder(int capacity) {
+            starts = new long[Math.max(1, capacity)];
+            ends = new long[Math.max(1, capacity)];
+        }
+
+        void add(long pixelNumber, long length) {
+            if (length > 0) {
+                if (pixelNumber < 1 || pixelNumber > MAX_PIXEL_NUMBER) {
+                    throw new IllegalArgumentException("Invalid pixel number: " + pixelNumber);
+                }
+                addRange(pixelNumber, pixelNumber + length);
+            }
+        }
+
+        void addRange(long from, long to) {
+            if (count == starts.length) {
+                int capacity = count + (count >> 1) + 1;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+            }
+            starts[count] = from;
+            ends[count++] = to;
+        }
+
+        PixelMask build() {
+            if (count == 0) {
+                return EMPTY;
+            }
+            if (isCanonical()) {
+                return new PixelMask(starts, ends, count);
+            }
+            Arrays.sort(starts, 0, count);
+            Arrays.sort(ends, 0, count);
+            long[] newStarts = new long[count];
+            long[] newEnds = new long[count];
+            int numRuns = 0;
+            int depth = 0;
+            int i = 0;
+            int j = 0;
+            while (j < count) {
+                // Starts before ends at the same point, so that adjacent runs are merged
+                if (i < count && starts[i] <= ends[j]) {
+                    if (depth++ == 0) {
+                        newStarts[numRuns] = starts[i];
+                    }
+                    ++i;
+                } else {
+                    if (--depth == 0) {
+                        newEnds[numRuns++] = ends[j];
+                    }
+                    ++j;
+                }
+            }
+            return new PixelMask(newStarts, newEnds, numRuns);
+        }
+
+        private boolean isCanonical() {
+            for (int i = 1; i < count; ++i) {
+                if (starts[i] <= ends[i - 1]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package org.jmisb.api.klv.st0903.vtrack;
 
 import static org.jmisb.api.klv.KlvConstants.VTrackLocalSetUl;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -122,9 +121,7 @@ public class VTrackLocalSet implements IMisbMessage {
                     LOGGER.info("Unknown VTrack Metadata tag: {}", field.getTag());
                     break;
                 case Checksum:
-                    byte[] expected = Checksum.compute(bytes, false);
-                    byte[] actual = Arrays.copyOfRange(bytes, bytes.length - 2, bytes.length);
-                    if (!Arrays.equals(expected, actual)) {
+                    if (!Checksum.verify(bytes)) {
                         InvalidDataHandler.getInstance()
                                 .handleInvalidChecksum(LOGGER, "Bad checksum");
                     }
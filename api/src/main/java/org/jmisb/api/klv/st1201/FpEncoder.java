@@ -1,6 +1,8 @@
 package org.jmisb.api.klv.st1201;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
 import org.jmisb.core.klv.PrimitiveConverter;
 
@@ -31,6 +33,10 @@ import org.jmisb.core.klv.PrimitiveConverter;
  * <p>It is also possible to construct an encoder that produces a specified level of accuracy rather
  * than needing to specify the number of bytes to use. This is known as IMAPA, and is not generally
  * used.
+ *
+ * <p>Where many values share the same mapping (for example, the elements of an ST 1303 array), the
+ * batch methods {@link #encode(double[], ByteBuffer)} and {@link #decode(ByteBuffer, double[])}
+ * convert them in a single pass over a buffer, without allocating per value.
  */
 public class FpEncoder {
 
@@ -441,6 +447,293 @@ public class FpEncoder {
         return decodeSpecial(bytes, 0);
     }
 
+    /**
+     * Encode an array of floating point values into a buffer.
+     *
+     * <p>This is equivalent to calling {@link #encode(double)} for each value and putting the
+     * results into {@code dst}, but without allocating.
+     *
+     * @param values The values to encode
+     * @param dst The buffer to write to, starting at its position, which is advanced by {@code
+     *     values.length * getFieldLength()}
+     * @throws IllegalArgumentException if {@code dst} does not have enough space remaining, or a
+     *     value is not within the specified range, in which case the position of {@code dst} is not
+     *     changed
+     */
+    public void encode(double[] values, ByteBuffer dst) {
+        encode(values, 0, values.length, dst);
+    }
+
+    /**
+     * Encode part of an array of floating point values into a buffer.
+     *
+     * <p>This is equivalent to calling {@link #encode(double)} for each value and putting the
+     * results into {@code dst}, but without allocating.
+     *
+     * @param values The values to encode
+     * @param offset The index of the first value to encode
+     * @param count The number of values to encode
+     * @param dst The buffer to write to, starting at its position, which is advanced by {@code
+     *     count * getFieldLength()}
+     * @throws IllegalArgumentException if {@code dst} does not have enough space remaining, or a
+     *     value is not within the specified range, in which case the position of {@code dst} is not
+     *     changed
+     */
+    public void encode(double[] values, int offset, int count, ByteBuffer dst) {
+        if (offset < 0 || count < 0 || offset > values.length - count) {
+            throw new IndexOutOfBoundsException("Offset and count do not fit the array");
+        }
+        int start = reserve(dst, count);
+        ByteBuffer out = bigEndian(dst);
+        int index = start;
+        for (int i = offset; i < offset + count; ++i) {
+            double val = values[i];
+            putBits(out, index, (val >= a && val <= b) ? toBits(val) : toSpecialBits(val));
+            index += fieldLength;
+        }
+        dst.position(index);
+    }
+
+    /**
+     * Encode floating point values from one buffer into another.
+     *
+     * <p>This is equivalent to calling {@link #encode(double)} for each remaining value and putting
+     * the results into {@code dst}, but without allocating.
+     *
+     * @param values The values to encode, from the position to the limit; the position is advanced
+     *     to the limit
+     * @param dst The buffer to write to, starting at its position, which is advanced by {@code
+     *     values.remaining() * getFieldLength()}
+     * @throws IllegalArgumentException if {@code dst} does not have enough space remaining, or a
+     *     value is not within the specified range, in which case neither position is changed
+     */
+    public void encode(DoubleBuffer values, ByteBuffer dst) {
+        int count = values.remaining();
+        if (values.hasArray()) {
+            encode(values.array(), values.arrayOffset() + values.position(), count, dst);
+        } else {
+            int start = reserve(dst, count);
+            ByteBuffer out = bigEndian(dst);
+            int index = start;
+            for (int i = values.position(); i < values.limit(); ++i) {
+                double val = values.get(i);
+                putBits(out, index, (val >= a && val <= b) ? toBits(val) : toSpecialBits(val));
+                index += fieldLength;
+            }
+            dst.position(index);
+        }
+        values.position(values.limit());
+    }
+
+    /**
+     * Decode floating point values from a buffer into an array.
+     *
+     * <p>This is equivalent to calling {@link #decode(byte[], int)} for each value, filling {@code
+     * dst}, but without allocating.
+     *
+     * @param src The buffer to read from, starting at its position, which is advanced by {@code
+     *     dst.length * getFieldLength()}
+     * @param dst The array to fill
+     * @throws IllegalArgumentException if {@code src} does not have enough bytes remaining
+     */
+    public void decode(ByteBuffer src, double[] dst) {
+        decode(src, dst, 0, dst.length);
+    }
+
+    /**
+     * Decode floating point values from a buffer into part of an array.
+     *
+     * <p>This is equivalent to calling {@link #decode(byte[], int)} for each value, but without
+     * allocating.
+     *
+     * @param src The buffer to read from, starting at its position, which is advanced by {@code
+     *     count * getFieldLength()}
+     * @param dst The array to write to
+     * @param offset The index in {@code dst} of the first decoded value
+     * @param count The number of values to decode
+     * @throws IllegalArgumentException if {@code src} does not have enough bytes remaining
+     */
+    public void decode(ByteBuffer src, double[] dst, int offset, int count) {
+        if (offset < 0 || count < 0 || offset > dst.length - count) {
+            throw new IndexOutOfBoundsException("Offset and count do not fit the array");
+        }
+        int start = available(src, count);
+        ByteBuffer in = bigEndian(src);
+        // Clear for normal mapped values
+        long highBit = 1L << (8 * fieldLength - 1);
+        int index = start;
+        for (int i = offset; i < offset + count; ++i) {
+            long bits = getBits(in, index);
+            dst[i] = (bits & highBit) == 0 ? sR * (bits - zOffset) + a : fromSpecialBits(bits);
+            index += fieldLength;
+        }
+        src.position(index);
+    }
+
+    /**
+     * Decode floating point values from one buffer into another.
+     *
+     * <p>This is equivalent to calling {@link #decode(byte[], int)} for each value, but without
+     * allocating.
+     *
+     * @param src The buffer to read from, starting at its position, which is advanced by {@code
+     *     dst.remaining() * getFieldLength()}
+     * @param dst The buffer to fill, from its position to its limit; the position is advanced to
+     *     the limit
+     * @throws IllegalArgumentException if {@code src} does not have enough bytes remaining
+     */
+    public void decode(ByteBuffer src, DoubleBuffer dst) {
+        int count = dst.remaining();
+        if (dst.hasArray()) {
+            decode(src, dst.array(), dst.arrayOffset() + dst.position(), count);
+        } else {
+            int start = available(src, count);
+            ByteBuffer in = bigEndian(src);
+            // Clear for normal mapped values
+            long highBit = 1L << (8 * fieldLength - 1);
+            int index = start;
+            for (int i = dst.position(); i < dst.limit(); ++i) {
+                long bits = getBits(in, index);
+                dst.put(
+                        i,
+                        (bits & highBit) == 0 ? sR * (bits - zOffset) + a : fromSpecialBits(bits));
+                index += fieldLength;
+            }
+            src.position(index);
+        }
+        dst.position(dst.limit());
+    }
+
+    /**
+     * Check that a buffer has room for a batch of encoded values.
+     *
+     * @param dst The buffer to write to
+     * @param count The number of values
+     * @return The position to start writing at
+     */
+    private int reserve(ByteBuffer dst, int count) {
+        if ((long) count * fieldLength > dst.remaining()) {
+            throw new IllegalArgumentException("Buffer is too small for the encoded values");
+        }
+        return dst.position();
+    }
+
+    /**
+     * Check that a buffer holds a batch of encoded values.
+     *
+     * @param src The buffer to read from
+     * @param count The number of values
+     * @return The position to start reading at
+     */
+    private int available(ByteBuffer src, int count) {
+        if ((long) count * fieldLength > src.remaining()) {
+            throw new IllegalArgumentException("Buffer is too short for the requested values");
+        }
+        return src.position();
+    }
+
+    private static ByteBuffer bigEndian(ByteBuffer buffer) {
+        return buffer.order() == ByteOrder.BIG_ENDIAN
+                ? buffer
+                : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Map an in-range value to its integer encoding.
+     *
+     * @param val The value, which must be within [a, b]
+     * @return The encoded bits
+     */
+    private long toBits(double val) {
+        double d = Math.floor(sF * (val - a) + zOffset);
+        // Only reachable with 8 byte fields; workaround for lack of unsigned long
+        return d >= Long.MAX_VALUE ? Long.MIN_VALUE : (long) d;
+    }
+
+    /**
+     * Encode a value that is not in range, as {@link #encode(double)} does.
+     *
+     * @param val The value
+     * @return The encoded bits
+     * @throws IllegalArgumentException if the value is finite
+     */
+    private long toSpecialBits(double val) {
+        byte highByte;
+        if (val == Double.POSITIVE_INFINITY) {
+            highByte = POSITIVE_INFINITY_HIGH_BYTE;
+        } else if (val == Double.NEGATIVE_INFINITY) {
+            highByte = NEGATIVE_INFINITY_HIGH_BYTE;
+        } else if (Double.isNaN(val)) {
+            highByte = POSITIVE_QUIET_NAN_HIGH_BYTE;
+        } else {
+            throw new IllegalArgumentException("Value must be in range [" + a + "," + b + "]");
+        }
+        return (highByte & 0xFFL) << (8 * fieldLength - 8);
+    }
+
+    /**
+     * Decode an encoded value with the high bit set, as {@link #decode(byte[], int)} does.
+     *
+     * @param bits The encoded bits
+     * @return The decoded value
+     */
+    private double fromSpecialBits(long bits) {
+        if (bits == 1L << (8 * fieldLength - 1)) {
+            // A normal mapped value, with only the high bit set
+            return fieldLength == 8 ? b : sR * (bits - zOffset) + a;
+        }
+        byte highByteHighBits = (byte) ((bits >>> (8 * fieldLength - 8)) & HIGH_BITS_MASK);
+        if (highByteHighBits == POSITIVE_INFINITY_HIGH_BYTE) {
+            return Double.POSITIVE_INFINITY;
+        } else if (highByteHighBits == NEGATIVE_INFINITY_HIGH_BYTE) {
+            return Double.NEGATIVE_INFINITY;
+        } else {
+            return Double.NaN;
+        }
+    }
+
+    private void putBits(ByteBuffer out, int index, long bits) {
+        switch (fieldLength) {
+            case 1:
+                out.put(index, (byte) bits);
+                break;
+            case 2:
+                out.putShort(index, (short) bits);
+                break;
+            case 4:
+                out.putInt(index, (int) bits);
+                break;
+            case 8:
+                out.putLong(index, bits);
+                break;
+            default:
+                for (int i = fieldLength - 1; i >= 0; --i) {
+                    out.put(index + i, (byte) bits);
+                    bits >>>= 8;
+                }
+                break;
+        }
+    }
+
+    private long getBits(ByteBuffer in, int index) {
+        switch (fieldLength) {
+            case 1:
+                return in.get(index) & 0xFFL;
+            case 2:
+                return in.getShort(index) & 0xFFFFL;
+            case 4:
+                return in.getInt(index) & 0xFFFFFFFFL;
+            case 8:
+                return in.getLong(index);
+            default:
+                long bits = 0;
+                for (int i = 0; i < fieldLength; ++i) {
+                    bits = (bits << 8) | (in.get(index + i) & 0xFFL);
+                }
+                return bits;
+        }
+    }
+
     private double decodeAsNormalMappedValue(byte[] bytes, int offset)
             throws IllegalArgumentException {
         double val = 0.0;
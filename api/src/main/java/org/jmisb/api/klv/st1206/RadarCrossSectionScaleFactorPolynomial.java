@@ -2,7 +2,7 @@ package org.jmisb.api.klv.st1206;
 
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.st1303.ElementProcessedEncoder;
-import org.jmisb.api.klv.st1303.MDAPDecoder;
+import org.jmisb.api.klv.st1303.MDAPReader;
 
 /**
  * Radar Cross Section Scale Factor Polynomial (ST 1206 Item 22).
@@ -15,14 +15,27 @@ import org.jmisb.api.klv.st1303.MDAPDecoder;
  */
 public class RadarCrossSectionScaleFactorPolynomial implements ISARMIMetadataValue {
 
-    private double[][] values;
+    private final int rows;
+    private final int columns;
+    /** Polynomial coefficients in row-major order. */
+    private final double[] values;
+
     /**
      * Create from value.
      *
      * @param polynomial the RCS scale factor polynomial values
      */
     public RadarCrossSectionScaleFactorPolynomial(double[][] polynomial) {
-        values = polynomial.clone();
+        rows = polynomial.length;
+        columns = polynomial[0].length;
+        values = new double[rows * columns];
+        for (int r = 0; r < rows; ++r) {
+            if (polynomial[r].length != columns) {
+                throw new IllegalArgumentException(
+                        getDisplayName() + " rows must all be the same length");
+            }
+            System.arraycopy(polynomial[r], 0, values, r * columns, columns);
+        }
     }
 
     /**
@@ -32,14 +45,20 @@ public class RadarCrossSectionScaleFactorPolynomial implements ISARMIMetadataVal
      * @throws KlvParseException if parsing fails
      */
     public RadarCrossSectionScaleFactorPolynomial(byte[] bytes) throws KlvParseException {
-        MDAPDecoder decoder = new MDAPDecoder();
-        this.values = decoder.decodeFloatingPoint2D(bytes, 0);
+        MDAPReader reader = new MDAPReader(bytes, 0);
+        int[] dimensions = reader.getDimensions();
+        if (dimensions.length != 2) {
+            throw new KlvParseException(getDisplayName() + " requires a two dimensional array");
+        }
+        rows = dimensions[0];
+        columns = dimensions[1];
+        values = reader.readDoubles();
     }
 
     @Override
     public byte[] getBytes() {
         ElementProcessedEncoder encoder = new ElementProcessedEncoder(0, 1e6, 3);
-        return encoder.encode(values);
+        return encoder.encode(new int[] {rows, columns}, values);
     }
 
     @Override
@@ -58,6 +77,40 @@ public class RadarCrossSectionScaleFactorPolynomial implements ISARMIMetadataVal
      * @return polynomial values in m^2, m, 1, 1/m, etc.
      */
     public double[][] getPolynomialValues() {
+        double[][] polynomial = new double[rows][columns];
+        for (int r = 0; r < rows; ++r) {
+            System.arraycopy(values, r * columns, polynomial[r], 0, columns);
+        }
+        return polynomial;
+    }
+
+    /**
+     * Get the RCS polynomial as a single array.
+     *
+     * <p>This avoids allocating an array per row. The values are in row-major order, so the value
+     * at row {@code r} and column {@code c} is at index {@code r * getNumColumns() + c}.
+     *
+     * @return polynomial values in row-major order
+     */
+    public double[] getPolynomialValuesFlat() {
         return values.clone();
     }
+
+    /**
+     * Get the number of rows in the RCS polynomial.
+     *
+     * @return the number of rows
+     */
+    public int getNumRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns in the RCS polynomial.
+     *
+     * @return the number of columns
+     */
+    public int getNumColumns() {
+        return columns;
+    }
 }
@@ -1,6 +1,6 @@
 package org.jmisb.api.klv.st1303;
 
-import org.jmisb.api.klv.ArrayBuilder;
+import java.nio.ByteBuffer;
 import org.jmisb.api.klv.st1201.FpEncoder;
 
 /**
@@ -68,24 +68,7 @@ public class ElementProcessedEncoder {
      * @return the encoded byte array including the MISB ST1303 header and array data.
      */
     public byte[] encode(double[] data) {
-        ArrayBuilder builder =
-                new ArrayBuilder()
-                        // Number of dimensions
-                        .appendAsOID(1)
-                        // dim_1
-                        .appendAsOID(data.length)
-                        // num bytes for each element (E_bytes)
-                        .appendAsOID(this.bytesPerEncodedValue)
-                        // array processing algorithm (APA)
-                        .appendAsOID(ArrayProcessingAlgorithm.ST1201.getCode())
-                        // array processing algorithm support (APAS) values - min and max
-                        .appendAsFloat64Primitive(this.min)
-                        .appendAsFloat64Primitive(this.max);
-        // Array Of Elements
-        for (int r = 0; r < data.length; ++r) {
-            builder.append(st1201encoder.encode(data[r]));
-        }
-        return builder.toBytes();
+        return encode(new int[] {data.length}, data);
     }
 
     /**
@@ -99,24 +82,13 @@ public class ElementProcessedEncoder {
      * @return the encoded byte array including the MISB ST1303 header and array data.
      */
     public byte[] encode(float[] data) {
-        ArrayBuilder builder =
-                new ArrayBuilder()
-                        // Number of dimensions
-                        .appendAsOID(1)
-                        // dim_1
-                        .appendAsOID(data.length)
-                        // num bytes for each element (E_bytes)
-                        .appendAsOID(this.bytesPerEncodedValue)
-                        // array processing algorithm (APA)
-                        .appendAsOID(ArrayProcessingAlgorithm.ST1201.getCode())
-                        // array processing algorithm support (APAS) values - min and max
-                        .appendAsFloat32Primitive((float) this.min)
-                        .appendAsFloat32Primitive((float) this.max);
-        // Array Of Elements
-        for (int r = 0; r < data.length; ++r) {
-            builder.append(st1201encoder.encode(data[r]));
+        ByteBuffer buffer = allocate(new int[] {data.length}, false);
+        double[] row = new double[data.length];
+        for (int c = 0; c < data.length; ++c) {
+            row[c] = data[c];
         }
-        return builder.toBytes();
+        st1201encoder.encode(row, buffer);
+        return buffer.array();
     }
 
     /**
@@ -130,28 +102,11 @@ public class ElementProcessedEncoder {
      * @return the encoded byte array including the MISB ST1303 header and array data.
      */
     public byte[] encode(double[][] data) {
-        ArrayBuilder builder =
-                new ArrayBuilder()
-                        // Number of dimensions
-                        .appendAsOID(2)
-                        // dim_1
-                        .appendAsOID(data.length)
-                        // dim_2
-                        .appendAsOID(data[0].length)
-                        // num bytes for each element (E_bytes)
-                        .appendAsOID(this.bytesPerEncodedValue)
-                        // array processing algorithm (APA)
-                        .appendAsOID(ArrayProcessingAlgorithm.ST1201.getCode())
-                        // array processing algorithm support (APAS) values - min and max
-                        .appendAsFloat64Primitive(this.min)
-                        .appendAsFloat64Primitive(this.max);
-        // Array Of Elements
-        for (int r = 0; r < data.length; ++r) {
-            for (int c = 0; c < data[r].length; ++c) {
-                builder.append(st1201encoder.encode(data[r][c]));
-            }
+        ByteBuffer buffer = allocate(new int[] {data.length, checkRectangular(data)}, true);
+        for (double[] row : data) {
+            st1201encoder.encode(row, buffer);
         }
-        return builder.toBytes();
+        return buffer.array();
     }
 
     /**
@@ -165,26 +120,85 @@ public class ElementProcessedEncoder {
      * @return the encoded byte array including the MISB ST1303 header and array data.
      */
     public byte[] encode(float[][] data) {
-        ArrayBuilder builder =
-                new ArrayBuilder()
-                        // Number of dimensions
-                        .appendAsOID(2)
-                        // dim_1
-                        .appendAsOID(data.length)
-                        // dim_2
-                        .appendAsOID(data[0].length)
-                        // num bytes for each element (E_bytes)
-                        .appendAsOID(this.bytesPerEncodedValue)
-                        // array processing algorithm (APA)
-                        .appendAsOID(ArrayProcessingAlgorithm.ST1201.getCode())
-                        // array processing algorithm support (APAS) values - min and max
-                        .appendAsFloat32Primitive((float) this.min)
-                        .appendAsFloat32Primitive((float) this.max);
-        for (int r = 0; r < data.length; ++r) {
-            for (int c = 0; c < data[r].length; ++c) {
-                builder.append(st1201encoder.encode(data[r][c]));
+        ByteBuffer buffer = allocate(new int[] {data.length, checkRectangular(data)}, false);
+        double[] scratch = new double[data[0].length];
+        for (float[] row : data) {
+            for (int c = 0; c < row.length; ++c) {
+                scratch[c] = row[c];
+            }
+            st1201encoder.encode(scratch, buffer);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encode a multi-dimensional double array to a Multi-Dimensional Array Pack using ST1201
+     * Element Processed Encoding.
+     *
+     * <p>The values are supplied as a single flat array in row-major order, where the last
+     * dimension varies fastest. For example, a 3 x 4 array has the four values of the first row,
+     * followed by the four values of the second row, and so on. No intermediate arrays are
+     * allocated, so this is the preferred form for large arrays.
+     *
+     * @param dimensions the size of each dimension, outermost first.
+     * @param data the floating point ({@code double}) values in row-major order.
+     * @return the encoded byte array including the MISB ST1303 header and array data.
+     * @throws IllegalArgumentException if the number of values does not match the dimensions.
+     */
+    public byte[] encode(int[] dimensions, double[] data) {
+        MDAPEncoder.countElements(dimensions, data.length);
+        ByteBuffer buffer = allocate(dimensions, true);
+        st1201encoder.encode(data, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Allocate the array pack and write the header and support values.
+     *
+     * @param dimensions the size of each dimension
+     * @param float64 true to write the support values as {@code double}, false for {@code float}
+     * @return buffer positioned at the start of the array of elements
+     */
+    private ByteBuffer allocate(int[] dimensions, boolean float64) {
+        long count = 1;
+        for (int dimension : dimensions) {
+            count *= dimension;
+        }
+        int apasLength = float64 ? 2 * Double.BYTES : 2 * Float.BYTES;
+        ByteBuffer buffer =
+                MDAPEncoder.allocate(
+                        dimensions,
+                        bytesPerEncodedValue,
+                        ArrayProcessingAlgorithm.ST1201,
+                        apasLength + count * bytesPerEncodedValue);
+        // array processing algorithm support (APAS) values - min and max
+        if (float64) {
+            buffer.putDouble(min);
+            buffer.putDouble(max);
+        } else {
+            buffer.putFloat((float) min);
+            buffer.putFloat((float) max);
+        }
+        return buffer;
+    }
+
+    private static int checkRectangular(double[][] data) {
+        int columns = data[0].length;
+        for (double[] row : data) {
+            if (row.length != columns) {
+                throw new IllegalArgumentException("All rows must be the same length");
+            }
+        }
+        return columns;
+    }
+
+    private static int checkRectangular(float[][] data) {
+        int columns = data[0].length;
+        for (float[] row : data) {
+            if (row.length != columns) {
+                throw new IllegalArgumentException("All rows must be the same length");
             }
         }
-        return builder.toBytes();
+        return columns;
     }
 }
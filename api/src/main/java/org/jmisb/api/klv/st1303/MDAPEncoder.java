@@ -0,0 +1,412 @@
+package org.jmisb.api.klv.st1303;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jmisb.api.klv.Ber;
+import org.jmisb.api.klv.BerEncoder;
+
+/**
+ * Encoder for MISB ST 1303 Multi-Dimensional Array Pack (MDAP) encoded byte arrays.
+ *
+ * <p>Arrays of any number of dimensions are supplied as flat arrays in row-major order, where the
+ * last dimension varies fastest (see {@link MDAPReader}). Each method produces the complete array
+ * pack: the header, the array processing algorithm support values, and the elements.
+ *
+ * <p>For ST 1201 (IMAPB) encoded floating point arrays, see {@link ElementProcessedEncoder}.
+ */
+public class MDAPEncoder {
+
+    /**
+     * Encode floating point values in natural format.
+     *
+     * @param dimensions the size of each dimension, outermost first
+     * @param data the values in row-major order
+     * @param elementBytes the number of bytes per element: 4 (float) or 8 (double)
+     * @return the encoded array pack
+     * @throws IllegalArgumentException if the data does not match the dimensions, or the element
+     *     size is not supported
+     */
+    public byte[] encodeNatural(int[] dimensions, double[] data, int elementBytes) {
+        if (elementBytes != Float.BYTES && elementBytes != Double.BYTES) {
+            throw new IllegalArgumentException("Floating point elements must be 4 or 8 bytes");
+        }
+        int count = countElements(dimensions, data.length);
+        ByteBuffer buffer =
+                allocate(
+                        dimensions,
+                        elementBytes,
+                        ArrayProcessingAlgorithm.NaturalFormat,
+                        (long) count * elementBytes);
+        if (elementBytes == Double.BYTES) {
+            for (double value : data) {
+                buffer.putDouble(value);
+            }
+        } else {
+            for (double value : data) {
+                buffer.putFloat((float) value);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encode unsigned integer values in natural format.
+     *
+     * @param dimensions the size of each dimension, outermost first
+     * @param data the values in row-major order, treated as unsigned
+     * @param elementBytes the number of bytes per element, from 1 to 8
+     * @return the encoded array pack
+     * @throws IllegalArgumentException if the data does not match the dimensions, or a value does
+     *     not fit in the element size
+     */
+    public byte[] encodeNatural(int[] dimensions, long[] data, int elementBytes) {
+        checkElementBytes(elementBytes);
+        int count = countElements(dimensions, data.length);
+        for (long value : data) {
+            if (bytesFor(value) > elementBytes) {
+                throw new IllegalArgumentException(
+                        "Value " + Long.toUnsignedString(value) + " does not fit the element size");
+            }
+        }
+        ByteBuffer buffer =
+                allocate(
+                        dimensions,
+                        elementBytes,
+                        ArrayProcessingAlgorithm.NaturalFormat,
+                        (long) count * elementBytes);
+        for (long value : data) {
+            putUnsigned(buffer, value, elementBytes);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encode boolean values as a packed bit array.
+     *
+     * <p>Elements are packed eight to a byte, most significant bit first, continuing across rows.
+     * Any unused bits in the last byte are zero.
+     *
+     * @param dimensions the size of each dimension, outermost first
+     * @param data the values in row-major order
+     * @return the encoded array pack
+     * @throws IllegalArgumentException if the data does not match the dimensions
+     */
+    public byte[] encodeBoolean(int[] dimensions, boolean[] data) {
+        int count = countElements(dimensions, data.length);
+        ByteBuffer buffer =
+                allocate(dimensions, 1, ArrayProcessingAlgorithm.BooleanArray, (count + 7L) / 8);
+        int start = buffer.position();
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < count; ++i) {
+            if (data[i]) {
+                bytes[start + (i >>> 3)] |= (byte) (0x80 >>> (i & 7));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode unsigned integer values relative to a bias.
+     *
+     * <p>The bias is the smallest value (limited to what a BER-OID support value can hold), and the
+     * element size is the fewest bytes that can hold the largest value less the bias.
+     *
+     * @param dimensions the size of each dimension, outermost first
+     * @param data the values in row-major order, treated as unsigned
+     * @return the encoded array pack
+     * @throws IllegalArgumentException if the data does not match the dimensions
+     */
+    public byte[] encodeUnsignedInteger(int[] dimensions, long[] data) {
+        int count = countElements(dimensions, data.length);
+        long min = -1L;
+        long max = 0L;
+        for (long value : data) {
+            if (Long.compareUnsigned(value, min) < 0) {
+                min = value;
+            }
+            if (Long.compareUnsigned(value, max) > 0) {
+                max = value;
+            }
+        }
+        int bias =
+                Long.compareUnsigned(min, Integer.MAX_VALUE) <= 0 ? (int) min : Integer.MAX_VALUE;
+        int elementBytes = bytesFor(max - bias);
+        ByteBuffer buffer =
+                allocate(
+                        dimensions,
+                        elementBytes,
+                        ArrayProcessingAlgorithm.UnsignedInteger,
+                        BerEncoder.encodedLength(bias, Ber.OID) + (long) count * elementBytes);
+        BerEncoder.encode(bias, Ber.OID, buffer);
+        for (long value : data) {
+            putUnsigned(buffer, value - bias, elementBytes);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encode unsigned integer values using run-length encoding.
+     *
+     * <p>The most common value becomes the default, and every other element is covered by a patch.
+     * Patches are built from runs of equal values along the last dimension, and a run is extended
+     * into the following row where that row has an identical run, so rectangular regions are
+     * encoded as a single patch. This suits sparse or blocky data such as masks and class maps.
+     *
+     * @param dimensions the size of each dimension, outermost first
+     * @param data the values in row-major order, treated as unsigned
+     * @return the encoded array pack
+     * @throws IllegalArgumentException if the data does not match the dimensions
+     */
+    public byte[] encodeRunLength(int[] dimensions, long[] data) {
+        long max = 0;
+        for (long value : data) {
+            if (Long.compareUnsigned(value, max) > 0) {
+                max = value;
+            }
+        }
+        return encodeRunLength(dimensions, data, bytesFor(max));
+    }
+
+    /**
+     * Encode floating point values using run-length encoding.
+     *
+     * <p>Patches are built as for {@link #encodeRunLength(int[], long[])}, comparing the encoded
+     * values, so values that are equal after conversion to the element size share a patch.
+     *
+     * @param dimensions the size of each dimension, outermost first
+     * @param data the values in row-major order
+     * @param elementBytes the number of bytes per element: 4 (float) or 8 (double)
+     * @return the encoded array pack
+     * @throws IllegalArgumentException if the data does not match the dimensions, or the element
+     *     size is not supported
+     */
+    public byte[] encodeRunLength(int[] dimensions, double[] data, int elementBytes) {
+        if (elementBytes != Float.BYTES && elementBytes != Double.BYTES) {
+            throw new IllegalArgumentException("Floating point elements must be 4 or 8 bytes");
+        }
+        long[] bits = new long[data.length];
+        for (int i = 0; i < data.length; ++i) {
+            bits[i] =
+                    elementBytes == Double.BYTES
+                            ? Double.doubleToLongBits(data[i])
+                            : Float.floatToIntBits((float) data[i]) & 0xFFFFFFFFL;
+        }
+        return encodeRunLength(dimensions, bits, elementBytes);
+    }
+
+    /**
+     * Encode raw element values using run-length encoding.
+     *
+     * @param dimensions the size of each dimension, outermost first
+     * @param data the element values in row-major order, as unsigned bit patterns
+     * @param elementBytes the number of bytes per element, large enough for every value
+     * @return the encoded array pack
+     */
+    private byte[] encodeRunLength(int[] dimensions, long[] data, int elementBytes) {
+        int count = countElements(dimensions, data.length);
+        final int n = dimensions.length;
+        final int last = n - 1;
+        final int rowLength = dimensions[last];
+        long defaultValue = mostCommon(data);
+
+        List<Patch> patches = new ArrayList<>();
+        List<Patch> previous = new ArrayList<>();
+        List<Patch> current = new ArrayList<>();
+        int[] indices = new int[n];
+        for (int row = 0; row * rowLength < count; ++row) {
+            // Rows continue a patch only from the row before, within the same outer block
+            boolean continues = n > 1 && indices[last - 1] > 0;
+            int base = row * rowLength;
+            int c = 0;
+            while (c < rowLength) {
+                long value = data[base + c];
+                int end = c + 1;
+                while (end < rowLength && data[base + end] == value) {
+                    ++end;
+                }
+                if (value != defaultValue) {
+                    Patch extended = null;
+                    if (continues) {
+                        for (Patch patch : previous) {
+                            if (patch.value == value
+                                    && patch.start[last] == c
+                                    && patch.size[last] == end - c) {
+                                extended = patch;
+                                break;
+                            }
+                        }
+                    }
+                    if (extended != null) {
+                        extended.size[last - 1]++;
+                        previous.remove(extended);
+                        current.add(extended);
+                    } else {
+                        Patch patch = new Patch(value, indices, n);
+                        patch.start[last] = c;
+                        patch.size[last] = end - c;
+                        patches.add(patch);
+                        current.add(patch);
+                    }
+                }
+                c = end;
+            }
+            List<Patch> swap = previous;
+            previous = current;
+            current = swap;
+            current.clear();
+            // Advance the outer indices to the next row
+            for (int d = last - 1; d >= 0; --d) {
+                if (++indices[d] < dimensions[d]) {
+                    break;
+                }
+                indices[d] = 0;
+            }
+        }
+
+        long length = elementBytes;
+        for (Patch patch : patches) {
+            length += elementBytes;
+            for (int d = 0; d < n; ++d) {
+                length += BerEncoder.encodedLength(patch.start[d], Ber.OID);
+                length += BerEncoder.encodedLength(patch.size[d], Ber.OID);
+            }
+        }
+        ByteBuffer buffer =
+                allocate(
+                        dimensions,
+                        elementBytes,
+                        ArrayProcessingAlgorithm.RunLengthEncoding,
+                        length);
+        putUnsigned(buffer, defaultValue, elementBytes);
+        for (Patch patch : patches) {
+            putUnsigned(buffer, patch.value, elementBytes);
+            for (int d = 0; d < n; ++d) {
+                BerEncoder.encode(patch.start[d], Ber.OID, buffer);
+            }
+            for (int d = 0; d < n; ++d) {
+                BerEncoder.encode(patch.size[d], Ber.OID, buffer);
+            }
+        }
+        return buffer.array();
+    }
+
+    /** A run-length encoding patch under construction. */
+    private static class Patch {
+        final long value;
+        final int[] start;
+        final int[] size;
+
+        Patch(long value, int[] outerIndices, int n) {
+            this.value = value;
+            start = outerIndices.clone();
+            size = new int[n];
+            for (int d = 0; d < n - 1; ++d) {
+                size[d] = 1;
+            }
+        }
+    }
+
+    private static long mostCommon(long[] data) {
+        Map<Long, Integer> counts = new HashMap<>();
+        long best = 0;
+        int bestCount = 0;
+        for (long value : data) {
+            int c = counts.merge(value, 1, Integer::sum);
+            if (c > bestCount || (c == bestCount && Long.compareUnsigned(value, best) < 0)) {
+                best = value;
+                bestCount = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Check the dimensions against the number of elements supplied.
+     *
+     * @param dimensions the size of each dimension
+     * @param length the number of elements
+     * @return the number of elements
+     * @throws IllegalArgumentException if the dimensions are invalid or do not match
+     */
+    static int countElements(int[] dimensions, int length) {
+        if (dimensions.length < 1) {
+            throw new IllegalArgumentException("MDAP must have at least one dimension");
+        }
+        long count = 1;
+        for (int dimension : dimensions) {
+            if (dimension < 1) {
+                throw new IllegalArgumentException("Dimensions must be positive");
+            }
+            count *= dimension;
+            if (count > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("MDAP has too many elements");
+            }
+        }
+        if (count != length) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Number of elements (%d) does not match dimensions (%d)",
+                            length, count));
+        }
+        return length;
+    }
+
+    /**
+     * Allocate an array pack and write its header.
+     *
+     * @param dimensions the size of each dimension
+     * @param elementBytes the number of bytes per element (E_bytes)
+     * @param algorithm the array processing algorithm
+     * @param bodyLength the length of the support values and elements that follow
+     * @return a buffer of exactly the required size, positioned after the header
+     */
+    static ByteBuffer allocate(
+            int[] dimensions,
+            int elementBytes,
+            ArrayProcessingAlgorithm algorithm,
+            long bodyLength) {
+        long length = BerEncoder.encodedLength(dimensions.length, Ber.OID);
+        for (int dimension : dimensions) {
+            length += BerEncoder.encodedLength(dimension, Ber.OID);
+        }
+        length += BerEncoder.encodedLength(elementBytes, Ber.OID);
+        length += BerEncoder.encodedLength(algorithm.getCode(), Ber.OID);
+        length += bodyLength;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("MDAP is too large to encode");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        BerEncoder.encode(dimensions.length, Ber.OID, buffer);
+        for (int dimension : dimensions) {
+            BerEncoder.encode(dimension, Ber.OID, buffer);
+        }
+        BerEncoder.encode(elementBytes, Ber.OID, buffer);
+        BerEncoder.encode(algorithm.getCode(), Ber.OID, buffer);
+        return buffer;
+    }
+
+    private static void checkElementBytes(int elementBytes) {
+        if (elementBytes < 1 || elementBytes > Long.BYTES) {
+            throw new IllegalArgumentException("Elements must be 1 to 8 bytes");
+        }
+    }
+
+    /**
+     * Get the fewest bytes that can hold an unsigned value.
+     *
+     * @param value the value, treated as unsigned
+     * @return the number of bytes, at least 1
+     */
+    private static int bytesFor(long value) {
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) / 8);
+    }
+
+    private static void putUnsigned(ByteBuffer buffer, long value, int elementBytes) {
+        for (int shift = 8 * (elementBytes - 1); shift >= 0; shift -= 8) {
+            buffer.put((byte) (value >>> shift));
+        }
+    }
+}
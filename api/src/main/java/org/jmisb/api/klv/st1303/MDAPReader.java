@@ -0,0 +1,799 @@
+package org.jmisb.api.klv.st1303;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.BerDecoder;
+import org.jmisb.api.klv.BerField;
+import org.jmisb.api.klv.st1201.FpEncoder;
+
+/**
+ * Reader for MISB ST 1303 Multi-Dimensional Array Pack (MDAP) encoded arrays.
+ *
+ * <p>The reader parses the array header (dimensions, element size, array processing algorithm and
+ * its support values) on construction, then decodes elements on demand, directly from the encoded
+ * bytes. Arrays of any number of dimensions are returned as flat arrays in row-major order, where
+ * the last dimension varies fastest: for dimensions {@code [d1, d2, d3]}, element {@code [i][j][k]}
+ * is at index {@code (i * d2 + j) * d3 + k}.
+ *
+ * <p>Elements can be read all at once (for example {@link #readDoubles()}), or a row at a time (for
+ * example {@link #nextRow(double[])}), where a row is the run of elements along the last dimension.
+ * Reading into caller-supplied arrays or buffers does not allocate, so large arrays can be
+ * processed with a single reusable row buffer.
+ *
+ * <p>The element type is specified by the invoking document, so the caller chooses it by the read
+ * method:
+ *
+ * <ul>
+ *   <li>{@code readDoubles} supports {@link ArrayProcessingAlgorithm#NaturalFormat} (4 or 8 byte
+ *       IEEE floating point), {@link ArrayProcessingAlgorithm#ST1201}, {@link
+ *       ArrayProcessingAlgorithm#UnsignedInteger} and {@link
+ *       ArrayProcessingAlgorithm#RunLengthEncoding} (4 or 8 byte IEEE floating point).
+ *   <li>{@code readUnsignedIntegers} supports {@link ArrayProcessingAlgorithm#NaturalFormat} (1 to
+ *       8 byte unsigned integers), {@link ArrayProcessingAlgorithm#UnsignedInteger} and {@link
+ *       ArrayProcessingAlgorithm#RunLengthEncoding}.
+ *   <li>{@code readBooleans} supports {@link ArrayProcessingAlgorithm#BooleanArray} and {@link
+ *       ArrayProcessingAlgorithm#RunLengthEncoding} (where any non-zero value is true).
+ * </ul>
+ *
+ * <p>A reader is not thread safe.
+ */
+public class MDAPReader {
+    private final ByteBuffer buffer;
+    private int[] dimensions;
+    private int numElements;
+    private int rowLength;
+    private int numRows;
+    private int elementBytes;
+    private ArrayProcessingAlgorithm algorithm;
+    private int elementsStart;
+
+    /** IMAPB decoder, for {@link ArrayProcessingAlgorithm#ST1201}. */
+    private FpEncoder imap;
+
+    /** Positioned at the elements to decode with {@link #imap}. */
+    private ByteBuffer imapCursor;
+
+    /** Bias added to each element, for {@link ArrayProcessingAlgorithm#UnsignedInteger}. */
+    private long bias;
+
+    /** Run-length encoding: the value of elements not in any patch. */
+    private long defaultValue;
+
+    /** Run-length encoding: patch start indices, {@code numPatches * numDimensions}. */
+    private int[] patchStarts;
+
+    /** Run-length encoding: patch sizes, {@code numPatches * numDimensions}. */
+    private int[] patchSizes;
+
+    /** Run-length encoding: patch values. */
+    private long[] patchValues;
+
+    /** Scratch space for row indices, for run-length decoding. */
+    private int[] rowIndices;
+
+    private DoubleTarget doubleTarget;
+    private LongTarget longTarget;
+    private BooleanTarget booleanTarget;
+
+    private int nextRow;
+
+    /**
+     * Create a reader for an array at an offset in a byte array.
+     *
+     * <p>The array pack extends to the end of the byte array.
+     *
+     * @param bytes the byte array to decode from
+     * @param offset the offset of the start of the array pack
+     * @throws KlvParseException if the array header is invalid
+     */
+    public MDAPReader(byte[] bytes, int offset) throws KlvParseException {
+        this(wrap(bytes, offset));
+    }
+
+    /**
+     * Create a reader for an array in a buffer.
+     *
+     * <p>The array pack is from the buffer's position to its limit. The buffer is not modified, and
+     * the reader keeps a view of its content, so it should not be changed while the reader is in
+     * use.
+     *
+     * @param bytes the buffer to decode from
+     * @throws KlvParseException if the array header is invalid
+     */
+    public MDAPReader(ByteBuffer bytes) throws KlvParseException {
+        buffer = bytes.slice();
+        try {
+            parseHeader();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new KlvParseException(ex.getMessage());
+        }
+    }
+
+    private static ByteBuffer wrap(byte[] bytes, int offset) throws KlvParseException {
+        if (offset < 0 || offset > bytes.length) {
+            throw new KlvParseException("Offset is outside the array");
+        }
+        return ByteBuffer.wrap(bytes, offset, bytes.length - offset);
+    }
+
+    private void parseHeader() throws KlvParseException {
+        int index = 0;
+        BerField ndim = BerDecoder.decode(buffer, index, true);
+        index += ndim.getLength();
+        if (ndim.getValue() < 1) {
+            throw new KlvParseException("MDAP must have at least one dimension");
+        }
+        // Each dimension size takes at least one byte, so reject before allocating
+        if (ndim.getValue() > buffer.limit() - index) {
+            throw new KlvParseException(
+                    String.format("MDAP has too many dimensions: %d", ndim.getValue()));
+        }
+        dimensions = new int[ndim.getValue()];
+        long count = 1;
+        for (int d = 0; d < dimensions.length; ++d) {
+            BerField dim = BerDecoder.decode(buffer, index, true);
+            index += dim.getLength();
+            if (dim.getValue() < 1) {
+                throw new KlvParseException(
+                        String.format("Invalid size of dimension %d: %d", d + 1, dim.getValue()));
+            }
+            dimensions[d] = dim.getValue();
+            count *= dim.getValue();
+            if (count > Integer.MAX_VALUE) {
+                throw new KlvParseException("MDAP has too many elements");
+            }
+        }
+        numElements = (int) count;
+        rowLength = dimensions[dimensions.length - 1];
+        numRows = numElements / rowLength;
+
+        BerField ebytes = BerDecoder.decode(buffer, index, true);
+        index += ebytes.getLength();
+        elementBytes = ebytes.getValue();
+        BerField apa = BerDecoder.decode(buffer, index, true);
+        index += apa.getLength();
+        algorithm = ArrayProcessingAlgorithm.getValue(apa.getValue());
+
+        switch (algorithm) {
+            case NaturalFormat:
+                checkElementBytes();
+                elementsStart = index;
+                checkAvailable((long) numElements * elementBytes);
+                break;
+            case ST1201:
+                checkElementBytes();
+                parseImapSupportValues(index);
+                break;
+            case BooleanArray:
+                elementsStart = index;
+                checkAvailable((numElements + 7L) / 8);
+                break;
+            case UnsignedInteger:
+                checkElementBytes();
+                BerField biasField = BerDecoder.decode(buffer, index, true);
+                index += biasField.getLength();
+                bias = biasField.getValue();
+                elementsStart = index;
+                checkAvailable((long) numElements * elementBytes);
+                break;
+            case RunLengthEncoding:
+                checkElementBytes();
+                parsePatches(index);
+                break;
+            default:
+                throw new KlvParseException(
+                        String.format("Unknown APA algorithm: %d", apa.getValue()));
+        }
+    }
+
+    private void checkElementBytes() throws KlvParseException {
+        if (elementBytes < 1 || elementBytes > Long.BYTES) {
+            throw new KlvParseException(String.format("Invalid number of bytes: %d", elementBytes));
+        }
+    }
+
+    private void checkAvailable(long length) throws KlvParseException {
+        if (elementsStart + length > buffer.limit()) {
+            throw new KlvParseException(
+                    String.format(
+                            "MDAP is too short for %d elements of %s",
+                            numElements, algorithm.name()));
+        }
+    }
+
+    private void parseImapSupportValues(int index) throws KlvParseException {
+        long apasLength = buffer.limit() - index - (long) numElements * elementBytes;
+        double min;
+        double max;
+        if (apasLength == 2 * Double.BYTES) {
+            min = buffer.getDouble(index);
+            max = buffer.getDouble(index + Double.BYTES);
+        } else if (apasLength == 2 * Float.BYTES) {
+            min = buffer.getFloat(index);
+            max = buffer.getFloat(index + Float.BYTES);
+        } else {
+            throw new KlvParseException(String.format("Invalid length of APAS: %d", apasLength));
+        }
+        imap = new FpEncoder(min, max, elementBytes);
+        imapCursor = buffer.duplicate();
+        elementsStart = index + (int) apasLength;
+    }
+
+    /**
+     * Parse the run-length encoding support values.
+     *
+     * <p>These are the default element value, then any number of patches, each consisting of the
+     * element value, the start index in each dimension and the size in each dimension. Patches are
+     * applied in order, so a later patch overwrites any earlier patch it overlaps.
+     */
+    private void parsePatches(int index) throws KlvParseException {
+        final int n = dimensions.length;
+        if (index + elementBytes > buffer.limit()) {
+            throw new KlvParseException("MDAP is too short for run-length default value");
+        }
+        defaultValue = unsigned(index);
+        index += elementBytes;
+        List<Long> values = new ArrayList<>();
+        List<int[]> boxes = new ArrayList<>();
+        while (index < buffer.limit()) {
+            if (index + elementBytes > buffer.limit()) {
+                throw new KlvParseException("MDAP is too short for run-length patch value");
+            }
+            values.add(unsigned(index));
+            index += elementBytes;
+            int[] box = new int[2 * n];
+            for (int i = 0; i < box.length; ++i) {
+                BerField field = BerDecoder.decode(buffer, index, true);
+                index += field.getLength();
+                box[i] = field.getValue();
+            }
+            for (int d = 0; d < n; ++d) {
+                int start = box[d];
+                int size = box[n + d];
+                if (size < 1 || (long) start + size > dimensions[d]) {
+                    throw new KlvParseException(
+                            String.format(
+                                    "Run-length patch %d exceeds dimension %d",
+                                    values.size(), d + 1));
+                }
+            }
+            boxes.add(box);
+        }
+        patchValues = new long[values.size()];
+        patchStarts = new int[values.size() * n];
+        patchSizes = new int[values.size() * n];
+        for (int p = 0; p < patchValues.length; ++p) {
+            patchValues[p] = values.get(p);
+            int[] box = boxes.get(p);
+            System.arraycopy(box, 0, patchStarts, p * n, n);
+            System.arraycopy(box, n, patchSizes, p * n, n);
+        }
+        rowIndices = new int[n];
+        elementsStart = index;
+    }
+
+    /**
+     * Get the size of each dimension.
+     *
+     * @return a copy of the dimensions, outermost first
+     */
+    public int[] getDimensions() {
+        return dimensions.clone();
+    }
+
+    /**
+     * Get the total number of elements.
+     *
+     * @return the product of the dimensions
+     */
+    public int getNumElements() {
+        return numElements;
+    }
+
+    /**
+     * Get the number of elements in a row.
+     *
+     * @return the size of the last dimension
+     */
+    public int getRowLength() {
+        return rowLength;
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the product of all dimensions except the last
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Get the number of bytes per element.
+     *
+     * @return the E_bytes value from the array header
+     */
+    public int getElementBytes() {
+        return elementBytes;
+    }
+
+    /**
+     * Get the array processing algorithm.
+     *
+     * @return the algorithm from the array header
+     */
+    public ArrayProcessingAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Read all elements as floating point values.
+     *
+     * @return the elements in row-major order
+     * @throws KlvParseException if the array cannot be read as floating point
+     */
+    public double[] readDoubles() throws KlvParseException {
+        double[] values = new double[numElements];
+        readDoubles(values, 0);
+        return values;
+    }
+
+    /**
+     * Read all elements as floating point values into an array.
+     *
+     * @param dst the array to fill, in row-major order
+     * @param offset the index in {@code dst} of the first element
+     * @throws KlvParseException if the array cannot be read as floating point
+     */
+    public void readDoubles(double[] dst, int offset) throws KlvParseException {
+        checkDestination(dst.length, offset, numElements);
+        decodeDoubles(0, numRows, dst, offset);
+    }
+
+    /**
+     * Read all elements as floating point values into a buffer.
+     *
+     * @param dst the buffer to fill, in row-major order, from its position, which is advanced by
+     *     the number of elements
+     * @throws KlvParseException if the array cannot be read as floating point
+     */
+    public void readDoubles(DoubleBuffer dst) throws KlvParseException {
+        checkDestination(dst.remaining(), 0, numElements);
+        if (dst.hasArray()) {
+            readDoubles(dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + numElements);
+        } else {
+            double[] row = new double[rowLength];
+            for (int r = 0; r < numRows; ++r) {
+                decodeDoubles(r, 1, row, 0);
+                dst.put(row);
+            }
+        }
+    }
+
+    /**
+     * Read one row as floating point values.
+     *
+     * @param row the index of the row, from 0 to {@link #getNumRows()} - 1
+     * @param dst the array to fill
+     * @param offset the index in {@code dst} of the first element
+     * @throws KlvParseException if the array cannot be read as floating point
+     */
+    public void readRow(int row, double[] dst, int offset) throws KlvParseException {
+        checkRow(row);
+        checkDestination(dst.length, offset, rowLength);
+        decodeDoubles(row, 1, dst, offset);
+    }
+
+    /**
+     * Read all elements as unsigned integer values.
+     *
+     * @return the elements in row-major order
+     * @throws KlvParseException if the array cannot be read as unsigned integers
+     */
+    public long[] readUnsignedIntegers() throws KlvParseException {
+        long[] values = new long[numElements];
+        readUnsignedIntegers(values, 0);
+        return values;
+    }
+
+    /**
+     * Read all elements as unsigned integer values into an array.
+     *
+     * @param dst the array to fill, in row-major order
+     * @param offset the index in {@code dst} of the first element
+     * @throws KlvParseException if the array cannot be read as unsigned integers
+     */
+    public void readUnsignedIntegers(long[] dst, int offset) throws KlvParseException {
+        checkDestination(dst.length, offset, numElements);
+        decodeLongs(0, numRows, dst, offset);
+    }
+
+    /**
+     * Read all elements as unsigned integer values into a buffer.
+     *
+     * @param dst the buffer to fill, in row-major order, from its position, which is advanced by
+     *     the number of elements
+     * @throws KlvParseException if the array cannot be read as unsigned integers
+     */
+    public void readUnsignedIntegers(LongBuffer dst) throws KlvParseException {
+        checkDestination(dst.remaining(), 0, numElements);
+        if (dst.hasArray()) {
+            readUnsignedIntegers(dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + numElements);
+        } else {
+            long[] row = new long[rowLength];
+            for (int r = 0; r < numRows; ++r) {
+                decodeLongs(r, 1, row, 0);
+                dst.put(row);
+            }
+        }
+    }
+
+    /**
+     * Read one row as unsigned integer values.
+     *
+     * @param row the index of the row, from 0 to {@link #getNumRows()} - 1
+     * @param dst the array to fill
+     * @param offset the index in {@code dst} of the first element
+     * @throws KlvParseException if the array cannot be read as unsigned integers
+     */
+    public void readRow(int row, long[] dst, int offset) throws KlvParseException {
+        checkRow(row);
+        checkDestination(dst.length, offset, rowLength);
+        decodeLongs(row, 1, dst, offset);
+    }
+
+    /**
+     * Read all elements as boolean values.
+     *
+     * @return the elements in row-major order
+     * @throws KlvParseException if the array cannot be read as booleans
+     */
+    public boolean[] readBooleans() throws KlvParseException {
+        boolean[] values = new boolean[numElements];
+        readBooleans(values, 0);
+        return values;
+    }
+
+    /**
+     * Read all elements as boolean values into an array.
+     *
+     * @param dst the array to fill, in row-major order
+     * @param offset the index in {@code dst} of the first element
+     * @throws KlvParseException if the array cannot be read as booleans
+     */
+    public void readBooleans(boolean[] dst, int offset) throws KlvParseException {
+        checkDestination(dst.length, offset, numElements);
+        decodeBooleans(0, numRows, dst, offset);
+    }
+
+    /**
+     * Read one row as boolean values.
+     *
+     * @param row the index of the row, from 0 to {@link #getNumRows()} - 1
+     * @param dst the array to fill
+     * @param offset the index in {@code dst} of the first element
+     * @throws KlvParseException if the array cannot be read as booleans
+     */
+    public void readRow(int row, boolean[] dst, int offset) throws KlvParseException {
+        checkRow(row);
+        checkDestination(dst.length, offset, rowLength);
+        decodeBooleans(row, 1, dst, offset);
+    }
+
+    /**
+     * Check if there are more rows to stream.
+     *
+     * @return true if {@code nextRow} can be called
+     */
+    public boolean hasNextRow() {
+        return nextRow < numRows;
+    }
+
+    /**
+     * Read the next row as floating point values, and advance to the following row.
+     *
+     * @param dst the array to fill, of at least {@link #getRowLength()} elements
+     * @throws KlvParseException if the array cannot be read as floating point
+     * @throws java.util.NoSuchElementException if there are no more rows
+     */
+    public void nextRow(double[] dst) throws KlvParseException {
+        readRow(takeRow(), dst, 0);
+    }
+
+    /**
+     * Read the next row as unsigned integer values, and advance to the following row.
+     *
+     * @param dst the array to fill, of at least {@link #getRowLength()} elements
+     * @throws KlvParseException if the array cannot be read as unsigned integers
+     * @throws java.util.NoSuchElementException if there are no more rows
+     */
+    public void nextRow(long[] dst) throws KlvParseException {
+        readRow(takeRow(), dst, 0);
+    }
+
+    /**
+     * Read the next row as boolean values, and advance to the following row.
+     *
+     * @param dst the array to fill, of at least {@link #getRowLength()} elements
+     * @throws KlvParseException if the array cannot be read as booleans
+     * @throws java.util.NoSuchElementException if there are no more rows
+     */
+    public void nextRow(boolean[] dst) throws KlvParseException {
+        readRow(takeRow(), dst, 0);
+    }
+
+    /** Restart streaming from the first row. */
+    public void rewind() {
+        nextRow = 0;
+    }
+
+    private int takeRow() {
+        if (nextRow >= numRows) {
+            throw new java.util.NoSuchElementException("No more rows in the array");
+        }
+        return nextRow++;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= numRows) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Row %d is outside the array of %d rows", row, numRows));
+        }
+    }
+
+    private static void checkDestination(int length, int offset, int count) {
+        if (offset < 0 || offset > length - count) {
+            throw new IllegalArgumentException("Destination is too small for the elements");
+        }
+    }
+
+    private void decodeDoubles(int firstRow, int rows, double[] dst, int offset)
+            throws KlvParseException {
+        int count = rows * rowLength;
+        int index = elementsStart + firstRow * rowLength * elementBytes;
+        switch (algorithm) {
+            case NaturalFormat:
+                if (elementBytes == Double.BYTES) {
+                    for (int i = offset; i < offset + count; ++i) {
+                        dst[i] = buffer.getDouble(index);
+                        index += Double.BYTES;
+                    }
+                } else if (elementBytes == Float.BYTES) {
+                    for (int i = offset; i < offset + count; ++i) {
+                        dst[i] = buffer.getFloat(index);
+                        index += Float.BYTES;
+                    }
+                } else {
+                    throw new KlvParseException(
+                            String.format("Invalid number of bytes: %d", elementBytes));
+                }
+                break;
+            case ST1201:
+                imapCursor.position(index);
+                imap.decode(imapCursor, dst, offset, count);
+                break;
+            case UnsignedInteger:
+                for (int i = offset; i < offset + count; ++i) {
+                    dst[i] = unsignedToDouble(bias + unsigned(index));
+                    index += elementBytes;
+                }
+                break;
+            case RunLengthEncoding:
+                if (elementBytes != Double.BYTES && elementBytes != Float.BYTES) {
+                    throw new KlvParseException(
+                            String.format("Invalid number of bytes: %d", elementBytes));
+                }
+                if (doubleTarget == null) {
+                    doubleTarget = new DoubleTarget();
+                }
+                doubleTarget.singlePrecision = elementBytes == Float.BYTES;
+                doubleTarget.dst = dst;
+                decodeRuns(firstRow, rows, offset, doubleTarget);
+                doubleTarget.dst = null;
+                break;
+            default:
+                throw new KlvParseException(
+                        "Cannot read " + algorithm.name() + " array as floating point");
+        }
+    }
+
+    private void decodeLongs(int firstRow, int rows, long[] dst, int offset)
+            throws KlvParseException {
+        int count = rows * rowLength;
+        int index = elementsStart + firstRow * rowLength * elementBytes;
+        switch (algorithm) {
+            case NaturalFormat:
+                for (int i = offset; i < offset + count; ++i) {
+                    dst[i] = unsigned(index);
+                    index += elementBytes;
+                }
+                break;
+            case UnsignedInteger:
+                for (int i = offset; i < offset + count; ++i) {
+                    dst[i] = bias + unsigned(index);
+                    index += elementBytes;
+                }
+                break;
+            case RunLengthEncoding:
+                if (longTarget == null) {
+                    longTarget = new LongTarget();
+                }
+                longTarget.dst = dst;
+                decodeRuns(firstRow, rows, offset, longTarget);
+                longTarget.dst = null;
+                break;
+            default:
+                throw new KlvParseException(
+                        "Cannot read " + algorithm.name() + " array as unsigned integers");
+        }
+    }
+
+    private void decodeBooleans(int firstRow, int rows, boolean[] dst, int offset)
+            throws KlvParseException {
+        int count = rows * rowLength;
+        switch (algorithm) {
+            case BooleanArray:
+                // Bits are packed most significant first, continuing across rows
+                long bit = (long) firstRow * rowLength;
+                for (int i = offset; i < offset + count; ++i) {
+                    int packed = buffer.get(elementsStart + (int) (bit >>> 3));
+                    dst[i] = ((packed >>> (7 - (int) (bit & 7))) & 1) != 0;
+                    ++bit;
+                }
+                break;
+            case RunLengthEncoding:
+                if (booleanTarget == null) {
+                    booleanTarget = new BooleanTarget();
+                }
+                booleanTarget.dst = dst;
+                decodeRuns(firstRow, rows, offset, booleanTarget);
+                booleanTarget.dst = null;
+                break;
+            default:
+                throw new KlvParseException(
+                        "Cannot read " + algorithm.name() + " array as booleans");
+        }
+    }
+
+    /**
+     * Decode run-length encoded rows.
+     *
+     * @param firstRow the first row to decode
+     * @param rows the number of rows to decode
+     * @param offset the index in the target of the first element of the first row
+     * @param target where to write the elements
+     */
+    private void decodeRuns(int firstRow, int rows, int offset, RunTarget target) {
+        final int n = dimensions.length;
+        final int last = n - 1;
+        final int endRow = firstRow + rows;
+        target.fill(offset, offset + rows * rowLength, defaultValue);
+        if (rows == 1) {
+            // Check each patch against this row's indices
+            int remainder = firstRow;
+            for (int d = last - 1; d >= 0; --d) {
+                rowIndices[d] = remainder % dimensions[d];
+                remainder /= dimensions[d];
+            }
+            for (int p = 0; p < patchValues.length; ++p) {
+                int base = p * n;
+                boolean covers = true;
+                for (int d = 0; d < last && covers; ++d) {
+                    int start = patchStarts[base + d];
+                    covers = rowIndices[d] >= start && rowIndices[d] < start + patchSizes[base + d];
+                }
+                if (covers) {
+                    int from = offset + patchStarts[base + last];
+                    target.fill(from, from + patchSizes[base + last], patchValues[p]);
+                }
+            }
+            return;
+        }
+        // Visit every row of each patch, in the order of the outer indices
+        for (int p = 0; p < patchValues.length; ++p) {
+            int base = p * n;
+            for (int d = 0; d < last; ++d) {
+                rowIndices[d] = patchStarts[base + d];
+            }
+            while (true) {
+                int row = 0;
+                for (int d = 0; d < last; ++d) {
+                    row = row * dimensions[d] + rowIndices[d];
+                }
+                if (row >= firstRow && row < endRow) {
+                    int from = offset + (row - firstRow) * rowLength + patchStarts[base + last];
+                    target.fill(from, from + patchSizes[base + last], patchValues[p]);
+                }
+                int d = last - 1;
+                while (d >= 0) {
+                    if (++rowIndices[d] < patchStarts[base + d] + patchSizes[base + d]) {
+                        break;
+                    }
+                    rowIndices[d] = patchStarts[base + d];
+                    --d;
+                }
+                if (d < 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read an unsigned big-endian element.
+     *
+     * @param index the absolute index of the element
+     * @return the value
+     */
+    private long unsigned(int index) {
+        switch (elementBytes) {
+            case 1:
+                return buffer.get(index) & 0xFFL;
+            case 2:
+                return buffer.getShort(index) & 0xFFFFL;
+            case 4:
+                return buffer.getInt(index) & 0xFFFFFFFFL;
+            case 8:
+                return buffer.getLong(index);
+            default:
+                long value = 0;
+                for (int i = 0; i < elementBytes; ++i) {
+                    value = (value << 8) | (buffer.get(index + i) & 0xFFL);
+                }
+                return value;
+        }
+    }
+
+    private static double unsignedToDouble(long value) {
+        if (value >= 0) {
+            return value;
+        }
+        // Above Long.MAX_VALUE; halve, keeping the low bit for rounding
+        return ((value >>> 1) | (value & 1)) * 2.0;
+    }
+
+    /** Destination for run-length decoded elements. */
+    private abstract static class RunTarget {
+        abstract void fill(int from, int to, long value);
+    }
+
+    /** Run target for IEEE floating point elements, where the values are the raw bits. */
+    private static final class DoubleTarget extends RunTarget {
+        double[] dst;
+        boolean singlePrecision;
+
+        @Override
+        void fill(int from, int to, long value) {
+            double element =
+                    singlePrecision
+                            ? Float.intBitsToFloat((int) value)
+                            : Double.longBitsToDouble(value);
+            Arrays.fill(dst, from, to, element);
+        }
+    }
+
+    private static final class LongTarget extends RunTarget {
+        long[] dst;
+
+        @Override
+        void fill(int from, int to, long value) {
+            Arrays.fill(dst, from, to, value);
+        }
+    }
+
+    private static final class BooleanTarget extends RunTarget {
+        boolean[] dst;
+
+        @Override
+        void fill(int from, int to, long value) {
+            Arrays.fill(dst, from, to, value != 0);
+        }
+    }
+}
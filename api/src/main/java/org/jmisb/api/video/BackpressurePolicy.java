@@ -0,0 +1,17 @@
+package org.jmisb.api.video;
+
+/**
+ * Behaviour of a video input when decoded frames are produced faster than listeners consume them.
+ *
+ * <p>The policy applies to the queues of decoded video and metadata frames waiting to be delivered
+ * to listeners. Compressed packets waiting to be decoded are never dropped, since that would
+ * corrupt subsequent video frames.
+ */
+public enum BackpressurePolicy {
+    /** Block the decoder until there is room. No frames are lost. */
+    Block,
+    /** Discard the oldest queued frame to make room. Keeps latency low for live streams. */
+    DropOldest,
+    /** Discard the newly decoded frame. */
+    DropNewest;
+}
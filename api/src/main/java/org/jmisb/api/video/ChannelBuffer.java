@@ -0,0 +1,89 @@
+package org.jmisb.api.video;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Read buffer over a byte channel.
+ *
+ * <p>The buffer is kept in read mode: the bytes between its position and limit have been read from
+ * the channel but not yet consumed. It grows if a caller requests more bytes than it can hold.
+ */
+class ChannelBuffer {
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private boolean endOfChannel;
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel to read from
+     * @param capacity The initial buffer capacity in bytes
+     */
+    ChannelBuffer(ReadableByteChannel channel, int capacity) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.buffer.flip();
+    }
+
+    /**
+     * Make at least {@code count} unconsumed bytes available, reading from the channel if needed.
+     *
+     * @param count The number of bytes required
+     * @return True if the bytes are available, false if the channel ended first
+     * @throws IOException if the channel could not be read
+     */
+    boolean request(int count) throws IOException {
+        if (buffer.remaining() >= count) {
+            return true;
+        }
+        if (endOfChannel) {
+            return false;
+        }
+        if (buffer.capacity() < count) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(count, buffer.capacity() * 2));
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < count) {
+            if (channel.read(buffer) < 0) {
+                endOfChannel = true;
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= count;
+    }
+
+    /**
+     * Get the buffer.
+     *
+     * <p>The returned buffer is only valid until the next call to {@link #request(int)}.
+     *
+     * @return The buffer, positioned at the first unconsumed byte
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Consume bytes.
+     *
+     * @param count The number of bytes to consume, which must be available
+     */
+    void skip(int count) {
+        buffer.position(buffer.position() + count);
+    }
+
+    /**
+     * Get the number of unconsumed bytes.
+     *
+     * @return The number of bytes available without reading from the channel
+     */
+    int remaining() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,16 @@
+package org.jmisb.api.video;
+
+/**
+ * A decoded frame waiting in the video queue, either a {@link VideoFrame} or {@link RawVideoFrame}.
+ */
+interface DecodedFrame extends AutoCloseable {
+    /**
+     * Get the presentation timestamp.
+     *
+     * @return The presentation timestamp, in seconds
+     */
+    double getPts();
+
+    @Override
+    void close();
+}
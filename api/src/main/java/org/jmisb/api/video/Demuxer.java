@@ -1,8 +1,9 @@
 package org.jmisb.api.video;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 import org.bytedeco.ffmpeg.avcodec.AVPacket;
 import org.bytedeco.ffmpeg.avformat.AVFormatContext;
 import org.bytedeco.ffmpeg.avformat.AVStream;
@@ -12,11 +13,12 @@ import org.jmisb.core.video.FfmpegUtils;
 abstract class Demuxer extends ProcessingThread {
 
     final AVFormatContext avFormatContext;
-    VideoDecodeThread videoDecodeThread;
-    Map<Integer, MetadataDecodeThread> metadataDecodeThreads = new HashMap<>(3);
+    volatile VideoDecodeThread videoDecodeThread;
+    Map<Integer, MetadataDecodeThread> metadataDecodeThreads = new ConcurrentHashMap<>(3);
     int videoStreamIndex;
     List<Integer> dataStreamIndices;
     private final VideoInputOptions options;
+    private InputStatistics statistics;
 
     Demuxer(AVFormatContext avFormatContext, VideoInputOptions options) {
         this.avFormatContext = avFormatContext;
@@ -41,6 +43,18 @@ abstract class Demuxer extends ProcessingThread {
                 metadataDecodeThreads.put(streamIndex, metadataDecodeThread);
             }
         }
+
+        statistics = videoInput.getStatistics();
+        VideoDecodeThread videoThread = videoDecodeThread;
+        statistics.setPacketQueues(
+                videoThread != null ? videoThread::getQueueDepth : null,
+                () -> {
+                    int depth = 0;
+                    for (MetadataDecodeThread thread : metadataDecodeThreads.values()) {
+                        depth += thread.getQueueDepth();
+                    }
+                    return depth;
+                });
     }
 
     boolean shouldDecode(AVPacket packet) {
@@ -54,6 +68,54 @@ abstract class Demuxer extends ProcessingThread {
         return shouldDecode;
     }
 
+    /**
+     * Record a packet read from the input in the statistics.
+     *
+     * <p>Called once per packet, however many attempts it takes to queue it.
+     *
+     * @param packet The packet
+     */
+    void countDemuxed(AVPacket packet) {
+        if (packet.stream_index() == videoStreamIndex) {
+            statistics.videoPacketDemuxed();
+        } else if (metadataDecodeThreads.containsKey(packet.stream_index())) {
+            statistics.metadataPacketDemuxed();
+        }
+    }
+
+    /**
+     * Hand a packet to the decoder for its stream.
+     *
+     * <p>Blocks while the decoder's input queue is full.
+     *
+     * @param packet The packet, which is cloned if queued
+     * @param abort Condition under which to stop waiting for the decoder
+     * @return True if the packet was queued, or does not belong to a decoded stream
+     */
+    boolean enqueue(AVPacket packet, BooleanSupplier abort) {
+        if (packet.stream_index() == videoStreamIndex) {
+            return videoDecodeThread.enqueue(packet, abort);
+        }
+        MetadataDecodeThread metadataDecodeThread =
+                metadataDecodeThreads.get(packet.stream_index());
+        if (metadataDecodeThread != null) {
+            return metadataDecodeThread.enqueue(packet, abort);
+        }
+        return true;
+    }
+
+    @Override
+    protected void wakeup() {
+        // We may be blocked handing a packet to one of the decoders
+        VideoDecodeThread videoThread = videoDecodeThread;
+        if (videoThread != null) {
+            videoThread.wakeup();
+        }
+        for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
+            metadataDecodeThread.wakeup();
+        }
+    }
+
     void shutdownThreads() {
         if (videoDecodeThread != null) {
             videoDecodeThread.shutdown();
@@ -1,8 +1,9 @@
 package org.jmisb.api.video;
 
-import static org.bytedeco.ffmpeg.global.avformat.AVSEEK_FLAG_BACKWARD;
+import static org.bytedeco.ffmpeg.global.avformat.AVSEEK_FLAG_BYTE;
 import static org.bytedeco.ffmpeg.global.avformat.av_guess_frame_rate;
 import static org.bytedeco.ffmpeg.global.avformat.av_read_frame;
+import static org.bytedeco.ffmpeg.global.avformat.av_seek_frame;
 import static org.bytedeco.ffmpeg.global.avformat.avformat_flush;
 import static org.bytedeco.ffmpeg.global.avformat.avformat_seek_file;
 import static org.bytedeco.ffmpeg.global.avutil.AVERROR_EOF;
@@ -71,26 +72,43 @@ class DemuxerUtils {
     }
 
     /**
-     * Seek to the specified position.
+     * Seek to a key frame found using a {@link FrameIndex}.
+     *
+     * <p>Transport streams have no index of their own, so FFmpeg seeks them by bisecting the file
+     * on timestamps. When the byte position of the key frame is known, it is used instead to go
+     * straight to the frame. Other containers are seeked by timestamp, constrained so as not to
+     * land after the key frame.
      *
      * @param avFormatContext The format context
-     * @param seekPosition The position
+     * @param videoStreamIndex Index of the video stream
+     * @param bytePosition Byte position of the key frame's packet, or -1 if not known
+     * @param timestamp Presentation timestamp of the key frame, in video stream time base units
      */
-    static void seek(AVFormatContext avFormatContext, double seekPosition) {
-        long microseconds = Math.round(seekPosition * 1000000);
+    static void seekToKeyFrame(
+            AVFormatContext avFormatContext,
+            int videoStreamIndex,
+            long bytePosition,
+            long timestamp) {
         if (logger.isDebugEnabled()) {
-            logger.debug("Seeking to " + microseconds + "us");
+            logger.debug("Seeking to key frame at " + timestamp + ", byte " + bytePosition);
         }
 
-        if (avformat_seek_file(
-                        avFormatContext,
-                        -1,
-                        Long.MIN_VALUE,
-                        microseconds,
-                        Long.MAX_VALUE,
-                        AVSEEK_FLAG_BACKWARD)
-                < 0) {
-            logger.error("Error seeking to " + seekPosition);
+        int ret = -1;
+        if (bytePosition >= 0 && "mpegts".equals(avFormatContext.iformat().name().getString())) {
+            ret = av_seek_frame(avFormatContext, videoStreamIndex, bytePosition, AVSEEK_FLAG_BYTE);
+        }
+        if (ret < 0) {
+            ret =
+                    avformat_seek_file(
+                            avFormatContext,
+                            videoStreamIndex,
+                            Long.MIN_VALUE,
+                            timestamp,
+                            timestamp,
+                            0);
+        }
+        if (ret < 0) {
+            logger.error("Error seeking to key frame at " + timestamp);
         }
         avformat_flush(avFormatContext);
     }
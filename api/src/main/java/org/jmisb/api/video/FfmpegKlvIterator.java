@@ -0,0 +1,111 @@
+package org.jmisb.api.video;
+
+import static org.bytedeco.ffmpeg.global.avcodec.AVDISCARD_ALL;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_unref;
+import static org.bytedeco.ffmpeg.global.avformat.av_read_frame;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_close_input;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_find_stream_info;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_open_input;
+import static org.bytedeco.ffmpeg.global.avutil.AVERROR_EOF;
+import static org.bytedeco.ffmpeg.global.avutil.av_q2d;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.javacpp.PointerPointer;
+import org.jmisb.core.video.FfmpegUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterator over the KLV metadata in any container FFmpeg can read.
+ *
+ * <p>Packets are read directly from the demuxer on the calling thread. Streams other than the KLV
+ * data streams are discarded, so their packets are never returned by the demuxer, and nothing is
+ * decoded.
+ */
+class FfmpegKlvIterator extends MetadataFrameIterator {
+    private static Logger logger = LoggerFactory.getLogger(FfmpegKlvIterator.class);
+    private final String url;
+    private final Map<Integer, Double> timeBases = new HashMap<>();
+    private AVFormatContext formatContext;
+    private AVPacket packet;
+
+    /**
+     * Constructor.
+     *
+     * @param url The file or URL to read
+     * @throws IOException if the input could not be opened
+     */
+    FfmpegKlvIterator(String url) throws IOException {
+        this.url = url;
+        formatContext = new AVFormatContext(null);
+        int ret = avformat_open_input(formatContext, url, null, null);
+        if (ret < 0) {
+            formatContext = null;
+            throw new IOException("Could not open input " + url);
+        }
+        if ((ret = avformat_find_stream_info(formatContext, (PointerPointer) null)) < 0) {
+            close();
+            throw new IOException(
+                    "avformat_find_stream_info() error "
+                            + ret
+                            + ": Could not find stream information.");
+        }
+
+        List<Integer> dataStreams = FfmpegUtils.getDataStreamIndices(formatContext);
+        for (int i = 0; i < formatContext.nb_streams(); ++i) {
+            if (dataStreams.contains(i)) {
+                timeBases.put(
+                        i, av_q2d(FfmpegUtils.getStreamByIndex(formatContext, i).time_base()));
+            } else {
+                FfmpegUtils.getStreamByIndex(formatContext, i).discard(AVDISCARD_ALL);
+            }
+        }
+        if (timeBases.isEmpty()) {
+            logger.warn("No KLV metadata stream found in " + url);
+        }
+        packet = av_packet_alloc();
+    }
+
+    @Override
+    protected boolean readNext() throws IOException {
+        if (formatContext == null || timeBases.isEmpty()) {
+            return false;
+        }
+        int ret = av_read_frame(formatContext, packet);
+        if (ret == AVERROR_EOF) {
+            return false;
+        } else if (ret < 0) {
+            throw new IOException("Error reading " + url + ": " + FfmpegUtils.formatError(ret));
+        }
+        try {
+            Double timeBase = timeBases.get(packet.stream_index());
+            if (timeBase != null) {
+                parse(
+                        packet.data().capacity(packet.size()).asByteBuffer(),
+                        packet.pts() * timeBase);
+            }
+        } finally {
+            av_packet_unref(packet);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (packet != null) {
+            av_packet_free(packet);
+            packet = null;
+        }
+        if (formatContext != null) {
+            avformat_close_input(formatContext);
+            formatContext = null;
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package org.jmisb.api.video;
 
 import static org.bytedeco.ffmpeg.global.avcodec.av_packet_unref;
-import static org.jmisb.core.video.TimingUtils.shortWait;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import org.bytedeco.ffmpeg.avcodec.AVPacket;
 import org.bytedeco.ffmpeg.avformat.AVFormatContext;
 import org.jmisb.core.video.FfmpegUtils;
@@ -13,12 +13,23 @@ import org.slf4j.LoggerFactory;
 class FileDemuxer extends Demuxer {
 
     private static Logger logger = LoggerFactory.getLogger(FileDemuxer.class);
+
+    /** Number of read errors in a row after which the input is treated as ended. */
+    private static final int MAX_CONSECUTIVE_ERRORS = 10;
+
+    /** How long to wait before retrying a read that had no data available. */
+    private static final long EAGAIN_WAIT_MILLIS = 10;
+
     private final VideoInput inputStream;
 
     private double videoFrameRate;
 
-    private boolean seekRequested = false;
-    private double seekPosition;
+    /** Guards seek requests, and is signalled when a seek completes or the demuxer stops. */
+    private final Object seekLock = new Object();
+
+    private volatile boolean seekRequested = false;
+    private FrameIndex seekIndex;
+    private int seekFrame;
 
     FileDemuxer(
             VideoInput inputStream,
@@ -38,6 +49,7 @@ class FileDemuxer extends Demuxer {
         createDecodeThreads(inputStream);
 
         AVPacket packet = new AVPacket();
+        int consecutiveErrors = 0;
         while (!isShutdown()) {
             // If paused, sleep until play() or shutdown() is called
             // TODO: There does not seem to be a good reason to pause this demuxer thread; consider
@@ -49,67 +61,51 @@ class FileDemuxer extends Demuxer {
 
             // Check if we were asked to seek
             if (seekRequested) {
-                // Pause the decoder threads
-                if (videoDecodeThread != null) {
-                    videoDecodeThread.pause();
-                }
-                for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
-                    if (metadataDecodeThread != null) {
-                        metadataDecodeThread.pause();
-                    }
-                }
-
-                // Perform the seek
-                DemuxerUtils.seek(avFormatContext, seekPosition);
-
-                // Reset the decoders
-                if (videoDecodeThread != null) {
-                    videoDecodeThread.clear();
-                }
-                for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
-                    if (metadataDecodeThread != null) {
-                        metadataDecodeThread.clear();
-                    }
-                }
-                // Resume decoding
-                if (videoDecodeThread != null) {
-                    videoDecodeThread.play();
-                }
-                for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
-                    if (metadataDecodeThread != null) {
-                        metadataDecodeThread.play();
-                    }
-                }
-                seekRequested = false;
+                performSeek();
+                consecutiveErrors = 0;
             }
 
             // Read a packet from the stream
             DemuxReturnValue ret = DemuxerUtils.readPacket(avFormatContext, packet);
             if (ret == DemuxReturnValue.EOF) {
-                if (videoDecodeThread != null) {
-                    videoDecodeThread.notifyEOF();
-                }
-                for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
-                    if (metadataDecodeThread != null) {
-                        metadataDecodeThread.notifyEOF();
-                    }
-                }
+                markEndOfFile();
+
+                // Nothing more to read until a seek is requested or we are shut down
+                awaitSeekOrShutdown();
+                continue;
+            }
+            if (ret == DemuxReturnValue.EAGAIN) {
+                // Nothing available yet; back off briefly, unless a seek or shutdown arrives
+                awaitSeekOrShutdown(EAGAIN_WAIT_MILLIS);
+                continue;
             }
-            if (ret != DemuxReturnValue.SUCCESS) {
-                shortWait(10);
+            if (ret == DemuxReturnValue.ERROR) {
+                // Skip over a bad packet, but treat repeated failures as the end of the input
+                // rather than retrying a read that makes no progress
+                if (++consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
+                    logger.warn(
+                            "Repeated read errors, treating as end of file: "
+                                    + inputStream.getUrl());
+                    consecutiveErrors = 0;
+                    markEndOfFile();
+                    awaitSeekOrShutdown();
+                }
                 continue;
             }
+            consecutiveErrors = 0;
+
+            if (shouldDecode(packet)) {
+                countDemuxed(packet);
+            }
 
-            // double pts = packet.pts() *
-            // av_q2d(avFormatContext.streams(packet.stream_index()).time_base());
-            // Pass packet to the appropriate decoder
-            boolean queued = false;
-            while (shouldDecode(packet) && !queued && !isShutdown() && !seekRequested) {
-                if (packet.stream_index() == videoStreamIndex) {
-                    queued = videoDecodeThread.enqueue(packet);
-                } else if (dataStreamIndices.contains(packet.stream_index())) {
-                    // logger.debug("Data PTS: " + pts);
-                    queued = metadataDecodeThreads.get(packet.stream_index()).enqueue(packet);
+            // Pass packet to the appropriate decoder, waiting while its queue is full
+            while (shouldDecode(packet) && !isShutdown() && !seekRequested) {
+                if (enqueue(packet, this::isInterruptRequested)) {
+                    break;
+                }
+                // Stopped waiting because of a pause request; wait for play(), then retry
+                if (pauseOrResume()) {
+                    break;
                 }
             }
 
@@ -123,6 +119,145 @@ class FileDemuxer extends Demuxer {
 
         // Clean up resources
         shutdownThreads();
+
+        // Release anyone waiting on a seek that will never happen
+        synchronized (seekLock) {
+            seekRequested = false;
+            seekLock.notifyAll();
+        }
+    }
+
+    /** Seek to the requested position, pausing and flushing the decoders while doing so. */
+    private void performSeek() {
+        // Pause the decoder threads
+        if (videoDecodeThread != null) {
+            videoDecodeThread.pause();
+        }
+        for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
+            if (metadataDecodeThread != null) {
+                metadataDecodeThread.pause();
+            }
+        }
+
+        // Nothing decoded before the seek is wanted any more
+        inputStream.clearDecodedQueues();
+
+        // Perform the seek, to the key frame the requested frame depends on
+        FrameIndex index;
+        int frame;
+        synchronized (seekLock) {
+            index = seekIndex;
+            frame = seekFrame;
+        }
+        int keyFrame = index.findKeyFrame(frame);
+        DemuxerUtils.seekToKeyFrame(
+                avFormatContext,
+                videoStreamIndex,
+                index.getFramePosition(keyFrame),
+                index.getFrameTimestamp(keyFrame));
+
+        // Reset the decoders, which discard anything before the requested frame
+        double targetPts = index.getFramePts(frame);
+        if (videoDecodeThread != null) {
+            videoDecodeThread.clear(targetPts);
+        }
+        for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
+            if (metadataDecodeThread != null) {
+                metadataDecodeThread.clear(targetPts);
+            }
+        }
+        // Resume decoding
+        if (videoDecodeThread != null) {
+            videoDecodeThread.play();
+        }
+        for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
+            if (metadataDecodeThread != null) {
+                metadataDecodeThread.play();
+            }
+        }
+
+        synchronized (seekLock) {
+            seekRequested = false;
+            seekLock.notifyAll();
+        }
+    }
+
+    /**
+     * Tell the decoders no more packets are coming, and notify the input once they have all
+     * finished decoding.
+     */
+    private void markEndOfFile() {
+        int decoderCount = metadataDecodeThreads.size() + (videoDecodeThread != null ? 1 : 0);
+        if (decoderCount == 0) {
+            notifyEndOfFile();
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(decoderCount);
+        Runnable onDrained =
+                () -> {
+                    if (remaining.decrementAndGet() == 0) {
+                        notifyEndOfFile();
+                    }
+                };
+        if (videoDecodeThread != null) {
+            videoDecodeThread.markEndOfFile(onDrained);
+        }
+        for (MetadataDecodeThread metadataDecodeThread : metadataDecodeThreads.values()) {
+            metadataDecodeThread.markEndOfFile(onDrained);
+        }
+    }
+
+    /** Notify the input that the end of file has been reached and decoded. */
+    private void notifyEndOfFile() {
+        if (inputStream instanceof IVideoFileInput) {
+            IVideoFileInput fileInputStream = (IVideoFileInput) inputStream;
+            fileInputStream.notifyEOF();
+        }
+    }
+
+    /** Block until a seek or shutdown is requested. */
+    private void awaitSeekOrShutdown() {
+        synchronized (seekLock) {
+            while (!seekRequested && !isShutdown()) {
+                try {
+                    seekLock.wait();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Block until a seek, pause or shutdown is requested, or a timeout expires.
+     *
+     * @param millis The maximum time to wait, in milliseconds
+     */
+    private void awaitSeekOrShutdown(long millis) {
+        synchronized (seekLock) {
+            if (!seekRequested && !isShutdownOrPauseRequested()) {
+                try {
+                    seekLock.wait(millis);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether a blocked hand-off to a decoder should give up.
+     *
+     * @return True if a shutdown, pause or seek has been requested
+     */
+    private boolean isInterruptRequested() {
+        return isShutdownOrPauseRequested() || seekRequested;
+    }
+
+    @Override
+    protected void wakeup() {
+        super.wakeup();
+        synchronized (seekLock) {
+            seekLock.notifyAll();
+        }
     }
 
     @Override
@@ -151,17 +286,29 @@ class FileDemuxer extends Demuxer {
         }
     }
 
-    void seek(double position) {
+    /**
+     * Seek to a video frame, blocking until the seek has been performed.
+     *
+     * @param index The frame index for the file
+     * @param frame The frame number, in presentation order
+     */
+    void seek(FrameIndex index, int frame) {
         // Notify our thread that a seek has been requested
-        seekRequested = true;
-        seekPosition = position;
+        synchronized (seekLock) {
+            seekIndex = index;
+            seekFrame = frame;
+            seekRequested = true;
+        }
+        wakeup();
 
         // Block until seek has been performed
-        // TODO: this seems potentially dangerous
-        while (seekRequested) {
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException ignored) {
+        synchronized (seekLock) {
+            while (seekRequested && isAlive()) {
+                try {
+                    seekLock.wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
             }
         }
     }
@@ -0,0 +1,513 @@
+package org.jmisb.api.video;
+
+import static org.bytedeco.ffmpeg.global.avcodec.AV_PKT_FLAG_KEY;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_unref;
+import static org.bytedeco.ffmpeg.global.avformat.av_read_frame;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_close_input;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_find_stream_info;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_open_input;
+import static org.bytedeco.ffmpeg.global.avutil.AVERROR_EOF;
+import static org.bytedeco.ffmpeg.global.avutil.AV_NOPTS_VALUE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.ffmpeg.avutil.AVRational;
+import org.bytedeco.javacpp.PointerPointer;
+import org.jmisb.core.video.FfmpegUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the video frames and metadata packets in a file.
+ *
+ * <p>The index records the presentation timestamp, byte position and key frame flag of every video
+ * frame (in presentation order), and the timestamp and byte position of every KLV metadata packet.
+ * It allows a {@link VideoFileInput} to seek directly to the group of pictures holding a given
+ * frame, and deliver exactly that frame.
+ *
+ * <p>Building an index requires reading the whole file. Indexes can be saved to a sidecar file
+ * alongside the video (see {@link #getSidecarPath(String)}), and reused for as long as the video
+ * file is unchanged.
+ */
+public class FrameIndex {
+    private static Logger logger = LoggerFactory.getLogger(FrameIndex.class);
+
+    /** Extension appended to the video file name to give the sidecar file name. */
+    public static final String SIDECAR_EXTENSION = ".jmisbidx";
+
+    private static final int MAGIC = 0x4A4D4958; // "JMIX"
+    private static final int FORMAT_VERSION = 1;
+
+    /** Length of the fixed fields at the start of an index file. */
+    private static final int HEADER_LENGTH = 36;
+
+    /** Length of each frame record: timestamp and position. */
+    private static final int FRAME_RECORD_LENGTH = 16;
+
+    /** Length of each metadata record: timestamp and position. */
+    private static final int METADATA_RECORD_LENGTH = 16;
+
+    private final int timeBaseNum;
+    private final int timeBaseDen;
+    private final long[] framePts;
+    private final long[] framePositions;
+    private final BitSet keyFrames;
+    private final double[] metadataPts;
+    private final long[] metadataPositions;
+    private long fileSize = -1;
+    private long fileModified = -1;
+
+    private FrameIndex(
+            int timeBaseNum,
+            int timeBaseDen,
+            long[] framePts,
+            long[] framePositions,
+            BitSet keyFrames,
+            double[] metadataPts,
+            long[] metadataPositions) {
+        this.timeBaseNum = timeBaseNum;
+        this.timeBaseDen = timeBaseDen;
+        this.framePts = framePts;
+        this.framePositions = framePositions;
+        this.keyFrames = keyFrames;
+        this.metadataPts = metadataPts;
+        this.metadataPositions = metadataPositions;
+    }
+
+    /**
+     * Build an index by reading a file.
+     *
+     * @param filename The video file
+     * @return The index
+     * @throws IOException if the file could not be read, or has no video stream
+     */
+    public static FrameIndex build(String filename) throws IOException {
+        AVFormatContext formatContext = new AVFormatContext(null);
+        if (avformat_open_input(formatContext, filename, null, null) < 0) {
+            throw new IOException("Could not open input " + filename);
+        }
+        try {
+            if (avformat_find_stream_info(formatContext, (PointerPointer) null) < 0) {
+                throw new IOException("Could not find stream information in " + filename);
+            }
+            FrameIndex index = scan(formatContext);
+            index.recordFile(Paths.get(filename));
+            return index;
+        } finally {
+            avformat_close_input(formatContext);
+        }
+    }
+
+    /**
+     * Build an index by reading all packets from an open format context.
+     *
+     * <p>The context is left at the end of the file; the caller is responsible for seeking back.
+     *
+     * @param formatContext The format context
+     * @return The index
+     * @throws IOException if the context has no video stream
+     */
+    static FrameIndex scan(AVFormatContext formatContext) throws IOException {
+        int videoStreamIndex = FfmpegUtils.getVideoStreamIndex(formatContext);
+        if (videoStreamIndex < 0) {
+            throw new IOException("No video stream to index");
+        }
+        List<Integer> dataStreamIndices = FfmpegUtils.getDataStreamIndices(formatContext);
+        AVRational timeBase =
+                FfmpegUtils.getStreamByIndex(formatContext, videoStreamIndex).time_base();
+        double[] dataTimeBases = new double[formatContext.nb_streams()];
+        for (int streamIndex : dataStreamIndices) {
+            AVRational tb = FfmpegUtils.getStreamByIndex(formatContext, streamIndex).time_base();
+            dataTimeBases[streamIndex] = (double) tb.num() / tb.den();
+        }
+
+        LongList pts = new LongList();
+        LongList positions = new LongList();
+        BitSet keys = new BitSet();
+        LongList metadataPositions = new LongList();
+        double[] metadataPts = new double[64];
+
+        AVPacket packet = av_packet_alloc();
+        try {
+            int ret;
+            while ((ret = av_read_frame(formatContext, packet)) >= 0) {
+                long timestamp = packet.pts() != AV_NOPTS_VALUE ? packet.pts() : packet.dts();
+                if (packet.stream_index() == videoStreamIndex) {
+                    if ((packet.flags() & AV_PKT_FLAG_KEY) != 0) {
+                        keys.set(pts.size());
+                    }
+                    pts.add(timestamp);
+                    positions.add(packet.pos());
+                } else if (dataStreamIndices.contains(packet.stream_index())) {
+                    if (metadataPositions.size() == metadataPts.length) {
+                        metadataPts = Arrays.copyOf(metadataPts, metadataPts.length * 2);
+                    }
+                    metadataPts[metadataPositions.size()] =
+                            timestamp * dataTimeBases[packet.stream_index()];
+                    metadataPositions.add(packet.pos());
+                }
+                av_packet_unref(packet);
+            }
+            if (ret != AVERROR_EOF) {
+                logger.error("Error reading frame before EOF: " + FfmpegUtils.formatError(ret));
+            }
+        } finally {
+            av_packet_free(packet);
+        }
+
+        // Frames are read in decode order; sort into presentation order
+        int count = pts.size();
+        long[] framePts = pts.toArray();
+        long[] framePositions = positions.toArray();
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(framePts[a], framePts[b]));
+        long[] sortedPts = new long[count];
+        long[] sortedPositions = new long[count];
+        BitSet sortedKeys = new BitSet(count);
+        for (int i = 0; i < count; ++i) {
+            sortedPts[i] = framePts[order[i]];
+            sortedPositions[i] = framePositions[order[i]];
+            sortedKeys.set(i, keys.get(order[i]));
+        }
+
+        return new FrameIndex(
+                timeBase.num(),
+                timeBase.den(),
+                sortedPts,
+                sortedPositions,
+                sortedKeys,
+                Arrays.copyOf(metadataPts, metadataPositions.size()),
+                metadataPositions.toArray());
+    }
+
+    /**
+     * Get the path of the sidecar file for a video file.
+     *
+     * @param filename The video file
+     * @return The path of its sidecar index file
+     */
+    public static Path getSidecarPath(String filename) {
+        return Paths.get(filename + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Load the sidecar index for a video file, if it exists and is up to date.
+     *
+     * @param filename The video file
+     * @return The index, or null if there is no sidecar, or it does not match the video file
+     */
+    public static FrameIndex loadSidecar(String filename) {
+        Path sidecar = getSidecarPath(filename);
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        try {
+            FrameIndex index = load(sidecar);
+            if (index.matches(Paths.get(filename))) {
+                return index;
+            }
+            logger.debug("Ignoring out of date index " + sidecar);
+        } catch (IOException e) {
+            logger.warn("Could not read index " + sidecar + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Save the index as the sidecar for a video file.
+     *
+     * @param filename The video file
+     * @throws IOException if the sidecar could not be written
+     */
+    public void saveSidecar(String filename) throws IOException {
+        recordFile(Paths.get(filename));
+        save(getSidecarPath(filename));
+    }
+
+    /**
+     * Load an index from a file.
+     *
+     * @param path The index file
+     * @return The index
+     * @throws IOException if the file could not be read, or is not a valid index
+     */
+    public static FrameIndex load(Path path) throws IOException {
+        long remaining = Files.size(path) - HEADER_LENGTH;
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a supported frame index: " + path);
+            }
+            long fileSize = in.readLong();
+            long fileModified = in.readLong();
+            int timeBaseNum = in.readInt();
+            int timeBaseDen = in.readInt();
+            if (timeBaseNum <= 0 || timeBaseDen <= 0) {
+                throw new IOException("Invalid time base in frame index: " + path);
+            }
+            int frameCount = in.readInt();
+            remaining = checkCount(frameCount, FRAME_RECORD_LENGTH, remaining, "frame", path);
+            long[] framePts = new long[frameCount];
+            long[] framePositions = new long[frameCount];
+            for (int i = 0; i < frameCount; ++i) {
+                framePts[i] = in.readLong();
+                framePositions[i] = in.readLong();
+                if (i > 0 && framePts[i] < framePts[i - 1]) {
+                    throw new IOException("Frames out of order in frame index: " + path);
+                }
+            }
+            int keyLength = in.readInt();
+            remaining = checkCount(keyLength, 1, remaining - Integer.BYTES, "key frame", path);
+            byte[] keyBytes = new byte[keyLength];
+            in.readFully(keyBytes);
+            int metadataCount = in.readInt();
+            checkCount(
+                    metadataCount,
+                    METADATA_RECORD_LENGTH,
+                    remaining - Integer.BYTES,
+                    "metadata",
+                    path);
+            double[] metadataPts = new double[metadataCount];
+            long[] metadataPositions = new long[metadataCount];
+            for (int i = 0; i < metadataCount; ++i) {
+                metadataPts[i] = in.readDouble();
+                metadataPositions[i] = in.readLong();
+            }
+            FrameIndex index =
+                    new FrameIndex(
+                            timeBaseNum,
+                            timeBaseDen,
+                            framePts,
+                            framePositions,
+                            BitSet.valueOf(keyBytes),
+                            metadataPts,
+                            metadataPositions);
+            index.fileSize = fileSize;
+            index.fileModified = fileModified;
+            return index;
+        }
+    }
+
+    /**
+     * Check a count read from an index file against the bytes remaining in the file.
+     *
+     * @param count The number of records
+     * @param recordLength The length of each record, in bytes
+     * @param remaining The number of bytes remaining in the file
+     * @param what Description of the records, for the error message
+     * @param path The index file
+     * @return The number of bytes remaining after the records
+     * @throws IOException if the count is negative, or the records would not fit in the file
+     */
+    private static long checkCount(
+            int count, int recordLength, long remaining, String what, Path path)
+            throws IOException {
+        long length = (long) count * recordLength;
+        if (count < 0 || length > remaining) {
+            throw new IOException("Invalid " + what + " count " + count + " in index: " + path);
+        }
+        return remaining - length;
+    }
+
+    /**
+     * Save the index to a file.
+     *
+     * @param path The index file
+     * @throws IOException if the file could not be written
+     */
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(fileModified);
+            out.writeInt(timeBaseNum);
+            out.writeInt(timeBaseDen);
+            out.writeInt(framePts.length);
+            for (int i = 0; i < framePts.length; ++i) {
+                out.writeLong(framePts[i]);
+                out.writeLong(framePositions[i]);
+            }
+            byte[] keyBytes = keyFrames.toByteArray();
+            out.writeInt(keyBytes.length);
+            out.write(keyBytes);
+            out.writeInt(metadataPts.length);
+            for (int i = 0; i < metadataPts.length; ++i) {
+                out.writeDouble(metadataPts[i]);
+                out.writeLong(metadataPositions[i]);
+            }
+        }
+    }
+
+    /**
+     * Record the size and modification time of the indexed file.
+     *
+     * @param file The video file
+     */
+    private void recordFile(Path file) {
+        try {
+            fileSize = Files.size(file);
+            fileModified = Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            logger.debug("Could not read attributes of " + file, e);
+        }
+    }
+
+    /**
+     * Check whether the index was built from a file as it is now.
+     *
+     * @param file The video file
+     * @return True if the file has the size and modification time recorded in the index
+     */
+    boolean matches(Path file) {
+        try {
+            return fileSize == Files.size(file)
+                    && fileModified == Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the number of video frames.
+     *
+     * @return The number of frames
+     */
+    public int getFrameCount() {
+        return framePts.length;
+    }
+
+    /**
+     * Get the presentation timestamp of a frame.
+     *
+     * @param frame The frame number, in presentation order
+     * @return The presentation timestamp, in seconds
+     */
+    public double getFramePts(int frame) {
+        return framePts[frame] * (double) timeBaseNum / timeBaseDen;
+    }
+
+    /**
+     * Get the presentation timestamp of a frame, in stream time base units.
+     *
+     * @param frame The frame number, in presentation order
+     * @return The presentation timestamp
+     */
+    long getFrameTimestamp(int frame) {
+        return framePts[frame];
+    }
+
+    /**
+     * Get the byte position of a frame's packet.
+     *
+     * @param frame The frame number, in presentation order
+     * @return The byte offset within the file, or -1 if not known
+     */
+    public long getFramePosition(int frame) {
+        return framePositions[frame];
+    }
+
+    /**
+     * Check whether a frame is a key frame.
+     *
+     * @param frame The frame number, in presentation order
+     * @return True if decoding can start at this frame
+     */
+    public boolean isKeyFrame(int frame) {
+        return keyFrames.get(frame);
+    }
+
+    /**
+     * Find the frame displayed at a given time.
+     *
+     * @param pts The presentation timestamp, in seconds
+     * @return The last frame with a timestamp at or before {@code pts}, or 0 if {@code pts} is
+     *     before the first frame
+     */
+    public int findFrame(double pts) {
+        long target = (long) Math.floor(pts * timeBaseDen / timeBaseNum + 1e-6);
+        int i = Arrays.binarySearch(framePts, target);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return Math.max(0, Math.min(i, framePts.length - 1));
+    }
+
+    /**
+     * Find the key frame from which to decode a given frame.
+     *
+     * @param frame The frame number, in presentation order
+     * @return The last key frame at or before {@code frame}, or 0 if there is none
+     */
+    public int findKeyFrame(int frame) {
+        int key = keyFrames.previousSetBit(frame);
+        return key < 0 ? 0 : key;
+    }
+
+    /**
+     * Get the number of metadata packets.
+     *
+     * @return The number of KLV packets
+     */
+    public int getMetadataPacketCount() {
+        return metadataPts.length;
+    }
+
+    /**
+     * Get the presentation timestamp of a metadata packet.
+     *
+     * @param packet The packet number, in file order
+     * @return The presentation timestamp, in seconds
+     */
+    public double getMetadataPts(int packet) {
+        return metadataPts[packet];
+    }
+
+    /**
+     * Get the byte position of a metadata packet.
+     *
+     * @param packet The packet number, in file order
+     * @return The byte offset within the file, or -1 if not known
+     */
+    public long getMetadataPosition(int packet) {
+        return metadataPositions[packet];
+    }
+
+    /** Growable list of primitive longs. */
+    private static class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
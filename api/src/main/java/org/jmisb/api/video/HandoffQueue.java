@@ -0,0 +1,260 @@
+package org.jmisb.api.video;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue handing items from one pipeline stage to the next.
+ *
+ * <p>Producers and consumers block on conditions, so items are handed off as soon as they are
+ * available rather than on a polling interval. A blocked call is given a predicate to re-check when
+ * it is woken; callers that change that state (pause, seek, shutdown) call {@link #wakeAll()} so
+ * blocked threads can return promptly.
+ *
+ * <p>Items that are dropped or cleared are passed to a discard callback, so native resources can be
+ * released.
+ *
+ * @param <T> Item type
+ */
+class HandoffQueue<T> {
+    /** Outcomes of adding an item. */
+    private static final int QUEUED = 0;
+
+    private static final int DROPPED = 1;
+    private static final int ABORTED = 2;
+
+    /** Timeout value meaning wait until aborted. */
+    private static final long NO_TIMEOUT = -1;
+
+    private final ArrayDeque<T> items;
+    private final int capacity;
+    private final BackpressurePolicy policy;
+    private final Consumer<T> discard;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private long droppedCount;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Maximum number of queued items
+     * @param policy What to do when the queue is full
+     * @param discard Callback for items that are dropped or cleared
+     */
+    HandoffQueue(int capacity, BackpressurePolicy policy, Consumer<T> discard) {
+        this.items = new ArrayDeque<>(capacity);
+        this.capacity = capacity;
+        this.policy = policy;
+        this.discard = discard;
+    }
+
+    /**
+     * Add an item, applying the backpressure policy if the queue is full.
+     *
+     * <p>If the item is not queued, it is passed to the discard callback.
+     *
+     * @param item The item to add
+     * @param abort Checked before each wait; if it returns true a blocked call gives up
+     * @return True if the item was queued
+     */
+    boolean put(T item, BooleanSupplier abort) {
+        lock.lock();
+        try {
+            int result = add(item, abort, NO_TIMEOUT);
+            if (result == ABORTED) {
+                discard.accept(item);
+            }
+            return result == QUEUED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add an item, applying the backpressure policy if the queue is full, waiting no longer than
+     * the given timeout.
+     *
+     * <p>If the item is not queued, it is passed to the discard callback.
+     *
+     * @param item The item to add
+     * @param timeout Maximum time to wait for space in the queue
+     * @param unit Unit of the timeout
+     * @return True if the item was queued
+     */
+    boolean put(T item, long timeout, TimeUnit unit) {
+        lock.lock();
+        try {
+            int result = add(item, () -> false, Math.max(unit.toNanos(timeout), 0));
+            if (result == ABORTED) {
+                discard.accept(item);
+            }
+            return result == QUEUED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add an item, applying the backpressure policy if the queue is full, but leaving the item with
+     * the caller if a blocked call gives up.
+     *
+     * <p>This lets a producer hold on to an item across a pause and retry, so that nothing is lost
+     * under {@link BackpressurePolicy#Block}.
+     *
+     * @param item The item to add
+     * @param abort Checked before each wait; if it returns true a blocked call gives up
+     * @return True if the queue took the item (queued, or dropped by the backpressure policy),
+     *     false if waiting was aborted, in which case the caller still owns the item
+     */
+    boolean offer(T item, BooleanSupplier abort) {
+        lock.lock();
+        try {
+            return add(item, abort, NO_TIMEOUT) != ABORTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add an item with the lock held, returning QUEUED, DROPPED or ABORTED.
+     *
+     * <p>A blocked call gives up when {@code abort} returns true, or after {@code timeoutNanos}
+     * unless that is {@link #NO_TIMEOUT}.
+     */
+    private int add(T item, BooleanSupplier abort, long timeoutNanos) {
+        if (items.size() >= capacity) {
+            switch (policy) {
+                case DropNewest:
+                    droppedCount++;
+                    discard.accept(item);
+                    return DROPPED;
+                case DropOldest:
+                    droppedCount++;
+                    discard.accept(items.poll());
+                    break;
+                case Block:
+                default:
+                    while (items.size() >= capacity) {
+                        if (abort.getAsBoolean()) {
+                            return ABORTED;
+                        }
+                        if (timeoutNanos == NO_TIMEOUT) {
+                            notFull.awaitUninterruptibly();
+                            continue;
+                        }
+                        if (timeoutNanos <= 0) {
+                            return ABORTED;
+                        }
+                        try {
+                            timeoutNanos = notFull.awaitNanos(timeoutNanos);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return ABORTED;
+                        }
+                    }
+                    break;
+            }
+        }
+        items.add(item);
+        notEmpty.signal();
+        return QUEUED;
+    }
+
+    /**
+     * Remove the next item, waiting until one is available.
+     *
+     * @param abort Checked before taking an item and before each wait; if it returns true the call
+     *     returns null
+     * @return The next item, or null if aborted
+     */
+    T take(BooleanSupplier abort) {
+        lock.lock();
+        try {
+            while (true) {
+                if (abort.getAsBoolean()) {
+                    return null;
+                }
+                T item = items.poll();
+                if (item != null) {
+                    notFull.signal();
+                    return item;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wake all blocked producers and consumers so they re-check their abort conditions. */
+    void wakeAll() {
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Discard all queued items. */
+    void clear() {
+        lock.lock();
+        try {
+            T item;
+            while ((item = items.poll()) != null) {
+                discard.accept(item);
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check if the queue is empty.
+     *
+     * @return True if there are no queued items
+     */
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return items.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of queued items.
+     *
+     * @return The queue depth
+     */
+    int size() {
+        lock.lock();
+        try {
+            return items.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of items dropped by the backpressure policy.
+     *
+     * @return The number of dropped items, not including items removed by {@link #clear()}
+     */
+    long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
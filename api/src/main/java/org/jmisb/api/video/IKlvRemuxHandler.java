@@ -0,0 +1,39 @@
+package org.jmisb.api.video;
+
+import java.util.Collections;
+import java.util.List;
+import org.jmisb.api.klv.IMisbMessage;
+
+/** Modifies the KLV metadata passing through a {@link KlvRemuxer}. */
+@FunctionalInterface
+public interface IKlvRemuxHandler {
+    /**
+     * Called for each KLV packet read from the input.
+     *
+     * <p>The handler can return the messages to write instead, which may be a modified, shortened
+     * or extended version of {@code messages}. They are written as a single packet with the timing
+     * of the original. Returning null, or a list of the same message instances in the same order,
+     * copies the original packet unchanged.
+     *
+     * @param messages The messages in the packet, which the handler may modify
+     * @param pts The presentation timestamp in seconds, or {@link Double#NaN} if the packet has
+     *     none
+     * @return The messages to write, an empty list to drop the packet, or null to copy it unchanged
+     */
+    List<IMisbMessage> onMetadata(List<IMisbMessage> messages, double pts);
+
+    /**
+     * Called for each video packet read from the input, before it is written.
+     *
+     * <p>Any messages returned are inserted into the first KLV stream as a new packet with the same
+     * presentation timestamp as the video packet. The default implementation inserts nothing.
+     *
+     * @param pts The presentation timestamp in seconds, or {@link Double#NaN} if the packet has
+     *     none
+     * @param keyFrame True if the packet contains a key frame
+     * @return The messages to insert, or an empty list
+     */
+    default List<IMisbMessage> onVideoPacket(double pts, boolean keyFrame) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,18 @@
+package org.jmisb.api.video;
+
+/**
+ * Interface for raw video frame arrival notifications.
+ *
+ * <p>Raw frames are only produced by inputs opened with {@link
+ * VideoInputOptions#setRawVideo(boolean)} enabled.
+ */
+public interface IRawVideoListener {
+    /**
+     * Notification that a raw video frame has been received.
+     *
+     * <p>The listener must call {@link RawVideoFrame#close()} once it has finished with the frame.
+     *
+     * @param frame The video frame
+     */
+    void onRawVideoReceived(RawVideoFrame frame);
+}
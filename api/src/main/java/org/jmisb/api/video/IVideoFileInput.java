@@ -51,6 +51,36 @@ public interface IVideoFileInput extends IVideoInput {
      */
     void seek(double position);
 
+    /**
+     * Seek to a specified video frame.
+     *
+     * <p>The demuxer seeks directly to the key frame preceding the requested frame, and frames
+     * before the requested one are decoded but not delivered.
+     *
+     * <p>The default implementation assumes a constant frame rate, and seeks to the frame's nominal
+     * time using {@link #seek(double)}.
+     *
+     * @param frame The frame number, in presentation order, from 0 to {@link #getNumFrames()} - 1
+     */
+    default void seekToFrame(int frame) {
+        int numFrames = getNumFrames();
+        if (frame < 0 || frame >= numFrames) {
+            throw new IllegalArgumentException("Invalid frame number");
+        }
+        seek(getDuration() * frame / numFrames);
+    }
+
+    /**
+     * Get the index of video frames and metadata packets.
+     *
+     * <p>The default implementation returns null, for inputs that do not build an index.
+     *
+     * @return The index, or null if the file is not open or not indexed
+     */
+    default FrameIndex getFrameIndex() {
+        return null;
+    }
+
     /**
      * Get the number of video frames.
      *
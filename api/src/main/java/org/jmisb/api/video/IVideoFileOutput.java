@@ -30,12 +30,32 @@ public interface IVideoFileOutput extends AutoCloseable {
     /**
      * Append a {@link VideoFrame} to the file.
      *
+     * <p>The output takes over the caller's reference to the frame, and closes it once the image
+     * has been converted. This may be after the call returns (see {@link VideoFileOutput}), so the
+     * image must not be modified until the frame has been closed. A frame rejected as invalid is
+     * left with the caller.
+     *
      * @param frame The video frame to add
      * @throws IllegalArgumentException if the input frame is invalid
      * @throws IOException if the file could not be written
      */
     void addVideoFrame(VideoFrame frame) throws IOException;
 
+    /**
+     * Append a {@link RawVideoFrame} to the file.
+     *
+     * <p>This avoids conversion through {@link java.awt.image.BufferedImage} for images that are
+     * already in native memory, either received from a video input or wrapped with {@link
+     * RawVideoFrame#wrap}. Frames in the encoder's pixel format (YUV420P) are encoded with at most
+     * one copy; other formats are converted once. Ownership of the frame is as for {@link
+     * #addVideoFrame(VideoFrame)}.
+     *
+     * @param frame The video frame to add, which must be the size of the output
+     * @throws IllegalArgumentException if the input frame is invalid
+     * @throws IOException if the file could not be written
+     */
+    void addRawVideoFrame(RawVideoFrame frame) throws IOException;
+
     /**
      * Append a {@link MetadataFrame} to the file.
      *
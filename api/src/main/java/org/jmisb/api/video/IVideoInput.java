@@ -56,6 +56,23 @@ public interface IVideoInput extends AutoCloseable {
      */
     void removeFrameListener(IVideoListener listener);
 
+    /**
+     * Add a raw video frame listener.
+     *
+     * <p>Raw frames are only delivered if enabled using {@link
+     * VideoInputOptions#setRawVideo(boolean)}.
+     *
+     * @param listener Listener to add
+     */
+    void addRawFrameListener(IRawVideoListener listener);
+
+    /**
+     * Remove a raw video frame listener.
+     *
+     * @param listener Listener to remove
+     */
+    void removeRawFrameListener(IRawVideoListener listener);
+
     /**
      * Add a metadata listener.
      *
@@ -69,4 +86,13 @@ public interface IVideoInput extends AutoCloseable {
      * @param listener Listener to remove
      */
     void removeMetadataListener(IMetadataListener listener);
+
+    /**
+     * Get the statistics for the input pipeline.
+     *
+     * <p>The statistics are reset each time the input is opened, and are updated live.
+     *
+     * @return The statistics
+     */
+    InputStatistics getStatistics();
 }
@@ -42,12 +42,29 @@ public interface IVideoStreamOutput extends AutoCloseable {
     /**
      * Queue a {@link VideoFrame} for output.
      *
+     * <p>The stream takes over the caller's reference to the frame, and closes it once it has been
+     * encoded. The image must not be modified until then.
+     *
      * @param frame The video frame to send
      * @throws IllegalArgumentException if the input frame is invalid
      * @throws IOException if the stream could not be written
      */
     void queueVideoFrame(VideoFrame frame) throws IOException;
 
+    /**
+     * Queue a {@link RawVideoFrame} for output.
+     *
+     * <p>This avoids conversion through {@link java.awt.image.BufferedImage} for images that are
+     * already in native memory, either received from a video input or wrapped with {@link
+     * RawVideoFrame#wrap}. The stream takes over the caller's reference to the frame, and closes it
+     * once it has been encoded.
+     *
+     * @param frame The video frame to send, which must be the size of the output
+     * @throws IllegalArgumentException if the input frame is invalid
+     * @throws IOException if the stream could not be written
+     */
+    void queueRawVideoFrame(RawVideoFrame frame) throws IOException;
+
     /**
      * Queue a {@link MetadataFrame} for output.
      *
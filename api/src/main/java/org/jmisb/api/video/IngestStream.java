@@ -0,0 +1,358 @@
+package org.jmisb.api.video;
+
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_clone;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_unref;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_alloc_context;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_close_input;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_find_stream_info;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_free_context;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_open_input;
+import static org.bytedeco.ffmpeg.global.avutil.av_dict_free;
+import static org.bytedeco.ffmpeg.global.avutil.av_dict_set;
+import static org.bytedeco.ffmpeg.global.avutil.av_q2d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.ffmpeg.avformat.AVIOInterruptCB;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.IMisbMessage;
+import org.jmisb.api.klv.KlvParser;
+import org.jmisb.core.video.FfmpegUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single metadata input managed by a {@link KlvIngestEngine}.
+ *
+ * <p>Each stream owns one reader thread, which blocks in the demuxer and hands KLV packets to the
+ * engine's shared worker pool. Packets from the same stream are parsed and delivered to the
+ * listener one at a time, in the order they were read. When the listener falls behind, the reader
+ * blocks rather than dropping packets.
+ *
+ * <p>Instances are created using {@link KlvIngestEngine#open(String, IMetadataListener)}.
+ */
+public class IngestStream implements AutoCloseable {
+    private static Logger logger = LoggerFactory.getLogger(IngestStream.class);
+
+    /** Number of consecutive read errors after which the input is treated as having ended. */
+    private static final int MAX_CONSECUTIVE_ERRORS = 10;
+
+    /**
+     * Interrupt callback shared by all streams.
+     *
+     * <p>FFmpeg polls the callback very frequently while blocked in I/O, so it must not allocate.
+     * It finds the stream through {@link #CURRENT_STREAM} rather than the opaque pointer, and
+     * returns non-zero once the stream's interrupt flag has been set. A single instance is used
+     * since JavaCPP only allows a small number of callback instances per class.
+     */
+    private static final InterruptCallback INTERRUPT_CALLBACK = new InterruptCallback();
+
+    /** The stream whose format context is in use on the current thread, if any. */
+    private static final ThreadLocal<IngestStream> CURRENT_STREAM = new ThreadLocal<>();
+
+    private final String url;
+    private final IMetadataListener listener;
+    private final KlvIngestEngine engine;
+    private final SerialExecutor serialExecutor;
+    private final Semaphore pendingPackets;
+    private final Map<Integer, Double> timeBases = new HashMap<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private AVFormatContext formatContext;
+    private Thread readerThread;
+    private volatile boolean open;
+    private volatile boolean interruptRequested;
+    private volatile boolean failed;
+
+    /**
+     * Constructor.
+     *
+     * @param engine The engine that owns this stream
+     * @param url The URL to read from
+     * @param listener The listener receiving decoded metadata
+     * @param workers The shared worker pool
+     * @param maxPendingPackets Maximum number of packets queued for parsing before the reader
+     *     blocks
+     */
+    IngestStream(
+            KlvIngestEngine engine,
+            String url,
+            IMetadataListener listener,
+            Executor workers,
+            int maxPendingPackets) {
+        this.engine = engine;
+        this.url = url;
+        this.listener = listener;
+        this.serialExecutor = new SerialExecutor(workers, this::onRejected);
+        this.pendingPackets = new Semaphore(maxPendingPackets);
+    }
+
+    /**
+     * Open the input and start the reader thread.
+     *
+     * @param options Options for opening the input
+     * @param readerThreadFactory Factory used to create the reader thread
+     * @throws IOException if the input could not be opened, or contains no KLV metadata stream
+     */
+    void open(VideoStreamInputOptions options, ThreadFactory readerThreadFactory)
+            throws IOException {
+        logger.debug("Opening " + url + "...");
+        formatContext = avformat_alloc_context();
+        AVIOInterruptCB interruptCallback = formatContext.interrupt_callback();
+        interruptCallback.callback(INTERRUPT_CALLBACK);
+        CURRENT_STREAM.set(this);
+        try {
+            openInput(options);
+        } finally {
+            CURRENT_STREAM.remove();
+        }
+
+        open = true;
+        readerThread = readerThreadFactory.newThread(this::read);
+        readerThread.setName("IngestReader - " + url);
+        readerThread.start();
+    }
+
+    /**
+     * Open the input and find the KLV metadata streams.
+     *
+     * @param options Options for opening the input
+     * @throws IOException if the input could not be opened, or contains no KLV metadata stream
+     */
+    private void openInput(VideoStreamInputOptions options) throws IOException {
+        AVDictionary openOpts = new AVDictionary(null);
+        String timeoutVal = "" + options.getOpenTimeout() * 1000;
+        if (url.startsWith("rtsp://")) {
+            av_dict_set(openOpts, "stimeout", timeoutVal, 0);
+        } else {
+            av_dict_set(openOpts, "timeout", timeoutVal, 0);
+        }
+        int ret = avformat_open_input(formatContext, url, null, openOpts);
+        av_dict_free(openOpts);
+        if (ret < 0) {
+            // avformat_open_input() frees the context on failure
+            formatContext = null;
+            throw new IOException("Could not open input " + url);
+        }
+
+        formatContext.max_analyze_duration(options.getMaxAnalyzeDuration() * 1000);
+        if ((ret = avformat_find_stream_info(formatContext, (PointerPointer) null)) < 0) {
+            freeContext();
+            throw new IOException(
+                    "avformat_find_stream_info() error "
+                            + ret
+                            + ": Could not find stream information.");
+        }
+
+        for (int streamIndex : FfmpegUtils.getDataStreamIndices(formatContext)) {
+            timeBases.put(
+                    streamIndex,
+                    av_q2d(FfmpegUtils.getStreamByIndex(formatContext, streamIndex).time_base()));
+        }
+        if (timeBases.isEmpty()) {
+            freeContext();
+            throw new IOException("Did not find a KLV metadata stream within URL: " + url);
+        }
+    }
+
+    /**
+     * Get the URL of this stream.
+     *
+     * @return The URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Check if the stream is open.
+     *
+     * @return True if the stream has not been closed
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Check if the stream failed.
+     *
+     * <p>A stream fails if the input reports repeated read errors, or the worker pool stops
+     * accepting packets (for example because it has been shut down). A failed stream stops reading,
+     * but remains open until {@link #close()} is called.
+     *
+     * @return True if the stream stopped reading because of an error
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Wait until the input has ended and all of its metadata has been delivered.
+     *
+     * <p>For network streams this normally only happens once the stream is closed. For files, this
+     * returns once the end of file has been reached and processed.
+     *
+     * @param timeout The maximum time to wait
+     * @param unit The time unit of the timeout argument
+     * @return True if the stream finished, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitEnd(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    /**
+     * Close the stream.
+     *
+     * <p>Blocks until the reader thread has stopped. Packets that were queued but not yet parsed
+     * are released without being delivered.
+     */
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        logger.debug("Closing " + url);
+        open = false;
+        interruptRequested = true;
+        readerThread.interrupt();
+        if (Thread.currentThread() != readerThread) {
+            try {
+                readerThread.join();
+            } catch (InterruptedException e) {
+                logger.warn("Interrupted while joining reader thread", e);
+            }
+        }
+        engine.remove(this);
+    }
+
+    /** Reader thread body. */
+    private void read() {
+        CURRENT_STREAM.set(this);
+        AVPacket packet = av_packet_alloc();
+        int consecutiveErrors = 0;
+        try {
+            while (open && !failed) {
+                DemuxReturnValue result = DemuxerUtils.readPacket(formatContext, packet);
+                if (result == DemuxReturnValue.EOF) {
+                    break;
+                } else if (result == DemuxReturnValue.EAGAIN) {
+                    // The input is not opened in non-blocking mode, so the next read blocks
+                    continue;
+                } else if (result == DemuxReturnValue.ERROR) {
+                    if (open && ++consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
+                        logger.warn("Repeated read errors, ending stream: " + url);
+                        failed = true;
+                    }
+                    continue;
+                }
+                consecutiveErrors = 0;
+
+                Double timeBase = timeBases.get(packet.stream_index());
+                if (timeBase != null) {
+                    pendingPackets.acquire();
+                    AVPacket clone = av_packet_clone(packet);
+                    try {
+                        serialExecutor.execute(() -> decode(clone, timeBase));
+                    } catch (RejectedExecutionException e) {
+                        logger.warn("Worker pool rejected packet from " + url, e);
+                        failed = true;
+                        av_packet_free(clone);
+                        pendingPackets.release();
+                        break;
+                    }
+                }
+                av_packet_unref(packet);
+            }
+        } catch (InterruptedException ignored) {
+            // close() was called
+        } finally {
+            av_packet_free(packet);
+            freeContext();
+            try {
+                serialExecutor.execute(finished::countDown);
+            } catch (RejectedExecutionException e) {
+                finished.countDown();
+            }
+            CURRENT_STREAM.remove();
+        }
+        logger.debug("Ingest reader exiting for " + url);
+    }
+
+    /**
+     * Handle the worker pool rejecting a packet after an earlier one was parsed.
+     *
+     * <p>Marks the stream failed and stops the reader, then runs the tasks that will never be
+     * scheduled. Since the stream has failed, they only release their packets.
+     *
+     * @param dropped The tasks that were queued for this stream
+     */
+    private void onRejected(List<Runnable> dropped) {
+        logger.warn("Worker pool rejected packet from " + url);
+        failed = true;
+        interruptRequested = true;
+        for (Runnable task : dropped) {
+            task.run();
+        }
+    }
+
+    /**
+     * Parse a packet and deliver the resulting messages. Runs on the shared worker pool.
+     *
+     * @param packet The cloned packet, released once parsing is complete
+     * @param timeBase Time base of the packet's stream, in seconds
+     */
+    private void decode(AVPacket packet, double timeBase) {
+        try {
+            if (!open || failed) {
+                return;
+            }
+            double pts = packet.pts() * timeBase;
+            ByteBuffer data = packet.data().capacity(packet.size()).asByteBuffer();
+            List<IMisbMessage> messages = KlvParser.parseBytes(data);
+            for (IMisbMessage message : messages) {
+                listener.onMetadataReceived(new MetadataFrame(message, pts));
+            }
+        } catch (KlvParseException e) {
+            logger.error("KLV parse exception from " + url, e);
+        } catch (RuntimeException e) {
+            logger.error("Metadata listener failed for " + url, e);
+        } finally {
+            av_packet_free(packet);
+            pendingPackets.release();
+        }
+    }
+
+    /** Release the format context. */
+    private synchronized void freeContext() {
+        if (formatContext != null) {
+            avformat_close_input(formatContext);
+            avformat_free_context(formatContext);
+            formatContext = null;
+        }
+    }
+
+    /** FFmpeg interrupt callback, returning non-zero once the stream flag has been set. */
+    private static class InterruptCallback extends AVIOInterruptCB.Callback_Pointer {
+        @Override
+        public int call(Pointer opaque) {
+            IngestStream stream = CURRENT_STREAM.get();
+            return stream != null && stream.interruptRequested ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package org.jmisb.api.video;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import org.jmisb.api.common.InvalidDataCounts;
+
+/**
+ * Statistics reported by {@link VideoInput}.
+ *
+ * <p>Counts how many packets and frames pass through each stage of the input pipeline (demuxer,
+ * decoders, listener notification), how many frames the backpressure policy dropped, how long
+ * decoding and parsing take, and how much invalid metadata was seen. Statistics are reset when the
+ * input is opened, and can be read at any time from any thread, either by polling {@link
+ * IVideoInput#getStatistics()} or through JMX (see {@link
+ * VideoInputOptions#setStatisticsMBean(boolean)}).
+ */
+public class InputStatistics implements InputStatisticsMXBean {
+    /** Key for parse failures in packets too short to hold a Universal Label. */
+    public static final String UNKNOWN_KEY = "unknown";
+
+    private static final int UL_LENGTH = 16;
+    private static final IntSupplier EMPTY = () -> 0;
+
+    private final LongAdder videoPacketsDemuxed = new LongAdder();
+    private final LongAdder videoFramesDecoded = new LongAdder();
+    private final LongAdder videoFramesDelivered = new LongAdder();
+    private final LongAdder metadataPacketsDemuxed = new LongAdder();
+    private final LongAdder metadataFramesDecoded = new LongAdder();
+    private final LongAdder metadataFramesDelivered = new LongAdder();
+    private final LatencyHistogram decodeLatency = new LatencyHistogram();
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+    private final Map<String, LongAdder> parseFailures = new ConcurrentHashMap<>();
+    private final InvalidDataCounts invalidData = new InvalidDataCounts();
+
+    private final HandoffQueue<?> decodedVideo;
+    private final HandoffQueue<?> decodedMetadata;
+    private volatile long videoDroppedBaseline;
+    private volatile long metadataDroppedBaseline;
+    private volatile IntSupplier videoPacketQueueDepth = EMPTY;
+    private volatile IntSupplier metadataPacketQueueDepth = EMPTY;
+
+    /**
+     * Constructor.
+     *
+     * @param decodedVideo The queue of decoded video frames
+     * @param decodedMetadata The queue of decoded metadata frames
+     */
+    InputStatistics(HandoffQueue<?> decodedVideo, HandoffQueue<?> decodedMetadata) {
+        this.decodedVideo = decodedVideo;
+        this.decodedMetadata = decodedMetadata;
+    }
+
+    @Override
+    public long getVideoPacketsDemuxed() {
+        return videoPacketsDemuxed.sum();
+    }
+
+    @Override
+    public long getVideoFramesDecoded() {
+        return videoFramesDecoded.sum();
+    }
+
+    @Override
+    public long getVideoFramesDelivered() {
+        return videoFramesDelivered.sum();
+    }
+
+    @Override
+    public long getVideoFramesDropped() {
+        return decodedVideo.getDroppedCount() - videoDroppedBaseline;
+    }
+
+    @Override
+    public long getMetadataPacketsDemuxed() {
+        return metadataPacketsDemuxed.sum();
+    }
+
+    @Override
+    public long getMetadataFramesDecoded() {
+        return metadataFramesDecoded.sum();
+    }
+
+    @Override
+    public long getMetadataFramesDelivered() {
+        return metadataFramesDelivered.sum();
+    }
+
+    @Override
+    public long getMetadataFramesDropped() {
+        return decodedMetadata.getDroppedCount() - metadataDroppedBaseline;
+    }
+
+    @Override
+    public int getVideoPacketQueueDepth() {
+        return videoPacketQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getMetadataPacketQueueDepth() {
+        return metadataPacketQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getDecodedVideoQueueDepth() {
+        return decodedVideo.size();
+    }
+
+    @Override
+    public int getDecodedMetadataQueueDepth() {
+        return decodedMetadata.size();
+    }
+
+    /**
+     * Get the histogram of times to decode and convert a video frame.
+     *
+     * <p>This runs from handing a packet to the decoder until the frame is ready to be queued for
+     * delivery, so does not include time spent waiting for space in the queue.
+     *
+     * @return The histogram
+     */
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    @Override
+    public double getDecodeLatencyMeanMicros() {
+        return decodeLatency.getMeanMicros();
+    }
+
+    @Override
+    public long getDecodeLatency99thPercentileMicros() {
+        return decodeLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public double getDecodeLatencyMaxMicros() {
+        return decodeLatency.getMaxMicros();
+    }
+
+    /**
+     * Get the histogram of times to parse a metadata packet.
+     *
+     * @return The histogram
+     */
+    public LatencyHistogram getParseLatency() {
+        return parseLatency;
+    }
+
+    @Override
+    public double getParseLatencyMeanMicros() {
+        return parseLatency.getMeanMicros();
+    }
+
+    @Override
+    public long getParseLatency99thPercentileMicros() {
+        return parseLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public double getParseLatencyMaxMicros() {
+        return parseLatency.getMaxMicros();
+    }
+
+    @Override
+    public Map<String, Long> getParseFailures() {
+        Map<String, Long> failures = new TreeMap<>();
+        parseFailures.forEach((key, count) -> failures.put(key, count.sum()));
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Get the counts of invalid data reported while parsing this input's metadata.
+     *
+     * <p>This includes invalid values found later, when a lazily decoded {@link
+     * org.jmisb.api.klv.st0601.UasDatalinkMessage} from this input decodes a field on the thread
+     * that asks for it (such as a listener thread). The message keeps the counts that were active
+     * while it was parsed and reports to those.
+     *
+     * @return The counts
+     */
+    public InvalidDataCounts getInvalidDataCounts() {
+        return invalidData;
+    }
+
+    @Override
+    public long getInvalidChecksumCount() {
+        return invalidData.getInvalidChecksumCount();
+    }
+
+    @Override
+    public long getMissingChecksumCount() {
+        return invalidData.getMissingChecksumCount();
+    }
+
+    @Override
+    public void reset() {
+        videoPacketsDemuxed.reset();
+        videoFramesDecoded.reset();
+        videoFramesDelivered.reset();
+        metadataPacketsDemuxed.reset();
+        metadataFramesDecoded.reset();
+        metadataFramesDelivered.reset();
+        videoDroppedBaseline = decodedVideo.getDroppedCount();
+        metadataDroppedBaseline = decodedMetadata.getDroppedCount();
+        decodeLatency.reset();
+        parseLatency.reset();
+        parseFailures.clear();
+        invalidData.reset();
+    }
+
+    /**
+     * Set the sources of the decoder input queue depths.
+     *
+     * @param video Depth of the video decoder's packet queue, or null if there is none
+     * @param metadata Total depth of the metadata decoders' packet queues, or null if there are
+     *     none
+     */
+    void setPacketQueues(IntSupplier video, IntSupplier metadata) {
+        videoPacketQueueDepth = video != null ? video : EMPTY;
+        metadataPacketQueueDepth = metadata != null ? metadata : EMPTY;
+    }
+
+    /** Increment the number of video packets demuxed. */
+    void videoPacketDemuxed() {
+        videoPacketsDemuxed.increment();
+    }
+
+    /**
+     * Increment the number of video frames decoded.
+     *
+     * @param nanos The time taken to decode and convert the frame
+     */
+    void videoFrameDecoded(long nanos) {
+        videoFramesDecoded.increment();
+        decodeLatency.record(nanos);
+    }
+
+    /** Increment the number of video frames delivered. */
+    void videoFrameDelivered() {
+        videoFramesDelivered.increment();
+    }
+
+    /** Increment the number of metadata packets demuxed. */
+    void metadataPacketDemuxed() {
+        metadataPacketsDemuxed.increment();
+    }
+
+    /**
+     * Record a successfully parsed metadata packet.
+     *
+     * @param numFrames The number of messages in the packet
+     * @param nanos The time taken to parse the packet
+     */
+    void metadataPacketParsed(int numFrames, long nanos) {
+        metadataFramesDecoded.add(numFrames);
+        parseLatency.record(nanos);
+    }
+
+    /**
+     * Record a metadata packet that could not be parsed.
+     *
+     * @param data The packet data; its position is not changed
+     * @param nanos The time taken before parsing failed
+     */
+    void metadataParseFailed(ByteBuffer data, long nanos) {
+        parseLatency.record(nanos);
+        parseFailures.computeIfAbsent(universalLabel(data), key -> new LongAdder()).increment();
+    }
+
+    /** Increment the number of metadata frames delivered. */
+    void metadataFrameDelivered() {
+        metadataFramesDelivered.increment();
+    }
+
+    private static String universalLabel(ByteBuffer data) {
+        if (data.remaining() < UL_LENGTH) {
+            return UNKNOWN_KEY;
+        }
+        StringBuilder builder = new StringBuilder(UL_LENGTH * 3);
+        for (int i = 0; i < UL_LENGTH; ++i) {
+            if (i > 0) {
+                builder.append('.');
+            }
+            builder.append(String.format("%02X", data.get(data.position() + i)));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "video = ("
+                + getVideoPacketsDemuxed()
+                + "/"
+                + getVideoFramesDecoded()
+                + "/"
+                + getVideoFramesDelivered()
+                + ", dropped "
+                + getVideoFramesDropped()
+                + "), metadata = ("
+                + getMetadataPacketsDemuxed()
+                + "/"
+                + getMetadataFramesDecoded()
+                + "/"
+                + getMetadataFramesDelivered()
+                + ", dropped "
+                + getMetadataFramesDropped()
+                + ", failed "
+                + getParseFailures()
+                + ")";
+    }
+}
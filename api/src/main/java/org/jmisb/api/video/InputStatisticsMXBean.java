@@ -0,0 +1,161 @@
+package org.jmisb.api.video;
+
+import java.util.Map;
+
+/**
+ * Management interface for {@link InputStatistics}.
+ *
+ * <p>Registered with the platform MBean server if {@link
+ * VideoInputOptions#setStatisticsMBean(boolean)} is enabled.
+ */
+public interface InputStatisticsMXBean {
+    /**
+     * Get the number of video packets read by the demuxer.
+     *
+     * @return The number of packets
+     */
+    long getVideoPacketsDemuxed();
+
+    /**
+     * Get the number of video frames decoded.
+     *
+     * @return The number of frames
+     */
+    long getVideoFramesDecoded();
+
+    /**
+     * Get the number of video frames delivered to listeners.
+     *
+     * @return The number of frames
+     */
+    long getVideoFramesDelivered();
+
+    /**
+     * Get the number of video frames discarded because the decoded frame queue was full.
+     *
+     * @return The number of frames
+     */
+    long getVideoFramesDropped();
+
+    /**
+     * Get the number of metadata packets read by the demuxer, over all metadata streams.
+     *
+     * @return The number of packets
+     */
+    long getMetadataPacketsDemuxed();
+
+    /**
+     * Get the number of metadata messages parsed.
+     *
+     * @return The number of messages
+     */
+    long getMetadataFramesDecoded();
+
+    /**
+     * Get the number of metadata messages delivered to listeners.
+     *
+     * @return The number of messages
+     */
+    long getMetadataFramesDelivered();
+
+    /**
+     * Get the number of metadata messages discarded because the decoded metadata queue was full.
+     *
+     * @return The number of messages
+     */
+    long getMetadataFramesDropped();
+
+    /**
+     * Get the number of packets waiting for the video decoder.
+     *
+     * @return The queue depth
+     */
+    int getVideoPacketQueueDepth();
+
+    /**
+     * Get the number of packets waiting for the metadata decoders.
+     *
+     * @return The total queue depth over all metadata streams
+     */
+    int getMetadataPacketQueueDepth();
+
+    /**
+     * Get the number of decoded video frames waiting for delivery.
+     *
+     * @return The queue depth
+     */
+    int getDecodedVideoQueueDepth();
+
+    /**
+     * Get the number of parsed metadata messages waiting for delivery.
+     *
+     * @return The queue depth
+     */
+    int getDecodedMetadataQueueDepth();
+
+    /**
+     * Get the mean time to decode and convert a video frame.
+     *
+     * @return The mean in microseconds
+     */
+    double getDecodeLatencyMeanMicros();
+
+    /**
+     * Get the 99th percentile of the time to decode and convert a video frame.
+     *
+     * @return The upper bound of the percentile, in microseconds
+     */
+    long getDecodeLatency99thPercentileMicros();
+
+    /**
+     * Get the longest time to decode and convert a video frame.
+     *
+     * @return The maximum in microseconds
+     */
+    double getDecodeLatencyMaxMicros();
+
+    /**
+     * Get the mean time to parse a metadata packet.
+     *
+     * @return The mean in microseconds
+     */
+    double getParseLatencyMeanMicros();
+
+    /**
+     * Get the 99th percentile of the time to parse a metadata packet.
+     *
+     * @return The upper bound of the percentile, in microseconds
+     */
+    long getParseLatency99thPercentileMicros();
+
+    /**
+     * Get the longest time to parse a metadata packet.
+     *
+     * @return The maximum in microseconds
+     */
+    double getParseLatencyMaxMicros();
+
+    /**
+     * Get the number of metadata packets that failed to parse, by Universal Label.
+     *
+     * @return Map from the hexadecimal UL at the start of the packet to the number of failures
+     */
+    Map<String, Long> getParseFailures();
+
+    /**
+     * Get the number of invalid checksums in this input's metadata.
+     *
+     * @return The number of checksums present but incorrect
+     */
+    long getInvalidChecksumCount();
+
+    /**
+     * Get the number of missing checksums in this input's metadata.
+     *
+     * @return The number of required checksums that were not present
+     */
+    long getMissingChecksumCount();
+
+    /** Reset all counters and histograms to zero. */
+    void reset();
+}
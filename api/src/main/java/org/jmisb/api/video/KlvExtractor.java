@@ -0,0 +1,147 @@
+package org.jmisb.api.video;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Batch extraction of all metadata from a file, as fast as possible.
+ *
+ * <p>A {@link VideoFileInput} plays a file: it runs demuxer, decoder and notifier threads and paces
+ * delivery to real time, even when only metadata is wanted. The methods here instead read only the
+ * metadata, on the calling thread, with no pacing, and return it as a {@link Stream}:
+ *
+ * <pre>{@code
+ * try (Stream<MetadataFrame> frames = KlvExtractor.extract("flight.ts")) {
+ *     frames.forEach(frame -> index(frame.getMisbMessage(), frame.getPts()));
+ * }
+ * }</pre>
+ *
+ * <p>The returned streams hold an open file (or FFmpeg context) until they have been consumed or
+ * closed, so should be used in a try-with-resources statement. They are sequential, and deliver
+ * frames in file order. Errors reading the input are thrown as {@link UncheckedIOException}; KLV
+ * parse errors are logged and the affected packet skipped.
+ */
+public class KlvExtractor {
+    private KlvExtractor() {}
+
+    /**
+     * Extract all metadata from a file.
+     *
+     * <p>The format is chosen from the file: files with a ".klv" extension are read as raw KLV,
+     * files starting with transport stream sync bytes are demultiplexed in Java, and anything else
+     * (including URLs) is opened with FFmpeg.
+     *
+     * @param filename The file name
+     * @return The metadata frames
+     * @throws IOException if the file could not be opened
+     */
+    public static Stream<MetadataFrame> extract(String filename) throws IOException {
+        if (filename.toLowerCase().endsWith(".klv")) {
+            return extractKlv(FileChannel.open(Paths.get(filename), StandardOpenOption.READ));
+        }
+        Path path = Paths.get(filename);
+        if (Files.isRegularFile(path)) {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            if (isTransportStream(channel)) {
+                return extractTransportStream(channel);
+            }
+            channel.close();
+        }
+        return extractWithFfmpeg(filename);
+    }
+
+    /**
+     * Extract all metadata from raw KLV.
+     *
+     * <p>The input must consist of top-level KLV messages (such as ST 0601 local sets) stored back
+     * to back with no container. Since raw KLV carries no timing, the frames have a presentation
+     * timestamp of {@link Double#NaN}.
+     *
+     * @param channel The channel to read from, which is closed with the stream
+     * @return The metadata frames
+     */
+    public static Stream<MetadataFrame> extractKlv(ReadableByteChannel channel) {
+        return asStream(new RawKlvIterator(channel));
+    }
+
+    /**
+     * Extract all metadata from an MPEG-2 transport stream.
+     *
+     * <p>The transport stream is demultiplexed in Java, reading only the packets belonging to KLV
+     * streams. This avoids FFmpeg and its native buffers entirely, and works on any channel
+     * including pipes and sockets.
+     *
+     * @param channel The channel to read from, positioned at the start of a transport packet, which
+     *     is closed with the stream
+     * @return The metadata frames
+     */
+    public static Stream<MetadataFrame> extractTransportStream(ReadableByteChannel channel) {
+        return asStream(new TransportStreamKlvIterator(channel));
+    }
+
+    /**
+     * Extract all metadata from a file or URL using FFmpeg.
+     *
+     * <p>This supports any container FFmpeg can read. Only the KLV data streams are demultiplexed.
+     *
+     * @param url The file name or URL
+     * @return The metadata frames
+     * @throws IOException if the input could not be opened
+     */
+    public static Stream<MetadataFrame> extractWithFfmpeg(String url) throws IOException {
+        return asStream(new FfmpegKlvIterator(url));
+    }
+
+    /**
+     * Check whether a file appears to be a transport stream.
+     *
+     * @param channel The file, which is left positioned at the start
+     * @return True if the file starts with consecutive transport packets
+     * @throws IOException if the file could not be read
+     */
+    private static boolean isTransportStream(FileChannel channel) throws IOException {
+        final int packets = 3;
+        ByteBuffer header = ByteBuffer.allocate(TransportStreamKlvIterator.PACKET_SIZE * packets);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                break;
+            }
+        }
+        channel.position(0);
+        if (header.position() < TransportStreamKlvIterator.PACKET_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < header.position(); i += TransportStreamKlvIterator.PACKET_SIZE) {
+            if (header.get(i) != TransportStreamKlvIterator.SYNC_BYTE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Stream<MetadataFrame> asStream(MetadataFrameIterator iterator) {
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(
+                                iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(
+                        () -> {
+                            try {
+                                iterator.close();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+    }
+}
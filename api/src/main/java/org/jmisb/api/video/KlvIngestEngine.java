@@ -0,0 +1,189 @@
+package org.jmisb.api.video;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metadata ingest engine for many concurrent inputs.
+ *
+ * <p>A {@link VideoStreamInput} uses a demuxer thread, a video decode thread, a decode thread per
+ * metadata stream and two notifier threads. That is appropriate for a few inputs with video, but
+ * does not scale to hundreds of metadata feeds. This engine instead uses a single reader thread per
+ * input, and parses KLV on a shared, bounded worker pool. Work is handed off as packets arrive; no
+ * thread polls on a timer.
+ *
+ * <p>Metadata from each input is delivered to its listener on a pool thread, one frame at a time,
+ * in stream order. Listeners for different inputs may be called concurrently.
+ *
+ * <pre>{@code
+ * try (KlvIngestEngine engine = new KlvIngestEngine(4)) {
+ *     engine.open("udp://225.1.1.1:35800", listener1);
+ *     engine.open("udp://225.1.1.2:35800", listener2);
+ *     ...
+ * }
+ * }</pre>
+ *
+ * <p>The reader thread factory may be supplied, for example to use virtual threads on runtimes that
+ * provide them.
+ */
+public class KlvIngestEngine implements AutoCloseable {
+    private static Logger logger = LoggerFactory.getLogger(KlvIngestEngine.class);
+    private static final int DEFAULT_MAX_PENDING_PACKETS = 100;
+    private final ExecutorService workers;
+    private final boolean ownsWorkers;
+    private final ThreadFactory readerThreadFactory;
+    private final Set<IngestStream> streams = ConcurrentHashMap.newKeySet();
+    private int maxPendingPackets = DEFAULT_MAX_PENDING_PACKETS;
+
+    /** Construct with one worker thread per available processor. */
+    public KlvIngestEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct with a fixed number of worker threads.
+     *
+     * @param workerThreads Number of threads used to parse metadata, shared by all inputs
+     */
+    public KlvIngestEngine(int workerThreads) {
+        this(
+                Executors.newFixedThreadPool(workerThreads, new NamedThreadFactory("KlvIngest")),
+                true,
+                new NamedThreadFactory("IngestReader"));
+    }
+
+    /**
+     * Construct with a caller-supplied worker pool and reader thread factory.
+     *
+     * <p>The worker pool is not shut down when the engine is closed.
+     *
+     * @param workers Executor used to parse metadata, shared by all inputs
+     * @param readerThreadFactory Factory used to create the per-input reader threads
+     */
+    public KlvIngestEngine(ExecutorService workers, ThreadFactory readerThreadFactory) {
+        this(workers, false, readerThreadFactory);
+    }
+
+    private KlvIngestEngine(
+            ExecutorService workers, boolean ownsWorkers, ThreadFactory readerThreadFactory) {
+        this.workers = workers;
+        this.ownsWorkers = ownsWorkers;
+        this.readerThreadFactory = readerThreadFactory;
+    }
+
+    /**
+     * Set the maximum number of packets queued for parsing per input.
+     *
+     * <p>When an input reaches this limit, its reader blocks until the listener catches up. This
+     * applies to inputs opened after the call.
+     *
+     * @param maxPendingPackets The maximum number of packets, default 100
+     */
+    public void setMaxPendingPackets(int maxPendingPackets) {
+        if (maxPendingPackets < 1) {
+            throw new IllegalArgumentException("Maximum pending packets must be at least 1");
+        }
+        this.maxPendingPackets = maxPendingPackets;
+    }
+
+    /**
+     * Open an input with default options.
+     *
+     * @param url The URL (or file path) to read from
+     * @param listener The listener to receive metadata from this input
+     * @return The opened stream
+     * @throws IOException if the input could not be opened, or contains no KLV metadata stream
+     */
+    public IngestStream open(String url, IMetadataListener listener) throws IOException {
+        return open(url, listener, new VideoStreamInputOptions());
+    }
+
+    /**
+     * Open an input.
+     *
+     * <p>Only the open timeout and maximum analyze duration are used from the options.
+     *
+     * @param url The URL (or file path) to read from
+     * @param listener The listener to receive metadata from this input
+     * @param options Options for opening the input
+     * @return The opened stream
+     * @throws IOException if the input could not be opened, or contains no KLV metadata stream
+     */
+    public IngestStream open(
+            String url, IMetadataListener listener, VideoStreamInputOptions options)
+            throws IOException {
+        if (workers.isShutdown()) {
+            throw new IllegalStateException("Ingest engine has been closed");
+        }
+        IngestStream stream = new IngestStream(this, url, listener, workers, maxPendingPackets);
+        stream.open(options, readerThreadFactory);
+        streams.add(stream);
+        return stream;
+    }
+
+    /**
+     * Get the number of open inputs.
+     *
+     * @return The number of inputs that have been opened and not closed
+     */
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    /**
+     * Close all inputs.
+     *
+     * <p>If the engine created its own worker pool, the pool is also shut down.
+     */
+    @Override
+    public void close() {
+        List<IngestStream> toClose = new ArrayList<>(streams);
+        for (IngestStream stream : toClose) {
+            stream.close();
+        }
+        if (ownsWorkers) {
+            workers.shutdown();
+            try {
+                if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.warn("Ingest worker pool did not terminate");
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Interrupted while waiting for ingest worker pool", e);
+            }
+        }
+    }
+
+    /**
+     * Stop tracking a closed stream.
+     *
+     * @param stream The stream that was closed
+     */
+    void remove(IngestStream stream) {
+        streams.remove(stream);
+    }
+
+    /** Thread factory producing numbered threads with a common prefix. */
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String prefix;
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, prefix + "-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package org.jmisb.api.video;
+
+import static org.bytedeco.ffmpeg.avcodec.AVCodecContext.FF_PROFILE_KLVA_ASYNC;
+import static org.bytedeco.ffmpeg.avcodec.AVCodecContext.FF_PROFILE_KLVA_SYNC;
+import static org.bytedeco.ffmpeg.global.avcodec.AV_CODEC_ID_SMPTE_KLV;
+import static org.bytedeco.ffmpeg.global.avcodec.AV_PKT_DATA_MPEGTS_STREAM_ID;
+import static org.bytedeco.ffmpeg.global.avcodec.AV_PKT_FLAG_KEY;
+import static org.bytedeco.ffmpeg.global.avcodec.av_new_packet;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_copy_props;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_get_side_data;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_new_side_data;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_rescale_ts;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_unref;
+import static org.bytedeco.ffmpeg.global.avcodec.avcodec_parameters_copy;
+import static org.bytedeco.ffmpeg.global.avformat.AVIO_FLAG_WRITE;
+import static org.bytedeco.ffmpeg.global.avformat.av_interleaved_write_frame;
+import static org.bytedeco.ffmpeg.global.avformat.av_read_frame;
+import static org.bytedeco.ffmpeg.global.avformat.av_write_trailer;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_alloc_output_context2;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_close_input;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_find_stream_info;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_free_context;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_new_stream;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_open_input;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_write_header;
+import static org.bytedeco.ffmpeg.global.avformat.avio_close;
+import static org.bytedeco.ffmpeg.global.avformat.avio_open2;
+import static org.bytedeco.ffmpeg.global.avutil.AVERROR_EOF;
+import static org.bytedeco.ffmpeg.global.avutil.AVMEDIA_TYPE_DATA;
+import static org.bytedeco.ffmpeg.global.avutil.AV_NOPTS_VALUE;
+import static org.bytedeco.ffmpeg.global.avutil.av_dict_free;
+import static org.bytedeco.ffmpeg.global.avutil.av_dict_set;
+import static org.bytedeco.ffmpeg.global.avutil.av_q2d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.bytedeco.ffmpeg.avcodec.AVCodecParameters;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.ffmpeg.avformat.AVIOContext;
+import org.bytedeco.ffmpeg.avformat.AVProgram;
+import org.bytedeco.ffmpeg.avformat.AVStream;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.avutil.AVRational;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.IMisbMessage;
+import org.jmisb.api.klv.KlvParser;
+import org.jmisb.core.video.FfmpegUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copy a video file to a new MPEG-2 transport stream, rewriting only the KLV metadata.
+ *
+ * <p>Reading through a {@link VideoFileInput} and writing through a {@link VideoFileOutput} decodes
+ * and re-encodes the video, which is slow and loses quality. This class instead copies the
+ * compressed packets of every stream straight through to the output, and passes only the KLV to an
+ * {@link IKlvRemuxHandler}, which can modify, drop or insert messages:
+ *
+ * <pre>{@code
+ * KlvRemuxer remuxer = new KlvRemuxer((messages, pts) -> {
+ *     messages.removeIf(message -> message instanceof SecurityMetadataLocalSet);
+ *     messages.add(newSecurityMarking);
+ *     return messages;
+ * });
+ * remuxer.remux("in.ts", "out.ts");
+ * }</pre>
+ *
+ * <p>Packet timestamps are copied without offset, and each output stream keeps the identifier (for
+ * transport stream input, the PID) of its input stream; the service ID and PMT PID of the first
+ * program are also kept. KLV streams keep their synchronous or asynchronous multiplexing.
+ *
+ * <p>Any input format FFmpeg can read is supported. If the input has no KLV stream, {@link
+ * #setAddedKlvFormat(KlvFormat)} adds one, so that messages can be inserted.
+ */
+public class KlvRemuxer {
+    private static Logger logger = LoggerFactory.getLogger(KlvRemuxer.class);
+
+    /** Lowest and highest PMT PID accepted by the FFmpeg transport stream muxer. */
+    private static final int MIN_PMT_PID = 0x0020;
+
+    private static final int MAX_PMT_PID = 0x1EFF;
+
+    /** Maximum number of packets read to find the multiplexing method of the KLV streams. */
+    private static final int MAX_PROBE_PACKETS = 1000;
+
+    private final IKlvRemuxHandler handler;
+    private KlvFormat addedKlvFormat;
+    private AVFormatContext input;
+    private AVFormatContext output;
+    private StreamMapping[] mappings;
+    private final Map<Integer, Boolean> synchronousStreams = new HashMap<>();
+    private final ArrayDeque<AVPacket> probed = new ArrayDeque<>();
+    private KlvStream insertTarget;
+    private long klvPacketsModified;
+    private long klvPacketsInserted;
+
+    /** The output stream for an input stream. */
+    private static class StreamMapping {
+        private final AVStream stream;
+        private final AVRational inputTimeBase;
+        private final KlvStream klv;
+        private final boolean video;
+
+        StreamMapping(AVStream stream, AVRational inputTimeBase, KlvStream klv, boolean video) {
+            this.stream = stream;
+            this.inputTimeBase = inputTimeBase;
+            this.klv = klv;
+            this.video = video;
+        }
+    }
+
+    /** State of an output KLV stream. */
+    private static class KlvStream {
+        private final AVStream stream;
+        private final boolean synchronous;
+        private int sequenceNumber;
+        private long lastDts = AV_NOPTS_VALUE;
+
+        KlvStream(AVStream stream, boolean synchronous) {
+            this.stream = stream;
+            this.synchronous = synchronous;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param handler The handler for the KLV metadata
+     */
+    public KlvRemuxer(IKlvRemuxHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Set the multiplexing method of a KLV stream to add if the input has none.
+     *
+     * @param format The multiplexing method, or null (the default) to add no stream
+     */
+    public void setAddedKlvFormat(KlvFormat format) {
+        this.addedKlvFormat = format;
+    }
+
+    /**
+     * Get the multiplexing method of a KLV stream to add if the input has none.
+     *
+     * @return The multiplexing method, or null if no stream is added
+     */
+    public KlvFormat getAddedKlvFormat() {
+        return addedKlvFormat;
+    }
+
+    /**
+     * Get the number of KLV packets replaced or dropped by the last call to {@link #remux(String,
+     * String)}.
+     *
+     * @return The number of packets
+     */
+    public long getKlvPacketsModified() {
+        return klvPacketsModified;
+    }
+
+    /**
+     * Get the number of KLV packets inserted by the last call to {@link #remux(String, String)}.
+     *
+     * @return The number of packets
+     */
+    public long getKlvPacketsInserted() {
+        return klvPacketsInserted;
+    }
+
+    /**
+     * Copy a file.
+     *
+     * <p>This runs on the calling thread until the whole input has been copied.
+     *
+     * @param inputUrl The input file or URL
+     * @param outputFilename The output transport stream file
+     * @throws IOException if the input could not be read or the output could not be written
+     */
+    public synchronized void remux(String inputUrl, String outputFilename) throws IOException {
+        klvPacketsModified = 0;
+        klvPacketsInserted = 0;
+        AVPacket packet = null;
+        try {
+            openInput(inputUrl);
+            List<Integer> klvStreams = FfmpegUtils.getDataStreamIndices(input);
+            int ret = probeMultiplexing(klvStreams);
+            openOutput(outputFilename, klvStreams);
+            while (!probed.isEmpty()) {
+                AVPacket probedPacket = probed.poll();
+                try {
+                    processPacket(probedPacket);
+                } finally {
+                    av_packet_free(probedPacket);
+                }
+            }
+            if (ret >= 0) {
+                packet = av_packet_alloc();
+                while ((ret = av_read_frame(input, packet)) >= 0) {
+                    try {
+                        processPacket(packet);
+                    } finally {
+                        av_packet_unref(packet);
+                    }
+                }
+            }
+            if (ret != AVERROR_EOF) {
+                throw new IOException(
+                        "Error reading " + inputUrl + ": " + FfmpegUtils.formatError(ret));
+            }
+            if ((ret = av_write_trailer(output)) < 0) {
+                throw new IOException("Error writing trailer: " + FfmpegUtils.formatError(ret));
+            }
+        } finally {
+            if (packet != null) {
+                av_packet_free(packet);
+            }
+            close();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(
+                    "Remuxed "
+                            + inputUrl
+                            + ": "
+                            + klvPacketsModified
+                            + " KLV packets modified, "
+                            + klvPacketsInserted
+                            + " inserted");
+        }
+    }
+
+    private void openInput(String url) throws IOException {
+        input = new AVFormatContext(null);
+        int ret;
+        if ((ret = avformat_open_input(input, url, null, null)) < 0) {
+            input = null;
+            throw new IOException("Could not open " + url + ": " + FfmpegUtils.formatError(ret));
+        }
+        if ((ret = avformat_find_stream_info(input, (PointerPointer) null)) < 0) {
+            throw new IOException(
+                    "Could not find stream information: " + FfmpegUtils.formatError(ret));
+        }
+    }
+
+    /**
+     * Find which input KLV streams use synchronous multiplexing.
+     *
+     * <p>The FFmpeg transport stream demuxer does not report this in the stream profile, but it
+     * does attach the PES stream ID to each packet, which is {@code 0xFC} for synchronous KLV. So
+     * packets are read until one has been seen from each KLV stream; they are kept in {@link
+     * #probed} to be copied before the rest of the input.
+     *
+     * @param klvStreams Indices of the KLV streams
+     * @return The result of the last read, which is negative if the end of the input was reached
+     */
+    private int probeMultiplexing(List<Integer> klvStreams) {
+        boolean transportStream = "mpegts".equals(input.iformat().name().getString());
+        synchronousStreams.clear();
+        for (int index : klvStreams) {
+            if (input.streams(index).codecpar().profile() == FF_PROFILE_KLVA_SYNC) {
+                synchronousStreams.put(index, true);
+            } else if (!transportStream) {
+                synchronousStreams.put(index, false);
+            }
+        }
+        int ret = 0;
+        while (synchronousStreams.size() < klvStreams.size() && probed.size() < MAX_PROBE_PACKETS) {
+            AVPacket packet = av_packet_alloc();
+            if ((ret = av_read_frame(input, packet)) < 0) {
+                av_packet_free(packet);
+                break;
+            }
+            probed.add(packet);
+            int index = packet.stream_index();
+            if (klvStreams.contains(index) && !synchronousStreams.containsKey(index)) {
+                BytePointer streamId =
+                        av_packet_get_side_data(
+                                packet, AV_PKT_DATA_MPEGTS_STREAM_ID, (IntPointer) null);
+                synchronousStreams.put(
+                        index,
+                        streamId != null
+                                && !streamId.isNull()
+                                && streamId.get() == VideoFileOutput.SYNC_STREAM_ID);
+            }
+        }
+        return ret;
+    }
+
+    private void openOutput(String filename, List<Integer> klvStreams) throws IOException {
+        output = new AVFormatContext(null);
+        int ret;
+        if ((ret = avformat_alloc_output_context2(output, null, "mpegts", filename)) < 0) {
+            output = null;
+            throw new IOException(
+                    "Could not allocate format context: " + FfmpegUtils.formatError(ret));
+        }
+
+        int videoStreamIndex = FfmpegUtils.getVideoStreamIndex(input);
+        int numStreams = input.nb_streams();
+        int maxId = 0;
+        mappings = new StreamMapping[numStreams];
+        for (int i = 0; i < numStreams; ++i) {
+            AVStream inputStream = input.streams(i);
+            AVStream stream = avformat_new_stream(output, null);
+            if ((ret = avcodec_parameters_copy(stream.codecpar(), inputStream.codecpar())) < 0) {
+                throw new IOException(
+                        "Could not copy stream parameters: " + FfmpegUtils.formatError(ret));
+            }
+            stream.id(inputStream.id());
+            stream.time_base(inputStream.time_base());
+            stream.disposition(inputStream.disposition());
+            maxId = Math.max(maxId, inputStream.id());
+
+            KlvStream klv = null;
+            if (klvStreams.contains(i)) {
+                boolean synchronous = synchronousStreams.getOrDefault(i, false);
+                if (synchronous) {
+                    stream.codecpar().profile(FF_PROFILE_KLVA_SYNC);
+                }
+                klv = new KlvStream(stream, synchronous);
+                if (insertTarget == null) {
+                    insertTarget = klv;
+                }
+            }
+            mappings[i] =
+                    new StreamMapping(stream, inputStream.time_base(), klv, i == videoStreamIndex);
+        }
+
+        if (insertTarget == null && addedKlvFormat != null) {
+            insertTarget = addKlvStream(maxId, videoStreamIndex);
+        }
+
+        AVIOContext ioContext = new AVIOContext(null);
+        if ((ret = avio_open2(ioContext, filename, AVIO_FLAG_WRITE, null, null)) < 0) {
+            throw new IOException("Error opening file: " + FfmpegUtils.formatError(ret));
+        }
+        output.pb(ioContext);
+
+        AVDictionary options = new AVDictionary(null);
+        // Keep the input timestamps, rather than offsetting them by the muxing delay
+        av_dict_set(options, "mpegts_copyts", "1", 0);
+        if ("mpegts".equals(input.iformat().name().getString()) && input.nb_programs() > 0) {
+            AVProgram program = input.programs(0);
+            av_dict_set(options, "mpegts_service_id", Integer.toString(program.id()), 0);
+            if (program.pmt_pid() >= MIN_PMT_PID && program.pmt_pid() <= MAX_PMT_PID) {
+                av_dict_set(
+                        options, "mpegts_pmt_start_pid", Integer.toString(program.pmt_pid()), 0);
+            }
+        }
+        ret = avformat_write_header(output, options);
+        av_dict_free(options);
+        if (ret < 0) {
+            throw new IOException("Error writing header: " + FfmpegUtils.formatError(ret));
+        }
+    }
+
+    /**
+     * Add a KLV stream to the output.
+     *
+     * @param maxId The highest identifier of the other streams
+     * @param videoStreamIndex Index of the input video stream, or -1 if none
+     * @return The new stream
+     */
+    private KlvStream addKlvStream(int maxId, int videoStreamIndex) {
+        AVStream stream = avformat_new_stream(output, null);
+        AVCodecParameters parameters = stream.codecpar();
+        boolean synchronous = addedKlvFormat.equals(KlvFormat.Synchronous);
+        parameters.profile(synchronous ? FF_PROFILE_KLVA_SYNC : FF_PROFILE_KLVA_ASYNC);
+        parameters.codec_tag(FfmpegUtils.fourCcToTag("klva"));
+        parameters.codec_type(AVMEDIA_TYPE_DATA);
+        parameters.codec_id(AV_CODEC_ID_SMPTE_KLV);
+        if (maxId > 0 && maxId < 0x1FFE) {
+            // The muxer numbers streams without an identifier from its start PID, which could
+            // clash with the PIDs copied from the input
+            stream.id(maxId + 1);
+        }
+        if (videoStreamIndex >= 0) {
+            stream.time_base(input.streams(videoStreamIndex).time_base());
+        }
+        return new KlvStream(stream, synchronous);
+    }
+
+    private void processPacket(AVPacket packet) throws IOException {
+        int index = packet.stream_index();
+        if (index < 0 || index >= mappings.length) {
+            return;
+        }
+        StreamMapping mapping = mappings[index];
+        if (mapping.video) {
+            insertMetadata(packet, mapping);
+            writePacket(packet, mapping.inputTimeBase, mapping.stream, null);
+        } else if (mapping.klv != null) {
+            processMetadata(packet, mapping);
+        } else {
+            writePacket(packet, mapping.inputTimeBase, mapping.stream, null);
+        }
+    }
+
+    /**
+     * Check whether a handler returned the messages it was given, unchanged.
+     *
+     * @param replacement The messages returned by the handler
+     * @param parsed The messages parsed from the packet
+     * @return True if both lists hold the same message instances in the same order
+     */
+    private static boolean isSameMessages(
+            List<IMisbMessage> replacement, List<IMisbMessage> parsed) {
+        if (replacement.size() != parsed.size()) {
+            return false;
+        }
+        for (int i = 0; i < parsed.size(); ++i) {
+            if (replacement.get(i) != parsed.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insertMetadata(AVPacket videoPacket, StreamMapping mapping) throws IOException {
+        long pts = videoPacket.pts() != AV_NOPTS_VALUE ? videoPacket.pts() : videoPacket.dts();
+        List<IMisbMessage> messages =
+                handler.onVideoPacket(
+                        toSeconds(pts, mapping.inputTimeBase),
+                        (videoPacket.flags() & AV_PKT_FLAG_KEY) != 0);
+        if (messages == null || messages.isEmpty() || insertTarget == null) {
+            return;
+        }
+        AVPacket packet = newMetadataPacket(insertTarget, null, messages);
+        try {
+            packet.pts(pts);
+            packet.dts(pts);
+            BytePointer streamId = av_packet_new_side_data(packet, AV_PKT_DATA_MPEGTS_STREAM_ID, 1);
+            if (streamId != null && !streamId.isNull()) {
+                streamId.put(
+                        insertTarget.synchronous
+                                ? VideoFileOutput.SYNC_STREAM_ID
+                                : VideoFileOutput.ASYNC_STREAM_ID);
+            }
+            writePacket(packet, mapping.inputTimeBase, insertTarget.stream, insertTarget);
+            klvPacketsInserted++;
+        } finally {
+            av_packet_free(packet);
+        }
+    }
+
+    private void processMetadata(AVPacket packet, StreamMapping mapping) throws IOException {
+        ByteBuffer data = packet.data().capacity(packet.size()).asByteBuffer();
+        List<IMisbMessage> replacement = null;
+        try {
+            List<IMisbMessage> parsed = KlvParser.parseBytes(data);
+            replacement =
+                    handler.onMetadata(
+                            new ArrayList<>(parsed),
+                            toSeconds(packet.pts(), mapping.inputTimeBase));
+            if (replacement != null && isSameMessages(replacement, parsed)) {
+                // Handed back as parsed, so copy the original
+                replacement = null;
+            }
+        } catch (KlvParseException e) {
+            logger.warn("Copying KLV packet that could not be parsed: " + e.getMessage());
+        }
+
+        KlvStream klv = mapping.klv;
+        if (replacement != null) {
+            klvPacketsModified++;
+            if (replacement.isEmpty()) {
+                return;
+            }
+        } else if (!klv.synchronous) {
+            writePacket(packet, mapping.inputTimeBase, klv.stream, klv);
+            return;
+        }
+
+        // The demuxer removes the access unit header of synchronous metadata, so those packets
+        // are always rebuilt
+        AVPacket rebuilt = newMetadataPacket(klv, replacement == null ? data : null, replacement);
+        try {
+            int ret;
+            if ((ret = av_packet_copy_props(rebuilt, packet)) < 0) {
+                throw new IOException(
+                        "Could not copy packet properties: " + FfmpegUtils.formatError(ret));
+            }
+            writePacket(rebuilt, mapping.inputTimeBase, klv.stream, klv);
+        } finally {
+            av_packet_free(rebuilt);
+        }
+    }
+
+    /**
+     * Create a KLV packet.
+     *
+     * @param klv The stream the packet is for
+     * @param raw The encoded messages, or null to encode {@code messages}
+     * @param messages The messages, if {@code raw} is null
+     * @return The packet, with only the data set
+     * @throws IOException if the packet could not be allocated
+     */
+    private static AVPacket newMetadataPacket(
+            KlvStream klv, ByteBuffer raw, List<IMisbMessage> messages) throws IOException {
+        int length = 0;
+        if (raw != null) {
+            length = raw.remaining();
+        } else {
+            for (IMisbMessage message : messages) {
+                length += message.getFramedLength(false);
+            }
+        }
+        int headerLength = klv.synchronous ? VideoOutput.METADATA_AU_HEADER_LEN : 0;
+        AVPacket packet = av_packet_alloc();
+        int ret;
+        if ((ret = av_new_packet(packet, headerLength + length)) < 0) {
+            av_packet_free(packet);
+            throw new IOException(
+                    "Could not allocate metadata packet: " + FfmpegUtils.formatError(ret));
+        }
+        ByteBuffer data = packet.data().capacity(packet.size()).asByteBuffer();
+        if (klv.synchronous) {
+            data.put((byte) 0x00); /* metadata_service_id */
+            data.put((byte) klv.sequenceNumber++);
+            data.put((byte) 0b11011111);
+            data.put((byte) (length >>> 8));
+            data.put((byte) length);
+        }
+        if (raw != null) {
+            data.put(raw.duplicate());
+        } else {
+            for (IMisbMessage message : messages) {
+                message.frameMessage(false, data);
+            }
+        }
+        return packet;
+    }
+
+    /**
+     * Write a packet to the output.
+     *
+     * @param packet The packet, which is unreferenced once written
+     * @param timeBase The time base of the packet timestamps
+     * @param stream The output stream
+     * @param klv The state of the output stream if it is a KLV stream, otherwise null
+     * @throws IOException if the packet could not be written
+     */
+    private void writePacket(AVPacket packet, AVRational timeBase, AVStream stream, KlvStream klv)
+            throws IOException {
+        packet.stream_index(stream.index());
+        av_packet_rescale_ts(packet, timeBase, stream.time_base());
+        packet.pos(-1);
+        if (klv != null && packet.dts() != AV_NOPTS_VALUE) {
+            // Inserted packets can share a timestamp with copied ones, which the muxer rejects
+            if (klv.lastDts != AV_NOPTS_VALUE && packet.dts() <= klv.lastDts) {
+                packet.dts(klv.lastDts + 1);
+                if (packet.pts() != AV_NOPTS_VALUE && packet.pts() < packet.dts()) {
+                    packet.pts(packet.dts());
+                }
+            }
+            klv.lastDts = packet.dts();
+        }
+        int ret;
+        if ((ret = av_interleaved_write_frame(output, packet)) < 0) {
+            throw new IOException("Error writing packet: " + FfmpegUtils.formatError(ret));
+        }
+    }
+
+    private static double toSeconds(long timestamp, AVRational timeBase) {
+        return timestamp == AV_NOPTS_VALUE ? Double.NaN : timestamp * av_q2d(timeBase);
+    }
+
+    private void close() {
+        while (!probed.isEmpty()) {
+            av_packet_free(probed.poll());
+        }
+        if (output != null) {
+            if (output.pb() != null) {
+                avio_close(output.pb());
+            }
+            avformat_free_context(output);
+            output = null;
+        }
+        if (input != null) {
+            avformat_close_input(input);
+            input = null;
+        }
+        mappings = null;
+        insertTarget = null;
+    }
+}
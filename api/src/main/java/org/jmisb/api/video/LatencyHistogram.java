@@ -0,0 +1,123 @@
+package org.jmisb.api.video;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of processing latencies.
+ *
+ * <p>Latencies are counted in power-of-two buckets of microseconds: bucket 0 holds latencies under
+ * 1 µs, and bucket {@code i} holds latencies of at least 2<sup>i-1</sup> and under 2<sup>i</sup>
+ * µs. Recording is lock-free, so the histogram can be read while a decoder thread updates it.
+ */
+public class LatencyHistogram {
+    /** The number of buckets; the last also holds anything longer than about 18 minutes. */
+    public static final int NUM_BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    void record(long nanos) {
+        long micros = Math.max(nanos, 0) / 1000;
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), NUM_BUCKETS - 1);
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Get the number of latencies recorded.
+     *
+     * @return The number of latencies
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the mean latency.
+     *
+     * @return The mean in microseconds, or 0 if nothing has been recorded
+     */
+    public double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0.0 : totalNanos.get() / 1000.0 / n;
+    }
+
+    /**
+     * Get the longest latency.
+     *
+     * @return The maximum in microseconds, or 0 if nothing has been recorded
+     */
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    /**
+     * Estimate a latency percentile.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The upper bound of the bucket holding the percentile, in microseconds, or 0 if
+     *     nothing has been recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (NUM_BUCKETS - 1);
+    }
+
+    /**
+     * Get the number of latencies in each bucket.
+     *
+     * @return A copy of the counts, of length {@link #NUM_BUCKETS}
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /** Reset the histogram to empty. */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "n = %d, mean = %.1f us, p99 <= %d us, max = %.1f us",
+                getCount(), getMeanMicros(), getPercentileMicros(99), getMaxMicros());
+    }
+}
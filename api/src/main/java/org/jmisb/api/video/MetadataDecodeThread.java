@@ -1,18 +1,20 @@
 package org.jmisb.api.video;
 
 import static org.bytedeco.ffmpeg.global.avcodec.av_packet_clone;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_alloc_context3;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_free_context;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_parameters_to_context;
 import static org.bytedeco.ffmpeg.global.avutil.av_q2d;
 
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
 import org.bytedeco.ffmpeg.avcodec.AVPacket;
 import org.bytedeco.ffmpeg.avformat.AVStream;
+import org.jmisb.api.common.InvalidDataHandler;
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IMisbMessage;
 import org.jmisb.api.klv.KlvParser;
@@ -31,7 +33,18 @@ class MetadataDecodeThread extends ProcessingThread {
     private static final int INPUT_QUEUE_SIZE = 100;
     private final VideoInput inputStream;
     private final AVStream dataStream;
-    private BlockingQueue<AVPacket> packetQueue = new LinkedBlockingDeque<>(INPUT_QUEUE_SIZE);
+    private final InputStatistics statistics;
+    private final HandoffQueue<AVPacket> packetQueue =
+            new HandoffQueue<>(INPUT_QUEUE_SIZE, BackpressurePolicy.Block, p -> av_packet_free(p));
+
+    /** Called once the packet queue has drained after end of file, or null. */
+    private volatile Runnable endOfFileCallback;
+
+    /** Packets before this time are discarded, e.g. following a seek. */
+    private volatile double skipBeforePts = Double.NEGATIVE_INFINITY;
+
+    /** Incremented each time the decoder is cleared for a seek. */
+    private final AtomicInteger clearCount = new AtomicInteger();
 
     /**
      * Constructor.
@@ -42,28 +55,86 @@ class MetadataDecodeThread extends ProcessingThread {
     MetadataDecodeThread(VideoInput inputStream, AVStream dataStream) {
         this.inputStream = inputStream;
         this.dataStream = dataStream;
+        this.statistics = inputStream.getStatistics();
         start();
     }
 
     /**
      * Enqueue an incoming packet for decoding.
      *
-     * @param packet The packet to queue
-     * @return True if the packet was queued, false if the queue is currently full
+     * <p>Blocks while the queue is full.
+     *
+     * @param packet The packet to queue, which is cloned
+     * @param abort Condition under which to stop waiting for space in the queue
+     * @return True if the packet was queued, false if waiting was aborted
      */
-    public boolean enqueue(AVPacket packet) {
-        try {
-            return packetQueue.offer(av_packet_clone(packet), 10, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException ignored) {
-            return false;
-        }
+    public boolean enqueue(AVPacket packet, BooleanSupplier abort) {
+        return packetQueue.put(av_packet_clone(packet), abort);
     }
 
+    /**
+     * Get the number of packets waiting to be decoded.
+     *
+     * @return The queue depth
+     */
+    int getQueueDepth() {
+        return packetQueue.size();
+    }
+
+    /** Clear the queue of packets to be decoded, releasing the cloned packets. */
     public void clear() {
-        // Clear out our input queue
+        clear(Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Clear the queue of packets to be decoded, releasing the cloned packets, after a seek.
+     *
+     * @param targetPts Packets with a timestamp before this are discarded without being parsed,
+     *     until the first packet at or after it
+     */
+    void clear(double targetPts) {
+        clearCount.incrementAndGet();
+        skipBeforePts = targetPts;
+        endOfFileCallback = null;
         packetQueue.clear();
     }
 
+    /**
+     * Indicate that no more packets will be queued until the next seek.
+     *
+     * @param callback Called from this thread once all queued packets have been decoded
+     */
+    void markEndOfFile(Runnable callback) {
+        endOfFileCallback = callback;
+        packetQueue.wakeAll();
+    }
+
+    /**
+     * Check whether all packets have been decoded after end of file.
+     *
+     * @return True if end of file was marked and the packet queue is empty
+     */
+    private boolean isDrainedAtEndOfFile() {
+        return endOfFileCallback != null && packetQueue.isEmpty();
+    }
+
+    /** Run the end of file callback if all packets have been decoded. */
+    private void checkEndOfFile() {
+        if (isDrainedAtEndOfFile()) {
+            Runnable callback = endOfFileCallback;
+            endOfFileCallback = null;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    @Override
+    protected void wakeup() {
+        packetQueue.wakeAll();
+        inputStream.wakeQueues();
+    }
+
     @Override
     public void run() {
         Thread.currentThread()
@@ -87,6 +158,9 @@ class MetadataDecodeThread extends ProcessingThread {
             return;
         }
 
+        // Attribute checksum and other invalid data errors to this input
+        InvalidDataHandler.getInstance().setThreadCounts(statistics.getInvalidDataCounts());
+
         while (!isShutdown()) {
             // If paused, sleep until play() or shutdown() is called
             if (pauseOrResume()) {
@@ -94,46 +168,73 @@ class MetadataDecodeThread extends ProcessingThread {
                 break;
             }
 
+            checkEndOfFile();
+            AVPacket packet =
+                    packetQueue.take(() -> isShutdownOrPauseRequested() || isDrainedAtEndOfFile());
+            if (packet == null) {
+                // Pause, shutdown or end of file
+                continue;
+            }
+            double pts = packet.pts() * av_q2d(dataStream.time_base());
+            // logger.debug("Data PTS = " + pts);
+            if (pts < skipBeforePts) {
+                // Precedes the frame we seeked to
+                av_packet_free(packet);
+                continue;
+            }
+            skipBeforePts = Double.NEGATIVE_INFINITY;
+
+            // Parse directly from the packet data; messages do not retain the buffer, so
+            // the packet can be released as soon as parsing is complete
+            ByteBuffer data = packet.data().capacity(packet.size()).asByteBuffer();
+
+            long startTime = System.nanoTime();
             try {
-                AVPacket packet = packetQueue.poll(10, TimeUnit.MILLISECONDS);
-                if (packet != null) {
-                    double pts = packet.pts() * av_q2d(dataStream.time_base());
-                    // logger.debug("Data PTS = " + pts);
-
-                    byte[] data = new byte[packet.size()];
-                    packet.data().get(data);
-
-                    try {
-                        List<IMisbMessage> messages = KlvParser.parseBytes(data);
-                        for (IMisbMessage message : messages) {
-                            boolean queued = false;
-                            while (!queued && !isShutdown() && !isPauseRequested()) {
-                                queued =
-                                        inputStream.queueMetadataFrame(
-                                                new MetadataFrame(message, pts), 20);
-                            }
-                            if (isShutdown() || isPauseRequested()) break;
-                        }
-                    } catch (KlvParseException exception) {
-                        logger.error("KLV parse exception", exception);
-                        if (logger.isDebugEnabled()) {
-                            logger.debug(ArrayUtils.toHexString(data));
-                        }
+                List<IMisbMessage> messages = KlvParser.parseBytes(data);
+                statistics.metadataPacketParsed(messages.size(), System.nanoTime() - startTime);
+                for (IMisbMessage message : messages) {
+                    // Blocks or drops according to the backpressure policy
+                    if (!deliver(new MetadataFrame(message, pts))) {
+                        break;
                     }
                 }
-            } catch (InterruptedException ignored) {
+            } catch (KlvParseException exception) {
+                statistics.metadataParseFailed(data, System.nanoTime() - startTime);
+                logger.error("KLV parse exception", exception);
+                if (logger.isDebugEnabled()) {
+                    byte[] bytes = new byte[data.remaining()];
+                    data.duplicate().get(bytes);
+                    logger.debug(ArrayUtils.toHexString(bytes));
+                }
+            } finally {
+                av_packet_free(packet);
             }
         }
 
         if (logger.isDebugEnabled()) logger.debug("Data stream decoder exiting");
 
+        InvalidDataHandler.getInstance().setThreadCounts(null);
+        packetQueue.clear();
         avcodec_free_context(codecContext);
     }
 
-    public void notifyEOF() {
-        if (inputStream instanceof IVideoFileInput) {
-            IVideoFileInput fileInputStream = (IVideoFileInput) inputStream;
-            fileInputStream.notifyEOF();
+    /**
+     * Hand a metadata frame to the input.
+     *
+     * <p>Under {@link BackpressurePolicy#Block} this waits for space in the queue. A pause does not
+     * lose the frame: it is kept and handed over once playing resumes. Only a seek, which clears
+     * this decoder, or a shutdown discards it.
+     *
+     * @param frame The metadata frame
+     * @return True if the frame was handed over, false if it was discarded
+     */
+    private boolean deliver(MetadataFrame frame) {
+        int generation = clearCount.get();
+        while (!inputStream.offerMetadataFrame(frame, this::isShutdownOrPauseRequested)) {
+            if (pauseOrResume() || clearCount.get() != generation) {
+                return false;
+            }
         }
+        return true;
     }
 }
@@ -0,0 +1,83 @@
+package org.jmisb.api.video;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.IMisbMessage;
+import org.jmisb.api.klv.KlvParser;
+import org.jmisb.core.klv.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class for iterators over the metadata in a source, read as fast as possible.
+ *
+ * <p>Subclasses read the source one unit (packet, PES or message) at a time and pass the KLV bytes
+ * to {@link #parse(ByteBuffer, double)}. Parse errors are logged and the affected bytes skipped,
+ * the same as for a {@link VideoInput}.
+ */
+abstract class MetadataFrameIterator implements Iterator<MetadataFrame>, Closeable {
+    private static Logger logger = LoggerFactory.getLogger(MetadataFrameIterator.class);
+    private final ArrayDeque<MetadataFrame> pending = new ArrayDeque<>();
+    private boolean finished;
+
+    /**
+     * Read the next unit of the source, calling {@link #parse(ByteBuffer, double)} for any KLV it
+     * contains.
+     *
+     * @return false once the end of the source has been reached
+     * @throws IOException if the source could not be read
+     */
+    protected abstract boolean readNext() throws IOException;
+
+    /**
+     * Parse KLV bytes and queue the resulting frames.
+     *
+     * @param data The KLV bytes, from position to limit
+     * @param pts The presentation timestamp in seconds
+     */
+    protected void parse(ByteBuffer data, double pts) {
+        try {
+            List<IMisbMessage> messages = KlvParser.parseBytes(data);
+            for (IMisbMessage message : messages) {
+                pending.add(new MetadataFrame(message, pts));
+            }
+        } catch (KlvParseException exception) {
+            logger.error("KLV parse exception", exception);
+            if (logger.isDebugEnabled()) {
+                byte[] bytes = new byte[data.remaining()];
+                data.duplicate().get(bytes);
+                logger.debug(ArrayUtils.toHexString(bytes));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (pending.isEmpty() && !finished) {
+                if (!readNext()) {
+                    finished = true;
+                    close();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public MetadataFrame next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return pending.poll();
+    }
+}
@@ -1,13 +1,20 @@
 package org.jmisb.api.video;
 
-import org.jmisb.core.video.TimingUtils;
-
-/** Thread allowing itself to be paused and unpaused. */
+/**
+ * Thread allowing itself to be paused and unpaused.
+ *
+ * <p>Pausing, resuming and shutting down are signalled rather than polled. Subclasses that block on
+ * a {@link HandoffQueue} override {@link #wakeup()} so that a pause or shutdown request reaches
+ * them promptly.
+ */
 class ProcessingThread extends Thread {
+    /** Upper bound on each wait in {@link #pause()}, in case the thread exits without pausing. */
+    private static final long PAUSE_CHECK_MILLIS = 100;
+
     private final Object pauseLock = new Object();
-    private boolean shutdown = false;
-    private boolean paused = false;
-    private boolean pauseRequested = false;
+    private volatile boolean shutdown = false;
+    private volatile boolean paused = false;
+    private volatile boolean pauseRequested = false;
 
     /**
      * Pause if requested and check whether to shut down.
@@ -19,15 +26,17 @@ class ProcessingThread extends Thread {
             if (shutdown) return true;
             if (pauseRequested) {
                 paused = true;
+                pauseLock.notifyAll();
                 try {
-                    pauseLock.wait();
+                    while (pauseRequested && !shutdown) {
+                        pauseLock.wait();
+                    }
                 } catch (InterruptedException e) {
                     return true;
+                } finally {
+                    paused = false;
                 }
 
-                paused = false;
-                pauseRequested = false;
-
                 if (shutdown) return true;
             }
         }
@@ -37,6 +46,7 @@ class ProcessingThread extends Thread {
     protected void shutdown() {
         shutdown = true;
         play(); // to unblock
+        wakeup();
     }
 
     protected boolean isShutdown() {
@@ -50,8 +60,14 @@ class ProcessingThread extends Thread {
      */
     protected void pause() {
         requestPause();
-        while (!isPaused()) {
-            TimingUtils.shortWait(10);
+        synchronized (pauseLock) {
+            while (!paused && pauseRequested && !shutdown && isAlive()) {
+                try {
+                    pauseLock.wait(PAUSE_CHECK_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
         }
     }
 
@@ -66,15 +82,34 @@ class ProcessingThread extends Thread {
      */
     protected void requestPause() {
         pauseRequested = true;
+        wakeup();
     }
 
     protected boolean isPauseRequested() {
         return pauseRequested;
     }
 
+    /**
+     * Check whether a blocking operation should give up.
+     *
+     * @return True if a shutdown or pause has been requested
+     */
+    protected boolean isShutdownOrPauseRequested() {
+        return shutdown || pauseRequested;
+    }
+
     protected void play() {
         synchronized (pauseLock) {
+            pauseRequested = false;
             pauseLock.notifyAll();
         }
     }
+
+    /**
+     * Wake the thread if it is blocked waiting for data, so it can act on a pause or shutdown
+     * request.
+     *
+     * <p>The default implementation does nothing.
+     */
+    protected void wakeup() {}
 }
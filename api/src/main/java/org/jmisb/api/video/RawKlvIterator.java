@@ -0,0 +1,85 @@
+package org.jmisb.api.video;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import org.jmisb.api.klv.BerDecoder;
+import org.jmisb.api.klv.BerField;
+import org.jmisb.api.klv.UniversalLabel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterator over a raw KLV dump: top-level messages stored back to back, with no container.
+ *
+ * <p>Raw KLV has no timing information, so frames have a presentation timestamp of {@link
+ * Double#NaN}.
+ */
+class RawKlvIterator extends MetadataFrameIterator {
+    private static Logger logger = LoggerFactory.getLogger(RawKlvIterator.class);
+    private static final int BUFFER_SIZE = 1 << 20;
+    private final ReadableByteChannel channel;
+    private final ChannelBuffer input;
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel to read from, which is closed with the iterator
+     */
+    RawKlvIterator(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.input = new ChannelBuffer(channel, BUFFER_SIZE);
+    }
+
+    @Override
+    protected boolean readNext() throws IOException {
+        // Key, plus the first byte of the length
+        final int keyLength = UniversalLabel.LENGTH;
+        if (!input.request(keyLength + 1)) {
+            warnIfTruncated();
+            return false;
+        }
+        int first = input.buffer().get(input.buffer().position() + keyLength) & 0xFF;
+        int lengthOfLength = (first & 0x80) == 0 ? 1 : 1 + (first & 0x7F);
+        if (!input.request(keyLength + lengthOfLength)) {
+            warnIfTruncated();
+            return false;
+        }
+
+        ByteBuffer buffer = input.buffer();
+        long messageLength;
+        try {
+            BerField length = BerDecoder.decode(buffer, buffer.position() + keyLength, false);
+            messageLength = (long) keyLength + length.getLength() + length.getValue();
+            if (length.getValue() < 0) {
+                throw new IllegalArgumentException("Negative length " + length.getValue());
+            }
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid KLV length, abandoning raw KLV input", e);
+            return false;
+        }
+        if (messageLength > Integer.MAX_VALUE || !input.request((int) messageLength)) {
+            warnIfTruncated();
+            return false;
+        }
+
+        buffer = input.buffer();
+        ByteBuffer message = buffer.duplicate();
+        message.limit(buffer.position() + (int) messageLength);
+        parse(message, Double.NaN);
+        input.skip((int) messageLength);
+        return true;
+    }
+
+    private void warnIfTruncated() {
+        if (input.remaining() > 0) {
+            logger.warn(
+                    "Ignoring " + input.remaining() + " bytes of truncated KLV at end of input");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
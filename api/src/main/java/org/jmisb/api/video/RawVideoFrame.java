@@ -0,0 +1,250 @@
+package org.jmisb.api.video;
+
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_alloc;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_free;
+import static org.bytedeco.ffmpeg.global.avutil.av_get_pix_fmt_name;
+import static org.bytedeco.ffmpeg.global.avutil.av_pix_fmt_count_planes;
+import static org.bytedeco.ffmpeg.global.avutil.av_pix_fmt_desc_get;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bytedeco.ffmpeg.avutil.AVFrame;
+import org.bytedeco.ffmpeg.avutil.AVPixFmtDescriptor;
+import org.bytedeco.javacpp.BytePointer;
+
+/**
+ * An uncompressed video frame in its native (or a requested) pixel format.
+ *
+ * <p>Each plane is exposed as a read-only direct {@link ByteBuffer} over the decoder's memory,
+ * together with its line size (stride) in bytes, which may be larger than the visible width. For
+ * example, a YUV420P frame has three planes: full resolution luma, and two chroma planes at half
+ * the width and height.
+ *
+ * <p>The frame holds native memory. Each listener receiving a frame must call {@link #close()} (or
+ * use try-with-resources) once it has finished with it, after which the plane buffers must not be
+ * used.
+ *
+ * <p>Frames can also be written to a {@link VideoFileOutput} or {@link VideoStreamOutput}, either
+ * as received from an input or wrapping image data the application already has in native memory
+ * (see {@link #wrap}).
+ */
+public class RawVideoFrame implements DecodedFrame {
+    private final AVFrame frame;
+    private final double pts;
+    private final int planeCount;
+    private final ByteBuffer[] planes;
+    private final AtomicInteger references = new AtomicInteger(1);
+    // Keeps wrapped application buffers reachable while the frame points to them
+    private final ByteBuffer[] sources;
+
+    /**
+     * Constructor.
+     *
+     * @param frame The frame, which this object takes ownership of
+     * @param pts The presentation timestamp, in seconds
+     */
+    RawVideoFrame(AVFrame frame, double pts) {
+        this(frame, pts, null);
+    }
+
+    private RawVideoFrame(AVFrame frame, double pts, ByteBuffer[] sources) {
+        this.frame = frame;
+        this.pts = pts;
+        this.sources = sources;
+        this.planeCount = Math.max(av_pix_fmt_count_planes(frame.format()), 0);
+        this.planes = new ByteBuffer[planeCount];
+        AVPixFmtDescriptor descriptor = av_pix_fmt_desc_get(frame.format());
+        for (int i = 0; i < planeCount; ++i) {
+            int rows = frame.height();
+            if ((i == 1 || i == 2) && descriptor != null) {
+                // Chroma planes are subsampled vertically, rounding up
+                rows = -((-rows) >> descriptor.log2_chroma_h());
+            }
+            int size = Math.abs(frame.linesize(i)) * rows;
+            BytePointer data = frame.data(i);
+            planes[i] =
+                    sources != null
+                            ? sources[i].asReadOnlyBuffer()
+                            : data.capacity(size).asByteBuffer().asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Wrap image data in direct buffers as a frame, without copying it.
+     *
+     * <p>This allows images that are already in a planar or encoder-ready format, such as the
+     * output of native processing, to be written to a {@link VideoFileOutput} or {@link
+     * VideoStreamOutput} without conversion through {@link java.awt.image.BufferedImage}. For
+     * example, a YUV420P image has three planes (Y, U and V) and an NV12 image two (Y, and
+     * interleaved UV), while BGR24 has a single plane of packed pixels.
+     *
+     * <p>The frame refers to the buffers' memory from their current positions, so they must not be
+     * modified until the output has finished with the frame (see {@link
+     * IVideoFileOutput#addRawVideoFrame(RawVideoFrame)} and {@link
+     * IVideoStreamOutput#queueRawVideoFrame(RawVideoFrame)}). Closing the frame does not affect the
+     * buffers.
+     *
+     * @param pixelFormat The FFmpeg pixel format (one of the {@code AV_PIX_FMT_*} constants, e.g.
+     *     {@code AV_PIX_FMT_YUV420P}, {@code AV_PIX_FMT_NV12} or {@code AV_PIX_FMT_BGR24})
+     * @param width The image width, in pixels
+     * @param height The image height, in pixels
+     * @param planes Direct buffers holding each plane
+     * @param lineSizes The number of bytes between the starts of consecutive rows in each plane
+     * @param pts The presentation timestamp, in seconds
+     * @return The frame
+     * @throws IllegalArgumentException if the buffers do not match the pixel format and size
+     */
+    public static RawVideoFrame wrap(
+            int pixelFormat,
+            int width,
+            int height,
+            ByteBuffer[] planes,
+            int[] lineSizes,
+            double pts) {
+        AVPixFmtDescriptor descriptor = av_pix_fmt_desc_get(pixelFormat);
+        int planeCount = av_pix_fmt_count_planes(pixelFormat);
+        if (descriptor == null || planeCount <= 0) {
+            throw new IllegalArgumentException("Invalid pixel format " + pixelFormat);
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        if (planes.length != planeCount || lineSizes.length != planeCount) {
+            throw new IllegalArgumentException(
+                    "Pixel format " + pixelFormat + " requires " + planeCount + " planes");
+        }
+        ByteBuffer[] sources = new ByteBuffer[planeCount];
+        for (int i = 0; i < planeCount; ++i) {
+            if (!planes[i].isDirect()) {
+                throw new IllegalArgumentException("Plane " + i + " is not a direct buffer");
+            }
+            int rows = height;
+            if (i == 1 || i == 2) {
+                rows = -((-rows) >> descriptor.log2_chroma_h());
+            }
+            if (lineSizes[i] <= 0 || (long) lineSizes[i] * rows > planes[i].remaining()) {
+                throw new IllegalArgumentException(
+                        "Plane " + i + " is too small for " + rows + " rows of " + lineSizes[i]);
+            }
+            sources[i] = planes[i].slice();
+        }
+        AVFrame frame = av_frame_alloc();
+        frame.format(pixelFormat);
+        frame.width(width);
+        frame.height(height);
+        for (int i = 0; i < planeCount; ++i) {
+            frame.data(i, new BytePointer(sources[i]));
+            frame.linesize(i, lineSizes[i]);
+        }
+        return new RawVideoFrame(frame, pts, sources);
+    }
+
+    /**
+     * Get the native frame.
+     *
+     * @return The frame, which remains owned by this object
+     */
+    AVFrame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Get the image width.
+     *
+     * @return The width, in pixels
+     */
+    public int getWidth() {
+        return frame.width();
+    }
+
+    /**
+     * Get the image height.
+     *
+     * @return The height, in pixels
+     */
+    public int getHeight() {
+        return frame.height();
+    }
+
+    /**
+     * Get the pixel format.
+     *
+     * @return The FFmpeg pixel format identifier (one of the {@code AV_PIX_FMT_*} constants)
+     */
+    public int getPixelFormat() {
+        return frame.format();
+    }
+
+    /**
+     * Get the name of the pixel format.
+     *
+     * @return The FFmpeg pixel format name, e.g. "yuv420p"
+     */
+    public String getPixelFormatName() {
+        BytePointer name = av_get_pix_fmt_name(frame.format());
+        return name == null ? "unknown" : name.getString();
+    }
+
+    /**
+     * Get the number of planes.
+     *
+     * @return The number of planes, e.g. 3 for YUV420P or 1 for packed formats
+     */
+    public int getPlaneCount() {
+        return planeCount;
+    }
+
+    /**
+     * Get the data for one plane.
+     *
+     * @param plane The plane index, from 0 to {@link #getPlaneCount()} - 1
+     * @return Read-only direct buffer containing {@link #getLineSize(int)} bytes per row
+     */
+    public ByteBuffer getPlane(int plane) {
+        return planes[plane].duplicate();
+    }
+
+    /**
+     * Get the line size (stride) of one plane.
+     *
+     * @param plane The plane index, from 0 to {@link #getPlaneCount()} - 1
+     * @return The number of bytes between the starts of consecutive rows
+     */
+    public int getLineSize(int plane) {
+        if (plane < 0 || plane >= planeCount) {
+            throw new IndexOutOfBoundsException("Invalid plane index " + plane);
+        }
+        return frame.linesize(plane);
+    }
+
+    /**
+     * Get the presentation timestamp.
+     *
+     * @return The presentation timestamp, in seconds
+     */
+    public double getPts() {
+        return pts;
+    }
+
+    /**
+     * Add references to the frame, one for each additional holder that will close it.
+     *
+     * @param count The number of references to add
+     */
+    void retain(int count) {
+        references.addAndGet(count);
+    }
+
+    /**
+     * Release this reference to the frame.
+     *
+     * <p>When the last reference is released, the native frame is freed. The buffers of a wrapped
+     * frame belong to the application, and are not affected.
+     */
+    @Override
+    public void close() {
+        if (references.decrementAndGet() == 0) {
+            av_frame_free(frame);
+        }
+    }
+}
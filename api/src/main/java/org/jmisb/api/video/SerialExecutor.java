@@ -0,0 +1,104 @@
+package org.jmisb.api.video;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Executor running tasks one at a time, in submission order, on a shared executor.
+ *
+ * <p>Many serial executors can share a single (bounded) pool. At most one task from each serial
+ * executor is scheduled on the pool at any time, so tasks submitted to the same serial executor
+ * never run concurrently and always run in the order they were submitted. Idle serial executors do
+ * not hold a pool thread.
+ *
+ * <p>If the shared executor rejects a task after the previous one has completed (for example
+ * because the pool has been shut down), the serial executor fails: the tasks that will never run
+ * are passed to the rejection handler, and subsequent calls to {@link #execute(Runnable)} throw
+ * {@link RejectedExecutionException}.
+ */
+class SerialExecutor implements Executor {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor executor;
+    private final Consumer<List<Runnable>> rejectionHandler;
+    private Runnable active;
+    private boolean failed;
+
+    /**
+     * Constructor.
+     *
+     * @param executor The shared executor that runs the tasks
+     */
+    SerialExecutor(Executor executor) {
+        this(executor, dropped -> {});
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor The shared executor that runs the tasks
+     * @param rejectionHandler Called with the tasks that will never run, in submission order, if
+     *     the shared executor rejects a task after the previous one has completed. It is called on
+     *     the pool thread that ran the previous task.
+     */
+    SerialExecutor(Executor executor, Consumer<List<Runnable>> rejectionHandler) {
+        this.executor = executor;
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        if (failed) {
+            throw new RejectedExecutionException("Serial executor has failed");
+        }
+        tasks.add(task);
+        if (active == null) {
+            try {
+                scheduleNext();
+            } catch (RuntimeException e) {
+                // The shared executor rejected the task; do not leave it queued
+                tasks.clear();
+                active = null;
+                throw e;
+            }
+        }
+    }
+
+    /** Hand the next queued task (if any) to the shared executor. */
+    private synchronized void scheduleNext() {
+        if ((active = tasks.poll()) != null) {
+            Runnable task = active;
+            executor.execute(
+                    () -> {
+                        try {
+                            task.run();
+                        } finally {
+                            next();
+                        }
+                    });
+        }
+    }
+
+    /** Schedule the next task once the active one has completed. Runs on a pool thread. */
+    private void next() {
+        List<Runnable> dropped;
+        synchronized (this) {
+            try {
+                scheduleNext();
+                return;
+            } catch (RejectedExecutionException e) {
+                failed = true;
+                dropped = new ArrayList<>(tasks.size() + 1);
+                dropped.add(active);
+                dropped.addAll(tasks);
+                tasks.clear();
+                active = null;
+            }
+        }
+        rejectionHandler.accept(dropped);
+    }
+}
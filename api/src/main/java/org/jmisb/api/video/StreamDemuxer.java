@@ -36,14 +36,10 @@ class StreamDemuxer extends Demuxer {
                 continue;
             }
 
-            // Pass packet to the appropriate decoder
-            boolean queued = false;
-            while (shouldDecode(packet) && !queued && !isShutdown()) {
-                if (packet.stream_index() == videoStreamIndex) {
-                    queued = videoDecodeThread.enqueue(packet);
-                } else if (dataStreamIndices.contains(packet.stream_index())) {
-                    queued = metadataDecodeThreads.get(packet.stream_index()).enqueue(packet);
-                }
+            // Pass packet to the appropriate decoder, waiting while its queue is full
+            if (shouldDecode(packet)) {
+                countDemuxed(packet);
+                enqueue(packet, this::isShutdown);
             }
 
             // Release the packet's buffer
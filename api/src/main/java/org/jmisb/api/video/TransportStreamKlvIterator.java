@@ -0,0 +1,272 @@
+package org.jmisb.api.video;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterator over the KLV metadata in an MPEG-2 transport stream, demultiplexed in Java.
+ *
+ * <p>Only the PAT, the PMTs and the PES packets of KLV streams are examined; video and audio
+ * packets are skipped without being copied. KLV streams are identified by a "KLVA" registration or
+ * metadata descriptor in the PMT. Both the asynchronous (SMPTE RP 217) and synchronous (ISO/IEC
+ * 13818-1 metadata access unit) methods are supported.
+ *
+ * <p>PSI sections are assumed to fit within a single transport packet, which holds for streams with
+ * a small number of programs and elementary streams.
+ */
+class TransportStreamKlvIterator extends MetadataFrameIterator {
+    private static Logger logger = LoggerFactory.getLogger(TransportStreamKlvIterator.class);
+    static final int PACKET_SIZE = 188;
+    static final byte SYNC_BYTE = 0x47;
+    private static final int BUFFER_SIZE = PACKET_SIZE * 4096;
+    private static final int PAT_PID = 0x0000;
+    private static final int STREAM_ID_METADATA = 0xFC;
+    private static final int DESCRIPTOR_REGISTRATION = 0x05;
+    private static final int DESCRIPTOR_METADATA = 0x26;
+    private static final byte[] KLVA = {'K', 'L', 'V', 'A'};
+    private static final double PTS_CLOCK = 90000.0;
+
+    private final ReadableByteChannel channel;
+    private final ChannelBuffer input;
+    private final byte[] section = new byte[PACKET_SIZE];
+    private final Set<Integer> pmtPids = new HashSet<>();
+    private final Map<Integer, PesAssembler> klvPids = new HashMap<>();
+    private boolean lostSync;
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel to read from, which is closed with the iterator
+     */
+    TransportStreamKlvIterator(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.input = new ChannelBuffer(channel, BUFFER_SIZE);
+    }
+
+    @Override
+    protected boolean readNext() throws IOException {
+        if (!input.request(PACKET_SIZE)) {
+            for (PesAssembler pes : klvPids.values()) {
+                pes.flush();
+            }
+            return false;
+        }
+
+        ByteBuffer buffer = input.buffer();
+        int start = buffer.position();
+        if (buffer.get(start) != SYNC_BYTE) {
+            if (!lostSync) {
+                logger.warn("Lost transport stream sync, scanning for next packet");
+                lostSync = true;
+            }
+            input.skip(1);
+            return true;
+        }
+        lostSync = false;
+
+        int pid = ((buffer.get(start + 1) & 0x1F) << 8) | (buffer.get(start + 2) & 0xFF);
+        boolean payloadUnitStart = (buffer.get(start + 1) & 0x40) != 0;
+        int adaptationFieldControl = (buffer.get(start + 3) >> 4) & 0x03;
+        int payloadOffset = 4;
+        if ((adaptationFieldControl & 0x02) != 0) {
+            payloadOffset += 1 + (buffer.get(start + 4) & 0xFF);
+        }
+        boolean hasPayload = (adaptationFieldControl & 0x01) != 0 && payloadOffset < PACKET_SIZE;
+
+        if (hasPayload) {
+            int payloadStart = start + payloadOffset;
+            int payloadLength = PACKET_SIZE - payloadOffset;
+            PesAssembler pes = klvPids.get(pid);
+            if (pes != null) {
+                pes.append(buffer, payloadStart, payloadLength, payloadUnitStart);
+            } else if (payloadUnitStart && (pid == PAT_PID || pmtPids.contains(pid))) {
+                ByteBuffer payload = buffer.duplicate();
+                payload.position(payloadStart);
+                payload.get(section, 0, payloadLength);
+                if (pid == PAT_PID) {
+                    parsePat(payloadLength);
+                } else {
+                    parsePmt(payloadLength);
+                }
+            }
+        }
+        input.skip(PACKET_SIZE);
+        return true;
+    }
+
+    /**
+     * Parse a Program Association Table section, recording the PMT PIDs.
+     *
+     * @param length Number of valid bytes in the section buffer, starting with the pointer field
+     */
+    private void parsePat(int length) {
+        int offset = 1 + (section[0] & 0xFF);
+        if (offset + 8 > length || section[offset] != 0x00) {
+            return;
+        }
+        int end = Math.min(length, offset + 3 + sectionLength(offset)) - 4;
+        for (int i = offset + 8; i + 4 <= end; i += 4) {
+            int programNumber = ((section[i] & 0xFF) << 8) | (section[i + 1] & 0xFF);
+            if (programNumber != 0) {
+                pmtPids.add(((section[i + 2] & 0x1F) << 8) | (section[i + 3] & 0xFF));
+            }
+        }
+    }
+
+    /**
+     * Parse a Program Map Table section, recording the KLV stream PIDs.
+     *
+     * @param length Number of valid bytes in the section buffer, starting with the pointer field
+     */
+    private void parsePmt(int length) {
+        int offset = 1 + (section[0] & 0xFF);
+        if (offset + 12 > length || section[offset] != 0x02) {
+            return;
+        }
+        int end = Math.min(length, offset + 3 + sectionLength(offset)) - 4;
+        int programInfoLength =
+                ((section[offset + 10] & 0x0F) << 8) | (section[offset + 11] & 0xFF);
+        int i = offset + 12 + programInfoLength;
+        while (i + 5 <= end) {
+            int pid = ((section[i + 1] & 0x1F) << 8) | (section[i + 2] & 0xFF);
+            int infoLength = ((section[i + 3] & 0x0F) << 8) | (section[i + 4] & 0xFF);
+            int descriptors = i + 5;
+            i = descriptors + infoLength;
+            if (i <= end && hasKlvDescriptor(descriptors, i) && !klvPids.containsKey(pid)) {
+                logger.debug("Found KLV stream on PID " + pid);
+                klvPids.put(pid, new PesAssembler());
+            }
+        }
+    }
+
+    private int sectionLength(int offset) {
+        return ((section[offset + 1] & 0x0F) << 8) | (section[offset + 2] & 0xFF);
+    }
+
+    /**
+     * Check a descriptor loop for a KLVA registration or metadata descriptor.
+     *
+     * @param start Index of the first descriptor in the section buffer
+     * @param end Index just past the last descriptor
+     * @return True if the descriptors identify a KLV stream
+     */
+    private boolean hasKlvDescriptor(int start, int end) {
+        int i = start;
+        while (i + 2 <= end) {
+            int tag = section[i] & 0xFF;
+            int length = section[i + 1] & 0xFF;
+            int body = i + 2;
+            i = body + length;
+            if (i > end) {
+                break;
+            }
+            if (tag == DESCRIPTOR_REGISTRATION && length >= 4 && matchesKlva(body)) {
+                return true;
+            }
+            if (tag == DESCRIPTOR_METADATA) {
+                // The format identifier follows a variable length application format field
+                for (int j = body; j + 4 <= i; ++j) {
+                    if (matchesKlva(j)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesKlva(int index) {
+        return Arrays.equals(Arrays.copyOfRange(section, index, index + 4), KLVA);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Reassembles the PES packets of one KLV stream. */
+    private class PesAssembler {
+        private byte[] data = new byte[4096];
+        private int length;
+        private boolean started;
+
+        /**
+         * Add transport packet payload.
+         *
+         * @param buffer Buffer holding the payload
+         * @param offset Absolute index of the payload in the buffer
+         * @param count Number of payload bytes
+         * @param unitStart True if the payload starts a new PES packet
+         */
+        void append(ByteBuffer buffer, int offset, int count, boolean unitStart) {
+            if (unitStart) {
+                flush();
+                started = true;
+            } else if (!started) {
+                // Joined part way through a PES packet
+                return;
+            }
+            if (length + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(length + count, data.length * 2));
+            }
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(offset);
+            payload.get(data, length, count);
+            length += count;
+        }
+
+        /** Parse the PES packet assembled so far, if any. */
+        void flush() {
+            if (started) {
+                parsePes();
+            }
+            started = false;
+            length = 0;
+        }
+
+        private void parsePes() {
+            if (length < 9 || data[0] != 0 || data[1] != 0 || data[2] != 1) {
+                logger.debug("Discarding invalid PES packet");
+                return;
+            }
+            int streamId = data[3] & 0xFF;
+            int pesPacketLength = ((data[4] & 0xFF) << 8) | (data[5] & 0xFF);
+            int end = pesPacketLength == 0 ? length : Math.min(length, 6 + pesPacketLength);
+            double pts = Double.NaN;
+            if ((data[7] & 0x80) != 0 && length >= 14) {
+                long ticks =
+                        ((long) ((data[9] >> 1) & 0x07) << 30)
+                                | ((data[10] & 0xFF) << 22)
+                                | (((data[11] & 0xFF) >> 1) << 15)
+                                | ((data[12] & 0xFF) << 7)
+                                | ((data[13] & 0xFF) >> 1);
+                pts = ticks / PTS_CLOCK;
+            }
+            int payload = 9 + (data[8] & 0xFF);
+            if (payload > end) {
+                return;
+            }
+
+            if (streamId == STREAM_ID_METADATA) {
+                // Synchronous: a sequence of metadata access unit cells, each with a 5 byte header
+                int i = payload;
+                while (i + 5 <= end) {
+                    int cellLength = ((data[i + 3] & 0xFF) << 8) | (data[i + 4] & 0xFF);
+                    i += 5;
+                    parse(ByteBuffer.wrap(data, i, Math.min(cellLength, end - i)), pts);
+                    i += cellLength;
+                }
+            } else {
+                parse(ByteBuffer.wrap(data, payload, end - payload), pts);
+            }
+        }
+    }
+}
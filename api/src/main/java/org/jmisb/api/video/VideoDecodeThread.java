@@ -1,6 +1,7 @@
 package org.jmisb.api.video;
 
 import static org.bytedeco.ffmpeg.global.avcodec.av_packet_clone;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_alloc_context3;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_find_decoder;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_flush_buffers;
@@ -9,22 +10,26 @@ import static org.bytedeco.ffmpeg.global.avcodec.avcodec_open2;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_parameters_to_context;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_receive_frame;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_send_packet;
+import static org.bytedeco.ffmpeg.global.avutil.AV_NOPTS_VALUE;
 import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24;
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_NONE;
 import static org.bytedeco.ffmpeg.global.avutil.av_dict_free;
 import static org.bytedeco.ffmpeg.global.avutil.av_frame_alloc;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_clone;
 import static org.bytedeco.ffmpeg.global.avutil.av_frame_free;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_get_buffer;
+import static org.bytedeco.ffmpeg.global.avutil.av_get_pix_fmt;
 import static org.bytedeco.ffmpeg.global.avutil.av_image_fill_arrays;
 import static org.bytedeco.ffmpeg.global.avutil.av_image_get_buffer_size;
 import static org.bytedeco.ffmpeg.global.avutil.av_malloc;
 import static org.bytedeco.ffmpeg.global.avutil.av_q2d;
-import static org.bytedeco.ffmpeg.global.swscale.SWS_FAST_BILINEAR;
+import static org.bytedeco.ffmpeg.global.swscale.sws_freeContext;
+import static org.bytedeco.ffmpeg.global.swscale.sws_getCachedContext;
 import static org.bytedeco.ffmpeg.global.swscale.sws_getContext;
 import static org.bytedeco.ffmpeg.global.swscale.sws_scale;
 
-import java.awt.image.BufferedImage;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import org.bytedeco.ffmpeg.avcodec.AVCodec;
 import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
 import org.bytedeco.ffmpeg.avcodec.AVPacket;
@@ -42,15 +47,33 @@ import org.slf4j.LoggerFactory;
  * Video decoding thread.
  *
  * <p>This thread buffers and decodes video data, and sends uncompressed images in BGR24 format back
- * up to the {@link VideoInput}.
+ * up to the {@link VideoInput}. If raw video is enabled in the input's options, images are instead
+ * sent in the decoder's native format (or the requested raw format) as {@link RawVideoFrame}s.
  */
 class VideoDecodeThread extends ProcessingThread {
     private static Logger logger = LoggerFactory.getLogger(VideoDecodeThread.class);
     private static final int INPUT_QUEUE_SIZE = 100;
+
+    /**
+     * Tolerance when comparing a frame's timestamp with a seek target, in seconds, allowing for
+     * rounding in the conversion from stream time base units.
+     */
+    private static final double SEEK_TOLERANCE = 1e-6;
+
     private final VideoInput inputStream;
     private final AVStream videoStream;
     private AVCodecContext codecContext;
-    private BlockingQueue<AVPacket> packetQueue = new LinkedBlockingDeque<>(INPUT_QUEUE_SIZE);
+    private final HandoffQueue<AVPacket> packetQueue =
+            new HandoffQueue<>(INPUT_QUEUE_SIZE, BackpressurePolicy.Block, p -> av_packet_free(p));
+
+    /** Called once the packet queue has drained after end of file, or null. */
+    private volatile Runnable endOfFileCallback;
+
+    /** Decoded frames before this time are discarded, e.g. following a seek. */
+    private volatile double skipBeforePts = Double.NEGATIVE_INFINITY;
+
+    /** Incremented each time the decoder is cleared for a seek. */
+    private final AtomicInteger clearCount = new AtomicInteger();
 
     /** Image buffer in native stream format. */
     private AVFrame nativeFrame;
@@ -60,32 +83,98 @@ class VideoDecodeThread extends ProcessingThread {
 
     private final FrameConverter frameConverter = new FrameConverter();
 
+    private final VideoInputOptions options;
+
+    private final InputStatistics statistics;
+
+    /** Scaling context for raw frames, or null if not (yet) needed. */
+    private SwsContext rawSwsContext;
+
     VideoDecodeThread(VideoInput inputStream, AVStream videoStream) {
         this.inputStream = inputStream;
         this.videoStream = videoStream;
+        this.options = inputStream.getInputOptions();
+        this.statistics = inputStream.getStatistics();
         start();
     }
 
     /**
      * Enqueue an incoming packet for decoding.
      *
-     * @param packet The packet to queue
-     * @return True if the packet was queued, false if the queue is currently full
+     * <p>Blocks while the queue is full.
+     *
+     * @param packet The packet to queue, which is cloned
+     * @param abort Condition under which to stop waiting for space in the queue
+     * @return True if the packet was queued, false if waiting was aborted
      */
-    public boolean enqueue(AVPacket packet) {
-        try {
-            return packetQueue.offer(av_packet_clone(packet), 10, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException ignored) {
-            return false;
-        }
+    public boolean enqueue(AVPacket packet, BooleanSupplier abort) {
+        return packetQueue.put(av_packet_clone(packet), abort);
+    }
+
+    /**
+     * Get the number of packets waiting to be decoded.
+     *
+     * @return The queue depth
+     */
+    int getQueueDepth() {
+        return packetQueue.size();
     }
 
     /** Clear the queue of packets to be decoded and flush codec buffers. */
     public void clear() {
+        clear(Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Clear the queue of packets to be decoded and flush codec buffers, after a seek.
+     *
+     * @param targetPts Frames decoded with a timestamp before this are discarded without being
+     *     converted, until the first frame at or after it
+     */
+    void clear(double targetPts) {
+        clearCount.incrementAndGet();
+        skipBeforePts = targetPts;
+        endOfFileCallback = null;
         packetQueue.clear();
         avcodec_flush_buffers(codecContext);
     }
 
+    /**
+     * Indicate that no more packets will be queued until the next seek.
+     *
+     * @param callback Called from this thread once all queued packets have been decoded
+     */
+    void markEndOfFile(Runnable callback) {
+        endOfFileCallback = callback;
+        packetQueue.wakeAll();
+    }
+
+    /**
+     * Check whether all packets have been decoded after end of file.
+     *
+     * @return True if end of file was marked and the packet queue is empty
+     */
+    private boolean isDrainedAtEndOfFile() {
+        return endOfFileCallback != null && packetQueue.isEmpty();
+    }
+
+    /** Run the end of file callback if all packets have been decoded. */
+    private void checkEndOfFile() {
+        if (isDrainedAtEndOfFile()) {
+            Runnable callback = endOfFileCallback;
+            endOfFileCallback = null;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    @Override
+    protected void wakeup() {
+        packetQueue.wakeAll();
+        inputStream.wakeQueues();
+    }
+
     @Override
     public void run() {
         Thread.currentThread().setName("VideoDecodeThread - " + inputStream.getUrl());
@@ -124,23 +213,38 @@ class VideoDecodeThread extends ProcessingThread {
             codecContext.time_base().den(1000);
         }
 
-        // Allocate image buffers
-        allocateImages(videoStream.codecpar().width(), videoStream.codecpar().height());
-
-        // Allocate SwsContext used for color conversion/scaling
-        SwsContext swsContext;
-        swsContext =
-                sws_getContext(
-                        videoStream.codecpar().width(),
-                        videoStream.codecpar().height(),
-                        codecContext.pix_fmt(),
-                        bgrFrame.width(),
-                        bgrFrame.height(),
-                        bgrFrame.format(),
-                        SWS_FAST_BILINEAR,
-                        null,
-                        null,
-                        (DoublePointer) null);
+        int outputWidth = outputWidth(videoStream.codecpar().width());
+        int outputHeight = outputHeight(videoStream.codecpar().height());
+        int rawPixelFormat = AV_PIX_FMT_NONE;
+        SwsContext swsContext = null;
+        if (options.isRawVideo()) {
+            if (options.getRawPixelFormat() != null) {
+                rawPixelFormat = av_get_pix_fmt(options.getRawPixelFormat());
+                if (rawPixelFormat == AV_PIX_FMT_NONE) {
+                    logger.error(
+                            "Unknown raw pixel format "
+                                    + options.getRawPixelFormat()
+                                    + ", using native format");
+                }
+            }
+        } else {
+            // Allocate image buffers
+            allocateImages(outputWidth, outputHeight);
+
+            // Allocate SwsContext used for color conversion/scaling
+            swsContext =
+                    sws_getContext(
+                            videoStream.codecpar().width(),
+                            videoStream.codecpar().height(),
+                            codecContext.pix_fmt(),
+                            bgrFrame.width(),
+                            bgrFrame.height(),
+                            bgrFrame.format(),
+                            options.getScalingFlags(),
+                            null,
+                            null,
+                            (DoublePointer) null);
+        }
 
         AVFrame avFrame = av_frame_alloc();
 
@@ -151,21 +255,46 @@ class VideoDecodeThread extends ProcessingThread {
                 break;
             }
 
+            checkEndOfFile();
+            AVPacket packet =
+                    packetQueue.take(() -> isShutdownOrPauseRequested() || isDrainedAtEndOfFile());
+            if (packet == null) {
+                // Pause, shutdown or end of file
+                continue;
+            }
             try {
-                AVPacket packet = packetQueue.poll(10, TimeUnit.MILLISECONDS);
-                if (packet != null) {
-                    // Send the packet to the decoder
-                    if ((ret = avcodec_send_packet(codecContext, packet)) < 0) {
-                        logger.error("avcodec_send_packet error " + FfmpegUtils.formatError(ret));
-                    }
+                long startTime = System.nanoTime();
+
+                // Send the packet to the decoder
+                if ((ret = avcodec_send_packet(codecContext, packet)) < 0) {
+                    logger.error("avcodec_send_packet error " + FfmpegUtils.formatError(ret));
+                }
 
-                    // Check for decoded frames
-                    ret = avcodec_receive_frame(codecContext, avFrame);
-                    if (ret >= 0) {
-                        // long pts = av_frame_get_best_effort_timestamp(avFrame);
-                        double pts = packet.pts() * av_q2d(videoStream.time_base());
-                        // logger.debug("Video PTS = " + pts);
+                // Check for decoded frames
+                ret = avcodec_receive_frame(codecContext, avFrame);
+                if (ret >= 0) {
+                    // With B-frames the decoder reorders frames, so the packet just sent is not
+                    // necessarily the frame received; use the frame's own timestamp
+                    long timestamp = avFrame.best_effort_timestamp();
+                    if (timestamp == AV_NOPTS_VALUE) {
+                        timestamp = packet.pts();
+                    }
+                    double pts = timestamp * av_q2d(videoStream.time_base());
 
+                    if (pts < skipBeforePts - SEEK_TOLERANCE) {
+                        // Needed to decode the requested frame, but not itself wanted
+                        continue;
+                    }
+                    skipBeforePts = Double.NEGATIVE_INFINITY;
+
+                    if (swsContext == null) {
+                        // Raw mode: hand over the decoder's planes, converting only if asked to
+                        AVFrame rawFrame = convertRaw(avFrame, rawPixelFormat);
+                        if (rawFrame != null) {
+                            statistics.videoFrameDecoded(System.nanoTime() - startTime);
+                            deliver(new RawVideoFrame(rawFrame, pts));
+                        }
+                    } else {
                         // Convert image from native pixel format to BGR24
                         sws_scale(
                                 swsContext,
@@ -176,35 +305,142 @@ class VideoDecodeThread extends ProcessingThread {
                                 bgrFrame.data(),
                                 bgrFrame.linesize());
 
-                        // FrameConverter will internally cache the BufferedImage and re-use it for
-                        // each call
-                        BufferedImage image = frameConverter.convert(bgrFrame);
+                        // Convert straight into the frame's own image (pooled, if enabled), so it
+                        // does not need to be copied again before delivery
+                        VideoFrame frame =
+                                inputStream.createVideoFrame(
+                                        bgrFrame.width(), bgrFrame.height(), pts);
+                        frameConverter.convert(bgrFrame, frame.getImage());
+                        statistics.videoFrameDecoded(System.nanoTime() - startTime);
 
-                        // TODO: on a seek, the final frame before the seek often gets hung up here
-                        boolean queued = false;
-                        while (!queued && !isShutdown() && !isPauseRequested()) {
-                            queued = inputStream.queueVideoFrame(new VideoFrame(image, pts), 20);
-                        }
-                    } else if (ret != -11 && ret != -35) // -11 = EAGAIN, -35 = EDEADLK
-                    {
-                        // -11 is expected and just means the decoder is waiting for more packets
-                        // -35 seems to be warning us about some concurrency issue unique to MacOS
-                        logger.error("avcodec_receive_frame error " + FfmpegUtils.formatError(ret));
+                        // Blocks or drops according to the backpressure policy
+                        deliver(frame);
                     }
+                } else if (ret != -11 && ret != -35) // -11 = EAGAIN, -35 = EDEADLK
+                {
+                    // -11 is expected and just means the decoder is waiting for more packets
+                    // -35 seems to be warning us about some concurrency issue unique to MacOS
+                    logger.error("avcodec_receive_frame error " + FfmpegUtils.formatError(ret));
                 }
-            } catch (InterruptedException ignored) {
+            } finally {
+                av_packet_free(packet);
             }
         }
 
         if (logger.isDebugEnabled()) logger.debug("Video decoder exiting");
 
         // Clean up resources
+        packetQueue.clear();
         avcodec_free_context(codecContext);
         av_frame_free(avFrame);
+        if (swsContext != null) {
+            sws_freeContext(swsContext);
+        }
+        if (rawSwsContext != null) {
+            sws_freeContext(rawSwsContext);
+            rawSwsContext = null;
+        }
 
         deallocateImages();
     }
 
+    /**
+     * Hand a decoded frame to the input.
+     *
+     * <p>Under {@link BackpressurePolicy#Block} this waits for space in the queue. A pause does not
+     * lose the frame: it is kept and handed over once playing resumes. Only a seek, which clears
+     * this decoder, or a shutdown discards it.
+     *
+     * @param frame The decoded frame
+     */
+    private void deliver(DecodedFrame frame) {
+        int generation = clearCount.get();
+        while (!inputStream.offerVideoFrame(frame, this::isShutdownOrPauseRequested)) {
+            if (pauseOrResume() || clearCount.get() != generation) {
+                frame.close();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the width of output images.
+     *
+     * @param streamWidth The width of the video stream
+     * @return The width requested in the options, or the stream width
+     */
+    private int outputWidth(int streamWidth) {
+        return options.getOutputWidth() > 0 ? options.getOutputWidth() : streamWidth;
+    }
+
+    /**
+     * Get the height of output images.
+     *
+     * @param streamHeight The height of the video stream
+     * @return The height requested in the options, or the stream height
+     */
+    private int outputHeight(int streamHeight) {
+        return options.getOutputHeight() > 0 ? options.getOutputHeight() : streamHeight;
+    }
+
+    /**
+     * Produce a raw frame from a decoded frame.
+     *
+     * <p>If no conversion or scaling is needed, the decoded frame is referenced rather than copied.
+     * Otherwise a new frame is allocated and the image converted into it.
+     *
+     * @param decoded The frame from the decoder, which is not modified
+     * @param pixelFormat The requested pixel format, or {@code AV_PIX_FMT_NONE} for the native
+     *     format
+     * @return A new frame owned by the caller, or null on failure
+     */
+    private AVFrame convertRaw(AVFrame decoded, int pixelFormat) {
+        int format = pixelFormat == AV_PIX_FMT_NONE ? decoded.format() : pixelFormat;
+        int width = outputWidth(decoded.width());
+        int height = outputHeight(decoded.height());
+        if (format == decoded.format() && width == decoded.width() && height == decoded.height()) {
+            return av_frame_clone(decoded);
+        }
+
+        rawSwsContext =
+                sws_getCachedContext(
+                        rawSwsContext,
+                        decoded.width(),
+                        decoded.height(),
+                        decoded.format(),
+                        width,
+                        height,
+                        format,
+                        options.getScalingFlags(),
+                        null,
+                        null,
+                        (DoublePointer) null);
+        if (rawSwsContext == null) {
+            logger.error("Could not create scaling context for raw frames");
+            return null;
+        }
+        AVFrame converted = av_frame_alloc();
+        converted.format(format);
+        converted.width(width);
+        converted.height(height);
+        int ret = av_frame_get_buffer(converted, 32);
+        if (ret < 0) {
+            logger.error("av_frame_get_buffer error " + FfmpegUtils.formatError(ret));
+            av_frame_free(converted);
+            return null;
+        }
+        sws_scale(
+                rawSwsContext,
+                decoded.data(),
+                decoded.linesize(),
+                0,
+                decoded.height(),
+                converted.data(),
+                converted.linesize());
+        converted.pts(decoded.pts());
+        return converted;
+    }
+
     private void allocateImages(int width, int height) {
         deallocateImages();
 
@@ -251,11 +487,4 @@ class VideoDecodeThread extends ProcessingThread {
             nativeFrame = null;
         }
     }
-
-    public void notifyEOF() {
-        if (inputStream instanceof IVideoFileInput) {
-            IVideoFileInput fileInputStream = (IVideoFileInput) inputStream;
-            fileInputStream.notifyEOF();
-        }
-    }
 }
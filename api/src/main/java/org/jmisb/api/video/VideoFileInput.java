@@ -2,20 +2,18 @@ package org.jmisb.api.video;
 
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_find_decoder;
 import static org.bytedeco.ffmpeg.global.avformat.AVSEEK_FLAG_BACKWARD;
-import static org.bytedeco.ffmpeg.global.avformat.av_read_frame;
 import static org.bytedeco.ffmpeg.global.avformat.avformat_alloc_context;
 import static org.bytedeco.ffmpeg.global.avformat.avformat_find_stream_info;
 import static org.bytedeco.ffmpeg.global.avformat.avformat_flush;
 import static org.bytedeco.ffmpeg.global.avformat.avformat_open_input;
 import static org.bytedeco.ffmpeg.global.avformat.avformat_seek_file;
-import static org.bytedeco.ffmpeg.global.avutil.AVERROR_EOF;
 import static org.jmisb.core.video.TimingUtils.shortWait;
 
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.bytedeco.ffmpeg.avcodec.AVCodec;
-import org.bytedeco.ffmpeg.avcodec.AVPacket;
 import org.bytedeco.ffmpeg.avformat.AVStream;
 import org.bytedeco.javacpp.PointerPointer;
 import org.jmisb.core.video.FfmpegUtils;
@@ -33,15 +31,21 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
     private boolean playing = false;
     private double position = 0.0;
     private double duration = 0.0;
-    private int numFrames = 0;
+    private FrameIndex frameIndex;
 
     private double rateMultiplier = 1.0;
 
     // TODO: put these in a utility class
     private long prevVideoTime;
-    private double prevVideoPts;
+    private volatile double prevVideoPts;
     private long videoDelay;
 
+    /** Signalled when a video frame has been delivered, for metadata synchronization. */
+    private final Object videoPtsLock = new Object();
+
+    /** Set when the demuxer reaches the end of the file, until end of file is reported. */
+    private final AtomicBoolean endOfFilePending = new AtomicBoolean(false);
+
     /** Construct with default options. */
     public VideoFileInput() {
         this(new VideoFileInputOptions());
@@ -53,6 +57,7 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
      * @param options Options for video input
      */
     public VideoFileInput(VideoFileInputOptions options) {
+        super(options);
         this.options = options;
     }
 
@@ -104,8 +109,13 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
                             + ".");
         }
 
-        // Analyze frames
-        numFrames = countFrames(videoStream);
+        // Index frames, unless there is an up to date cached index
+        frameIndex = options.isIndexCaching() ? FrameIndex.loadSidecar(url) : null;
+        if (frameIndex == null) {
+            frameIndex = indexFrames();
+        }
+
+        startStatistics();
 
         // Create the demuxer and start thread
         demuxer = new FileDemuxer(this, formatContext, options);
@@ -118,21 +128,14 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
         open = true;
     }
 
-    private int countFrames(AVStream videoStream) {
-        // Loop through all frames, counting only video frames
-        int numFrames = 0;
-        AVPacket packet = new AVPacket();
-        while (true) {
-            int ret;
-            if ((ret = av_read_frame(formatContext, packet)) < 0) {
-                if (ret != AVERROR_EOF) {
-                    logger.error("Error reading frame before EOF");
-                }
-                break;
-            }
-            if (packet.stream_index() == videoStream.index()) {
-                numFrames++;
-            }
+    private FrameIndex indexFrames() throws IOException {
+        // Loop through all packets, recording video frames and metadata
+        FrameIndex index;
+        try {
+            index = FrameIndex.scan(formatContext);
+        } catch (IOException e) {
+            freeContext();
+            throw e;
         }
 
         // Seek back to start of file
@@ -143,7 +146,14 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
         }
         avformat_flush(formatContext);
 
-        return numFrames;
+        if (options.isIndexCaching()) {
+            try {
+                index.saveSidecar(url);
+            } catch (IOException e) {
+                logger.warn("Could not cache frame index for " + url + ": " + e.getMessage());
+            }
+        }
+        return index;
     }
 
     @Override
@@ -159,6 +169,7 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
             stopFileDemuxer();
             stopNotifiers();
             freeContext();
+            stopStatistics();
             open = false;
         }
     }
@@ -222,12 +233,32 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
 
         if (logger.isDebugEnabled()) logger.debug("Seeking to " + pos + "s");
 
-        // Seek the demuxer, this will also cause packet queues to be cleared
-        demuxer.seek(pos);
+        if (getNumFrames() == 0) {
+            logger.debug("No video frames to seek to");
+            return;
+        }
+
+        // Go to the exact frame displayed at the requested time
+        seekToFrame(frameIndex.findFrame(pos));
+    }
+
+    @Override
+    public void seekToFrame(int frame) {
+        if (frame < 0 || frame >= getNumFrames()) {
+            throw new IllegalArgumentException("Invalid frame number");
+        }
+
+        if (logger.isDebugEnabled()) logger.debug("Seeking to frame " + frame);
+
+        // Any pending end of file no longer applies
+        endOfFilePending.set(false);
 
         // Stop notifiers & clear decodedFrameQueue & decodedMetadataQueue
         stopNotifiers();
 
+        // Seek the demuxer, this will also cause packet queues to be cleared
+        demuxer.seek(frameIndex, frame);
+
         // Resume notifiers
         startNotifiers(true);
 
@@ -240,7 +271,12 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
 
     @Override
     public int getNumFrames() {
-        return numFrames;
+        return frameIndex != null ? frameIndex.getFrameCount() : 0;
+    }
+
+    @Override
+    public FrameIndex getFrameIndex() {
+        return frameIndex;
     }
 
     @Override
@@ -268,7 +304,10 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
         // logger.debug("delay: " + videoDelay);
         if (videoDelay > 0) shortWait(videoDelay);
 
-        prevVideoPts = pts;
+        synchronized (videoPtsLock) {
+            prevVideoPts = pts;
+            videoPtsLock.notifyAll();
+        }
         prevVideoTime = time;
 
         // TODO: good?
@@ -284,8 +323,10 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
 
         if (options.isDecodeVideo()) {
             // Just sync to the video based on PTS
-            while (pts > prevVideoPts) {
-                Thread.sleep(10);
+            synchronized (videoPtsLock) {
+                while (pts > prevVideoPts) {
+                    videoPtsLock.wait();
+                }
             }
         }
     }
@@ -300,6 +341,15 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
         }
     }
 
+    /**
+     * Get the demuxer thread.
+     *
+     * @return The demuxer, or null if the input has not been opened
+     */
+    FileDemuxer getDemuxer() {
+        return demuxer;
+    }
+
     @Override
     public void addFileEventListener(IFileEventListener listener) {
         fileEventListeners.add(listener);
@@ -312,7 +362,14 @@ public class VideoFileInput extends VideoInput implements IVideoFileInput {
 
     @Override
     public void notifyEOF() {
-        if (queuesAreEmpty()) {
+        endOfFilePending.set(true);
+        onQueueDrained();
+    }
+
+    @Override
+    void onQueueDrained() {
+        // Report end of file once, after the last decoded frames have been delivered
+        if (queuesAreEmpty() && endOfFilePending.compareAndSet(true, false)) {
             fileEventListeners.forEach(listener -> listener.onEndOfFile());
         }
     }
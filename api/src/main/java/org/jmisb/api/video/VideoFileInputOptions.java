@@ -5,9 +5,13 @@ public class VideoFileInputOptions extends VideoInputOptions {
     /** Indicates playback will be paused when the file is first opened. */
     private boolean initiallyPaused;
 
+    /** Indicates the frame index is cached in a sidecar file. */
+    private final boolean indexCaching;
+
     /** Constructor specifying default options. */
     public VideoFileInputOptions() {
         this.initiallyPaused = false;
+        this.indexCaching = false;
     }
 
     /**
@@ -23,8 +27,52 @@ public class VideoFileInputOptions extends VideoInputOptions {
             boolean decodeMetadata,
             boolean decodeVideo,
             boolean initiallyPaused) {
-        super(decodeAudio, decodeMetadata, decodeVideo);
+        this(decodeAudio, decodeMetadata, decodeVideo, initiallyPaused, BackpressurePolicy.Block);
+    }
+
+    /**
+     * Constructor specifying custom options, including a backpressure policy.
+     *
+     * @param decodeAudio True to decode audio (currently unsupported)
+     * @param decodeMetadata True to decode metadata
+     * @param decodeVideo True to decode video
+     * @param initiallyPaused If true, playback will be paused when the file is first opened
+     * @param backpressurePolicy What to do when listeners fall behind the decoder
+     */
+    public VideoFileInputOptions(
+            boolean decodeAudio,
+            boolean decodeMetadata,
+            boolean decodeVideo,
+            boolean initiallyPaused,
+            BackpressurePolicy backpressurePolicy) {
+        this(decodeAudio, decodeMetadata, decodeVideo, initiallyPaused, backpressurePolicy, false);
+    }
+
+    /**
+     * Constructor specifying custom options, including a backpressure policy and index caching.
+     *
+     * <p>Opening a file builds a {@link FrameIndex}, which requires reading the whole file. If
+     * index caching is enabled, the index is saved alongside the file (see {@link
+     * FrameIndex#getSidecarPath(String)}) and loaded instead of being rebuilt the next time the
+     * unchanged file is opened.
+     *
+     * @param decodeAudio True to decode audio (currently unsupported)
+     * @param decodeMetadata True to decode metadata
+     * @param decodeVideo True to decode video
+     * @param initiallyPaused If true, playback will be paused when the file is first opened
+     * @param backpressurePolicy What to do when listeners fall behind the decoder
+     * @param indexCaching True to cache the frame index in a sidecar file
+     */
+    public VideoFileInputOptions(
+            boolean decodeAudio,
+            boolean decodeMetadata,
+            boolean decodeVideo,
+            boolean initiallyPaused,
+            BackpressurePolicy backpressurePolicy,
+            boolean indexCaching) {
+        super(decodeAudio, decodeMetadata, decodeVideo, backpressurePolicy);
         this.initiallyPaused = initiallyPaused;
+        this.indexCaching = indexCaching;
     }
 
     /**
@@ -35,4 +83,13 @@ public class VideoFileInputOptions extends VideoInputOptions {
     public boolean isInitiallyPaused() {
         return initiallyPaused;
     }
+
+    /**
+     * Indicates whether the frame index is cached in a sidecar file.
+     *
+     * @return True if the index is loaded from, and saved to, a sidecar file
+     */
+    public boolean isIndexCaching() {
+        return indexCaching;
+    }
 }
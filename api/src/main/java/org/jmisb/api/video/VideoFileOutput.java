@@ -4,6 +4,7 @@ import static org.bytedeco.ffmpeg.global.avcodec.AV_PKT_DATA_MPEGTS_STREAM_ID;
 import static org.bytedeco.ffmpeg.global.avcodec.av_packet_add_side_data;
 import static org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc;
 import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_unref;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_receive_packet;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_send_frame;
 import static org.bytedeco.ffmpeg.global.avformat.AVIO_FLAG_WRITE;
@@ -13,6 +14,7 @@ import static org.bytedeco.ffmpeg.global.avformat.avformat_write_header;
 import static org.bytedeco.ffmpeg.global.avformat.avio_open2;
 import static org.bytedeco.ffmpeg.global.avutil.AVERROR_EOF;
 import static org.bytedeco.ffmpeg.global.avutil.av_dict_free;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_free;
 import static org.bytedeco.ffmpeg.global.avutil.av_free;
 import static org.bytedeco.ffmpeg.global.avutil.av_malloc;
 import static org.bytedeco.ffmpeg.presets.avutil.AVERROR_EAGAIN;
@@ -20,15 +22,44 @@ import static org.bytedeco.ffmpeg.presets.avutil.AVERROR_EAGAIN;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import org.bytedeco.ffmpeg.avcodec.AVPacket;
 import org.bytedeco.ffmpeg.avformat.AVIOContext;
 import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.avutil.AVFrame;
 import org.bytedeco.javacpp.BytePointer;
 import org.jmisb.core.video.FfmpegUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Write video/metadata to a file. */
+/**
+ * Write video/metadata to a file.
+ *
+ * <p>The output takes over the caller's reference to each {@link VideoFrame} or {@link
+ * RawVideoFrame} added, and closes it once the image has been converted. A frame rejected as
+ * invalid is left with the caller.
+ *
+ * <p>By default each frame is converted, encoded and written on the thread that adds it, so the
+ * frame has been closed when the call returns. If the options set a pipeline depth (see {@link
+ * VideoOutputOptions#setPipelineDepth(int)}), colour conversion, encoding and writing instead run
+ * on three threads of their own, connected by bounded queues, so that they overlap with each other
+ * and with the caller producing the next frame. In that mode:
+ *
+ * <ul>
+ *   <li>{@link #addVideoFrame(VideoFrame)} and {@link #addMetadataFrame(MetadataFrame)} only block
+ *       while the queues are full;
+ *   <li>images must not be modified until the output has closed their frames, so a caller reusing
+ *       images should lease them from a {@link VideoFramePool} (or, for raw frames, its own pool of
+ *       buffers);
+ *   <li>an error in one of the stages is reported by the next call to add a frame, or by {@link
+ *       #close()}.
+ * </ul>
+ */
 public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
     private static Logger logger = LoggerFactory.getLogger(VideoFileOutput.class);
     private String filename;
@@ -36,6 +67,20 @@ public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
     protected static final byte ASYNC_STREAM_ID = (byte) 0xBD;
     protected static final byte SYNC_STREAM_ID = (byte) 0xFC;
 
+    // Reused for receiving packets from the encoder
+    private AVPacket encodedPacket;
+
+    // Pipelined mode
+    private HandoffQueue<PipelineItem> conversionQueue;
+    private HandoffQueue<PipelineItem> encodingQueue;
+    private HandoffQueue<PipelineItem> muxingQueue;
+    private HandoffQueue<AVFrame> freePictures;
+    private final List<AVFrame> pictures = new ArrayList<>();
+    private final ConcurrentLinkedQueue<AVPacket> packetPool = new ConcurrentLinkedQueue<>();
+    private ExecutorService pipelineExecSvc;
+    private final List<Future<?>> stageFutures = new ArrayList<>();
+    private final AtomicReference<Exception> pipelineError = new AtomicReference<>();
+
     /**
      * Constructor.
      *
@@ -70,6 +115,12 @@ public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
         av_dict_free(opts);
 
         // av_dump_format(formatContext, 0, filename, 1);
+
+        if (isPipelined()) {
+            startPipeline();
+        } else {
+            encodedPacket = av_packet_alloc();
+        }
     }
 
     @Override
@@ -89,10 +140,17 @@ public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
             return;
         }
 
+        if (isPipelined()) {
+            closePipeline();
+            return;
+        }
+
         // Write out any remaining frames
         flush();
 
         // Clean up in super
+        av_packet_free(encodedPacket);
+        encodedPacket = null;
         cleanup();
     }
 
@@ -103,6 +161,11 @@ public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
             throw new IllegalArgumentException("Invalid image dimensions");
         }
 
+        if (isPipelined()) {
+            queue(conversionQueue, PipelineItem.frame(frame));
+            return;
+        }
+
         // Luca's note on using the new ffmpeg API:
         //
         // – You feed data using the avcodec_send_* functions until you get a AVERROR(EAGAIN), that
@@ -116,18 +179,59 @@ public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
         // – You can keep calling the avcodec_receive_* function until you get AVERROR_EOF.
         //
 
-        encodeFrame(frame);
+        try {
+            encodeFrame(frame);
+        } finally {
+            frame.close();
+        }
 
         // Write out any available packets
         writeAvailablePackets(false);
     }
 
+    @Override
+    public void addRawVideoFrame(RawVideoFrame frame) throws IOException {
+        checkDimensions(frame);
+
+        if (isPipelined()) {
+            queue(conversionQueue, PipelineItem.raw(frame));
+            return;
+        }
+
+        try {
+            encodeFrame(frame);
+        } finally {
+            frame.close();
+        }
+        writeAvailablePackets(false);
+    }
+
     @Override
     public void addMetadataFrame(MetadataFrame frame) throws IOException {
         if (!options.hasKlvStream()) {
             throw new IOException("Attempted to write metadata without a KLV stream");
         }
 
+        AVPacket packet = convertMetadata(frame);
+        if (isPipelined()) {
+            // Queued behind any video frames added before it, to keep the same order as
+            // unpipelined output
+            queue(conversionQueue, PipelineItem.metadata(packet));
+            return;
+        }
+
+        // Write the packet to the file, then free it (and the stream ID side data it owns)
+        writeMetadataPacket(packet);
+    }
+
+    /**
+     * Convert a metadata frame to a packet with the PES stream ID for the multiplexing method.
+     *
+     * @param frame The metadata frame
+     * @return The packet, owned by the caller
+     * @throws IOException if the packet could not be allocated
+     */
+    private AVPacket convertMetadata(MetadataFrame frame) throws IOException {
         AVPacket packet = convert(frame);
         BytePointer stream_id_side_data = new BytePointer(av_malloc(1)).capacity(1);
         if (options.getMultiplexingMethod().equals(KlvFormat.Synchronous)) {
@@ -144,50 +248,68 @@ public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
             logger.warn("Failed to set stream ID for metadata packet: " + ret);
             av_free(stream_id_side_data);
         }
+        return packet;
+    }
 
-        // Write the packet to the file
-        if ((ret = av_write_frame(formatContext, packet)) < 0) {
+    /**
+     * Write a metadata packet to the output.
+     *
+     * @param packet The packet, which is freed
+     * @throws IOException if the packet could not be written
+     */
+    private void writeMetadataPacket(AVPacket packet) throws IOException {
+        int ret = av_write_frame(formatContext, packet);
+        av_packet_free(packet);
+        if (ret < 0) {
             throw new IOException("Error writing metadata packet: " + FfmpegUtils.formatError(ret));
         }
+    }
 
-        // Free packet (and stream_id_side_data, which is now owned by packet)
-        av_packet_free(packet);
+    /**
+     * Write an encoded video packet to the output.
+     *
+     * @param packet The packet
+     */
+    private void writeVideoPacket(AVPacket packet) {
+        int ret;
+        if ((ret = av_write_frame(formatContext, packet)) < 0) {
+            logger.error("Error writing video packet: " + FfmpegUtils.formatError(ret));
+        }
+        framesWritten++;
     }
 
     /**
-     * Takes all available packets out of the encoder's internal buffer, then writes them to the
+     * Takes all available packets out of the encoder's internal buffer, and writes them to the
      * output.
      *
      * @param eof If true, expect EOF and throw exception if not found
      * @throws IOException if expected EOF packet is not found
      */
     private void writeAvailablePackets(boolean eof) throws IOException {
-        List<AVPacket> packets = new ArrayList<>();
-
-        // Drain all packets from the encoder
-        int ret2 = 0;
-        while (ret2 != AVERROR_EOF && ret2 != AVERROR_EAGAIN()) {
-            AVPacket packet = av_packet_alloc();
-            ret2 = avcodec_receive_packet(videoCodecContext, packet);
-            if (ret2 == 0) {
-                packets.add(packet);
-            } else if (ret2 == AVERROR_EOF) {
-                logger.debug("EOF reached");
-            }
+        int ret;
+        while ((ret = avcodec_receive_packet(videoCodecContext, encodedPacket)) == 0) {
+            writeVideoPacket(encodedPacket);
+            av_packet_unref(encodedPacket);
         }
+        checkDrained(ret, eof);
+    }
 
-        if (eof && ret2 != AVERROR_EOF) {
-            throw new IOException("Expected EOF packet not found");
+    /**
+     * Check the result of draining the encoder.
+     *
+     * @param ret The last return value from {@code avcodec_receive_packet}
+     * @param eof If true, expect EOF
+     * @throws IOException if the encoder failed, or expected EOF was not found
+     */
+    private void checkDrained(int ret, boolean eof) throws IOException {
+        if (ret == AVERROR_EOF) {
+            logger.debug("EOF reached");
+        } else if (ret != AVERROR_EAGAIN()) {
+            throw new IOException("Error encoding video: " + FfmpegUtils.formatError(ret));
         }
 
-        // Write all new packets to the output
-        for (AVPacket packet : packets) {
-            int ret3;
-            if ((ret3 = av_write_frame(formatContext, packet)) < 0) {
-                logger.error("Error writing video packet: " + FfmpegUtils.formatError(ret3));
-            }
-            framesWritten++;
-            av_packet_free(packet);
+        if (eof && ret != AVERROR_EOF) {
+            throw new IOException("Expected EOF packet not found");
         }
     }
 
@@ -203,7 +325,10 @@ public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
         // Write out all available packets
         writeAvailablePackets(true);
 
-        // Write trailer
+        writeTrailer();
+    }
+
+    private void writeTrailer() {
         // TODO: may not be necessary
         av_write_trailer(formatContext);
 
@@ -211,4 +336,297 @@ public class VideoFileOutput extends VideoOutput implements IVideoFileOutput {
             logger.debug("# frames written: " + framesWritten);
         }
     }
+
+    private boolean isPipelined() {
+        return options.getPipelineDepth() > 0;
+    }
+
+    private boolean isPipelineFailed() {
+        return pipelineError.get() != null;
+    }
+
+    /**
+     * Create the pipeline queues and start the conversion, encoding and muxing stages.
+     *
+     * @throws IOException if the frames could not be allocated
+     */
+    private void startPipeline() throws IOException {
+        int depth = options.getPipelineDepth();
+        pipelineError.set(null);
+        conversionQueue = new HandoffQueue<>(depth, BackpressurePolicy.Block, this::discard);
+        encodingQueue = new HandoffQueue<>(depth, BackpressurePolicy.Block, this::discard);
+        muxingQueue = new HandoffQueue<>(depth, BackpressurePolicy.Block, this::discard);
+
+        // Enough frames for a full encoding queue, plus one being converted and one being encoded
+        freePictures = new HandoffQueue<>(depth + 2, BackpressurePolicy.Block, picture -> {});
+        for (int i = 0; i < depth + 2; ++i) {
+            AVFrame picture = allocateVideoFrame();
+            pictures.add(picture);
+            freePictures.put(picture, () -> false);
+        }
+
+        pipelineExecSvc = Executors.newFixedThreadPool(3);
+        stageFutures.add(pipelineExecSvc.submit(this::runConverter));
+        stageFutures.add(pipelineExecSvc.submit(this::runEncoder));
+        stageFutures.add(pipelineExecSvc.submit(this::runMuxer));
+    }
+
+    /**
+     * Queue an item for the next stage of the pipeline, blocking while the queue is full.
+     *
+     * @param queue The queue
+     * @param item The item
+     * @throws IOException if the pipeline has failed
+     */
+    private void queue(HandoffQueue<PipelineItem> queue, PipelineItem item) throws IOException {
+        if (isPipelineFailed()) {
+            discard(item);
+            throw new IOException("Error in output pipeline", pipelineError.get());
+        }
+        // The queue discards the item if the put is aborted
+        if (!queue.put(item, this::isPipelineFailed)) {
+            throw new IOException("Error in output pipeline", pipelineError.get());
+        }
+    }
+
+    /**
+     * Record the first error in a pipeline stage, and wake the other stages so they stop.
+     *
+     * @param e The error
+     */
+    private void fail(Exception e) {
+        if (pipelineError.compareAndSet(null, e)) {
+            logger.error("Error in output pipeline for " + filename, e);
+        }
+        conversionQueue.wakeAll();
+        encodingQueue.wakeAll();
+        muxingQueue.wakeAll();
+        freePictures.wakeAll();
+    }
+
+    /** Release the resources held by an item that will not be processed. */
+    private void discard(PipelineItem item) {
+        if (item.frame != null) {
+            item.frame.close();
+        }
+        if (item.raw != null) {
+            item.raw.close();
+        }
+        if (item.packet != null) {
+            av_packet_free(item.packet);
+        }
+    }
+
+    /** Conversion stage: converts images to the encoder's pixel format. */
+    private void runConverter() {
+        Thread.currentThread().setName("VideoFileOutput converter - " + filename);
+        try {
+            while (true) {
+                PipelineItem item = conversionQueue.take(this::isPipelineFailed);
+                if (item == null) {
+                    return;
+                }
+                if (item.frame != null || item.raw != null) {
+                    AVFrame picture = freePictures.take(this::isPipelineFailed);
+                    if (picture == null) {
+                        discard(item);
+                        return;
+                    }
+                    try {
+                        if (item.frame != null) {
+                            convert(item.frame, picture);
+                        } else {
+                            convert(item.raw, picture);
+                        }
+                    } finally {
+                        discard(item);
+                    }
+                    item = PipelineItem.picture(picture);
+                }
+                if (!encodingQueue.put(item, this::isPipelineFailed) || item.isEnd()) {
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /** Encoding stage: encodes converted frames, and keeps metadata in order with the packets. */
+    private void runEncoder() {
+        Thread.currentThread().setName("VideoFileOutput encoder - " + filename);
+        try {
+            while (true) {
+                PipelineItem item = encodingQueue.take(this::isPipelineFailed);
+                if (item == null) {
+                    return;
+                }
+                if (item.picture != null) {
+                    sendFrame(item.picture);
+                    freePictures.put(item.picture, this::isPipelineFailed);
+                    queueAvailablePackets(false);
+                } else if (item.isEnd()) {
+                    // Send null to the encoder, signalling EOF and entering "draining mode"
+                    avcodec_send_frame(videoCodecContext, null);
+                    queueAvailablePackets(true);
+                    muxingQueue.put(item, this::isPipelineFailed);
+                    return;
+                } else if (!muxingQueue.put(item, this::isPipelineFailed)) {
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Takes all available packets out of the encoder's internal buffer, and queues them for the
+     * muxing stage.
+     *
+     * @param eof If true, expect EOF and throw exception if not found
+     * @throws IOException if the encoder failed, or expected EOF was not found
+     */
+    private void queueAvailablePackets(boolean eof) throws IOException {
+        int ret;
+        while (true) {
+            AVPacket packet = packetPool.poll();
+            if (packet == null) {
+                packet = av_packet_alloc();
+            }
+            ret = avcodec_receive_packet(videoCodecContext, packet);
+            if (ret != 0) {
+                packetPool.offer(packet);
+                break;
+            }
+            if (!muxingQueue.put(PipelineItem.video(packet), this::isPipelineFailed)) {
+                return;
+            }
+        }
+        checkDrained(ret, eof);
+    }
+
+    /** Muxing stage: writes packets to the file. */
+    private void runMuxer() {
+        Thread.currentThread().setName("VideoFileOutput muxer - " + filename);
+        try {
+            while (true) {
+                PipelineItem item = muxingQueue.take(this::isPipelineFailed);
+                if (item == null || item.isEnd()) {
+                    return;
+                }
+                if (item.metadata) {
+                    writeMetadataPacket(item.packet);
+                } else {
+                    writeVideoPacket(item.packet);
+                    av_packet_unref(item.packet);
+                    packetPool.offer(item.packet);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Flush the pipeline, wait for the stages to finish and release the pipeline's resources.
+     *
+     * @throws IOException if any stage failed
+     */
+    private void closePipeline() throws IOException {
+        if (!isPipelineFailed()) {
+            conversionQueue.put(PipelineItem.END, this::isPipelineFailed);
+        }
+        for (Future<?> future : stageFutures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+        stageFutures.clear();
+        pipelineExecSvc.shutdown();
+        pipelineExecSvc = null;
+
+        Exception error = pipelineError.get();
+        if (error == null) {
+            writeTrailer();
+        }
+
+        conversionQueue.clear();
+        encodingQueue.clear();
+        muxingQueue.clear();
+        for (AVFrame picture : pictures) {
+            av_frame_free(picture);
+        }
+        pictures.clear();
+        AVPacket packet;
+        while ((packet = packetPool.poll()) != null) {
+            av_packet_free(packet);
+        }
+
+        // Clean up in super
+        cleanup();
+
+        if (error != null) {
+            throw new IOException("Error in output pipeline", error);
+        }
+    }
+
+    /**
+     * A frame or packet passing through the pipeline.
+     *
+     * <p>Holds one of: a video or raw video frame to convert, a converted frame to encode, an
+     * encoded video packet, or a metadata packet. An item holding none of these marks the end of
+     * the input.
+     */
+    private static final class PipelineItem {
+        static final PipelineItem END = new PipelineItem(null, null, null, null, false);
+
+        private final VideoFrame frame;
+        private final RawVideoFrame raw;
+        private final AVFrame picture;
+        private final AVPacket packet;
+        private final boolean metadata;
+
+        private PipelineItem(
+                VideoFrame frame,
+                RawVideoFrame raw,
+                AVFrame picture,
+                AVPacket packet,
+                boolean metadata) {
+            this.frame = frame;
+            this.raw = raw;
+            this.picture = picture;
+            this.packet = packet;
+            this.metadata = metadata;
+        }
+
+        static PipelineItem frame(VideoFrame frame) {
+            return new PipelineItem(frame, null, null, null, false);
+        }
+
+        static PipelineItem raw(RawVideoFrame raw) {
+            return new PipelineItem(null, raw, null, null, false);
+        }
+
+        static PipelineItem picture(AVFrame picture) {
+            return new PipelineItem(null, null, picture, null, false);
+        }
+
+        static PipelineItem video(AVPacket packet) {
+            return new PipelineItem(null, null, null, packet, false);
+        }
+
+        static PipelineItem metadata(AVPacket packet) {
+            return new PipelineItem(null, null, null, packet, true);
+        }
+
+        boolean isEnd() {
+            return this == END;
+        }
+    }
 }
@@ -1,11 +1,22 @@
 package org.jmisb.api.video;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
 
-/** An uncompressed video frame. */
-public class VideoFrame {
+/**
+ * An uncompressed video frame.
+ *
+ * <p>Frames from an input with frame pooling enabled (see {@link
+ * VideoInputOptions#setFramePooling(boolean)}) hold an image leased from a {@link VideoFramePool}.
+ * Each listener receiving such a frame must call {@link #close()} (or use try-with-resources) once
+ * it has finished with the image, after which the image may be overwritten by a later frame. For
+ * frames that are not pooled, {@link #close()} does nothing.
+ */
+public class VideoFrame implements DecodedFrame {
     private final BufferedImage bufferedImage;
     private final double pts;
+    private final VideoFramePool pool;
+    private final AtomicInteger references = new AtomicInteger(1);
 
     /**
      * Create a video frame.
@@ -14,8 +25,20 @@ public class VideoFrame {
      * @param pts The presentation timestamp, in seconds
      */
     public VideoFrame(BufferedImage image, double pts) {
+        this(image, pts, null);
+    }
+
+    /**
+     * Create a video frame holding an image leased from a pool.
+     *
+     * @param image The image
+     * @param pts The presentation timestamp, in seconds
+     * @param pool The pool the image is returned to when the frame is closed, or null
+     */
+    public VideoFrame(BufferedImage image, double pts, VideoFramePool pool) {
         this.bufferedImage = image;
         this.pts = pts;
+        this.pool = pool;
     }
 
     /**
@@ -35,4 +58,34 @@ public class VideoFrame {
     public double getPts() {
         return pts;
     }
+
+    /**
+     * Check whether the image is leased from a pool.
+     *
+     * @return True if the image must not be used after the frame is closed
+     */
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * Add references to the frame, one for each additional holder that will close it.
+     *
+     * @param count The number of references to add
+     */
+    void retain(int count) {
+        references.addAndGet(count);
+    }
+
+    /**
+     * Release this reference to the frame.
+     *
+     * <p>When the last reference is released, a pooled image is returned to its pool.
+     */
+    @Override
+    public void close() {
+        if (pool != null && references.decrementAndGet() == 0) {
+            pool.release(bufferedImage);
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package org.jmisb.api.video;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+
+/**
+ * Bounded pool of image buffers for decoded video frames.
+ *
+ * <p>Buffers are leased by the decoder and returned when every listener has closed the {@link
+ * VideoFrame} holding them, so a buffer is never overwritten while a listener is still using it. If
+ * all buffers are leased, a new one is allocated rather than blocking the decoder; the pool only
+ * retains up to its capacity once they are returned.
+ *
+ * <p>All buffers are {@link BufferedImage#TYPE_3BYTE_BGR}. If the frame size changes, buffers of
+ * the old size are discarded as they are returned.
+ */
+public class VideoFramePool {
+    private final int capacity;
+    private final ArrayDeque<BufferedImage> available;
+    private int width;
+    private int height;
+    private long allocatedCount;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Maximum number of idle buffers to retain
+     */
+    public VideoFramePool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Pool capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.available = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Lease an image buffer.
+     *
+     * <p>The contents of the returned image are undefined.
+     *
+     * @param width The image width, in pixels
+     * @param height The image height, in pixels
+     * @return An image of the requested size, reused from the pool if one is available
+     */
+    public synchronized BufferedImage acquire(int width, int height) {
+        if (width != this.width || height != this.height) {
+            available.clear();
+            this.width = width;
+            this.height = height;
+        }
+        BufferedImage image = available.poll();
+        if (image == null) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            allocatedCount++;
+        }
+        return image;
+    }
+
+    /**
+     * Return an image buffer to the pool.
+     *
+     * @param image The image, which must not be used again by the caller
+     */
+    public synchronized void release(BufferedImage image) {
+        if (image.getWidth() == width
+                && image.getHeight() == height
+                && available.size() < capacity) {
+            available.push(image);
+        }
+    }
+
+    /**
+     * Get the number of buffers currently available for reuse.
+     *
+     * @return The number of idle buffers
+     */
+    public synchronized int getAvailableCount() {
+        return available.size();
+    }
+
+    /**
+     * Get the total number of buffers this pool has allocated.
+     *
+     * <p>This keeps increasing if frames are not closed after use.
+     *
+     * @return The number of allocations
+     */
+    public synchronized long getAllocatedCount() {
+        return allocatedCount;
+    }
+}
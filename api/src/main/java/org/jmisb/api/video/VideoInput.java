@@ -2,19 +2,21 @@ package org.jmisb.api.video;
 
 import static org.bytedeco.ffmpeg.global.avformat.avformat_close_input;
 import static org.bytedeco.ffmpeg.global.avformat.avformat_free_context;
-import static org.jmisb.core.video.TimingUtils.shortWait;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import org.bytedeco.ffmpeg.avformat.AVFormatContext;
 import org.jmisb.core.video.FfmpegUtils;
 import org.slf4j.Logger;
@@ -25,12 +27,25 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
     private static Logger logger = LoggerFactory.getLogger(VideoInput.class);
     private Set<IVideoListener> videoListeners = new HashSet<>();
     private Set<IMetadataListener> metadataListeners = new HashSet<>();
+    private Set<IRawVideoListener> rawVideoListeners = new HashSet<>();
 
-    /** Queue of decoded video frames ready to be sent to listeners. */
-    private BlockingQueue<VideoFrame> decodedVideo = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    /** Queue of decoded video frames (raw or not) ready to be sent to listeners. */
+    private final HandoffQueue<DecodedFrame> decodedVideo;
 
     /** Queue of metadata frames ready to be sent to listeners. */
-    private BlockingQueue<MetadataFrame> decodedMetadata = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    private final HandoffQueue<MetadataFrame> decodedMetadata;
+
+    /** Pool of image buffers for decoded video, or null if frames are not pooled. */
+    private final VideoFramePool framePool;
+
+    /** Options the input was created with. */
+    private final VideoInputOptions inputOptions;
+
+    /** Statistics for the input pipeline. */
+    private final InputStatistics statistics;
+
+    /** Name the statistics are registered under while open, or null if not registered. */
+    private ObjectName statisticsName;
 
     VideoNotifier videoNotifier;
     MetadataNotifier metadataNotifier;
@@ -40,6 +55,26 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
     String url;
     AVFormatContext formatContext;
 
+    /** Construct with default options. */
+    protected VideoInput() {
+        this(new VideoInputOptions());
+    }
+
+    /**
+     * Construct with options.
+     *
+     * @param options Options for video input, used to select the backpressure policy
+     */
+    protected VideoInput(VideoInputOptions options) {
+        inputOptions = options;
+        BackpressurePolicy policy = options.getBackpressurePolicy();
+        decodedVideo = new HandoffQueue<>(QUEUE_SIZE, policy, DecodedFrame::close);
+        decodedMetadata = new HandoffQueue<>(QUEUE_SIZE, policy, frame -> {});
+        statistics = new InputStatistics(decodedVideo, decodedMetadata);
+        // Enough buffers for a full queue, plus the frames being decoded and delivered
+        framePool = options.isFramePooling() ? new VideoFramePool(QUEUE_SIZE + 2) : null;
+    }
+
     @Override
     public abstract void open(String url) throws IOException;
 
@@ -93,6 +128,16 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
         videoListeners.remove(listener);
     }
 
+    @Override
+    public void addRawFrameListener(IRawVideoListener listener) {
+        rawVideoListeners.add(listener);
+    }
+
+    @Override
+    public void removeRawFrameListener(IRawVideoListener listener) {
+        rawVideoListeners.remove(listener);
+    }
+
     @Override
     public void addMetadataListener(IMetadataListener listener) {
         metadataListeners.add(listener);
@@ -103,21 +148,153 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
         metadataListeners.remove(listener);
     }
 
+    @Override
+    public InputStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Reset the statistics for a newly opened input, and register them with JMX if enabled.
+     *
+     * <p>Called by subclasses on opening, before starting the demuxer.
+     */
+    void startStatistics() {
+        statistics.reset();
+        if (inputOptions.isStatisticsMBean() && statisticsName == null) {
+            try {
+                ObjectName name =
+                        new ObjectName(
+                                "org.jmisb:type=VideoInput,name=" + ObjectName.quote(getUrl()));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, name);
+                statisticsName = name;
+            } catch (JMException e) {
+                logger.warn("Could not register input statistics for " + getUrl(), e);
+            }
+        }
+    }
+
+    /** Unregister the statistics from JMX, if registered. Called by subclasses on closing. */
+    void stopStatistics() {
+        statistics.setPacketQueues(null, null);
+        if (statisticsName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(statisticsName);
+            } catch (JMException e) {
+                logger.warn("Could not unregister input statistics for " + getUrl(), e);
+            }
+            statisticsName = null;
+        }
+    }
+
+    /**
+     * Create a video frame for the decoder to fill.
+     *
+     * @param width The image width, in pixels
+     * @param height The image height, in pixels
+     * @param pts The presentation timestamp, in seconds
+     * @return A frame with a {@link BufferedImage#TYPE_3BYTE_BGR} image, leased from the pool if
+     *     frame pooling is enabled
+     */
+    VideoFrame createVideoFrame(int width, int height, double pts) {
+        if (framePool != null) {
+            return new VideoFrame(framePool.acquire(width, height), pts, framePool);
+        }
+        return new VideoFrame(new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR), pts);
+    }
+
+    /**
+     * Queue a newly decoded video frame for client notification.
+     *
+     * <p>If the queue is full, the input's {@link BackpressurePolicy} determines whether this
+     * blocks or drops a frame. The frame is not copied, so the caller must not modify it after
+     * queueing. A frame that is not queued is closed.
+     *
+     * @param frame The video frame
+     * @param abort Condition under which to stop waiting for space in the queue
+     * @return True if the frame was queued
+     */
+    protected boolean queueVideoFrame(VideoFrame frame, BooleanSupplier abort) {
+        return decodedVideo.put(frame, abort);
+    }
+
     /**
      * Attempt to queue a newly decoded video frame for client notification.
      *
+     * <p>The frame is copied, so the caller keeps ownership of it.
+     *
      * @param frame The video frame
      * @param timeout Milliseconds to wait for the queue to become available before failing
-     * @return True of the frame was successfully queued
+     * @return True if the frame was successfully queued
+     * @deprecated Use {@link #queueVideoFrame(VideoFrame, BooleanSupplier)}, which hands the frame
+     *     over without copying it
      */
+    @Deprecated
     protected boolean queueVideoFrame(VideoFrame frame, long timeout) {
-        VideoFrame copy = deepCopy(frame);
-        boolean queued = false;
-        try {
-            queued = decodedVideo.offer(copy, timeout, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException ignored) {
-        }
-        return queued;
+        return decodedVideo.put(deepCopy(frame), timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a newly decoded raw video frame for client notification.
+     *
+     * <p>If the queue is full, the input's {@link BackpressurePolicy} determines whether this
+     * blocks or drops a frame. A frame that is not queued is closed.
+     *
+     * @param frame The raw video frame
+     * @param abort Condition under which to stop waiting for space in the queue
+     * @return True if the frame was queued
+     */
+    boolean queueRawVideoFrame(RawVideoFrame frame, BooleanSupplier abort) {
+        return decodedVideo.put(frame, abort);
+    }
+
+    /**
+     * Hand a decoded video frame (standard or raw) to the client notification queue, keeping it if
+     * waiting for space is aborted.
+     *
+     * @param frame The frame
+     * @param abort Condition under which to stop waiting for space in the queue
+     * @return True if the queue took the frame (queued, or dropped by the backpressure policy);
+     *     false if waiting was aborted, in which case the caller still owns the frame
+     */
+    boolean offerVideoFrame(DecodedFrame frame, BooleanSupplier abort) {
+        return decodedVideo.offer(frame, abort);
+    }
+
+    /**
+     * Hand a decoded metadata frame to the client notification queue, keeping it if waiting for
+     * space is aborted.
+     *
+     * @param frame The frame
+     * @param abort Condition under which to stop waiting for space in the queue
+     * @return True if the queue took the frame (queued, or dropped by the backpressure policy);
+     *     false if waiting was aborted
+     */
+    boolean offerMetadataFrame(MetadataFrame frame, BooleanSupplier abort) {
+        return decodedMetadata.offer(frame, abort);
+    }
+
+    /**
+     * Get the options the input was created with.
+     *
+     * @return The options
+     */
+    VideoInputOptions getInputOptions() {
+        return inputOptions;
+    }
+
+    /**
+     * Queue a newly decoded metadata frame for client notification.
+     *
+     * <p>If the queue is full, the input's {@link BackpressurePolicy} determines whether this
+     * blocks or drops a frame.
+     *
+     * @param frame The metadata frame
+     * @param abort Condition under which to stop waiting for space in the queue
+     * @return True if the frame was queued
+     */
+    protected boolean queueMetadataFrame(MetadataFrame frame, BooleanSupplier abort) {
+        return decodedMetadata.put(frame, abort);
     }
 
     /**
@@ -126,16 +303,35 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
      * @param frame The metadata frame
      * @param timeout Milliseconds to wait for the queue to become available before failing
      * @return True if the frame was successfully queued
+     * @deprecated Use {@link #queueMetadataFrame(MetadataFrame, BooleanSupplier)}
      */
+    @Deprecated
     protected boolean queueMetadataFrame(MetadataFrame frame, long timeout) {
-        boolean queued = false;
-        try {
-            queued = decodedMetadata.offer(frame, timeout, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException ignored) {
-        }
-        return queued;
+        return decodedMetadata.put(frame, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the number of decoded frames discarded by the backpressure policy.
+     *
+     * @return The total number of video and metadata frames dropped
+     */
+    public long getDroppedFrameCount() {
+        return decodedVideo.getDroppedCount() + decodedMetadata.getDroppedCount();
+    }
+
+    /** Wake any threads blocked on the decoded frame queues so they re-check their state. */
+    void wakeQueues() {
+        decodedVideo.wakeAll();
+        decodedMetadata.wakeAll();
     }
 
+    /**
+     * Called by the notifier threads each time they empty their queue.
+     *
+     * <p>The default implementation does nothing.
+     */
+    void onQueueDrained() {}
+
     /**
      * Start up the notifier threads.
      *
@@ -154,20 +350,31 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
     }
 
     void stopNotifiers() {
+        // A listener may close the input from a notifier thread (e.g., on end of file), in which
+        // case that thread exits once the listener returns, and must not wait on itself
         videoNotifier.shutdown();
-        try {
-            videoNotifier.join();
-        } catch (InterruptedException ignored) {
+        if (Thread.currentThread() != videoNotifier) {
+            try {
+                videoNotifier.join();
+            } catch (InterruptedException ignored) {
+            }
         }
         videoNotifier = null;
 
         metadataNotifier.shutdown();
-        try {
-            metadataNotifier.join();
-        } catch (InterruptedException ignored) {
+        if (Thread.currentThread() != metadataNotifier) {
+            try {
+                metadataNotifier.join();
+            } catch (InterruptedException ignored) {
+            }
         }
         metadataNotifier = null;
 
+        clearDecodedQueues();
+    }
+
+    /** Discard all decoded frames that have not yet been delivered. */
+    void clearDecodedQueues() {
         logger.debug("Clearing decodedVideo");
         decodedVideo.clear();
         decodedMetadata.clear();
@@ -175,9 +382,10 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
 
     /** Thread to notify clients of new video frames. */
     protected class VideoNotifier extends Thread {
+        private final Object stateLock = new Object();
         private volatile boolean shutdown = false;
-        private boolean paused = false;
-        private boolean getOneFrame = false;
+        private volatile boolean paused = false;
+        private volatile boolean getOneFrame = false;
 
         VideoNotifier(boolean paused) {
             this.paused = paused;
@@ -188,52 +396,110 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
             Thread.currentThread().setName("VideoNotifier - " + getUrl());
 
             while (!shutdown) {
-                while (!shutdown && paused && !getOneFrame) {
-                    shortWait(50);
+                synchronized (stateLock) {
+                    while (!shutdown && paused && !getOneFrame) {
+                        try {
+                            stateLock.wait();
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
                 }
 
-                if (!shutdown) {
-                    try {
-                        VideoFrame frame = decodedVideo.poll(50, TimeUnit.MILLISECONDS);
+                DecodedFrame frame = decodedVideo.take(this::isHeld);
+                if (frame != null) {
+                    if (getOneFrame)
+                        logger.debug("Got one frame from queue, pts = " + frame.getPts());
 
-                        if (frame != null) {
-                            if (getOneFrame)
-                                logger.debug("Got one frame from queue, pts = " + frame.getPts());
+                    // Sleep if we are trying to control playback rate
+                    delayVideo(frame.getPts());
 
-                            // Sleep if we are trying to control playback rate
-                            delayVideo(frame.getPts());
+                    deliver(frame);
+                    getOneFrame = false;
 
-                            videoListeners.forEach(listener -> listener.onVideoReceived(frame));
-                            getOneFrame = false;
-                        }
-                    } catch (InterruptedException ignored) {
+                    if (decodedVideo.isEmpty()) {
+                        onQueueDrained();
                     }
                 }
             }
         }
 
+        /**
+         * Send a frame to the listeners.
+         *
+         * <p>Each listener gets its own reference to a pooled frame, and is responsible for closing
+         * it.
+         *
+         * @param frame The frame
+         */
+        private void deliver(DecodedFrame frame) {
+            if (frame instanceof RawVideoFrame) {
+                RawVideoFrame rawFrame = (RawVideoFrame) frame;
+                List<IRawVideoListener> listeners = new ArrayList<>(rawVideoListeners);
+                if (listeners.isEmpty()) {
+                    rawFrame.close();
+                    return;
+                }
+                rawFrame.retain(listeners.size() - 1);
+                listeners.forEach(listener -> listener.onRawVideoReceived(rawFrame));
+                statistics.videoFrameDelivered();
+            } else {
+                VideoFrame videoFrame = (VideoFrame) frame;
+                List<IVideoListener> listeners = new ArrayList<>(videoListeners);
+                if (listeners.isEmpty()) {
+                    videoFrame.close();
+                    return;
+                }
+                videoFrame.retain(listeners.size() - 1);
+                listeners.forEach(listener -> listener.onVideoReceived(videoFrame));
+                statistics.videoFrameDelivered();
+            }
+        }
+
+        /**
+         * Check whether frames should be held back from listeners.
+         *
+         * @return True if shut down, or paused without a single frame being requested
+         */
+        private boolean isHeld() {
+            return shutdown || (paused && !getOneFrame);
+        }
+
         void shutdown() {
-            shutdown = true;
-            interrupt();
+            synchronized (stateLock) {
+                shutdown = true;
+                stateLock.notifyAll();
+            }
+            decodedVideo.wakeAll();
+            if (Thread.currentThread() != this) {
+                interrupt();
+            }
         }
 
         protected void pauseOutput() {
             paused = true;
+            decodedVideo.wakeAll();
         }
 
         protected void resumeOutput() {
-            paused = false;
+            synchronized (stateLock) {
+                paused = false;
+                stateLock.notifyAll();
+            }
         }
 
         protected void frame() {
-            getOneFrame = true;
+            synchronized (stateLock) {
+                getOneFrame = true;
+                stateLock.notifyAll();
+            }
         }
     }
 
     /** Thread to notify clients of new metadata. */
     protected class MetadataNotifier extends Thread {
+        private final Object stateLock = new Object();
         private volatile boolean shutdown = false;
-        private boolean paused = false;
+        private volatile boolean paused = false;
 
         MetadataNotifier(boolean paused) {
             this.paused = paused;
@@ -244,47 +510,58 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
             Thread.currentThread().setName("MetadataNotifier - " + getUrl());
 
             while (!shutdown) {
-                while (!shutdown && paused) {
-                    shortWait(50);
+                synchronized (stateLock) {
+                    while (!shutdown && paused) {
+                        try {
+                            stateLock.wait();
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
                 }
 
-                if (!shutdown) {
+                MetadataFrame frame = decodedMetadata.take(() -> shutdown || paused);
+                if (frame != null) {
                     try {
-                        MetadataFrame frame = decodedMetadata.poll(50, TimeUnit.MILLISECONDS);
+                        // Sleep if we are trying to control playback rate
+                        delayMetadata(frame.getPts());
+                    } catch (InterruptedException ignored) {
+                        continue;
+                    }
 
-                        if (frame != null) {
-                            // Sleep if we are trying to control playback rate
-                            delayMetadata(frame.getPts());
+                    metadataListeners.forEach(listener -> listener.onMetadataReceived(frame));
+                    statistics.metadataFrameDelivered();
 
-                            metadataListeners.forEach(
-                                    listener -> listener.onMetadataReceived(frame));
-                        }
-                    } catch (InterruptedException ignored) {
+                    if (decodedMetadata.isEmpty()) {
+                        onQueueDrained();
                     }
                 }
             }
         }
 
         void shutdown() {
-            shutdown = true;
-            interrupt();
+            synchronized (stateLock) {
+                shutdown = true;
+                stateLock.notifyAll();
+            }
+            decodedMetadata.wakeAll();
+            if (Thread.currentThread() != this) {
+                interrupt();
+            }
         }
 
         protected void pauseOutput() {
             paused = true;
+            decodedMetadata.wakeAll();
         }
 
         protected void resumeOutput() {
-            paused = false;
+            synchronized (stateLock) {
+                paused = false;
+                stateLock.notifyAll();
+            }
         }
     }
 
-    /**
-     * Copy a VideoFrame.
-     *
-     * @param frame The frame to copy
-     * @return The newly allocated frame
-     */
     private static VideoFrame deepCopy(VideoFrame frame) {
         ColorModel cm = frame.getImage().getColorModel();
         boolean isAlphaPremultiplied = cm.isAlphaPremultiplied();
@@ -308,6 +585,6 @@ public abstract class VideoInput extends VideoIO implements IVideoInput {
      * @return return true if all queues are empty, otherwise false.
      */
     protected boolean queuesAreEmpty() {
-        return (decodedVideo.isEmpty()) && (decodedMetadata.isEmpty());
+        return decodedVideo.isEmpty() && decodedMetadata.isEmpty();
     }
 }
@@ -1,16 +1,27 @@
 package org.jmisb.api.video;
 
+import static org.bytedeco.ffmpeg.global.swscale.SWS_FAST_BILINEAR;
+
 /** Options to be be specified when opening an input file or stream. */
 public class VideoInputOptions {
     private final boolean decodeAudio;
     private final boolean decodeMetadata;
     private final boolean decodeVideo;
+    private final BackpressurePolicy backpressurePolicy;
+    private boolean framePooling = false;
+    private boolean rawVideo = false;
+    private String rawPixelFormat = null;
+    private int outputWidth = 0;
+    private int outputHeight = 0;
+    private int scalingFlags = SWS_FAST_BILINEAR;
+    private boolean statisticsMBean = false;
 
     /** Construct with default values. */
     public VideoInputOptions() {
         decodeAudio = false;
         decodeMetadata = true;
         decodeVideo = true;
+        backpressurePolicy = BackpressurePolicy.Block;
     }
 
     /**
@@ -21,9 +32,26 @@ public class VideoInputOptions {
      * @param decodeVideo True to decode video
      */
     public VideoInputOptions(boolean decodeAudio, boolean decodeMetadata, boolean decodeVideo) {
+        this(decodeAudio, decodeMetadata, decodeVideo, BackpressurePolicy.Block);
+    }
+
+    /**
+     * Constructor specifying a backpressure policy.
+     *
+     * @param decodeAudio True to decode audio (currently unsupported)
+     * @param decodeMetadata True to decode metadata
+     * @param decodeVideo True to decode video
+     * @param backpressurePolicy What to do when listeners fall behind the decoder
+     */
+    public VideoInputOptions(
+            boolean decodeAudio,
+            boolean decodeMetadata,
+            boolean decodeVideo,
+            BackpressurePolicy backpressurePolicy) {
         this.decodeAudio = decodeAudio;
         this.decodeMetadata = decodeMetadata;
         this.decodeVideo = decodeVideo;
+        this.backpressurePolicy = backpressurePolicy;
     }
 
     /**
@@ -52,4 +80,152 @@ public class VideoInputOptions {
     public boolean isDecodeVideo() {
         return decodeVideo;
     }
+
+    /**
+     * What to do when decoded frames are produced faster than listeners consume them.
+     *
+     * @return The backpressure policy, {@link BackpressurePolicy#Block} by default
+     */
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    /**
+     * Whether decoded video frames use image buffers from a pool.
+     *
+     * @return true if frames are pooled, false (the default) if each frame has its own image
+     */
+    public boolean isFramePooling() {
+        return framePooling;
+    }
+
+    /**
+     * Set whether decoded video frames use image buffers from a pool.
+     *
+     * <p>Pooling avoids allocating an image for every decoded frame, but requires every video
+     * listener to call {@link VideoFrame#close()} once it has finished with each frame. Listeners
+     * that keep a reference to the image after closing the frame may see it overwritten.
+     *
+     * @param framePooling true to use pooled frames
+     */
+    public void setFramePooling(boolean framePooling) {
+        this.framePooling = framePooling;
+    }
+
+    /**
+     * Whether video is delivered as {@link RawVideoFrame}s rather than {@link VideoFrame}s.
+     *
+     * @return true if raw frames are delivered to {@link IRawVideoListener}s
+     */
+    public boolean isRawVideo() {
+        return rawVideo;
+    }
+
+    /**
+     * Set whether video is delivered as {@link RawVideoFrame}s rather than {@link VideoFrame}s.
+     *
+     * <p>Raw frames skip conversion to BGR24 {@link java.awt.image.BufferedImage}s, which is a
+     * significant part of decoding cost. They are delivered to {@link IRawVideoListener}s only;
+     * {@link IVideoListener}s receive nothing.
+     *
+     * @param rawVideo true to deliver raw frames
+     */
+    public void setRawVideo(boolean rawVideo) {
+        this.rawVideo = rawVideo;
+    }
+
+    /**
+     * Get the pixel format for raw video frames.
+     *
+     * @return The FFmpeg pixel format name, or null (the default) for the decoder's native format
+     */
+    public String getRawPixelFormat() {
+        return rawPixelFormat;
+    }
+
+    /**
+     * Set the pixel format for raw video frames.
+     *
+     * <p>If not set, or the same as the decoder's format with no output size set, frames are
+     * delivered straight from the decoder without any conversion.
+     *
+     * @param rawPixelFormat FFmpeg pixel format name (e.g., "gray", "nv12", "rgb24"), or null for
+     *     the decoder's native format
+     */
+    public void setRawPixelFormat(String rawPixelFormat) {
+        this.rawPixelFormat = rawPixelFormat;
+    }
+
+    /**
+     * Get the output image width.
+     *
+     * @return The width in pixels, or 0 (the default) for the stream's width
+     */
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    /**
+     * Get the output image height.
+     *
+     * @return The height in pixels, or 0 (the default) for the stream's height
+     */
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    /**
+     * Set the size decoded images are scaled to.
+     *
+     * @param width The width in pixels, or 0 for the stream's width
+     * @param height The height in pixels, or 0 for the stream's height
+     */
+    public void setOutputSize(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Output size cannot be negative");
+        }
+        this.outputWidth = width;
+        this.outputHeight = height;
+    }
+
+    /**
+     * Get the flags used when scaling or converting images.
+     *
+     * @return The {@code SWS_*} flags
+     */
+    public int getScalingFlags() {
+        return scalingFlags;
+    }
+
+    /**
+     * Set the flags used when scaling or converting images.
+     *
+     * @param scalingFlags {@code SWS_*} flags from {@link org.bytedeco.ffmpeg.global.swscale}, by
+     *     default {@code SWS_FAST_BILINEAR}
+     */
+    public void setScalingFlags(int scalingFlags) {
+        this.scalingFlags = scalingFlags;
+    }
+
+    /**
+     * Whether input statistics are published through JMX.
+     *
+     * @return true to register an MBean while the input is open, false (the default) otherwise
+     */
+    public boolean isStatisticsMBean() {
+        return statisticsMBean;
+    }
+
+    /**
+     * Set whether input statistics are published through JMX.
+     *
+     * <p>If enabled, the input's {@link InputStatistics} are registered with the platform MBean
+     * server while it is open, named {@code org.jmisb:type=VideoInput,name="<url>"}. Statistics can
+     * always be polled with {@link IVideoInput#getStatistics()}.
+     *
+     * @param statisticsMBean true to register an MBean
+     */
+    public void setStatisticsMBean(boolean statisticsMBean) {
+        this.statisticsMBean = statisticsMBean;
+    }
 }
@@ -2,9 +2,12 @@ package org.jmisb.api.video;
 
 import static org.bytedeco.ffmpeg.avcodec.AVCodecContext.FF_PROFILE_KLVA_ASYNC;
 import static org.bytedeco.ffmpeg.avcodec.AVCodecContext.FF_PROFILE_KLVA_SYNC;
+import static org.bytedeco.ffmpeg.avcodec.AVCodecContext.FF_THREAD_SLICE;
 import static org.bytedeco.ffmpeg.global.avcodec.AV_CODEC_ID_H264;
 import static org.bytedeco.ffmpeg.global.avcodec.AV_CODEC_ID_SMPTE_KLV;
+import static org.bytedeco.ffmpeg.global.avcodec.av_new_packet;
 import static org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_alloc_context3;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_find_encoder;
 import static org.bytedeco.ffmpeg.global.avcodec.avcodec_find_encoder_by_name;
@@ -26,12 +29,17 @@ import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P;
 import static org.bytedeco.ffmpeg.global.avutil.av_d2q;
 import static org.bytedeco.ffmpeg.global.avutil.av_dict_set;
 import static org.bytedeco.ffmpeg.global.avutil.av_frame_alloc;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_copy;
 import static org.bytedeco.ffmpeg.global.avutil.av_frame_free;
-import static org.bytedeco.ffmpeg.global.avutil.av_image_alloc;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_get_buffer;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_make_writable;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_ref;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_unref;
 import static org.bytedeco.ffmpeg.global.avutil.av_image_fill_arrays;
 import static org.bytedeco.ffmpeg.global.avutil.av_inv_q;
 import static org.bytedeco.ffmpeg.global.avutil.av_q2d;
 import static org.bytedeco.ffmpeg.global.swscale.SWS_FAST_BILINEAR;
+import static org.bytedeco.ffmpeg.global.swscale.sws_freeContext;
 import static org.bytedeco.ffmpeg.global.swscale.sws_getCachedContext;
 import static org.bytedeco.ffmpeg.global.swscale.sws_scale;
 import static org.bytedeco.ffmpeg.presets.avutil.AVERROR_EAGAIN;
@@ -41,6 +49,8 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import org.bytedeco.ffmpeg.avcodec.AVCodec;
 import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
 import org.bytedeco.ffmpeg.avcodec.AVCodecParameters;
@@ -53,6 +63,7 @@ import org.bytedeco.ffmpeg.avutil.AVFrame;
 import org.bytedeco.ffmpeg.avutil.AVRational;
 import org.bytedeco.ffmpeg.swscale.SwsContext;
 import org.bytedeco.javacpp.*;
+import org.jmisb.api.klv.IMisbMessage;
 import org.jmisb.core.video.FfmpegUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,6 +100,14 @@ public abstract class VideoOutput extends VideoIO {
     private AVFrame avFrameDst;
 
     private BufferedImage tempImageBuffer;
+    private BytePointer pixelData;
+
+    // Converts raw frames that are not in the codec's format
+    private SwsContext rawSwsContext;
+    private AVFrame rawFrameRef;
+
+    // Reused for framing metadata messages
+    private ByteBuffer metadataBuffer = ByteBuffer.allocate(4096);
 
     int framesWritten = 0;
 
@@ -216,6 +235,12 @@ public abstract class VideoOutput extends VideoIO {
         videoCodecContext.has_b_frames(0);
         videoCodecContext.max_b_frames(0);
 
+        // Threading
+        videoCodecContext.thread_count(options.getEncoderThreads());
+        if (options.isSliceThreading()) {
+            videoCodecContext.thread_type(FF_THREAD_SLICE);
+        }
+
         // Open the codec
         codecOptions = new AVDictionary(null);
         av_dict_set(codecOptions, "tune", "zerolatency", 0);
@@ -295,15 +320,131 @@ public abstract class VideoOutput extends VideoIO {
             av_frame_free(avFrameDst);
             avFrameDst = null;
         }
+
+        if (rawFrameRef != null) {
+            av_frame_free(rawFrameRef);
+            rawFrameRef = null;
+        }
+
+        if (pixelData != null) {
+            pixelData.close();
+            pixelData = null;
+        }
+
+        if (swsContext != null) {
+            sws_freeContext(swsContext);
+            swsContext = null;
+        }
+
+        if (rawSwsContext != null) {
+            sws_freeContext(rawSwsContext);
+            rawSwsContext = null;
+        }
+    }
+
+    /**
+     * Allocate a frame in the pixel format and size required by the codec.
+     *
+     * @return The frame, which must be freed with {@code av_frame_free}
+     * @throws IOException if the frame could not be allocated
+     */
+    AVFrame allocateVideoFrame() throws IOException {
+        AVFrame frame = av_frame_alloc();
+        frame.format(videoCodecContext.pix_fmt());
+        frame.width(options.getWidth());
+        frame.height(options.getHeight());
+        int ret;
+        if ((ret = av_frame_get_buffer(frame, 0)) < 0) {
+            av_frame_free(frame);
+            throw new IOException(
+                    "Could not allocate video frame: " + FfmpegUtils.formatError(ret));
+        }
+        return frame;
+    }
+
+    /**
+     * Copy a video frame to an AVFrame, transforming to the pixel format required by the codec.
+     *
+     * <p>If the encoder still holds a reference to {@code dst} from an earlier frame, it is given
+     * new buffers first.
+     *
+     * @param frame The input frame
+     * @param dst The frame to write to, from {@link #allocateVideoFrame()}
+     * @throws IOException If the frame could not be written
+     */
+    void convert(VideoFrame frame, AVFrame dst) throws IOException {
+        int ret;
+        if ((ret = av_frame_make_writable(dst)) < 0) {
+            throw new IOException("Could not write video frame: " + FfmpegUtils.formatError(ret));
+        }
+        convert(frame.getImage(), dst);
+
+        // Convert PTS in seconds to PTS in "time base" units
+        long pts = Math.round(frame.getPts() / av_q2d(videoStream.time_base()));
+        dst.pts(pts);
+        dst.pkt_dts(pts); // TODO: correct?
     }
 
     /**
-     * Copy a BufferedImage to avFrameDst, transforming to the pixel format required by the codec.
+     * Copy a raw video frame to an AVFrame, transforming to the pixel format required by the codec
+     * if needed.
+     *
+     * @param frame The input frame, which must be the same size as the output
+     * @param dst The frame to write to, from {@link #allocateVideoFrame()}
+     * @throws IOException If the frame could not be written
+     */
+    void convert(RawVideoFrame frame, AVFrame dst) throws IOException {
+        AVFrame src = frame.getFrame();
+        int ret;
+        if ((ret = av_frame_make_writable(dst)) < 0) {
+            throw new IOException("Could not write video frame: " + FfmpegUtils.formatError(ret));
+        }
+        if (src.format() == dst.format()) {
+            if ((ret = av_frame_copy(dst, src)) < 0) {
+                throw new IOException(
+                        "Could not copy video frame: " + FfmpegUtils.formatError(ret));
+            }
+        } else {
+            rawSwsContext =
+                    sws_getCachedContext(
+                            rawSwsContext,
+                            src.width(),
+                            src.height(),
+                            src.format(),
+                            dst.width(),
+                            dst.height(),
+                            dst.format(),
+                            SWS_FAST_BILINEAR,
+                            null,
+                            null,
+                            (DoublePointer) null);
+            if (rawSwsContext == null) {
+                throw new IOException(
+                        "Cannot convert from pixel format " + frame.getPixelFormatName());
+            }
+            sws_scale(
+                    rawSwsContext,
+                    src.data(),
+                    src.linesize(),
+                    0,
+                    src.height(),
+                    dst.data(),
+                    dst.linesize());
+        }
+
+        long pts = Math.round(frame.getPts() / av_q2d(videoStream.time_base()));
+        dst.pts(pts);
+        dst.pkt_dts(pts);
+    }
+
+    /**
+     * Copy a BufferedImage to an AVFrame, transforming to the pixel format required by the codec.
      *
      * @param image The input image
+     * @param dst The frame to write to
      * @throws IOException If the frame could not be written
      */
-    private void convert(BufferedImage image) throws IOException {
+    private void convert(BufferedImage image, AVFrame dst) throws IOException {
         // If needed, convert to TYPE_3BYTE_BGR format (TODO: is there a more efficient way?)
         BufferedImage inputImage = image;
         if (image.getType() != BufferedImage.TYPE_3BYTE_BGR) {
@@ -354,8 +495,16 @@ public abstract class VideoOutput extends VideoIO {
             throw new IllegalArgumentException("Input must be an 8-bit image");
         }
 
-        // Set up pointers and line sizes for avFrameSrc to point to inputImage's data
-        BytePointer pixelData = new BytePointer(((DataBufferByte) dataBuffer).getData());
+        // Copy inputImage's data to native memory, reusing the previous frame's if large enough,
+        // and set up pointers and line sizes for avFrameSrc to point to it
+        byte[] data = ((DataBufferByte) dataBuffer).getData();
+        if (pixelData == null || pixelData.capacity() < data.length) {
+            if (pixelData != null) {
+                pixelData.close();
+            }
+            pixelData = new BytePointer(data.length);
+        }
+        pixelData.position(0).put(data, 0, data.length);
         av_image_fill_arrays(
                 new PointerPointer(avFrameSrc),
                 avFrameSrc.linesize(),
@@ -365,41 +514,52 @@ public abstract class VideoOutput extends VideoIO {
                 srcHeight,
                 1);
 
-        // Lazily create avFrameDst and allocate its buffer
-        if (avFrameDst == null) {
-            avFrameDst = av_frame_alloc();
-            av_image_alloc(
-                    avFrameDst.data(),
-                    avFrameDst.linesize(),
-                    options.getWidth(),
-                    options.getHeight(),
-                    videoCodecContext.pix_fmt(),
-                    1);
-            avFrameDst.format(videoCodecContext.pix_fmt());
-            avFrameDst.width(options.getWidth());
-            avFrameDst.height(options.getHeight());
-        }
-
-        // Copy avFrameSrc -> avFrameDst
+        // Copy avFrameSrc -> dst
         sws_scale(
                 swsContext,
                 new PointerPointer(avFrameSrc),
                 avFrameSrc.linesize(),
                 0,
                 inputImage.getHeight(),
-                new PointerPointer(avFrameDst),
-                avFrameDst.linesize());
+                new PointerPointer(dst),
+                dst.linesize());
     }
 
     /**
      * Convert a MetadataFrame to an AVPacket.
      *
      * @param frame the MetadataFrame
-     * @return The AVPacket
+     * @return The AVPacket, owned by the caller
+     * @throws IOException if the packet could not be allocated
      */
-    AVPacket convert(MetadataFrame frame) {
-        // Convert frame to an AVPacket
+    AVPacket convert(MetadataFrame frame) throws IOException {
         AVPacket packet = av_packet_alloc();
+
+        // Set packet data, framing the message into a reused buffer. This must come first, since
+        // av_new_packet() resets the other packet fields.
+        synchronized (this) {
+            ByteBuffer buffer = frameMetadata(frame.getMisbMessage());
+            int headerLength =
+                    options.getMultiplexingMethod().equals(KlvFormat.Synchronous)
+                            ? METADATA_AU_HEADER_LEN
+                            : 0;
+            int ret = av_new_packet(packet, headerLength + buffer.remaining());
+            if (ret < 0) {
+                av_packet_free(packet);
+                throw new IOException(
+                        "Could not allocate metadata packet: " + FfmpegUtils.formatError(ret));
+            }
+            ByteBuffer data = packet.data().capacity(packet.size()).asByteBuffer();
+            if (headerLength > 0) {
+                data.put((byte) 0x00); /* metadata_service_id */
+                data.put((byte) 0x01); /* TODO: fix sequence number */
+                data.put((byte) 0b11011111);
+                data.put((byte) (buffer.remaining() >>> 8));
+                data.put((byte) buffer.remaining());
+            }
+            data.put(buffer);
+        }
+
         packet.stream_index(METADATA_STREAM_INDEX);
 
         // Convert PTS in seconds to PTS in "time base" units
@@ -410,28 +570,32 @@ public abstract class VideoOutput extends VideoIO {
         long dts = pts;
         packet.dts(dts);
 
-        // Set packet data
-        byte[] bytes = frame.getMisbMessage().frameMessage(false);
-        if (options.getMultiplexingMethod().equals(KlvFormat.Synchronous)) {
-            byte[] metadata_au_cell = new byte[bytes.length + METADATA_AU_HEADER_LEN];
-            metadata_au_cell[0] = 0x00; /* metadata_service_id */
-            metadata_au_cell[1] = 0x01; /* TODO: fix sequence number */
-            metadata_au_cell[2] = (byte) 0b11011111;
-            metadata_au_cell[3] = (byte) (bytes.length >>> 8);
-            metadata_au_cell[4] = (byte) bytes.length;
-            System.arraycopy(bytes, 0, metadata_au_cell, METADATA_AU_HEADER_LEN, bytes.length);
-            BytePointer bytePointer = new BytePointer(metadata_au_cell);
-            packet.data(bytePointer);
-            packet.size(metadata_au_cell.length);
-        } else {
-            BytePointer bytePointer = new BytePointer(bytes);
-            packet.data(bytePointer);
-            packet.size(bytes.length);
-        }
-
         return packet;
     }
 
+    /**
+     * Frame a metadata message into the reused metadata buffer, growing it if needed.
+     *
+     * @param message The message to frame
+     * @return The buffer, flipped ready for reading
+     */
+    private ByteBuffer frameMetadata(IMisbMessage message) {
+        while (true) {
+            metadataBuffer.clear();
+            try {
+                message.frameMessage(false, metadataBuffer);
+                metadataBuffer.flip();
+                return metadataBuffer;
+            } catch (BufferOverflowException e) {
+                metadataBuffer =
+                        ByteBuffer.allocate(
+                                Math.max(
+                                        metadataBuffer.capacity() * 2,
+                                        message.getFramedLength(false)));
+            }
+        }
+    }
+
     /**
      * Encode a video frame.
      *
@@ -439,16 +603,76 @@ public abstract class VideoOutput extends VideoIO {
      * @throws IOException if an error occurs
      */
     void encodeFrame(VideoFrame frame) throws IOException {
-        convert(frame.getImage());
+        // Lazily create avFrameDst and allocate its buffer
+        if (avFrameDst == null) {
+            avFrameDst = allocateVideoFrame();
+        }
+        convert(frame, avFrameDst);
+        sendFrame(avFrameDst);
+    }
 
-        // Convert PTS in seconds to PTS in "time base" units
-        long pts = Math.round(frame.getPts() / av_q2d(videoStream.time_base()));
-        avFrameDst.pts(pts);
-        avFrameDst.pkt_dts(pts); // TODO: correct?
+    /**
+     * Check that a raw video frame is the size of the output.
+     *
+     * @param frame The video frame
+     * @throws IllegalArgumentException if the frame is a different size
+     */
+    void checkDimensions(RawVideoFrame frame) {
+        if (frame.getWidth() != options.getWidth() || frame.getHeight() != options.getHeight()) {
+            throw new IllegalArgumentException("Invalid image dimensions");
+        }
+    }
+
+    /**
+     * Encode a raw video frame.
+     *
+     * <p>A frame already in the codec's pixel format is given to the encoder directly. The encoder
+     * copies a wrapped frame's data once, and takes a reference to a decoded frame without copying.
+     * Other frames are converted first.
+     *
+     * @param frame The video frame, which must be the same size as the output
+     * @throws IOException if an error occurs
+     */
+    void encodeFrame(RawVideoFrame frame) throws IOException {
+        AVFrame src = frame.getFrame();
+        if (src.format() != videoCodecContext.pix_fmt()) {
+            if (avFrameDst == null) {
+                avFrameDst = allocateVideoFrame();
+            }
+            convert(frame, avFrameDst);
+            sendFrame(avFrameDst);
+            return;
+        }
+
+        // Reference (or, for a wrapped frame, copy) so that the timestamp can be set without
+        // changing the caller's frame
+        if (rawFrameRef == null) {
+            rawFrameRef = av_frame_alloc();
+        }
+        int ret;
+        if ((ret = av_frame_ref(rawFrameRef, src)) < 0) {
+            throw new IOException(
+                    "Could not reference video frame: " + FfmpegUtils.formatError(ret));
+        }
+        try {
+            long pts = Math.round(frame.getPts() / av_q2d(videoStream.time_base()));
+            rawFrameRef.pts(pts);
+            rawFrameRef.pkt_dts(pts);
+            sendFrame(rawFrameRef);
+        } finally {
+            av_frame_unref(rawFrameRef);
+        }
+    }
 
-        // Encode the frame
+    /**
+     * Send a converted frame to the encoder.
+     *
+     * @param frame The frame, which the encoder copies or takes a reference to
+     * @throws IOException if an error occurs
+     */
+    void sendFrame(AVFrame frame) throws IOException {
         int ret;
-        ret = avcodec_send_frame(videoCodecContext, avFrameDst);
+        ret = avcodec_send_frame(videoCodecContext, frame);
         if (ret != 0 && ret != AVERROR_EAGAIN()) {
             throw new IOException("Error encoding video frame: " + FfmpegUtils.formatError(ret));
         }
@@ -8,6 +8,9 @@ public class VideoOutputOptions {
     private final int bitRate;
     private final int gopSize;
     private final KlvFormat multiplexingMethod;
+    private int encoderThreads = 1;
+    private boolean sliceThreading = false;
+    private int pipelineDepth = 0;
 
     /**
      * Construct with default values.
@@ -140,4 +143,77 @@ public class VideoOutputOptions {
     public KlvFormat getMultiplexingMethod() {
         return multiplexingMethod;
     }
+
+    /**
+     * Get the number of threads used by the video encoder.
+     *
+     * @return The number of threads, or 0 to let the encoder choose; 1 by default
+     */
+    public int getEncoderThreads() {
+        return encoderThreads;
+    }
+
+    /**
+     * Set the number of threads used by the video encoder.
+     *
+     * <p>This sets the libavcodec {@code thread_count}. Hardware encoders may ignore it.
+     *
+     * @param encoderThreads The number of threads, or 0 to let the encoder choose (usually one per
+     *     core)
+     */
+    public void setEncoderThreads(int encoderThreads) {
+        if (encoderThreads < 0) {
+            throw new IllegalArgumentException("Encoder thread count cannot be negative");
+        }
+        this.encoderThreads = encoderThreads;
+    }
+
+    /**
+     * Whether the video encoder is restricted to slice threading.
+     *
+     * @return true for slice threading only, false (the default) to let the encoder choose
+     */
+    public boolean isSliceThreading() {
+        return sliceThreading;
+    }
+
+    /**
+     * Set whether the video encoder is restricted to slice threading.
+     *
+     * <p>Slice threading encodes parts of each frame in parallel, so it adds no latency. Frame
+     * threading (which the encoder may otherwise use) encodes several frames at once, giving higher
+     * throughput at the cost of a delay of one frame per thread. Only applies if {@link
+     * #setEncoderThreads(int)} allows more than one thread.
+     *
+     * @param sliceThreading true to use slice threading only
+     */
+    public void setSliceThreading(boolean sliceThreading) {
+        this.sliceThreading = sliceThreading;
+    }
+
+    /**
+     * Get the number of frames queued between the stages of a pipelined file output.
+     *
+     * @return The queue capacity, or 0 (the default) if frames are encoded on the caller's thread
+     */
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    /**
+     * Set the number of frames queued between the stages of a pipelined file output.
+     *
+     * <p>By default, {@link VideoFileOutput} converts, encodes and writes each frame on the thread
+     * adding it. With a pipeline depth greater than zero, colour conversion, encoding and writing
+     * run on separate threads, connected by queues of this capacity. Adding a frame then blocks
+     * only while the queues are full.
+     *
+     * @param pipelineDepth The queue capacity, or 0 to encode on the caller's thread
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        if (pipelineDepth < 0) {
+            throw new IllegalArgumentException("Pipeline depth cannot be negative");
+        }
+        this.pipelineDepth = pipelineDepth;
+    }
 }
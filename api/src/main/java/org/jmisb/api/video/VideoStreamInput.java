@@ -35,6 +35,7 @@ public class VideoStreamInput extends VideoInput implements IVideoStreamInput {
      * @param options Options for video input
      */
     public VideoStreamInput(VideoStreamInputOptions options) {
+        super(options);
         this.options = options;
     }
 
@@ -98,6 +99,8 @@ public class VideoStreamInput extends VideoInput implements IVideoStreamInput {
                             + ".");
         }
 
+        startStatistics();
+
         // Create the demuxer and start demuxing
         demuxer = new StreamDemuxer(this, formatContext, options);
         demuxer.start();
@@ -121,6 +124,7 @@ public class VideoStreamInput extends VideoInput implements IVideoStreamInput {
             stopStreamDemuxer();
             stopNotifiers();
             freeContext();
+            stopStatistics();
             open = false;
         }
     }
@@ -29,7 +29,36 @@ public class VideoStreamInputOptions extends VideoInputOptions {
             boolean decodeVideo,
             long openTimeout,
             long maxAnalyzeDuration) {
-        super(decodeAudio, decodeMetadata, decodeVideo);
+        this(
+                decodeAudio,
+                decodeMetadata,
+                decodeVideo,
+                openTimeout,
+                maxAnalyzeDuration,
+                BackpressurePolicy.Block);
+    }
+
+    /**
+     * Constructor specifying custom options, including a backpressure policy.
+     *
+     * <p>For live streams, {@link BackpressurePolicy#DropOldest} keeps latency bounded when a
+     * listener cannot keep up.
+     *
+     * @param decodeAudio True to decode audio (currently unsupported)
+     * @param decodeMetadata True to decode metadata
+     * @param decodeVideo True to decode video
+     * @param openTimeout Timeout before failing when opening a stream, in milliseconds
+     * @param maxAnalyzeDuration Max analyze duration, in milliseconds
+     * @param backpressurePolicy What to do when listeners fall behind the decoder
+     */
+    public VideoStreamInputOptions(
+            boolean decodeAudio,
+            boolean decodeMetadata,
+            boolean decodeVideo,
+            long openTimeout,
+            long maxAnalyzeDuration,
+            BackpressurePolicy backpressurePolicy) {
+        super(decodeAudio, decodeMetadata, decodeVideo, backpressurePolicy);
         this.openTimeout = openTimeout;
         this.maxAnalyzeDuration = maxAnalyzeDuration;
     }
@@ -29,7 +29,7 @@ public class VideoStreamOutput extends VideoOutput implements IVideoStreamOutput
 
     private Runnable videoEncoder;
     private Future<?> encoderFuture;
-    private BlockingQueue<VideoFrame> videoFrames = new LinkedBlockingDeque<>();
+    private BlockingQueue<DecodedFrame> videoFrames = new LinkedBlockingDeque<>();
     private ExecutorService encoderExecSvc;
 
     private Runnable packetSender;
@@ -117,7 +117,6 @@ public class VideoStreamOutput extends VideoOutput implements IVideoStreamOutput
 
         if (encoderFuture != null) {
             encoderFuture.cancel(true);
-            videoFrames.clear();
         }
 
         if (senderFuture != null) {
@@ -129,6 +128,12 @@ public class VideoStreamOutput extends VideoOutput implements IVideoStreamOutput
         shutdownExecSvc(encoderExecSvc);
         encoderExecSvc = null;
 
+        // Release frames that were queued but not encoded
+        DecodedFrame frame;
+        while ((frame = videoFrames.poll()) != null) {
+            frame.close();
+        }
+
         shutdownExecSvc(senderExecSvc);
         senderExecSvc = null;
 
@@ -146,6 +151,18 @@ public class VideoStreamOutput extends VideoOutput implements IVideoStreamOutput
         outputStatistics.videoFrameQueued();
     }
 
+    @Override
+    public void queueRawVideoFrame(RawVideoFrame videoFrame) {
+        checkDimensions(videoFrame);
+        boolean wasAdded = videoFrames.offer(videoFrame);
+        if (!wasAdded) {
+            logger.info("Video frame could not be queued, possible lag");
+            videoFrame.close();
+            return;
+        }
+        outputStatistics.videoFrameQueued();
+    }
+
     @Override
     public void queueMetadataFrame(MetadataFrame metadataFrame) throws IOException {
         if (!options.hasKlvStream()) {
@@ -153,8 +170,9 @@ public class VideoStreamOutput extends VideoOutput implements IVideoStreamOutput
         }
 
         AVPacket packet = convert(metadataFrame);
-        boolean wasAdded = klvPackets.offer(av_packet_clone(packet));
+        boolean wasAdded = klvPackets.offer(packet);
         if (!wasAdded) {
+            av_packet_free(packet);
             logger.info("Metadata Frame could not be queued, possible lag");
             return;
         }
@@ -174,8 +192,16 @@ public class VideoStreamOutput extends VideoOutput implements IVideoStreamOutput
                     while (!cancelled) {
                         try {
                             // Block waiting for a frame from the client
-                            VideoFrame frame = videoFrames.take();
-                            encodeFrame(frame);
+                            DecodedFrame frame = videoFrames.take();
+                            try {
+                                if (frame instanceof RawVideoFrame) {
+                                    encodeFrame((RawVideoFrame) frame);
+                                } else {
+                                    encodeFrame((VideoFrame) frame);
+                                }
+                            } finally {
+                                frame.close();
+                            }
                             outputStatistics.videoFrameEncoded();
 
                             // TODO: not sure we should be allocating here; avcodec_receive_packet
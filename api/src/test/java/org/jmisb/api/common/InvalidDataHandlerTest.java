@@ -115,4 +115,36 @@ public class InvalidDataHandlerTest extends LoggerChecks {
         assertEquals(strategy.wasCalled, 1);
         InvalidDataHandler.getInstance().setOverrunStrategy(new ThrowOnInvalidDataStrategy());
     }
+
+    @Test
+    public void checkCounts() {
+        InvalidDataHandler handler = InvalidDataHandler.getInstance();
+        TestLoggingHandlerStrategy strategy = new TestLoggingHandlerStrategy();
+        handler.setInvalidChecksumStrategy(strategy);
+        handler.setOverrunStrategy(strategy);
+        InvalidDataCounts threadCounts = new InvalidDataCounts();
+        long before = handler.getCounts().getInvalidChecksumCount();
+        try {
+            handler.setThreadCounts(threadCounts);
+            handler.handleInvalidChecksum(LOGGER, "Test Message");
+            handler.handleInvalidChecksum(LOGGER, "Test Message");
+            handler.handleOverrun(LOGGER, "Test Message");
+            handler.setThreadCounts(null);
+            handler.handleInvalidChecksum(LOGGER, "Test Message");
+        } catch (KlvParseException e) {
+            fail("Logging strategy should not throw");
+        } finally {
+            handler.setThreadCounts(null);
+            handler.setInvalidChecksumStrategy(new ThrowOnInvalidDataStrategy());
+            handler.setOverrunStrategy(new ThrowOnInvalidDataStrategy());
+        }
+        assertEquals(strategy.wasCalled, 4);
+        assertEquals(threadCounts.getInvalidChecksumCount(), 2);
+        assertEquals(threadCounts.getOverrunCount(), 1);
+        assertEquals(threadCounts.getMissingChecksumCount(), 0);
+        assertEquals(threadCounts.getInvalidFieldEncodingCount(), 0);
+        assertTrue(handler.getCounts().getInvalidChecksumCount() >= before + 3);
+        threadCounts.reset();
+        assertEquals(threadCounts.getInvalidChecksumCount(), 0);
+    }
 }
@@ -1,5 +1,6 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -75,4 +76,26 @@ public class BerDecoderTest {
         byte[] data = {(byte) 0x80};
         BerField l1 = BerDecoder.decode(data, 0, true);
     }
+
+    @Test
+    public void testParseDirectBuffer() {
+        ByteBuffer data = ByteBuffer.allocateDirect(8);
+        data.put(new byte[] {0x00, 0x05, (byte) 0x82, 0x01, 0x00, (byte) 0x81, 0x01, 0x7f});
+        BerField l1 = BerDecoder.decode(data, 1, false);
+        BerField l2 = BerDecoder.decode(data, 2, false);
+        BerField oid = BerDecoder.decode(data, 5, true);
+        Assert.assertEquals(l1.getValue(), 5);
+        Assert.assertEquals(l2.getValue(), 256);
+        Assert.assertEquals(l2.getLength(), 3);
+        Assert.assertEquals(oid.getValue(), 129);
+        Assert.assertEquals(oid.getLength(), 2);
+        Assert.assertEquals(data.position(), 8);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testParseBufferLimit() {
+        ByteBuffer data = ByteBuffer.wrap(new byte[] {0x00, (byte) 0x82, 0x01, 0x00});
+        data.limit(3);
+        BerDecoder.decode(data, 1, false);
+    }
 }
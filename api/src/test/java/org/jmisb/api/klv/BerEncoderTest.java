@@ -1,5 +1,7 @@
 package org.jmisb.api.klv;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -76,4 +78,35 @@ public class BerEncoderTest {
         bytes = BerEncoder.encode(256, Ber.OID); // 256 = 0x0100 -> 10 0000000
         Assert.assertEquals(bytes, new byte[] {(byte) 0x82, (byte) 0x00});
     }
+
+    @Test
+    public void testBufferEncodeMatchesArray() {
+        int[] values = {0, 1, 127, 128, 255, 256, 65535, 65536, 16777215, 16777216, 100000000};
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        for (int value : values) {
+            for (Ber ber : new Ber[] {Ber.LONG_FORM, Ber.OID}) {
+                byte[] expected = BerEncoder.encode(value, ber);
+                buffer.clear();
+                Assert.assertEquals(BerEncoder.encode(value, ber, buffer), expected.length);
+                Assert.assertEquals(buffer.position(), expected.length);
+                Assert.assertEquals(Arrays.copyOf(buffer.array(), expected.length), expected);
+                Assert.assertEquals(BerEncoder.encodedLength(value, ber), expected.length);
+            }
+            byte[] expected = BerEncoder.encode(value);
+            buffer.clear();
+            Assert.assertEquals(BerEncoder.encode(value, buffer), expected.length);
+            Assert.assertEquals(Arrays.copyOf(buffer.array(), expected.length), expected);
+            Assert.assertEquals(BerEncoder.encodedLength(value), expected.length);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBufferShortFormTooLarge() {
+        BerEncoder.encode(128, Ber.SHORT_FORM, ByteBuffer.allocate(8));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBufferNegative() {
+        BerEncoder.encode(-1, ByteBuffer.allocate(8));
+    }
 }
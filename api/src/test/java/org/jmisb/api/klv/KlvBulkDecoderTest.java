@@ -0,0 +1,124 @@
+package org.jmisb.api.klv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.st0601.IUasDatalinkValue;
+import org.jmisb.api.klv.st0601.PlatformHeadingAngle;
+import org.jmisb.api.klv.st0601.PrecisionTimeStamp;
+import org.jmisb.api.klv.st0601.UasDatalinkMessage;
+import org.jmisb.api.klv.st0601.UasDatalinkTag;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KlvBulkDecoderTest {
+    private static byte[] message(long micros) {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.PrecisionTimeStamp, new PrecisionTimeStamp(micros));
+        values.put(UasDatalinkTag.PlatformHeadingAngle, new PlatformHeadingAngle(45.0));
+        return new UasDatalinkMessage(values).frameMessage(false);
+    }
+
+    private static long timeStamp(IMisbMessage message) {
+        PrecisionTimeStamp value =
+                (PrecisionTimeStamp)
+                        ((UasDatalinkMessage) message).getField(UasDatalinkTag.PrecisionTimeStamp);
+        return value.getMicroseconds();
+    }
+
+    private static byte[] messages(int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; ++i) {
+            byte[] bytes = message(i);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertInOrder(List<IMisbMessage> messages, int count) {
+        Assert.assertEquals(messages.size(), count);
+        for (int i = 0; i < count; ++i) {
+            Assert.assertEquals(timeStamp(messages.get(i)), i);
+        }
+    }
+
+    @Test
+    public void testDecodeFile() throws IOException {
+        Path file = Files.createTempFile("bulk", ".klv");
+        try {
+            Files.write(file, messages(20000));
+            try (Stream<IMisbMessage> stream = KlvBulkDecoder.decode(file)) {
+                Assert.assertTrue(stream.isParallel());
+                assertInOrder(stream.collect(Collectors.toList()), 20000);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDecodeInPool() throws Exception {
+        byte[] bytes = messages(5000);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            List<IMisbMessage> messages =
+                    pool.submit(
+                                    () ->
+                                            KlvBulkDecoder.decode(ByteBuffer.wrap(bytes))
+                                                    .collect(Collectors.toList()))
+                            .get();
+            assertInOrder(messages, 5000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDecodeBuffer() throws KlvParseException {
+        byte[] bytes = messages(1000);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 10);
+        buffer.position(10);
+        buffer.put(bytes);
+        buffer.position(10);
+        List<IMisbMessage> messages = KlvBulkDecoder.decode(buffer).collect(Collectors.toList());
+        assertInOrder(messages, 1000);
+        Assert.assertEquals(buffer.position(), 10);
+        Assert.assertEquals(messages.size(), KlvParser.parseBytes(buffer).size());
+    }
+
+    @Test
+    public void testResync() {
+        byte[] first = messages(600);
+        byte[] bad = message(600);
+        bad[bad.length - 1] ^= 0x55;
+        byte[] last = message(601);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[] {0x00, 0x01, 0x06, 0x0E}, 0, 4);
+        out.write(first, 0, first.length);
+        out.write(new byte[] {0x06, 0x0E, 0x2B, 0x34, 0x00}, 0, 5);
+        out.write(bad, 0, bad.length);
+        out.write(last, 0, last.length);
+        // Truncated message at the end
+        out.write(last, 0, 20);
+        List<IMisbMessage> messages =
+                KlvBulkDecoder.decode(ByteBuffer.wrap(out.toByteArray()))
+                        .collect(Collectors.toList());
+        Assert.assertEquals(messages.size(), 601);
+        Assert.assertEquals(timeStamp(messages.get(599)), 599);
+        Assert.assertEquals(timeStamp(messages.get(600)), 601);
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(KlvBulkDecoder.decode(ByteBuffer.allocate(0)).count(), 0);
+    }
+}
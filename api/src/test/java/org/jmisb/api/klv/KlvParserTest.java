@@ -5,7 +5,10 @@ import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import org.jmisb.api.common.InvalidDataHandler;
 import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.common.LogOnInvalidDataStrategy;
+import org.jmisb.api.common.ThrowOnInvalidDataStrategy;
 import org.jmisb.api.klv.st0601.*;
 import org.jmisb.core.klv.ArrayUtils;
 import org.testng.Assert;
@@ -134,12 +137,21 @@ public class KlvParserTest {
                     (byte) 0x00
                 };
 
+        // The extra bytes are an empty ST 0601 message, which lacks the mandatory checksum
+        InvalidDataHandler.getInstance().setMissingChecksumStrategy(new LogOnInvalidDataStrategy());
         try {
             List<IMisbMessage> messages = KlvParser.parseBytes(bytes);
             Assert.assertEquals(messages.size(), 2);
             check0601Parse(messages);
+            Assert.assertTrue(messages.get(1) instanceof UasDatalinkMessage);
+            Assert.assertEquals(messages.get(1).getIdentifiers().size(), 0);
+            Assert.assertEquals(UAS_DATALINK_MESSAGE_LOGGER.getLoggingEvents().size(), 1);
+            UAS_DATALINK_MESSAGE_LOGGER.clear();
         } catch (KlvParseException e) {
             Assert.fail("Parse exception");
+        } finally {
+            InvalidDataHandler.getInstance()
+                    .setMissingChecksumStrategy(new ThrowOnInvalidDataStrategy());
         }
     }
 
@@ -244,6 +256,66 @@ public class KlvParserTest {
         }
     }
 
+    @Test
+    public void testParseDirectBuffer() throws KlvParseException {
+        byte[] uasDatalink =
+                new byte[] {
+                    (byte) 0x06, (byte) 0x0e, (byte) 0x2b, (byte) 0x34, (byte) 0x02, (byte) 0x0b,
+                            (byte) 0x01, (byte) 0x01,
+                    (byte) 0x0e, (byte) 0x01, (byte) 0x03, (byte) 0x01, (byte) 0x01, (byte) 0x00,
+                            (byte) 0x00, (byte) 0x00,
+                    (byte) 0x14, (byte) 0x0d, (byte) 0x04, (byte) 0x3c, (byte) 0x4e, (byte) 0xad,
+                            (byte) 0xfa, (byte) 0x0e,
+                    (byte) 0x04, (byte) 0xcd, (byte) 0x6b, (byte) 0x78, (byte) 0x4e, (byte) 0x0f,
+                            (byte) 0x02, (byte) 0x1b,
+                    (byte) 0xc4, (byte) 0x01, (byte) 0x02, (byte) 0x2d, (byte) 0xc4,
+                };
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(3 + uasDatalink.length + 20 + 2);
+        byteBuffer.put(new byte[] {0x7f, 0x7f, 0x7f});
+        byteBuffer.put(uasDatalink);
+        byteBuffer.put(KlvConstants.GeneralizedTransformationUl.getBytes());
+        byteBuffer.put((byte) 0x03);
+        byteBuffer.put(new byte[] {0x01, 0x02, 0x03});
+        byteBuffer.put(new byte[] {0x7f, 0x7f});
+        byteBuffer.position(3);
+        byteBuffer.limit(3 + uasDatalink.length + 20);
+
+        List<IMisbMessage> messages = KlvParser.parseBytes(byteBuffer);
+        Assert.assertEquals(messages.size(), 2);
+        check0601Parse(messages);
+        Assert.assertTrue(messages.get(1) instanceof RawMisbMessage);
+        RawMisbMessage rawMisbMessage = (RawMisbMessage) messages.get(1);
+        Assert.assertEquals(
+                rawMisbMessage.getUniversalLabel(), KlvConstants.GeneralizedTransformationUl);
+        Assert.assertEquals(rawMisbMessage.getBytes().length, 20);
+        Assert.assertEquals(rawMisbMessage.getBytes()[19], (byte) 0x03);
+
+        // Parsing must not move the caller's buffer
+        Assert.assertEquals(byteBuffer.position(), 3);
+        Assert.assertEquals(byteBuffer.limit(), 3 + uasDatalink.length + 20);
+    }
+
+    @Test
+    public void testParseMultipleMessages() throws KlvParseException {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(41);
+        byteBuffer.put(KlvConstants.UasDatalinkLocalUl.getBytes());
+        byteBuffer.put((byte) 0x04);
+        byteBuffer.put((byte) UasDatalinkTag.Checksum.getCode());
+        byteBuffer.put(CHECKSUM_LEN);
+        byteBuffer.put((byte) 0x4c);
+        byteBuffer.put((byte) 0x51);
+        byteBuffer.put(KlvConstants.GeneralizedTransformationUl.getBytes());
+        byteBuffer.put((byte) 0x03);
+        byteBuffer.put(new byte[] {0x00, 0x00, 0x00});
+
+        List<IMisbMessage> messages = KlvParser.parseBytes(byteBuffer.array());
+        Assert.assertEquals(messages.size(), 2);
+        Assert.assertTrue(messages.get(0) instanceof UasDatalinkMessage);
+        Assert.assertTrue(messages.get(1) instanceof RawMisbMessage);
+        Assert.assertEquals(
+                messages.get(1).getUniversalLabel(), KlvConstants.GeneralizedTransformationUl);
+    }
+
     /** Create test data */
     @SuppressWarnings("unused")
     private void createUasDatalink() {
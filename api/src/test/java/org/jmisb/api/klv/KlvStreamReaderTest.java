@@ -0,0 +1,297 @@
+package org.jmisb.api.klv;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.jmisb.api.klv.st0102.Classification;
+import org.jmisb.api.klv.st0102.ISecurityMetadataValue;
+import org.jmisb.api.klv.st0102.SecurityMetadataKey;
+import org.jmisb.api.klv.st0102.SecurityMetadataString;
+import org.jmisb.api.klv.st0102.universalset.ClassificationUniversal;
+import org.jmisb.api.klv.st0102.universalset.SecurityMetadataUniversalSet;
+import org.jmisb.api.klv.st0601.IUasDatalinkValue;
+import org.jmisb.api.klv.st0601.PlatformHeadingAngle;
+import org.jmisb.api.klv.st0601.PrecisionTimeStamp;
+import org.jmisb.api.klv.st0601.UasDatalinkMessage;
+import org.jmisb.api.klv.st0601.UasDatalinkTag;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KlvStreamReaderTest {
+    private static class Collector implements IKlvStreamListener {
+        final List<IMisbMessage> messages = new ArrayList<>();
+        final List<KlvStreamError> errors = new ArrayList<>();
+
+        @Override
+        public void onMessage(IMisbMessage message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void onError(KlvStreamError error) {
+            errors.add(error);
+        }
+
+        List<KlvStreamError.Type> errorTypes() {
+            List<KlvStreamError.Type> types = new ArrayList<>();
+            for (KlvStreamError error : errors) {
+                types.add(error.getType());
+            }
+            return types;
+        }
+    }
+
+    private static byte[] message(long micros) {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.PrecisionTimeStamp, new PrecisionTimeStamp(micros));
+        values.put(UasDatalinkTag.PlatformHeadingAngle, new PlatformHeadingAngle(45.0));
+        return new UasDatalinkMessage(values).frameMessage(false);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static long timeStamp(IMisbMessage message) {
+        PrecisionTimeStamp value =
+                (PrecisionTimeStamp)
+                        ((UasDatalinkMessage) message).getField(UasDatalinkTag.PrecisionTimeStamp);
+        return value.getMicroseconds();
+    }
+
+    @Test
+    public void testCleanStream() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] stream = concat(message(1), message(2), message(3));
+        reader.feed(ByteBuffer.wrap(stream));
+        reader.flush();
+        Assert.assertEquals(collector.messages.size(), 3);
+        Assert.assertEquals(timeStamp(collector.messages.get(2)), 3);
+        Assert.assertTrue(collector.errors.isEmpty());
+    }
+
+    @Test
+    public void testGarbageBetweenMessages() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] garbage = {0x00, 0x06, 0x0E, 0x2B, 0x00, (byte) 0xFF, 0x06, 0x06, 0x0E};
+        byte[] first = message(1);
+        reader.feed(ByteBuffer.wrap(concat(garbage, first, garbage, message(2))));
+        reader.flush();
+        Assert.assertEquals(collector.messages.size(), 2);
+        Assert.assertEquals(timeStamp(collector.messages.get(1)), 2);
+        Assert.assertEquals(collector.errors.size(), 2);
+        KlvStreamError error = collector.errors.get(1);
+        Assert.assertEquals(error.getType(), KlvStreamError.Type.SKIPPED_BYTES);
+        Assert.assertEquals(error.getOffset(), garbage.length + first.length);
+        Assert.assertEquals(error.getLength(), garbage.length);
+    }
+
+    @Test
+    public void testCorruptLength() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] corrupt = message(1);
+        corrupt[UniversalLabel.LENGTH] += 5;
+        reader.feed(ByteBuffer.wrap(concat(corrupt, message(2), message(3))));
+        reader.flush();
+        Assert.assertEquals(collector.messages.size(), 2);
+        Assert.assertEquals(timeStamp(collector.messages.get(0)), 2);
+        Assert.assertEquals(collector.errors.get(0).getType(), KlvStreamError.Type.INVALID_LENGTH);
+        Assert.assertEquals(collector.errors.get(0).getOffset(), 0);
+        Assert.assertEquals(collector.errors.get(1).getType(), KlvStreamError.Type.SKIPPED_BYTES);
+    }
+
+    @Test
+    public void testCorruptLengthSwallowsMessage() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] corrupt = message(1);
+        byte[] second = message(2);
+        corrupt[UniversalLabel.LENGTH] += second.length + 5;
+        reader.feed(ByteBuffer.wrap(concat(corrupt, second, message(3))));
+        reader.flush();
+        // The second message fits inside the corrupt length, but the third runs past it
+        Assert.assertEquals(collector.messages.size(), 2);
+        Assert.assertEquals(timeStamp(collector.messages.get(0)), 2);
+        Assert.assertEquals(timeStamp(collector.messages.get(1)), 3);
+        Assert.assertEquals(collector.errors.get(0).getType(), KlvStreamError.Type.INVALID_LENGTH);
+    }
+
+    @Test
+    public void testNestedUlsFollowedByJunk() {
+        SortedMap<SecurityMetadataKey, ISecurityMetadataValue> values = new TreeMap<>();
+        values.put(
+                SecurityMetadataKey.SecurityClassification,
+                new ClassificationUniversal(Classification.UNCLASSIFIED));
+        values.put(
+                SecurityMetadataKey.ClassifyingCountry,
+                new SecurityMetadataString(SecurityMetadataString.CLASSIFYING_COUNTRY, "//US"));
+        byte[] universalSet = new SecurityMetadataUniversalSet(values).frameMessage(false);
+        byte[] junk = {0x00, 0x11, 0x22, 0x33};
+
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        reader.feed(ByteBuffer.wrap(concat(universalSet, junk, message(2))));
+        reader.flush();
+        // Each element of the universal set is keyed by a UL, which ends within the set
+        Assert.assertEquals(collector.messages.size(), 2);
+        Assert.assertTrue(collector.messages.get(0) instanceof SecurityMetadataUniversalSet);
+        Assert.assertEquals(timeStamp(collector.messages.get(1)), 2);
+        Assert.assertEquals(collector.errors.size(), 1);
+        KlvStreamError error = collector.errors.get(0);
+        Assert.assertEquals(error.getType(), KlvStreamError.Type.SKIPPED_BYTES);
+        Assert.assertEquals(error.getOffset(), universalSet.length);
+        Assert.assertEquals(error.getLength(), junk.length);
+    }
+
+    @Test
+    public void testShortLength() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] corrupt = message(1);
+        corrupt[UniversalLabel.LENGTH] -= 5;
+        reader.feed(ByteBuffer.wrap(concat(corrupt, message(2))));
+        reader.flush();
+        // Nothing marks the length as wrong, so the message is parsed and fails
+        Assert.assertEquals(collector.messages.size(), 1);
+        Assert.assertEquals(timeStamp(collector.messages.get(0)), 2);
+        Assert.assertEquals(collector.errors.get(0).getType(), KlvStreamError.Type.PARSE_FAILED);
+    }
+
+    @Test
+    public void testExcessiveLength() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        reader.setMaxMessageLength(64);
+        Assert.assertEquals(reader.getMaxMessageLength(), 64);
+        byte[] corrupt = message(1);
+        corrupt[UniversalLabel.LENGTH] = (byte) 0x82;
+        reader.feed(ByteBuffer.wrap(concat(corrupt, message(2))));
+        Assert.assertEquals(collector.messages.size(), 1);
+        Assert.assertEquals(collector.errors.get(0).getType(), KlvStreamError.Type.INVALID_LENGTH);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMaxMessageLengthTooSmall() {
+        new KlvStreamReader(new Collector()).setMaxMessageLength(16);
+    }
+
+    @Test
+    public void testParseFailure() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] bad = message(1);
+        bad[bad.length - 1] ^= 0x55;
+        reader.feed(ByteBuffer.wrap(concat(bad, message(2))));
+        reader.flush();
+        Assert.assertEquals(collector.messages.size(), 1);
+        Assert.assertEquals(collector.errorTypes().size(), 1);
+        KlvStreamError error = collector.errors.get(0);
+        Assert.assertEquals(error.getType(), KlvStreamError.Type.PARSE_FAILED);
+        Assert.assertEquals(error.getLength(), bad.length);
+        Assert.assertNotNull(error.getCause());
+    }
+
+    @Test
+    public void testSplitAcrossFeeds() {
+        byte[] stream = concat(message(1), new byte[] {0x00, 0x06}, message(2), message(3));
+        for (int split = 1; split < stream.length; ++split) {
+            Collector collector = new Collector();
+            KlvStreamReader reader = new KlvStreamReader(collector);
+            reader.feed(stream, 0, split);
+            reader.feed(stream, split, stream.length - split);
+            reader.flush();
+            Assert.assertEquals(collector.messages.size(), 3, "Split at " + split);
+            int skipped = 0;
+            for (KlvStreamError error : collector.errors) {
+                Assert.assertEquals(error.getType(), KlvStreamError.Type.SKIPPED_BYTES);
+                skipped += error.getLength();
+            }
+            Assert.assertEquals(skipped, 2, "Split at " + split);
+        }
+    }
+
+    @Test
+    public void testByteAtATime() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] stream = concat(message(1), message(2));
+        for (int i = 0; i < stream.length; ++i) {
+            reader.feed(stream, i, 1);
+        }
+        Assert.assertEquals(collector.messages.size(), 2);
+        Assert.assertEquals(reader.getBytesConsumed(), stream.length);
+    }
+
+    @Test
+    public void testTruncated() {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] first = message(1);
+        byte[] second = message(2);
+        byte[] stream = concat(first, second);
+        reader.feed(stream, 0, stream.length - 3);
+        Assert.assertEquals(collector.messages.size(), 1);
+        Assert.assertTrue(collector.errors.isEmpty());
+        reader.flush();
+        Assert.assertEquals(collector.messages.size(), 1);
+        KlvStreamError error = collector.errors.get(0);
+        Assert.assertEquals(error.getType(), KlvStreamError.Type.TRUNCATED);
+        Assert.assertEquals(error.getOffset(), first.length);
+        Assert.assertEquals(error.getLength(), second.length - 3);
+    }
+
+    @Test
+    public void testInputStream() throws IOException {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        List<byte[]> parts = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            parts.add(message(i));
+        }
+        byte[] stream = concat(parts.toArray(new byte[0][]));
+        reader.read(new ByteArrayInputStream(stream));
+        Assert.assertEquals(collector.messages.size(), 5000);
+        Assert.assertEquals(timeStamp(collector.messages.get(4999)), 4999);
+        Assert.assertTrue(collector.errors.isEmpty());
+    }
+
+    @Test
+    public void testChannel() throws IOException {
+        Collector collector = new Collector();
+        KlvStreamReader reader = new KlvStreamReader(collector);
+        byte[] stream = concat(message(1), new byte[] {0x06, 0x0E, 0x2B, 0x34, 0x01}, message(2));
+        reader.read(Channels.newChannel(new ByteArrayInputStream(stream)));
+        Assert.assertEquals(collector.messages.size(), 2);
+        Assert.assertTrue(collector.errorTypes().contains(KlvStreamError.Type.INVALID_LENGTH));
+    }
+
+    @Test
+    public void testFindSync() {
+        byte[] data = new byte[40];
+        data[0] = 0x06;
+        data[21] = 0x06;
+        data[22] = 0x0E;
+        data[23] = 0x2B;
+        data[24] = 0x34;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        Assert.assertEquals(KlvStreamReader.findSync(buffer, 0, 40), 21);
+        Assert.assertEquals(KlvStreamReader.findSync(buffer, 22, 40), 40);
+        Assert.assertEquals(KlvStreamReader.findSync(buffer, 0, 23), 21);
+        data[38] = 0x06;
+        data[39] = 0x0E;
+        Assert.assertEquals(KlvStreamReader.findSync(buffer, 25, 40), 38);
+    }
+}
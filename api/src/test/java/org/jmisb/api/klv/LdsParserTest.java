@@ -0,0 +1,135 @@
+package org.jmisb.api.klv;
+
+import static org.testng.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.jmisb.api.common.InvalidDataHandler;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.common.LogOnInvalidDataStrategy;
+import org.jmisb.api.common.ThrowOnInvalidDataStrategy;
+import org.testng.annotations.Test;
+
+/** Tests for LdsParser and UdsParser. */
+public class LdsParserTest {
+    private final byte[] localSetBytes =
+            new byte[] {
+                0x55, 0x55, 0x01, 0x02, 0x0a, 0x0b, 0x02, 0x00, 0x01, (byte) 0x81, 0x01, 0x7f, 0x55
+            };
+
+    @Test
+    public void parseArray() throws KlvParseException {
+        List<LdsField> fields = LdsParser.parseFields(localSetBytes, 2, 10);
+        checkFields(fields);
+    }
+
+    @Test
+    public void parseHeapBuffer() throws KlvParseException {
+        ByteBuffer buffer = ByteBuffer.wrap(localSetBytes);
+        List<LdsField> fields = LdsParser.parseFields(buffer, 2, 10);
+        checkFields(fields);
+        assertEquals(buffer.position(), 0);
+        assertEquals(buffer.limit(), localSetBytes.length);
+    }
+
+    @Test
+    public void parseDirectBuffer() throws KlvParseException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(localSetBytes.length);
+        buffer.put(localSetBytes);
+        buffer.position(5);
+        List<LdsField> fields = LdsParser.parseFields(buffer, 2, 10);
+        checkFields(fields);
+        assertEquals(buffer.position(), 5);
+    }
+
+    @Test
+    public void fieldIsView() throws KlvParseException {
+        byte[] bytes = localSetBytes.clone();
+        List<LdsField> fields = LdsParser.parseFields(ByteBuffer.wrap(bytes), 2, 10);
+        bytes[4] = 0x0c;
+        assertEquals(fields.get(0).getData(), new byte[] {0x0c, 0x0b});
+        // getData() is a copy
+        fields.get(0).getData()[0] = 0x00;
+        assertEquals(fields.get(0).getData(), new byte[] {0x0c, 0x0b});
+        assertTrue(fields.get(0).getDataBuffer().isReadOnly());
+    }
+
+    @Test
+    public void fieldViewWithOffset() {
+        byte[] bytes = new byte[] {0x01, 0x02, 0x03, 0x04, 0x05};
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, 3).slice();
+        buffer.position(1);
+        LdsField field = new LdsField(7, buffer);
+        assertEquals(field.getLength(), 2);
+        assertEquals(field.getData(), new byte[] {0x03, 0x04});
+        ByteBuffer view = field.getDataBuffer();
+        assertTrue(view.isReadOnly());
+        assertEquals(view.remaining(), 2);
+        assertEquals(view.get(view.position()), 0x03);
+        // Read-only heap buffers have no accessible array
+        LdsField readOnly = new LdsField(7, ByteBuffer.wrap(bytes, 3, 2).asReadOnlyBuffer());
+        assertEquals(readOnly.getData(), new byte[] {0x04, 0x05});
+        UdsField uds = new UdsField(KlvConstants.UasDatalinkLocalUl, buffer);
+        assertEquals(uds.getValue(), new byte[] {0x03, 0x04});
+        assertEquals(uds.getValueBuffer().remaining(), 2);
+    }
+
+    @Test
+    public void arrayFieldIsCopy() {
+        byte[] bytes = new byte[] {0x01, 0x02};
+        LdsField field = new LdsField(3, bytes);
+        bytes[0] = 0x05;
+        assertEquals(field.getData(), new byte[] {0x01, 0x02});
+        assertEquals(field.getLength(), 2);
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void parseOverrun() throws KlvParseException {
+        LdsParser.parseFields(ByteBuffer.wrap(localSetBytes, 0, 11).slice(), 2, 10);
+    }
+
+    @Test
+    public void parseOverrunNotStrict() throws KlvParseException {
+        InvalidDataHandler.getInstance().setOverrunStrategy(new LogOnInvalidDataStrategy());
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(localSetBytes, 0, 11).slice();
+            List<LdsField> fields = LdsParser.parseFields(buffer, 2, 10);
+            assertEquals(fields.size(), 3);
+            assertEquals(fields.get(2).getTag(), 1);
+            assertEquals(fields.get(2).getData(), new byte[] {0x00});
+        } finally {
+            InvalidDataHandler.getInstance().setOverrunStrategy(new ThrowOnInvalidDataStrategy());
+        }
+    }
+
+    @Test
+    public void parseUdsBuffer() throws KlvParseException {
+        byte[] key1 = KlvConstants.UasDatalinkLocalUl.getBytes();
+        byte[] key2 = KlvConstants.GeneralizedTransformationUl.getBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2 + 16 + 3 + 16 + 1 + 1);
+        buffer.put(new byte[] {0x01, 0x01});
+        buffer.put(key1);
+        buffer.put(new byte[] {0x02, 0x04, 0x05});
+        buffer.put(key2);
+        buffer.put(new byte[] {0x00});
+        buffer.put((byte) 0x7f);
+        List<UdsField> fields = UdsParser.parseFields(buffer, 2, 36);
+        assertEquals(fields.size(), 2);
+        assertEquals(fields.get(0).getKey(), KlvConstants.UasDatalinkLocalUl);
+        assertEquals(fields.get(0).getValue(), new byte[] {0x04, 0x05});
+        assertEquals(fields.get(0).getLength(), 2);
+        assertEquals(fields.get(1).getKey(), KlvConstants.GeneralizedTransformationUl);
+        assertEquals(fields.get(1).getValue(), new byte[] {});
+    }
+
+    private void checkFields(List<LdsField> fields) {
+        assertEquals(fields.size(), 3);
+        assertEquals(fields.get(0).getTag(), 1);
+        assertEquals(fields.get(0).getData(), new byte[] {0x0a, 0x0b});
+        assertEquals(fields.get(0).getLength(), 2);
+        assertEquals(fields.get(1).getTag(), 2);
+        assertEquals(fields.get(1).getLength(), 0);
+        assertEquals(fields.get(2).getTag(), 1);
+        assertEquals(fields.get(2).getData(), new byte[] {0x7f});
+    }
+}
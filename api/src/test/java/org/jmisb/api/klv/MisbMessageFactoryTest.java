@@ -0,0 +1,169 @@
+package org.jmisb.api.klv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.eg0104.PredatorUavMessageFactory;
+import org.jmisb.api.klv.st0102.localset.SecurityMetadataLocalSetFactory;
+import org.jmisb.api.klv.st0102.universalset.SecurityMetadataUniversalSetFactory;
+import org.jmisb.api.klv.st0601.UasDatalinkMessageFactory;
+import org.jmisb.api.klv.st0808.AncillaryTextLocalSetFactory;
+import org.jmisb.api.klv.st0903.vtrack.VTrackLocalSetFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MisbMessageFactoryTest {
+    private static final IMisbMessageFactory RAW_FACTORY =
+            bytes ->
+                    new RawMisbMessage(
+                            new UniversalLabel(Arrays.copyOf(bytes, UniversalLabel.LENGTH)), bytes);
+
+    private static UniversalLabel label(int group, int index) {
+        return new UniversalLabel(
+                new byte[] {
+                    0x06,
+                    0x0E,
+                    0x2B,
+                    0x34,
+                    0x7F,
+                    0x7F,
+                    0x7F,
+                    0x7F,
+                    0x0E,
+                    0x01,
+                    0x02,
+                    0x03,
+                    0x04,
+                    0x05,
+                    (byte) group,
+                    (byte) index
+                });
+    }
+
+    private static byte[] message(UniversalLabel ul) {
+        byte[] bytes = new byte[UniversalLabel.LENGTH + 2];
+        System.arraycopy(ul.getBytes(), 0, bytes, 0, UniversalLabel.LENGTH);
+        bytes[UniversalLabel.LENGTH] = 0x01;
+        bytes[UniversalLabel.LENGTH + 1] = 0x55;
+        return bytes;
+    }
+
+    @Test
+    public void testBuiltInHandlers() {
+        MisbMessageFactory factory = MisbMessageFactory.getInstance();
+        Assert.assertTrue(
+                factory.getHandler(KlvConstants.UasDatalinkLocalUl)
+                        instanceof UasDatalinkMessageFactory);
+        Assert.assertTrue(
+                factory.getHandler(KlvConstants.AncillaryTextLocalSetUl)
+                        instanceof AncillaryTextLocalSetFactory);
+        Assert.assertTrue(
+                factory.getHandler(KlvConstants.SecurityMetadataUniversalSetUl)
+                        instanceof SecurityMetadataUniversalSetFactory);
+        Assert.assertTrue(
+                factory.getHandler(KlvConstants.SecurityMetadataLocalSetUl)
+                        instanceof SecurityMetadataLocalSetFactory);
+        Assert.assertTrue(
+                factory.getHandler(KlvConstants.PredatorMetadataLocalSetUl)
+                        instanceof PredatorUavMessageFactory);
+        Assert.assertTrue(
+                factory.getHandler(KlvConstants.VTrackLocalSetUl) instanceof VTrackLocalSetFactory);
+        Assert.assertNull(factory.getHandler(label(0xFF, 0xFF)));
+    }
+
+    @Test
+    public void testUnknownLabel() throws KlvParseException {
+        byte[] bytes = message(label(0xFF, 0xFE));
+        IMisbMessage message = MisbMessageFactory.getInstance().handleMessage(bytes);
+        Assert.assertTrue(message instanceof RawMisbMessage);
+        Assert.assertEquals(message.getUniversalLabel(), label(0xFF, 0xFE));
+
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 3);
+        buffer.position(3);
+        buffer.put(bytes);
+        buffer.position(3);
+        message = MisbMessageFactory.getInstance().handleMessage(buffer);
+        Assert.assertTrue(message instanceof RawMisbMessage);
+        Assert.assertEquals(message.frameMessage(true), bytes);
+        Assert.assertEquals(buffer.position(), 3);
+    }
+
+    @Test
+    public void testRegisterHandler() throws KlvParseException {
+        MisbMessageFactory factory = MisbMessageFactory.getInstance();
+        UniversalLabel ul = label(0xFE, 0x01);
+        factory.registerHandler(ul, RAW_FACTORY);
+        Assert.assertSame(factory.getHandler(ul), RAW_FACTORY);
+
+        List<byte[]> created = new ArrayList<>();
+        factory.registerHandler(
+                ul,
+                bytes -> {
+                    created.add(bytes);
+                    return RAW_FACTORY.create(bytes);
+                });
+        ByteBuffer buffer = ByteBuffer.wrap(message(ul)).order(ByteOrder.LITTLE_ENDIAN);
+        factory.handleMessage(buffer);
+        Assert.assertEquals(created.size(), 1);
+        Assert.assertEquals(created.get(0), message(ul));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testShortMessage() throws KlvParseException {
+        MisbMessageFactory.getInstance().handleMessage(new byte[] {0x06, 0x0E, 0x2B, 0x34});
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws Exception {
+        MisbMessageFactory factory = MisbMessageFactory.getInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicBoolean registering = new AtomicBoolean(true);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 4; ++r) {
+            readers.add(
+                    executor.submit(
+                            () -> {
+                                while (registering.get()) {
+                                    Assert.assertNotNull(
+                                            factory.getHandler(KlvConstants.VTrackLocalSetUl));
+                                    Assert.assertNull(factory.getHandler(label(0xFF, 0xFD)));
+                                }
+                                return null;
+                            }));
+        }
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < 4; ++w) {
+            final int group = w;
+            writers.add(
+                    executor.submit(
+                            () -> {
+                                for (int i = 0; i < 50; ++i) {
+                                    factory.registerHandler(label(group, i), RAW_FACTORY);
+                                }
+                                return null;
+                            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        registering.set(false);
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        for (int group = 0; group < 4; ++group) {
+            for (int i = 0; i < 50; ++i) {
+                Assert.assertSame(factory.getHandler(label(group, i)), RAW_FACTORY);
+            }
+        }
+    }
+}
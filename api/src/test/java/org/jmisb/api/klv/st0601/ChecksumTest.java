@@ -1,5 +1,6 @@
 package org.jmisb.api.klv.st0601;
 
+import java.nio.ByteBuffer;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -27,4 +28,40 @@ public class ChecksumTest {
         byte[] actual = Checksum.compute(input, false);
         Assert.assertEquals(actual, expected);
     }
+
+    @Test
+    public void testVerify() {
+        byte[] input =
+                new byte[] {
+                    (byte) 0x06,
+                    (byte) 0x0e,
+                    (byte) 0x2b,
+                    (byte) 0x34,
+                    (byte) 0x02,
+                    (byte) 0x00,
+                    (byte) 0x81,
+                    (byte) 0xbb,
+                    (byte) 0xb4,
+                    (byte) 0xfd
+                };
+        Assert.assertTrue(Checksum.verify(input));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(input.length + 2);
+        buffer.position(2);
+        buffer.put(input);
+        Assert.assertTrue(Checksum.verify(buffer, 2, input.length));
+        input[9] = 0;
+        Assert.assertFalse(Checksum.verify(input));
+        Assert.assertFalse(Checksum.verify(new byte[1]));
+    }
+
+    @Test
+    public void testInsert() {
+        byte[] input = {0x06, 0x0e, 0x2b, 0x34, 0x02, 0x00, (byte) 0x81, (byte) 0xbb, 0, 0};
+        ByteBuffer buffer = ByteBuffer.allocate(input.length + 1);
+        buffer.position(1);
+        buffer.put(input);
+        Checksum.insert(buffer, 1, input.length);
+        Assert.assertEquals(buffer.get(9), (byte) 0xb4);
+        Assert.assertEquals(buffer.get(10), (byte) 0xfd);
+    }
 }
@@ -1,5 +1,6 @@
 package org.jmisb.api.klv.st0601;
 
+import java.nio.ByteBuffer;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import org.jmisb.api.common.KlvParseException;
@@ -34,6 +35,16 @@ public class NestedSecurityMetadataTest {
         checkResults(nestedSecurityMetadata);
     }
 
+    @Test
+    public void testConstructFromBuffer() throws KlvParseException {
+        byte[] padded = new byte[localSetAsBytes.length + 4];
+        System.arraycopy(localSetAsBytes, 0, padded, 2, localSetAsBytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded, 2, localSetAsBytes.length);
+        NestedSecurityMetadata nestedSecurityMetadata = new NestedSecurityMetadata(buffer);
+        checkResults(nestedSecurityMetadata);
+        Assert.assertEquals(buffer.position(), 2);
+    }
+
     @Test
     public void testFactory() throws KlvParseException {
         IUasDatalinkValue value =
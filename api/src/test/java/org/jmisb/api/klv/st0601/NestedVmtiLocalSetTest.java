@@ -1,8 +1,10 @@
 package org.jmisb.api.klv.st0601;
 
+import java.nio.ByteBuffer;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.LdsField;
 import org.jmisb.api.klv.st0903.IVmtiMetadataValue;
 import org.jmisb.api.klv.st0903.ST0903Version;
 import org.jmisb.api.klv.st0903.VmtiLocalSet;
@@ -40,6 +42,32 @@ public class NestedVmtiLocalSetTest {
         checkLocalSetValues(localSetFromBytes);
     }
 
+    @Test
+    public void testConstructFromDirectBuffer() throws KlvParseException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(localSetAsByteArray.length + 3);
+        buffer.put(new byte[] {0x01, 0x02});
+        buffer.put(localSetAsByteArray);
+        buffer.put((byte) 0x7f);
+        buffer.position(2).limit(2 + localSetAsByteArray.length);
+        NestedVmtiLocalSet localSet = new NestedVmtiLocalSet(buffer);
+        checkLocalSetValues(localSet);
+        Assert.assertEquals(buffer.position(), 2);
+    }
+
+    @Test
+    public void testFactoryFromField() throws KlvParseException {
+        byte[] value = new byte[localSetAsByteArray.length + 2];
+        System.arraycopy(localSetAsByteArray, 0, value, 1, localSetAsByteArray.length);
+        LdsField field =
+                new LdsField(
+                        UasDatalinkTag.VmtiLocalDataSet.getCode(),
+                        ByteBuffer.wrap(value, 1, localSetAsByteArray.length));
+        IUasDatalinkValue created =
+                UasDatalinkFactory.createValue(UasDatalinkTag.VmtiLocalDataSet, field);
+        Assert.assertTrue(created instanceof NestedVmtiLocalSet);
+        checkLocalSetValues((NestedVmtiLocalSet) created);
+    }
+
     @Test
     public void testFactory() throws KlvParseException {
         IUasDatalinkValue value =
@@ -0,0 +1,52 @@
+package org.jmisb.api.klv.st0601;
+
+import static org.jmisb.api.klv.st0601.UasDatalinkDeltaEncoderTest.message;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class UasDatalinkDeltaDecoderTest {
+    @Test
+    public void testMerge() {
+        UasDatalinkDeltaDecoder decoder = new UasDatalinkDeltaDecoder();
+        decoder.decode(message(0, 90.0, 42.0));
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.SensorLatitude, new SensorLatitude(43.0));
+        UasDatalinkMessage state = decoder.decode(new UasDatalinkMessage(values));
+        Assert.assertEquals(state.getIdentifiers().size(), 6);
+        Assert.assertEquals(
+                ((SensorLatitude) state.getField(UasDatalinkTag.SensorLatitude)).getDegrees(),
+                43.0,
+                1e-6);
+        Assert.assertEquals(
+                ((PlatformHeadingAngle) state.getField(UasDatalinkTag.PlatformHeadingAngle))
+                        .getDegrees(),
+                90.0,
+                0.01);
+    }
+
+    @Test
+    public void testDecoderExpiry() {
+        UasDatalinkDeltaDecoder decoder = new UasDatalinkDeltaDecoder();
+        decoder.setExpiryPackets(2);
+        Assert.assertEquals(decoder.getExpiryPackets(), 2);
+        decoder.decode(message(0, 90.0, 42.0));
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.PrecisionTimeStamp, new PrecisionTimeStamp(40000L));
+        UasDatalinkMessage state = decoder.decode(new UasDatalinkMessage(values));
+        Assert.assertEquals(state.getIdentifiers().size(), 6);
+        values.put(UasDatalinkTag.PrecisionTimeStamp, new PrecisionTimeStamp(80000L));
+        state = decoder.decode(new UasDatalinkMessage(values));
+        Assert.assertEquals(state.getIdentifiers().size(), 1);
+        decoder.reset();
+        state = decoder.decode(new UasDatalinkMessage(new TreeMap<>()));
+        Assert.assertTrue(state.getIdentifiers().isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeExpiry() {
+        new UasDatalinkDeltaDecoder().setExpiryPackets(-1);
+    }
+}
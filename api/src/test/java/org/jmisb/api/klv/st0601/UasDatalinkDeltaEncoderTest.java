@@ -0,0 +1,115 @@
+package org.jmisb.api.klv.st0601;
+
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.jmisb.api.common.KlvParseException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class UasDatalinkDeltaEncoderTest {
+    static UasDatalinkMessage message(long micros, double heading, double latitude) {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.PrecisionTimeStamp, new PrecisionTimeStamp(micros));
+        values.put(UasDatalinkTag.PlatformHeadingAngle, new PlatformHeadingAngle(heading));
+        values.put(UasDatalinkTag.SensorLatitude, new SensorLatitude(latitude));
+        values.put(UasDatalinkTag.SensorLongitude, new SensorLongitude(-71.1284));
+        values.put(
+                UasDatalinkTag.MissionId,
+                new UasDatalinkString(UasDatalinkString.MISSION_ID, "M1"));
+        values.put(UasDatalinkTag.UasLdsVersionNumber, new ST0601Version((short) 17));
+        return new UasDatalinkMessage(values);
+    }
+
+    @Test
+    public void testSuppressUnchanged() {
+        UasDatalinkDeltaEncoder encoder = new UasDatalinkDeltaEncoder();
+        UasDatalinkMessage first = encoder.encode(message(1000000L, 90.0, 42.0));
+        Assert.assertTrue(encoder.wasKeyFrame());
+        Assert.assertEquals(first.getIdentifiers().size(), 6);
+
+        UasDatalinkMessage second = encoder.encode(message(1040000L, 90.0, 42.001));
+        Assert.assertFalse(encoder.wasKeyFrame());
+        Set<UasDatalinkTag> tags = second.getIdentifiers();
+        Assert.assertEquals(tags.size(), 3);
+        Assert.assertTrue(tags.contains(UasDatalinkTag.PrecisionTimeStamp));
+        Assert.assertTrue(tags.contains(UasDatalinkTag.UasLdsVersionNumber));
+        Assert.assertTrue(tags.contains(UasDatalinkTag.SensorLatitude));
+        Assert.assertTrue(second.frameMessage(false).length < first.frameMessage(false).length);
+    }
+
+    @Test
+    public void testKeyFramePacketInterval() {
+        UasDatalinkDeltaEncoder encoder = new UasDatalinkDeltaEncoder();
+        encoder.setKeyFramePacketInterval(3);
+        encoder.setKeyFrameTimeInterval(0);
+        boolean[] expected = {true, false, false, true, false, false, true};
+        for (int i = 0; i < expected.length; ++i) {
+            encoder.encode(message(i * 40000L, 90.0, 42.0));
+            Assert.assertEquals(encoder.wasKeyFrame(), expected[i], "Packet " + i);
+        }
+    }
+
+    @Test
+    public void testKeyFrameTimeInterval() {
+        UasDatalinkDeltaEncoder encoder = new UasDatalinkDeltaEncoder();
+        encoder.setKeyFramePacketInterval(0);
+        encoder.setKeyFrameTimeInterval(1.0);
+        encoder.encode(message(5000000L, 90.0, 42.0));
+        Assert.assertTrue(encoder.wasKeyFrame());
+        encoder.encode(message(5900000L, 90.0, 42.0));
+        Assert.assertFalse(encoder.wasKeyFrame());
+        encoder.encode(message(6000000L, 90.0, 42.0));
+        Assert.assertTrue(encoder.wasKeyFrame());
+        // Time going backwards, such as a looped recording
+        encoder.encode(message(1000000L, 90.0, 42.0));
+        Assert.assertTrue(encoder.wasKeyFrame());
+        encoder.requestKeyFrame();
+        encoder.encode(message(1100000L, 90.0, 42.0));
+        Assert.assertTrue(encoder.wasKeyFrame());
+    }
+
+    @Test
+    public void testThreshold() {
+        UasDatalinkDeltaEncoder encoder = new UasDatalinkDeltaEncoder();
+        // About 0.055 degrees
+        encoder.setChangeThreshold(UasDatalinkTag.PlatformHeadingAngle, 10);
+        Assert.assertEquals(encoder.getChangeThreshold(UasDatalinkTag.PlatformHeadingAngle), 10);
+        Assert.assertEquals(encoder.getChangeThreshold(UasDatalinkTag.SensorLatitude), 0);
+        encoder.encode(message(0, 90.0, 42.0));
+        UasDatalinkMessage small = encoder.encode(message(40000L, 90.03, 42.0));
+        Assert.assertNull(small.getField(UasDatalinkTag.PlatformHeadingAngle));
+        // Drift is measured from the value last sent
+        UasDatalinkMessage drift = encoder.encode(message(80000L, 90.06, 42.0));
+        Assert.assertNotNull(drift.getField(UasDatalinkTag.PlatformHeadingAngle));
+    }
+
+    @Test
+    public void testAlwaysSent() {
+        UasDatalinkDeltaEncoder encoder = new UasDatalinkDeltaEncoder();
+        Assert.assertTrue(encoder.isAlwaysSent(UasDatalinkTag.PrecisionTimeStamp));
+        encoder.setAlwaysSent(UasDatalinkTag.UasLdsVersionNumber, false);
+        encoder.setAlwaysSent(UasDatalinkTag.MissionId, true);
+        encoder.encode(message(0, 90.0, 42.0));
+        UasDatalinkMessage delta = encoder.encode(message(40000L, 90.0, 42.0));
+        Assert.assertNull(delta.getField(UasDatalinkTag.UasLdsVersionNumber));
+        Assert.assertNotNull(delta.getField(UasDatalinkTag.MissionId));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeThreshold() {
+        new UasDatalinkDeltaEncoder().setChangeThreshold(UasDatalinkTag.SensorLatitude, -1);
+    }
+
+    @Test
+    public void testRoundTrip() throws KlvParseException {
+        UasDatalinkDeltaEncoder encoder = new UasDatalinkDeltaEncoder();
+        UasDatalinkDeltaDecoder decoder = new UasDatalinkDeltaDecoder();
+        for (int i = 0; i < 50; ++i) {
+            UasDatalinkMessage original = message(i * 40000L, 90.0 + (i / 10), 42.0 + i * 1e-4);
+            byte[] sent = encoder.encode(original).frameMessage(false);
+            UasDatalinkMessage received = decoder.decode(new UasDatalinkMessage(sent));
+            Assert.assertEquals(received.frameMessage(false), original.frameMessage(false));
+        }
+    }
+}
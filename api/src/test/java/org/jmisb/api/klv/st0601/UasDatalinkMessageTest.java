@@ -2,8 +2,14 @@ package org.jmisb.api.klv.st0601;
 
 import static org.jmisb.api.klv.KlvConstants.UasDatalinkLocalUl;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import org.jmisb.api.common.InvalidDataCounts;
+import org.jmisb.api.common.InvalidDataHandler;
 import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.common.LogOnInvalidDataStrategy;
+import org.jmisb.api.common.ThrowOnInvalidDataStrategy;
 import org.jmisb.api.klv.LoggerChecks;
 import org.testng.Assert;
 import org.testng.annotations.BeforeTest;
@@ -161,4 +167,161 @@ public class UasDatalinkMessageTest extends LoggerChecks {
         Assert.assertTrue(tags.contains(UasDatalinkTag.SensorLongitude));
         Assert.assertTrue(tags.contains(UasDatalinkTag.SensorTrueAltitude));
     }
+
+    @Test
+    public void testLazyReparse() throws KlvParseException {
+        byte[] bytes = message.frameMessage(false);
+        UasDatalinkMessage msg = new UasDatalinkMessage(ByteBuffer.wrap(bytes), true);
+        Assert.assertTrue(msg.hasPendingFields());
+
+        // Tags are reported without decoding the values
+        Collection<UasDatalinkTag> tags = msg.getIdentifiers();
+        Assert.assertEquals(tags.size(), 3);
+        Assert.assertTrue(tags.contains(UasDatalinkTag.SensorTrueAltitude));
+        Assert.assertTrue(msg.hasPendingFields());
+
+        SensorLatitude sensorLatitude =
+                (SensorLatitude) msg.getField(UasDatalinkTag.SensorLatitude);
+        Assert.assertEquals(sensorLatitude.getDegrees(), lat, SensorLatitude.DELTA);
+        // Decoded values are cached
+        Assert.assertSame(msg.getField(UasDatalinkTag.SensorLatitude), sensorLatitude);
+        Assert.assertNull(msg.getField(UasDatalinkTag.PlatformHeadingAngle));
+        Assert.assertTrue(msg.hasPendingFields());
+
+        // Modifying the source must not affect the message, since it holds its own copy
+        Arrays.fill(bytes, (byte) 0);
+        SensorLongitude sensorLongitude =
+                (SensorLongitude) msg.getField(UasDatalinkTag.SensorLongitude);
+        Assert.assertEquals(sensorLongitude.getDegrees(), lon, SensorLongitude.DELTA);
+
+        // Framing decodes anything left, and produces the same bytes as the original
+        Assert.assertEquals(msg.frameMessage(false), message.frameMessage(false));
+        Assert.assertFalse(msg.hasPendingFields());
+        Assert.assertEquals(msg.getIdentifiers().size(), 3);
+    }
+
+    @Test
+    public void testLazyFactory() throws KlvParseException {
+        byte[] bytes = message.frameMessage(false);
+        UasDatalinkMessage msg = new UasDatalinkMessageFactory(true).create(bytes);
+        Assert.assertTrue(msg.hasPendingFields());
+        SensorTrueAltitude sensorTrueAltitude =
+                (SensorTrueAltitude) msg.getField(UasDatalinkTag.SensorTrueAltitude);
+        Assert.assertEquals(sensorTrueAltitude.getMeters(), alt, SensorTrueAltitude.DELTA);
+
+        UasDatalinkMessage eager = new UasDatalinkMessageFactory().create(bytes);
+        Assert.assertFalse(eager.hasPendingFields());
+    }
+
+    @Test
+    public void testLazyChecksum() {
+        byte[] bytes = message.frameMessage(false);
+        bytes[20] = (byte) (~bytes[20] & 0xff);
+        try {
+            new UasDatalinkMessage(ByteBuffer.wrap(bytes), true);
+            Assert.fail("Parsing should have failed due to bad checksum");
+        } catch (KlvParseException e) {
+            Assert.assertEquals(e.getMessage(), "Bad checksum");
+        }
+    }
+
+    private byte[] invalidLatitudeMessage() {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.SensorLatitude, new OpaqueValue(new byte[] {0x01, 0x02, 0x03}));
+        values.put(UasDatalinkTag.SensorTrueAltitude, new SensorTrueAltitude(alt));
+        return new UasDatalinkMessage(values).frameMessage(false);
+    }
+
+    @Test
+    public void testLazyInvalidValue() throws KlvParseException {
+        InvalidDataCounts parserCounts = new InvalidDataCounts();
+        InvalidDataHandler.getInstance().setThreadCounts(parserCounts);
+        UasDatalinkMessage msg;
+        try {
+            msg = new UasDatalinkMessage(ByteBuffer.wrap(invalidLatitudeMessage()), true);
+        } finally {
+            InvalidDataHandler.getInstance().setThreadCounts(null);
+        }
+        InvalidDataHandler.getInstance()
+                .setInvalidFieldEncodingStrategy(new LogOnInvalidDataStrategy());
+        try {
+            Assert.assertEquals(msg.getIdentifiers().size(), 2);
+            Assert.assertNull(msg.getField(UasDatalinkTag.SensorLatitude));
+            Assert.assertEquals(LOGGER.getLoggingEvents().size(), 1);
+            LOGGER.clear();
+            Assert.assertEquals(parserCounts.getInvalidFieldEncodingCount(), 1);
+            Assert.assertNull(InvalidDataHandler.getInstance().getThreadCounts());
+            Assert.assertEquals(msg.getIdentifiers().size(), 1);
+            Assert.assertNotNull(msg.getField(UasDatalinkTag.SensorTrueAltitude));
+        } finally {
+            InvalidDataHandler.getInstance()
+                    .setInvalidFieldEncodingStrategy(new ThrowOnInvalidDataStrategy());
+        }
+    }
+
+    @Test
+    public void testLazyInvalidValueStrict() throws KlvParseException {
+        UasDatalinkMessage msg =
+                new UasDatalinkMessage(ByteBuffer.wrap(invalidLatitudeMessage()), true);
+        Assert.assertNotNull(msg.getField(UasDatalinkTag.SensorTrueAltitude));
+        try {
+            msg.getField(UasDatalinkTag.SensorLatitude);
+            Assert.fail("Strict strategy should have thrown");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getCause() instanceof KlvParseException);
+        }
+        Assert.assertNull(msg.getField(UasDatalinkTag.SensorLatitude));
+        Assert.assertEquals(msg.getIdentifiers().size(), 1);
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void testLazyDecodePendingFieldsStrict() throws KlvParseException {
+        new UasDatalinkMessage(ByteBuffer.wrap(invalidLatitudeMessage()), true)
+                .decodePendingFields();
+    }
+
+    @Test
+    public void testFrameIntoBuffer() {
+        for (boolean isNested : new boolean[] {false, true}) {
+            byte[] expected = message.frameMessage(isNested);
+            Assert.assertEquals(message.getFramedLength(isNested), expected.length);
+            for (ByteBuffer buffer :
+                    new ByteBuffer[] {ByteBuffer.allocate(256), ByteBuffer.allocateDirect(256)}) {
+                buffer.position(3);
+                Assert.assertEquals(message.frameMessage(isNested, buffer), expected.length);
+                Assert.assertEquals(buffer.position(), 3 + expected.length);
+                byte[] actual = new byte[expected.length];
+                buffer.position(3);
+                buffer.get(actual);
+                Assert.assertEquals(actual, expected);
+            }
+        }
+    }
+
+    @Test
+    public void testFrameIntoBufferOverflow() {
+        ByteBuffer buffer = ByteBuffer.allocate(message.getFramedLength(false) - 1);
+        try {
+            message.frameMessage(false, buffer);
+            Assert.fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException e) {
+            Assert.assertEquals(buffer.position(), 0);
+            Assert.assertEquals(buffer.array(), new byte[buffer.capacity()]);
+        }
+    }
+
+    @Test
+    public void testFrameIntoBufferReparse() throws KlvParseException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        int first = message.frameMessage(false, buffer);
+        int second = message.frameMessage(false, buffer);
+        buffer.flip();
+        buffer.position(first);
+        UasDatalinkMessage reparsed = new UasDatalinkMessage(buffer);
+        Assert.assertEquals(buffer.remaining(), second);
+        Assert.assertEquals(
+                ((SensorLatitude) reparsed.getField(UasDatalinkTag.SensorLatitude)).getDegrees(),
+                lat,
+                1e-6);
+    }
 }
@@ -0,0 +1,208 @@
+package org.jmisb.api.klv.st0601;
+
+import static org.testng.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.KlvConstants;
+import org.jmisb.api.klv.LoggerChecks;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Tests for UasDatalinkReader. */
+public class UasDatalinkReaderTest extends LoggerChecks {
+    private UasDatalinkMessage message;
+    private byte[] bytes;
+
+    public UasDatalinkReaderTest() {
+        super(UasDatalinkReader.class);
+    }
+
+    @BeforeMethod
+    public void createSample() {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.PrecisionTimeStamp, new PrecisionTimeStamp(1231798102000000L));
+        values.put(UasDatalinkTag.PlatformHeadingAngle, new PlatformHeadingAngle(159.9744));
+        values.put(UasDatalinkTag.PlatformPitchAngle, new PlatformPitchAngle(-0.4315251));
+        values.put(UasDatalinkTag.PlatformRollAngle, new PlatformRollAngle(3.405814));
+        values.put(UasDatalinkTag.PlatformTrueAirspeed, new PlatformTrueAirspeed(147));
+        values.put(UasDatalinkTag.PlatformIndicatedAirspeed, new PlatformIndicatedAirspeed(159));
+        values.put(UasDatalinkTag.SensorLatitude, new SensorLatitude(60.17682));
+        values.put(UasDatalinkTag.SensorLongitude, new SensorLongitude(128.4267));
+        values.put(UasDatalinkTag.SensorTrueAltitude, new SensorTrueAltitude(14190.72));
+        values.put(UasDatalinkTag.SensorHorizontalFov, new HorizontalFov(144.5713));
+        values.put(UasDatalinkTag.SensorVerticalFov, new VerticalFov(152.6436));
+        values.put(UasDatalinkTag.SensorRelativeAzimuthAngle, new SensorRelativeAzimuth(160.7192));
+        values.put(
+                UasDatalinkTag.SensorRelativeElevationAngle,
+                new SensorRelativeElevation(Double.POSITIVE_INFINITY));
+        values.put(UasDatalinkTag.SensorRelativeRollAngle, new SensorRelativeRoll(176.8654));
+        values.put(UasDatalinkTag.SlantRange, new SlantRange(68590.98));
+        values.put(UasDatalinkTag.FrameCenterLatitude, new FrameCenterLatitude(-10.54238));
+        values.put(UasDatalinkTag.FrameCenterLongitude, new FrameCenterLongitude(29.15789));
+        values.put(UasDatalinkTag.FrameCenterElevation, new FrameCenterElevation(3216.037));
+        values.put(UasDatalinkTag.TargetLocationLatitude, new TargetLocationLatitude(-79.16385));
+        values.put(UasDatalinkTag.TargetLocationLongitude, new TargetLocationLongitude(166.4005));
+        values.put(UasDatalinkTag.TargetLocationElevation, new TargetLocationElevation(18389.05));
+        values.put(UasDatalinkTag.PlatformGroundSpeed, new PlatformGroundSpeed(140));
+        values.put(UasDatalinkTag.UasLdsVersionNumber, new ST0601Version((short) 16));
+        values.put(UasDatalinkTag.SensorEllipsoidHeight, new SensorEllipsoidHeight(14818.68));
+        values.put(UasDatalinkTag.FrameCenterHae, new FrameCenterHae(9.0));
+        values.put(UasDatalinkTag.PlatformPitchAngleFull, new PlatformPitchAngleFull(-0.4315251));
+        values.put(UasDatalinkTag.PlatformRollAngleFull, new PlatformRollAngleFull(3.405814));
+        values.put(UasDatalinkTag.MissionId, new UasDatalinkString("Mission ID", "MISSION01"));
+        message = new UasDatalinkMessage(values);
+        bytes = message.frameMessage(false);
+    }
+
+    @Test
+    public void readMatchesMessage() throws KlvParseException {
+        UasDatalinkMessage parsed = new UasDatalinkMessage(bytes);
+        UasDatalinkReader reader = new UasDatalinkReader();
+        reader.reset(ByteBuffer.wrap(bytes));
+
+        assertEquals(
+                reader.precisionTimeStampMicros(),
+                ((PrecisionTimeStamp) parsed.getField(UasDatalinkTag.PrecisionTimeStamp))
+                        .getMicroseconds());
+        assertEquals(reader.precisionTimeStampMicros(), 1231798102000000L);
+        assertEquals(
+                reader.platformHeadingDegrees(),
+                degrees(parsed, UasDatalinkTag.PlatformHeadingAngle));
+        assertEquals(reader.platformPitchDegrees(), -0.4315251, 0.0007);
+        assertEquals(reader.platformRollDegrees(), 3.405814, 0.0008);
+        assertEquals(reader.platformTrueAirspeed(), 147.0);
+        assertEquals(reader.platformIndicatedAirspeed(), 159.0);
+        assertEquals(
+                reader.sensorLatitude(),
+                ((SensorLatitude) parsed.getField(UasDatalinkTag.SensorLatitude)).getDegrees());
+        assertEquals(reader.sensorLatitude(), 60.17682, SensorLatitude.DELTA);
+        assertEquals(reader.sensorLongitude(), 128.4267, SensorLongitude.DELTA);
+        assertEquals(
+                reader.sensorTrueAltitude(),
+                ((SensorTrueAltitude) parsed.getField(UasDatalinkTag.SensorTrueAltitude))
+                        .getMeters());
+        assertEquals(reader.horizontalFovDegrees(), 144.5713, 0.003);
+        assertEquals(reader.verticalFovDegrees(), 152.6436, 0.003);
+        assertEquals(reader.sensorRelativeAzimuthDegrees(), 160.7192, 1e-6);
+        assertEquals(reader.sensorRelativeElevationDegrees(), Double.POSITIVE_INFINITY);
+        assertEquals(reader.sensorRelativeRollDegrees(), 176.8654, 1e-6);
+        assertEquals(reader.slantRangeMeters(), 68590.98, SlantRange.DELTA);
+        assertEquals(reader.frameCenterLatitude(), -10.54238, SensorLatitude.DELTA);
+        assertEquals(reader.frameCenterLongitude(), 29.15789, SensorLongitude.DELTA);
+        assertEquals(reader.frameCenterElevation(), 3216.037, SensorTrueAltitude.DELTA);
+        assertEquals(reader.targetLocationLatitude(), -79.16385, SensorLatitude.DELTA);
+        assertEquals(reader.targetLocationLongitude(), 166.4005, SensorLongitude.DELTA);
+        assertEquals(reader.targetLocationElevation(), 18389.05, SensorTrueAltitude.DELTA);
+        assertEquals(reader.platformGroundSpeed(), 140.0);
+        assertEquals(reader.uasLdsVersion(), 16);
+        assertEquals(reader.sensorEllipsoidHeight(), 14818.68, SensorTrueAltitude.DELTA);
+        assertEquals(reader.frameCenterHae(), 9.0, SensorTrueAltitude.DELTA);
+        assertEquals(reader.platformPitchFullDegrees(), -0.4315251, 1e-7);
+        assertEquals(reader.platformRollFullDegrees(), 3.405814, 1e-7);
+    }
+
+    @Test
+    public void cursor() throws KlvParseException {
+        UasDatalinkReader reader = new UasDatalinkReader();
+        reader.reset(ByteBuffer.wrap(bytes));
+        // 28 values plus checksum
+        assertEquals(reader.getFieldCount(), 29);
+        assertEquals(reader.getTagCode(0), UasDatalinkTag.PrecisionTimeStamp.getCode());
+        assertEquals(reader.getValueLength(0), 8);
+        assertEquals(reader.getTagCode(1), UasDatalinkTag.MissionId.getCode());
+        assertEquals(reader.getValueLength(1), 9);
+        assertEquals(bytes[reader.getValueOffset(1)], 'M');
+        assertEquals(reader.getTagCode(28), UasDatalinkTag.Checksum.getCode());
+        assertTrue(reader.hasField(UasDatalinkTag.MissionId));
+        assertFalse(reader.hasField(UasDatalinkTag.WeaponsStores));
+    }
+
+    @Test
+    public void reuse() throws KlvParseException {
+        UasDatalinkReader reader = new UasDatalinkReader();
+        reader.reset(ByteBuffer.wrap(bytes));
+        assertTrue(reader.hasField(UasDatalinkTag.SensorLatitude));
+
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.PlatformHeadingAngle, new PlatformHeadingAngle(12.0));
+        byte[] other = new UasDatalinkMessage(values).frameMessage(false);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(other.length + 4);
+        buffer.position(4);
+        buffer.put(other);
+        buffer.position(4);
+        reader.reset(buffer);
+        assertEquals(reader.getFieldCount(), 2);
+        assertFalse(reader.hasField(UasDatalinkTag.SensorLatitude));
+        assertTrue(Double.isNaN(reader.sensorLatitude()));
+        assertEquals(reader.precisionTimeStampMicros(), -1);
+        assertEquals(reader.uasLdsVersion(), -1);
+        assertEquals(reader.platformHeadingDegrees(), 12.0, 0.003);
+        assertEquals(buffer.position(), 4);
+    }
+
+    @Test
+    public void badChecksum() {
+        bytes[20] = (byte) (~bytes[20] & 0xff);
+        try {
+            new UasDatalinkReader().reset(ByteBuffer.wrap(bytes));
+            fail("Parsing should have failed due to bad checksum");
+        } catch (KlvParseException e) {
+            assertEquals(e.getMessage(), "Bad checksum");
+        }
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void wrongUniversalLabel() throws KlvParseException {
+        System.arraycopy(KlvConstants.VTrackLocalSetUl.getBytes(), 0, bytes, 0, 16);
+        new UasDatalinkReader().reset(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void badIndex() throws KlvParseException {
+        UasDatalinkReader reader = new UasDatalinkReader();
+        reader.reset(ByteBuffer.wrap(bytes));
+        reader.getTagCode(29);
+    }
+
+    @Test
+    public void corruptTagTooLong() {
+        byte[] corrupt = new byte[24];
+        System.arraycopy(bytes, 0, corrupt, 0, 16);
+        corrupt[16] = 0x07;
+        byte[] tag = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F, 0x00, 0x00};
+        System.arraycopy(tag, 0, corrupt, 17, tag.length);
+        try {
+            new UasDatalinkReader().reset(ByteBuffer.wrap(corrupt));
+            fail("Parsing should have failed due to an overlong tag");
+        } catch (KlvParseException e) {
+            assertEquals(e.getMessage(), "BER-OID: tag exceeds 4 bytes");
+        }
+    }
+
+    @Test
+    public void largeUnknownTag() throws KlvParseException {
+        // Four byte BER-OID tag, beyond the indexed range, followed by a checksum
+        byte[] packet = new byte[27];
+        System.arraycopy(bytes, 0, packet, 0, 16);
+        packet[16] = 0x0A;
+        byte[] fields = {
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F, 0x01, 0x42, 0x01, 0x02, 0x00, 0x00
+        };
+        System.arraycopy(fields, 0, packet, 17, fields.length);
+        int checksum = Checksum.sum(ByteBuffer.wrap(packet), 0, 27);
+        packet[25] = (byte) (checksum >> 8);
+        packet[26] = (byte) checksum;
+        UasDatalinkReader reader = new UasDatalinkReader();
+        reader.reset(ByteBuffer.wrap(packet));
+        assertEquals(reader.getFieldCount(), 2);
+        assertEquals(reader.getTagCode(0), 0x0FFFFFFF);
+        assertFalse(reader.hasField(UasDatalinkTag.PrecisionTimeStamp));
+    }
+
+    private double degrees(UasDatalinkMessage parsed, UasDatalinkTag tag) {
+        return ((UasDatalinkAngle360) parsed.getField(tag)).getDegrees();
+    }
+}
@@ -0,0 +1,305 @@
+package org.jmisb.api.klv.st0903;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.jmisb.api.common.InvalidDataHandler;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.common.LogOnInvalidDataStrategy;
+import org.jmisb.api.common.ThrowOnInvalidDataStrategy;
+import org.jmisb.api.klv.st0903.shared.EncodingMode;
+import org.jmisb.api.klv.st0903.shared.LocationPack;
+import org.jmisb.api.klv.st0903.vtarget.BoundaryBottomRight;
+import org.jmisb.api.klv.st0903.vtarget.BoundaryTopLeft;
+import org.jmisb.api.klv.st0903.vtarget.CentroidPixelColumn;
+import org.jmisb.api.klv.st0903.vtarget.CentroidPixelRow;
+import org.jmisb.api.klv.st0903.vtarget.TargetCentroid;
+import org.jmisb.api.klv.st0903.vtarget.TargetConfidenceLevel;
+import org.jmisb.api.klv.st0903.vtarget.TargetLocation;
+import org.jmisb.api.klv.st0903.vtarget.TargetPriority;
+import org.jmisb.api.klv.st0903.vtarget.VTargetMetadataKey;
+import org.jmisb.api.klv.st0903.vtarget.VTargetPack;
+import org.testng.annotations.Test;
+
+/** Tests for the columnar VTarget Series view. */
+public class VTargetColumnsTest {
+
+    private static VTargetSeries makeSeries() {
+        List<VTargetPack> packs = new ArrayList<>();
+        Map<VTargetMetadataKey, IVmtiMetadataValue> target1 = new TreeMap<>();
+        target1.put(VTargetMetadataKey.TargetCentroid, new TargetCentroid(409600));
+        target1.put(VTargetMetadataKey.BoundaryTopLeft, new BoundaryTopLeft(409500));
+        target1.put(VTargetMetadataKey.BoundaryBottomRight, new BoundaryBottomRight(1L << 40));
+        target1.put(VTargetMetadataKey.TargetPriority, new TargetPriority((short) 27));
+        target1.put(
+                VTargetMetadataKey.TargetConfidenceLevel, new TargetConfidenceLevel((short) 80));
+        target1.put(
+                VTargetMetadataKey.TargetLocation,
+                new TargetLocation(
+                        new LocationPack(
+                                -10.5423886331461,
+                                29.157890122923,
+                                3216.0,
+                                0.1,
+                                3.0,
+                                649.9,
+                                -0.5,
+                                0.25,
+                                1.0)));
+        packs.add(new VTargetPack(1, target1));
+
+        Map<VTargetMetadataKey, IVmtiMetadataValue> target2 = new TreeMap<>();
+        target2.put(VTargetMetadataKey.CentroidPixRow, new CentroidPixelRow(872));
+        target2.put(VTargetMetadataKey.CentroidPixColumn, new CentroidPixelColumn(1137));
+        target2.put(
+                VTargetMetadataKey.TargetLocation,
+                new TargetLocation(new LocationPack(45.0, -120.0, 100.0)));
+        packs.add(new VTargetPack(2, target2));
+
+        packs.add(new VTargetPack(300, new TreeMap<>()));
+        return new VTargetSeries(packs);
+    }
+
+    private static VTargetColumns makeColumns() {
+        VTargetColumns columns = new VTargetColumns(1);
+        int t1 = columns.addTarget(1);
+        columns.setCentroid(t1, 409600);
+        columns.setBoundary(t1, 409500, 1L << 40);
+        columns.setPriority(t1, 27);
+        columns.setConfidence(t1, 80);
+        columns.setLocation(t1, -10.5423886331461, 29.157890122923, 3216.0);
+        columns.setLocationSigmas(t1, 0.1, 3.0, 649.9);
+        columns.setLocationCorrelations(t1, -0.5, 0.25, 1.0);
+        int t2 = columns.addTarget(2);
+        columns.setCentroidRowColumn(t2, 872, 1137);
+        columns.setLocation(t2, 45.0, -120.0, 100.0);
+        columns.addTarget(300);
+        return columns;
+    }
+
+    @Test
+    public void checkEncodeMatchesSeries() {
+        VTargetColumns columns = makeColumns();
+        assertEquals(columns.size(), 3);
+        assertEquals(columns.getBytes(), makeSeries().getBytes());
+        assertEquals(columns.getDisplayName(), "Target Series");
+        assertEquals(columns.getDisplayableValue(), "[Targets]");
+    }
+
+    @Test
+    public void checkDecodeSeries() throws KlvParseException {
+        byte[] bytes = makeSeries().getBytes();
+        VTargetColumns columns = new VTargetColumns();
+        columns.decodeSeries(bytes, 0, bytes.length, EncodingMode.IMAPB);
+        assertEquals(columns.size(), 3);
+        assertEquals(columns.getTargetIds()[0], 1);
+        assertEquals(columns.getTargetIds()[1], 2);
+        assertEquals(columns.getTargetIds()[2], 300);
+
+        assertTrue(columns.hasCentroid(0));
+        assertEquals(columns.getCentroids()[0], 409600);
+        assertTrue(columns.hasBoundary(0));
+        assertEquals(columns.getBoundaryTopLeft()[0], 409500);
+        assertEquals(columns.getBoundaryBottomRight()[0], 1L << 40);
+        assertTrue(columns.hasPriority(0));
+        assertEquals(columns.getPriorities()[0], 27);
+        assertTrue(columns.hasConfidence(0));
+        assertEquals(columns.getConfidences()[0], 80);
+        assertFalse(columns.hasCentroidRowColumn(0));
+        assertTrue(columns.hasLocation(0));
+        assertTrue(columns.hasLocationSigmas(0));
+        assertTrue(columns.hasLocationCorrelations(0));
+        assertEquals(columns.getLatitudes()[0], -10.5423886331461, 0.0001);
+        assertEquals(columns.getLongitudes()[0], 29.157890122923, 0.0001);
+        assertEquals(columns.getHaes()[0], 3216.0, 0.5);
+        assertEquals(columns.getSigEast()[0], 0.1, 0.05);
+        assertEquals(columns.getSigNorth()[0], 3.0, 0.05);
+        assertEquals(columns.getSigUp()[0], 649.9, 0.05);
+        assertEquals(columns.getRhoEastNorth()[0], -0.5, 0.001);
+        assertEquals(columns.getRhoEastUp()[0], 0.25, 0.001);
+        assertEquals(columns.getRhoNorthUp()[0], 1.0, 0.001);
+
+        assertFalse(columns.hasCentroid(1));
+        assertTrue(columns.hasCentroidRowColumn(1));
+        assertEquals(columns.getCentroidRows()[1], 872);
+        assertEquals(columns.getCentroidColumns()[1], 1137);
+        assertTrue(columns.hasLocation(1));
+        assertFalse(columns.hasLocationSigmas(1));
+        assertEquals(columns.getLatitudes()[1], 45.0, 0.0001);
+        assertEquals(columns.getLongitudes()[1], -120.0, 0.0001);
+
+        assertFalse(columns.hasLocation(2));
+        assertFalse(columns.hasConfidence(2));
+
+        // Re-encoding is lossless for the columnar fields
+        assertEquals(columns.getBytes(), bytes);
+    }
+
+    @Test
+    public void checkDecodeLocalSet() throws KlvParseException {
+        Map<VmtiMetadataKey, IVmtiMetadataValue> values = new TreeMap<>();
+        values.put(VmtiMetadataKey.VersionNumber, new ST0903Version(5));
+        values.put(VmtiMetadataKey.FrameNumber, new FrameNumber(12345));
+        values.put(VmtiMetadataKey.VTargetSeries, makeSeries());
+        byte[] bytes = new VmtiLocalSet(values).frameMessage(true);
+        VTargetColumns columns = VTargetColumns.fromLocalSet(bytes);
+        assertEquals(columns.size(), 3);
+        assertEquals(columns.getConfidences()[0], 80);
+        assertEquals(columns.getCentroidColumns()[1], 1137);
+
+        // Reuse with an offset, and check that a local set without targets clears the columns
+        byte[] padded = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, padded, 2, bytes.length);
+        columns.decodeLocalSet(padded, 2, bytes.length);
+        assertEquals(columns.size(), 3);
+        columns.decodeLocalSet(new byte[] {0x04, 0x01, 0x05}, 0, 3);
+        assertEquals(columns.size(), 0);
+    }
+
+    @Test
+    public void checkAsLocalSetValue() throws KlvParseException {
+        Map<VmtiMetadataKey, IVmtiMetadataValue> values = new TreeMap<>();
+        values.put(VmtiMetadataKey.VersionNumber, new ST0903Version(5));
+        values.put(VmtiMetadataKey.VTargetSeries, makeColumns());
+        byte[] framed = new VmtiLocalSet(values).frameMessage(true);
+        VmtiLocalSet parsed = new VmtiLocalSet(framed);
+        VTargetSeries series = (VTargetSeries) parsed.getField(VmtiMetadataKey.VTargetSeries);
+        assertEquals(series.getVTargets().size(), 3);
+        assertEquals(series.getBytes(), makeSeries().getBytes());
+    }
+
+    @Test
+    public void checkDecodeLegacy() throws KlvParseException {
+        byte[] bytes =
+                new byte[] {
+                    4,
+                    0x01,
+                    0x04,
+                    0x01,
+                    0x1B,
+                    13,
+                    0x02,
+                    0x0C,
+                    0x02,
+                    (byte) 0x8C,
+                    (byte) 0x38,
+                    0x13,
+                    0x02,
+                    0x03,
+                    0x68,
+                    0x14,
+                    0x02,
+                    0x04,
+                    0x71
+                };
+        VTargetColumns columns = new VTargetColumns();
+        columns.decodeSeries(bytes, 0, bytes.length, EncodingMode.LEGACY);
+        assertEquals(columns.size(), 2);
+        assertEquals(columns.getPriorities()[0], 27);
+        assertEquals(columns.getCentroidRows()[1], 872);
+        assertEquals(columns.getCentroidColumns()[1], 1137);
+        // Target HAE (Tag 12) is not part of the columnar view
+        assertFalse(columns.hasLocation(1));
+    }
+
+    @Test
+    public void checkDecodeLegacyLocation() throws KlvParseException {
+        LocationPack expected =
+                TargetLocation.targetLocationPackFromBytes(
+                        new byte[] {0x40, 0, 0, 0, 0x40, 0, 0, 0, 0x10, 0}, EncodingMode.LEGACY);
+        byte[] bytes = new byte[] {13, 0x01, 0x11, 0x0A, 0x40, 0, 0, 0, 0x40, 0, 0, 0, 0x10, 0};
+        VTargetColumns columns = new VTargetColumns();
+        columns.decodeSeries(bytes, 0, bytes.length, EncodingMode.LEGACY);
+        assertTrue(columns.hasLocation(0));
+        assertFalse(columns.hasLocationSigmas(0));
+        assertEquals(columns.getLatitudes()[0], expected.getLat(), 0.0);
+        assertEquals(columns.getLongitudes()[0], expected.getLon(), 0.0);
+        assertEquals(columns.getHaes()[0], expected.getHae(), 0.0);
+    }
+
+    private final byte[] badConfidenceBytes =
+            new byte[] {
+                8,
+                0x01,
+                0x05,
+                0x02,
+                0x00,
+                0x50, // bad confidence length
+                0x04,
+                0x01,
+                0x03 // priority 3
+            };
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void checkInvalidField() throws KlvParseException {
+        VTargetColumns columns = new VTargetColumns();
+        columns.decodeSeries(badConfidenceBytes, 0, badConfidenceBytes.length, EncodingMode.IMAPB);
+    }
+
+    @Test
+    public void checkInvalidFieldSkipped() throws KlvParseException {
+        InvalidDataHandler.getInstance()
+                .setInvalidFieldEncodingStrategy(new LogOnInvalidDataStrategy());
+        try {
+            VTargetColumns columns = new VTargetColumns();
+            columns.decodeSeries(
+                    badConfidenceBytes, 0, badConfidenceBytes.length, EncodingMode.IMAPB);
+            assertEquals(columns.size(), 1);
+            assertFalse(columns.hasConfidence(0));
+            assertTrue(columns.hasPriority(0));
+            assertEquals(columns.getPriorities()[0], 3);
+        } finally {
+            InvalidDataHandler.getInstance()
+                    .setInvalidFieldEncodingStrategy(new ThrowOnInvalidDataStrategy());
+        }
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void checkTruncatedPack() throws KlvParseException {
+        VTargetColumns columns = new VTargetColumns();
+        columns.decodeSeries(new byte[] {0x01, (byte) 0x81, 0x00}, 0, 3, EncodingMode.IMAPB);
+    }
+
+    @Test
+    public void checkGrowth() {
+        VTargetColumns columns = new VTargetColumns(1);
+        for (int t = 0; t < 500; ++t) {
+            int index = columns.addTarget(t + 1);
+            columns.setConfidence(index, t % 101);
+        }
+        assertEquals(columns.size(), 500);
+        assertEquals(columns.getConfidences()[499], 499 % 101);
+        assertTrue(columns.getTargetIds().length >= 500);
+        columns.clear();
+        assertEquals(columns.size(), 0);
+        assertEquals(columns.getBytes().length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void checkBadConfidence() {
+        VTargetColumns columns = new VTargetColumns();
+        columns.setConfidence(columns.addTarget(1), 101);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void checkBadCentroid() {
+        VTargetColumns columns = new VTargetColumns();
+        columns.setCentroid(columns.addTarget(1), 0);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void checkBadIndex() {
+        VTargetColumns columns = new VTargetColumns();
+        columns.addTarget(1);
+        columns.hasCentroid(1);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void checkSigmasWithoutLocation() {
+        VTargetColumns columns = new VTargetColumns();
+        columns.setLocationSigmas(columns.addTarget(1), 1.0, 1.0, 1.0);
+    }
+}
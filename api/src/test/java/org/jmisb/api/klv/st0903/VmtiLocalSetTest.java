@@ -3,6 +3,8 @@ package org.jmisb.api.klv.st0903;
 import static org.testng.Assert.*;
 
 import java.net.URISyntaxException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import org.jmisb.api.common.KlvParseException;
@@ -350,4 +352,34 @@ public class VmtiLocalSetTest extends LoggerChecks {
         this.verifySingleLoggerMessage("Unknown VMTI Metadata tag: Undefined");
         assertNull(unknown);
     }
+
+    @Test
+    public void frameIntoBuffer() throws KlvParseException {
+        Map<VmtiMetadataKey, IVmtiMetadataValue> values = new HashMap<>();
+        values.put(
+                VmtiMetadataKey.SystemName,
+                new VmtiTextString(VmtiTextString.SYSTEM_NAME, "DSTO_ADSS_VMTI"));
+        values.put(VmtiMetadataKey.FrameWidth, new FrameWidth(1920));
+        VmtiLocalSet localSet = new VmtiLocalSet(values);
+        for (boolean isNested : new boolean[] {false, true}) {
+            byte[] expected = localSet.frameMessage(isNested);
+            assertEquals(localSet.getFramedLength(isNested), expected.length);
+            for (ByteBuffer buffer :
+                    new ByteBuffer[] {ByteBuffer.allocate(128), ByteBuffer.allocateDirect(128)}) {
+                assertEquals(localSet.frameMessage(isNested, buffer), expected.length);
+                byte[] actual = new byte[expected.length];
+                buffer.flip();
+                buffer.get(actual);
+                assertEquals(actual, expected);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = BufferOverflowException.class)
+    public void frameIntoBufferOverflow() {
+        Map<VmtiMetadataKey, IVmtiMetadataValue> values = new HashMap<>();
+        values.put(VmtiMetadataKey.FrameWidth, new FrameWidth(1920));
+        VmtiLocalSet localSet = new VmtiLocalSet(values);
+        localSet.frameMessage(false, ByteBuffer.allocate(8));
+    }
 }
@@ -4,6 +4,9 @@ import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.LoggerChecks;
 import org.jmisb.api.klv.st0903.IVmtiMetadataValue;
@@ -82,4 +85,80 @@ public class EmbeddedImageTest extends LoggerChecks {
         Assert.assertEquals(embeddedImageBytes[4], '\r');
         Assert.assertEquals(embeddedImageBytes[5], '\n');
     }
+
+    @Test
+    public void testLazyDecode() throws KlvParseException {
+        EmbeddedImage embeddedImage = new EmbeddedImage(bytes);
+        Assert.assertFalse(embeddedImage.isDecoded());
+        Assert.assertEquals(embeddedImage.getBytes(), bytes);
+        Assert.assertFalse(embeddedImage.isDecoded());
+        BufferedImage image = embeddedImage.getImage();
+        Assert.assertTrue(embeddedImage.isDecoded());
+        Assert.assertEquals(image.getWidth(), 1);
+        Assert.assertSame(embeddedImage.getImage(), image);
+        Assert.assertEquals(embeddedImage.getBytes(), bytes);
+    }
+
+    @Test
+    public void testUndecodableBytesPassedThrough() throws KlvParseException {
+        byte[] garbage = new byte[] {0x01, 0x02, 0x03};
+        EmbeddedImage embeddedImage = new EmbeddedImage(garbage);
+        Assert.assertNull(embeddedImage.getImage());
+        Assert.assertEquals(embeddedImage.getBytes(), garbage);
+        Assert.assertNull(embeddedImage.getBytes("png"));
+    }
+
+    @Test
+    public void testCache() throws KlvParseException {
+        EmbeddedImageCache cache = new EmbeddedImageCache(1);
+        Assert.assertEquals(cache.getMaxEntries(), 1);
+        EmbeddedImage first = new EmbeddedImage(bytes);
+        EmbeddedImage second = new EmbeddedImage(bytes);
+        BufferedImage image = first.getImage(cache);
+        Assert.assertNotNull(image);
+        Assert.assertFalse(first.isDecoded());
+        Assert.assertSame(second.getImage(cache), image);
+        Assert.assertEquals(cache.size(), 1);
+
+        BufferedImage other = new BufferedImage(2, 2, TYPE_3BYTE_BGR);
+        EmbeddedImage third = new EmbeddedImage(new EmbeddedImage(other).getBytes());
+        Assert.assertEquals(third.getImage(cache).getWidth(), 2);
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertNotSame(first.getImage(cache), image);
+
+        cache.clear();
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertNull(new EmbeddedImage(new byte[] {0x01, 0x02}).getImage(cache));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testCacheAlreadyDecoded() {
+        BufferedImage bufferedImage = new BufferedImage(1, 1, TYPE_3BYTE_BGR);
+        EmbeddedImageCache cache = new EmbeddedImageCache(4);
+        Assert.assertSame(new EmbeddedImage(bufferedImage).getImage(cache), bufferedImage);
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCacheBadSize() {
+        new EmbeddedImageCache(0);
+    }
+
+    @Test
+    public void testAsync() throws KlvParseException, InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            EmbeddedImage embeddedImage = new EmbeddedImage(bytes);
+            BufferedImage image = embeddedImage.getImageAsync(executor).get();
+            Assert.assertEquals(image.getHeight(), 1);
+            Assert.assertSame(embeddedImage.getImage(), image);
+            EmbeddedImageCache cache = new EmbeddedImageCache(2);
+            BufferedImage cached = new EmbeddedImage(bytes).getImageAsync(cache, executor).get();
+            Assert.assertEquals(cached.getWidth(), 1);
+            Assert.assertEquals(cache.size(), 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
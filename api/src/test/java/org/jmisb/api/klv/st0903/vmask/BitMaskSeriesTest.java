@@ -163,4 +163,14 @@ public class BitMaskSeriesTest {
                 };
         new BitMaskSeries(bytes);
     }
+
+    @Test
+    public void roundTripLongRun() throws KlvParseException {
+        List<PixelRunPair> runs = new ArrayList<>();
+        runs.add(new PixelRunPair(3840L * 100 + 1, 300));
+        BitMaskSeries bitmask = new BitMaskSeries(runs);
+        BitMaskSeries parsed = new BitMaskSeries(bitmask.getBytes());
+        assertEquals(parsed.getRuns().get(0).getPixelNumber(), 384001L);
+        assertEquals(parsed.getRuns().get(0).getRun(), 300);
+    }
 }
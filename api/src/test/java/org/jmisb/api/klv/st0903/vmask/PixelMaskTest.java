@@ -0,0 +1,222 @@
+package org.jmisb.api.klv.st0903.vmask;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.jmisb.api.common.KlvParseException;
+import org.testng.annotations.Test;
+
+/** Tests for PixelMask. */
+public class PixelMaskTest {
+    final byte[] stBytes =
+            new byte[] {
+                0x03, 0x01, 0x4A, 0x02,
+                0x03, 0x01, 0x59, 0x04,
+                0x03, 0x01, 0x6A, 0x02
+            };
+
+    @Test
+    public void decodeBitMaskSeries() throws KlvParseException {
+        PixelMask mask = PixelMask.fromBitMaskSeriesBytes(stBytes);
+        assertEquals(mask.getRunCount(), 3);
+        assertEquals(mask.getArea(), 8);
+        assertEquals(mask.getRunStart(0), 74L);
+        assertEquals(mask.getRunLength(0), 2L);
+        assertEquals(mask.getRunStart(1), 89L);
+        assertEquals(mask.getRunLength(1), 4L);
+        assertEquals(mask.getRunStart(2), 106L);
+        assertEquals(mask.getRunLength(2), 2L);
+        assertTrue(mask.contains(75));
+        assertFalse(mask.contains(76));
+        assertFalse(mask.contains(73));
+        assertTrue(mask.contains(92));
+        assertEquals(mask.toBitMaskSeriesBytes(), stBytes);
+        assertEquals(mask, PixelMask.fromBitMaskSeries(new BitMaskSeries(stBytes)));
+    }
+
+    @Test
+    public void encodeMatchesBitMaskSeries() throws KlvParseException {
+        List<PixelRunPair> runs = new ArrayList<>();
+        runs.add(new PixelRunPair(3L, 1));
+        runs.add(new PixelRunPair(0x1234L, 300));
+        runs.add(new PixelRunPair(3840L * 2159 + 1, 3840));
+        PixelMask mask = PixelMask.fromRuns(runs);
+        byte[] bytes = mask.toBitMaskSeriesBytes();
+        assertEquals(bytes, new BitMaskSeries(runs).getBytes());
+        assertEquals(PixelMask.fromBitMaskSeriesBytes(bytes), mask);
+        assertEquals(mask.toBitMaskSeries().getRuns().size(), 3);
+    }
+
+    @Test
+    public void canonicalRuns() {
+        List<PixelRunPair> runs = new ArrayList<>();
+        runs.add(new PixelRunPair(20L, 5));
+        runs.add(new PixelRunPair(10L, 5));
+        runs.add(new PixelRunPair(15L, 3));
+        runs.add(new PixelRunPair(22L, 10));
+        runs.add(new PixelRunPair(40L, 0));
+        runs.add(new PixelRunPair(50L, 2));
+        PixelMask mask = PixelMask.fromRuns(runs);
+        assertEquals(mask.getRunCount(), 3);
+        assertEquals(mask.getRunStart(0), 10L);
+        assertEquals(mask.getRunLength(0), 8L);
+        assertEquals(mask.getRunStart(1), 20L);
+        assertEquals(mask.getRunLength(1), 12L);
+        assertEquals(mask.getRunStart(2), 50L);
+        assertEquals(mask.getArea(), 22L);
+        assertEquals(mask.toBitMaskSeries().getRuns().size(), 3);
+    }
+
+    @Test
+    public void polygonRectangle() throws KlvParseException {
+        // Frame width 10, rows 2 to 5, columns 3 to 6
+        PixelPolygon polygon = new PixelPolygon(Arrays.asList(13L, 16L, 46L, 43L));
+        PixelMask mask = PixelMask.fromPolygon(polygon, 10);
+        assertEquals(mask.getArea(), 16L);
+        assertEquals(mask.getRunCount(), 4);
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(mask.getRunStart(i), 13L + 10 * i);
+            assertEquals(mask.getRunLength(i), 4L);
+        }
+        assertEquals(PixelMask.fromPolygonBytes(polygon.getBytes(), 10), mask);
+        assertEquals(PixelMask.fromPolygon(new long[] {43, 46, 16, 13}, 10), mask);
+    }
+
+    @Test
+    public void polygonTriangle() {
+        PixelMask mask = PixelMask.fromPolygon(new long[] {1, 5, 41}, 10);
+        assertEquals(mask.getArea(), 15L);
+        assertEquals(mask.getRunCount(), 5);
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(mask.getRunStart(i), 1L + 10 * i);
+            assertEquals(mask.getRunLength(i), 5L - i);
+        }
+    }
+
+    @Test
+    public void polygonConcave() {
+        // L shape, frame width 10: rows 1-2 columns 1-3, rows 3-5 columns 1-6
+        PixelMask mask = PixelMask.fromPolygon(new long[] {1, 3, 23, 26, 46, 41}, 10);
+        assertEquals(mask.getArea(), 24L);
+        assertEquals(mask.getRunCount(), 5);
+        assertEquals(mask.getRunLength(1), 3L);
+        assertEquals(mask.getRunStart(2), 21L);
+        assertEquals(mask.getRunLength(2), 6L);
+        assertFalse(mask.contains(14));
+    }
+
+    @Test
+    public void polygonSingleRow() {
+        PixelMask mask = PixelMask.fromPolygon(new long[] {3, 7, 5}, 10);
+        assertEquals(mask.getArea(), 5L);
+        assertEquals(mask.getRunStart(0), 3L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void polygonTooFewPoints() {
+        PixelMask.fromPolygon(new long[] {1, 5}, 10);
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void polygonBytesTooFewPoints() throws KlvParseException {
+        PixelMask.fromPolygonBytes(new byte[] {0x01, 0x01, 0x01, 0x05}, 10);
+    }
+
+    @Test
+    public void bitmapRoundTrip() {
+        List<PixelRunPair> runs = new ArrayList<>();
+        runs.add(new PixelRunPair(1L, 1));
+        runs.add(new PixelRunPair(60L, 10));
+        runs.add(new PixelRunPair(129L, 64));
+        runs.add(new PixelRunPair(200L, 250));
+        runs.add(new PixelRunPair(600L, 40));
+        PixelMask mask = PixelMask.fromRuns(runs);
+        long[] bitmap = new long[10];
+        mask.rasterize(bitmap);
+        BitSet expected = new BitSet();
+        for (PixelRunPair run : runs) {
+            expected.set(
+                    (int) run.getPixelNumber() - 1, (int) run.getPixelNumber() - 1 + run.getRun());
+        }
+        assertEquals(bitmap, Arrays.copyOf(expected.toLongArray(), 10));
+        assertEquals(PixelMask.fromBitmap(bitmap), mask);
+    }
+
+    @Test
+    public void bitmapFull() {
+        long[] bitmap = new long[] {-1L, -1L};
+        PixelMask mask = PixelMask.fromBitmap(bitmap);
+        assertEquals(mask.getRunCount(), 1);
+        assertEquals(mask.getArea(), 128L);
+        assertTrue(PixelMask.fromBitmap(new long[4]).isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void bitmapTooSmall() {
+        PixelMask.fromPolygon(new long[] {1, 10, 100}, 10).rasterize(new long[1]);
+    }
+
+    @Test
+    public void pixelsRoundTrip() {
+        PixelMask mask = PixelMask.fromPolygon(new long[] {13, 16, 46, 43}, 10);
+        byte[] pixels = new byte[100];
+        mask.rasterize(pixels, (byte) 7);
+        assertEquals(pixels[12], 7);
+        assertEquals(pixels[11], 0);
+        assertEquals(pixels[45], 7);
+        assertEquals(pixels[46], 0);
+        assertEquals(PixelMask.fromPixels(pixels), mask);
+    }
+
+    @Test
+    public void setOperations() {
+        PixelMask a = PixelMask.fromPolygon(new long[] {1, 4, 34, 31}, 10);
+        PixelMask b = PixelMask.fromPolygon(new long[] {23, 26, 56, 53}, 10);
+        assertEquals(a.getArea(), 16L);
+        assertEquals(b.getArea(), 16L);
+        assertEquals(a.intersectionArea(b), 4L);
+        assertEquals(a.unionArea(b), 28L);
+        assertEquals(a.iou(b), 4.0 / 28.0, 1e-12);
+        assertEquals(a.intersection(b), PixelMask.fromPolygon(new long[] {23, 24, 34, 33}, 10));
+        assertEquals(a.union(b).getArea(), 28L);
+        assertEquals(b.union(a), a.union(b));
+        assertEquals(a.difference(b).getArea(), 12L);
+        assertEquals(a.difference(b).union(a.intersection(b)), a);
+        assertEquals(a.iou(a), 1.0, 0.0);
+        assertEquals(PixelMask.empty().iou(PixelMask.empty()), 0.0, 0.0);
+        assertEquals(a.union(PixelMask.empty()), a);
+        assertTrue(a.intersection(PixelMask.empty()).isEmpty());
+    }
+
+    @Test
+    public void unionMergesAdjacent() {
+        PixelMask a = PixelMask.fromRuns(Arrays.asList(new PixelRunPair(10L, 5)));
+        PixelMask b = PixelMask.fromRuns(Arrays.asList(new PixelRunPair(15L, 5)));
+        PixelMask union = a.union(b);
+        assertEquals(union.getRunCount(), 1);
+        assertEquals(union.getArea(), 10L);
+        assertEquals(a.intersectionArea(b), 0L);
+        assertEquals(
+                union.hashCode(),
+                PixelMask.fromRuns(Arrays.asList(new PixelRunPair(10L, 10))).hashCode());
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void decodeTruncated() throws KlvParseException {
+        PixelMask.fromBitMaskSeriesBytes(new byte[] {0x03, 0x01, 0x4A});
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void decodePixelNumberTooLong() throws KlvParseException {
+        PixelMask.fromBitMaskSeriesBytes(
+                new byte[] {0x09, 0x07, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x01});
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void badRunIndex() {
+        PixelMask.empty().getRunStart(0);
+    }
+}
@@ -1,5 +1,8 @@
 package org.jmisb.api.klv.st1201;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import org.testng.Assert;
 import org.testng.annotations.*;
 
@@ -559,4 +562,144 @@ public class FpEncoderTest {
         fpEncoder.setFieldLength(2);
         fpEncoder.decode(new byte[] {0x01, 0x02}, 1);
     }
+
+    private static double[] batchValues(double min, double max) {
+        double[] values = new double[101];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = min + (max - min) * i / (values.length - 1);
+        }
+        values[17] = Double.POSITIVE_INFINITY;
+        values[18] = Double.NEGATIVE_INFINITY;
+        values[19] = Double.NaN;
+        return values;
+    }
+
+    @Test
+    public void testBatchMatchesScalar() {
+        double[][] ranges = {{0.0, 100.0}, {-900.0, 19000.0}, {-180.0, 180.0}, {-1e9, -1.0}};
+        for (double[] range : ranges) {
+            double[] values = batchValues(range[0], range[1]);
+            for (int length = 1; length <= 8; ++length) {
+                FpEncoder encoder = new FpEncoder(range[0], range[1], length);
+                ByteBuffer buffer = ByteBuffer.allocate(values.length * length + 3);
+                buffer.position(3);
+                encoder.encode(values, buffer);
+                Assert.assertEquals(buffer.position(), buffer.limit());
+
+                double[] decoded = new double[values.length];
+                buffer.position(3);
+                encoder.decode(buffer, decoded);
+                Assert.assertEquals(buffer.position(), buffer.limit());
+
+                for (int i = 0; i < values.length; ++i) {
+                    byte[] scalar = encoder.encode(values[i]);
+                    byte[] batch = new byte[length];
+                    System.arraycopy(buffer.array(), 3 + i * length, batch, 0, length);
+                    Assert.assertEquals(batch, scalar);
+                    Assert.assertEquals(decoded[i], encoder.decode(scalar));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchEightByteMaximum() {
+        FpEncoder encoder = new FpEncoder(0.0, 16.0, 8);
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        encoder.encode(new double[] {16.0}, buffer);
+        Assert.assertEquals(buffer.array(), encoder.encode(16.0));
+        buffer.flip();
+        double[] decoded = new double[1];
+        encoder.decode(buffer, decoded);
+        Assert.assertEquals(decoded[0], 16.0);
+    }
+
+    @Test
+    public void testBatchSpecialValues() {
+        FpEncoder encoder = new FpEncoder(-10.0, 10.0, 3);
+        ByteBuffer buffer =
+                ByteBuffer.allocate(15)
+                        .put(encoder.encodeSpecial(ValueMappingKind.NegativeInfinity))
+                        .put(encoder.encodeSpecial(ValueMappingKind.NegativeSignalNaN, 3))
+                        .put(encoder.encodeSpecial(ValueMappingKind.UserDefined, 7))
+                        .put(encoder.encodeSpecial(ValueMappingKind.ReservedKind1, 1))
+                        .put(encoder.encodeSpecial(ValueMappingKind.PositiveInfinity));
+        buffer.flip();
+        double[] decoded = new double[5];
+        encoder.decode(buffer, decoded);
+        Assert.assertEquals(decoded[0], Double.NEGATIVE_INFINITY);
+        Assert.assertTrue(Double.isNaN(decoded[1]));
+        Assert.assertTrue(Double.isNaN(decoded[2]));
+        Assert.assertTrue(Double.isNaN(decoded[3]));
+        Assert.assertEquals(decoded[4], Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void testBatchBuffers() {
+        FpEncoder encoder = new FpEncoder(-180.0, 180.0, 4);
+        double[] values = batchValues(-180.0, 180.0);
+
+        // Direct, little endian buffers do not change the encoding
+        DoubleBuffer source = ByteBuffer.allocateDirect(values.length * 8).asDoubleBuffer();
+        source.put(values).flip();
+        ByteBuffer encoded =
+                ByteBuffer.allocateDirect(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        encoder.encode(source, encoded);
+        Assert.assertFalse(source.hasRemaining());
+        Assert.assertFalse(encoded.hasRemaining());
+        Assert.assertEquals(encoded.order(), ByteOrder.LITTLE_ENDIAN);
+        encoded.flip();
+        byte[] first = new byte[4];
+        encoded.duplicate().get(first);
+        Assert.assertEquals(first, encoder.encode(values[0]));
+
+        DoubleBuffer decoded = ByteBuffer.allocateDirect(values.length * 8).asDoubleBuffer();
+        encoder.decode(encoded, decoded);
+        Assert.assertFalse(decoded.hasRemaining());
+        Assert.assertFalse(encoded.hasRemaining());
+        for (int i = 0; i < values.length; ++i) {
+            Assert.assertEquals(decoded.get(i), encoder.decode(encoder.encode(values[i])));
+        }
+
+        // Heap buffers, using part of the array
+        DoubleBuffer heap = DoubleBuffer.allocate(10);
+        heap.position(2);
+        heap.limit(5);
+        encoded.position(4);
+        encoder.decode(encoded, heap);
+        Assert.assertEquals(encoded.position(), 16);
+        Assert.assertEquals(heap.get(2), decoded.get(1));
+        Assert.assertEquals(heap.get(4), decoded.get(3));
+        Assert.assertEquals(heap.array()[5], 0.0);
+    }
+
+    @Test
+    public void testBatchOutOfRange() {
+        FpEncoder encoder = new FpEncoder(-100.0, 100.0, 2);
+        ByteBuffer buffer = ByteBuffer.allocate(6);
+        try {
+            encoder.encode(new double[] {1.0, 2.0, 100.1}, buffer);
+            Assert.fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(buffer.position(), 0);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBatchEncodeBufferTooSmall() {
+        FpEncoder encoder = new FpEncoder(-100.0, 100.0, 2);
+        encoder.encode(new double[] {1.0, 2.0, 3.0}, ByteBuffer.allocate(5));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBatchDecodeBufferTooShort() {
+        FpEncoder encoder = new FpEncoder(-100.0, 100.0, 2);
+        encoder.decode(ByteBuffer.allocate(5), new double[3]);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testBatchBadOffset() {
+        FpEncoder encoder = new FpEncoder(-100.0, 100.0, 2);
+        encoder.encode(new double[3], 2, 2, ByteBuffer.allocate(8));
+    }
 }
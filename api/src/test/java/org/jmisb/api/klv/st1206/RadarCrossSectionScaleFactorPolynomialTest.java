@@ -76,4 +76,18 @@ public class RadarCrossSectionScaleFactorPolynomialTest {
     public void badArrayLength() throws KlvParseException {
         new RadarCrossSectionScaleFactorPolynomial(new byte[] {0x01, 0x02, 0x03});
     }
+
+    @Test
+    public void testFlatValues() throws KlvParseException {
+        RadarCrossSectionScaleFactorPolynomial uut =
+                new RadarCrossSectionScaleFactorPolynomial(bytes);
+        assertEquals(uut.getNumRows(), 1);
+        assertEquals(uut.getNumColumns(), 2);
+        assertEquals(uut.getPolynomialValuesFlat(), new double[] {30.0, 10.0});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void raggedRows() {
+        new RadarCrossSectionScaleFactorPolynomial(new double[][] {{30.0, 10.0}, {1.0}});
+    }
 }
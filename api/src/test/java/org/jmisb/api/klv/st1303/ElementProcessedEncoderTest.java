@@ -291,4 +291,24 @@ public class ElementProcessedEncoderTest {
                     (byte) 0x00
                 });
     }
+
+    @Test
+    public void checkFlatMatchesArrayOfArrays() {
+        ElementProcessedEncoder encoder = new ElementProcessedEncoder(0, 1e6, 3);
+        double[][] data = new double[][] {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}};
+        byte[] flat = encoder.encode(new int[] {2, 3}, new double[] {1.0, 2.0, 3.0, 4.0, 5.0, 6.0});
+        assertEquals(flat, encoder.encode(data));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void checkFlatWrongLength() {
+        ElementProcessedEncoder encoder = new ElementProcessedEncoder(0, 1e6, 3);
+        encoder.encode(new int[] {2, 3}, new double[] {1.0, 2.0});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void checkRagged() {
+        ElementProcessedEncoder encoder = new ElementProcessedEncoder(0, 1e6, 3);
+        encoder.encode(new double[][] {{1.0, 2.0}, {3.0}});
+    }
 }
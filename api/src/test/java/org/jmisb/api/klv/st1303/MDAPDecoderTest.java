@@ -107,22 +107,64 @@ public class MDAPDecoderTest {
                 0);
     }
 
+    @Test
+    public void checkAPA_RunLengthEncoded() throws KlvParseException {
+        MDAPDecoder decoder = new MDAPDecoder();
+        double[][] decoded =
+                decoder.decodeFloatingPoint2D(
+                        new byte[] {
+                            (byte) 0x02,
+                            (byte) 0x01,
+                            (byte) 0x01,
+                            (byte) 0x04,
+                            (byte) 0x05, // APA
+                            (byte) 0x00,
+                            (byte) 0x00,
+                            (byte) 0x00,
+                            (byte) 0x00
+                        },
+                        0);
+        assertEquals(decoded, new double[][] {{0.0}});
+    }
+
+    @Test
+    public void checkAPA_RunLengthEncodedFloat() throws KlvParseException {
+        MDAPDecoder decoder = new MDAPDecoder();
+        double[][] decoded =
+                decoder.decodeFloatingPoint2D(
+                        new byte[] {
+                            (byte) 0x02,
+                            (byte) 0x01,
+                            (byte) 0x03,
+                            (byte) 0x04,
+                            (byte) 0x05, // APA
+                            (byte) 0x3F, // default 1.5f
+                            (byte) 0xC0,
+                            (byte) 0x00,
+                            (byte) 0x00,
+                            (byte) 0xC0, // patch -2.0f
+                            (byte) 0x00,
+                            (byte) 0x00,
+                            (byte) 0x00,
+                            (byte) 0x00, // start
+                            (byte) 0x01,
+                            (byte) 0x01, // size
+                            (byte) 0x02
+                        },
+                        0);
+        assertEquals(decoded, new double[][] {{1.5, -2.0, -2.0}});
+    }
+
     @Test(expectedExceptions = KlvParseException.class)
-    public void checkBadAPA_RunLengthEncoded() throws KlvParseException {
+    public void checkAPA_RunLengthEncodedBadSize() throws KlvParseException {
         MDAPDecoder decoder = new MDAPDecoder();
-        decoder.decodeFloatingPoint2D(
-                new byte[] {
-                    (byte) 0x02,
-                    (byte) 0x01,
-                    (byte) 0x01,
-                    (byte) 0x04,
-                    (byte) 0x05, // APA
-                    (byte) 0x00,
-                    (byte) 0x00,
-                    (byte) 0x00,
-                    (byte) 0x00
-                },
-                0);
+        decoder.decodeFloatingPoint2D(new byte[] {0x02, 0x01, 0x01, 0x02, 0x05, 0x00, 0x01}, 0);
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void checkBadDimensions_ThreeD() throws KlvParseException {
+        MDAPDecoder decoder = new MDAPDecoder();
+        decoder.decodeFloatingPoint2D(new byte[] {0x03, 0x01, 0x01, 0x01, 0x01, 0x01, 0x00}, 0);
     }
 
     @Test(expectedExceptions = KlvParseException.class)
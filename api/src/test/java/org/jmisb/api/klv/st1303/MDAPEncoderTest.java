@@ -0,0 +1,174 @@
+package org.jmisb.api.klv.st1303;
+
+import static org.testng.Assert.*;
+
+import org.jmisb.api.common.KlvParseException;
+import org.testng.annotations.Test;
+
+/** Unit tests for MDAPEncoder. */
+public class MDAPEncoderTest {
+
+    private final MDAPEncoder encoder = new MDAPEncoder();
+
+    @Test
+    public void encodeNaturalDouble() {
+        byte[] bytes = encoder.encodeNatural(new int[] {1, 1}, new double[] {10.0}, 8);
+        assertEquals(
+                bytes,
+                new byte[] {
+                    0x02, 0x01, 0x01, 0x08, 0x01, 0x40, 0x24, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+                });
+    }
+
+    @Test
+    public void encodeNaturalFloat() {
+        byte[] bytes = encoder.encodeNatural(new int[] {2}, new double[] {1.0, -2.0}, 4);
+        assertEquals(
+                bytes,
+                new byte[] {
+                    0x01,
+                    0x02,
+                    0x04,
+                    0x01,
+                    0x3F,
+                    (byte) 0x80,
+                    0x00,
+                    0x00,
+                    (byte) 0xC0,
+                    0x00,
+                    0x00,
+                    0x00
+                });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void encodeNaturalBadElementBytes() {
+        encoder.encodeNatural(new int[] {1}, new double[] {1.0}, 2);
+    }
+
+    @Test
+    public void encodeNaturalUnsigned() {
+        byte[] bytes = encoder.encodeNatural(new int[] {3}, new long[] {1, 0x0203, 0xFFFF}, 2);
+        assertEquals(
+                bytes,
+                new byte[] {
+                    0x01, 0x03, 0x02, 0x01, 0x00, 0x01, 0x02, 0x03, (byte) 0xFF, (byte) 0xFF
+                });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void encodeNaturalUnsignedTooBig() {
+        encoder.encodeNatural(new int[] {1}, new long[] {0x10000}, 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void encodeWrongElementCount() {
+        encoder.encodeNatural(new int[] {2, 2}, new double[] {1.0, 2.0, 3.0}, 8);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void encodeNoDimensions() {
+        encoder.encodeBoolean(new int[] {}, new boolean[] {});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void encodeZeroDimension() {
+        encoder.encodeBoolean(new int[] {2, 0}, new boolean[] {});
+    }
+
+    @Test
+    public void encodeBoolean() {
+        boolean[] data = {true, false, true, true, false, false, false, false, true, true};
+        byte[] bytes = encoder.encodeBoolean(new int[] {2, 5}, data);
+        assertEquals(bytes, new byte[] {0x02, 0x02, 0x05, 0x01, 0x03, (byte) 0xB0, (byte) 0xC0});
+    }
+
+    @Test
+    public void encodeUnsignedInteger() {
+        byte[] bytes = encoder.encodeUnsignedInteger(new int[] {3}, new long[] {1000, 1010, 1255});
+        assertEquals(
+                bytes,
+                new byte[] {0x01, 0x03, 0x01, 0x04, (byte) 0x87, 0x68, 0x00, 0x0A, (byte) 0xFF});
+    }
+
+    @Test
+    public void encodeRunLengthSingleValue() {
+        byte[] bytes = encoder.encodeRunLength(new int[] {2, 3}, new long[6]);
+        assertEquals(bytes, new byte[] {0x02, 0x02, 0x03, 0x01, 0x05, 0x00});
+    }
+
+    @Test
+    public void encodeRunLengthRectangle() {
+        long[] data = {
+            0, 0, 0, 0,
+            0, 7, 7, 0,
+            0, 7, 7, 0
+        };
+        byte[] bytes = encoder.encodeRunLength(new int[] {3, 4}, data);
+        // default 0, then one patch: value 7, start (1, 1), size (2, 2)
+        assertEquals(
+                bytes,
+                new byte[] {0x02, 0x03, 0x04, 0x01, 0x05, 0x00, 0x07, 0x01, 0x01, 0x02, 0x02});
+    }
+
+    @Test
+    public void roundTripRunLength() throws KlvParseException {
+        int[] dimensions = {2, 3, 5};
+        long[] data = {
+            4, 4, 4, 4, 4,
+            4, 300, 300, 4, 9,
+            4, 300, 300, 4, 9,
+            9, 9, 9, 9, 9,
+            4, 4, 4, 4, 4,
+            4, 300, 300, 4, 9
+        };
+        byte[] bytes = encoder.encodeRunLength(dimensions, data);
+        MDAPReader reader = new MDAPReader(bytes, 0);
+        assertEquals(reader.getAlgorithm(), ArrayProcessingAlgorithm.RunLengthEncoding);
+        assertEquals(reader.getElementBytes(), 2);
+        assertEquals(reader.readUnsignedIntegers(), data);
+        assertTrue(bytes.length < data.length * 2);
+    }
+
+    @Test
+    public void roundTripRunLengthDouble() throws KlvParseException {
+        int[] dimensions = {3, 4};
+        double[] data = {
+            -7.25, -7.25, -7.25, -7.25,
+            -7.25, 3.1415926535, 3.1415926535, -7.25,
+            -7.25, 3.1415926535, 3.1415926535, 1.0e300
+        };
+        byte[] bytes = encoder.encodeRunLength(dimensions, data, 8);
+        MDAPReader reader = new MDAPReader(bytes, 0);
+        assertEquals(reader.getAlgorithm(), ArrayProcessingAlgorithm.RunLengthEncoding);
+        assertEquals(reader.getElementBytes(), 8);
+        assertEquals(reader.readDoubles(), data);
+        double[][] rows = new MDAPDecoder().decodeFloatingPoint2D(bytes, 0);
+        assertEquals(rows[1], new double[] {-7.25, 3.1415926535, 3.1415926535, -7.25});
+        assertEquals(rows[2][3], 1.0e300);
+    }
+
+    @Test
+    public void roundTripRunLengthFloat() throws KlvParseException {
+        int[] dimensions = {2, 3};
+        double[] data = {0.5, 0.5, -12.75, 0.5, 0.5, 100.0};
+        byte[] bytes = encoder.encodeRunLength(dimensions, data, 4);
+        MDAPReader reader = new MDAPReader(bytes, 0);
+        assertEquals(reader.getElementBytes(), 4);
+        assertEquals(reader.readDoubles(), data);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void encodeRunLengthDoubleBadSize() {
+        encoder.encodeRunLength(new int[] {1}, new double[] {1.0}, 2);
+    }
+
+    @Test
+    public void roundTripUnsignedIntegerLarge() throws KlvParseException {
+        long[] data = {0xFFFFFFFFFFL, 5L, 0x7FFFFFFFFFFFFFFFL};
+        byte[] bytes = encoder.encodeUnsignedInteger(new int[] {3}, data);
+        MDAPReader reader = new MDAPReader(bytes, 0);
+        assertEquals(reader.getElementBytes(), 8);
+        assertEquals(reader.readUnsignedIntegers(), data);
+    }
+}
@@ -0,0 +1,190 @@
+package org.jmisb.api.klv.st1303;
+
+import static org.testng.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import org.jmisb.api.common.KlvParseException;
+import org.testng.annotations.Test;
+
+/** Unit tests for MDAPReader. */
+public class MDAPReaderTest {
+
+    private final MDAPEncoder encoder = new MDAPEncoder();
+
+    @Test
+    public void readNatural3D() throws KlvParseException {
+        int[] dimensions = {2, 3, 4};
+        double[] data = new double[24];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = i * 0.5 - 3.0;
+        }
+        MDAPReader reader = new MDAPReader(encoder.encodeNatural(dimensions, data, 8), 0);
+        assertEquals(reader.getDimensions(), dimensions);
+        assertEquals(reader.getNumElements(), 24);
+        assertEquals(reader.getRowLength(), 4);
+        assertEquals(reader.getNumRows(), 6);
+        assertEquals(reader.getElementBytes(), 8);
+        assertEquals(reader.getAlgorithm(), ArrayProcessingAlgorithm.NaturalFormat);
+        assertEquals(reader.readDoubles(), data);
+        double[] row = new double[4];
+        reader.readRow(4, row, 0);
+        assertEquals(row, new double[] {5.0, 5.5, 6.0, 6.5});
+    }
+
+    @Test
+    public void readWithOffset() throws KlvParseException {
+        byte[] encoded = encoder.encodeNatural(new int[] {2}, new double[] {1.5, 2.5}, 4);
+        byte[] bytes = new byte[encoded.length + 3];
+        System.arraycopy(encoded, 0, bytes, 3, encoded.length);
+        MDAPReader reader = new MDAPReader(bytes, 3);
+        double[] values = new double[4];
+        reader.readDoubles(values, 1);
+        assertEquals(values, new double[] {0.0, 1.5, 2.5, 0.0});
+    }
+
+    @Test
+    public void readST1201() throws KlvParseException {
+        int[] dimensions = {3, 2, 2};
+        double[] data = {0.0, 1.0, 2.0, 3.0, 10.0, 20.0, 30.0, 40.0, 50.0, 60.0, 70.0, 80.0};
+        ElementProcessedEncoder st1201 = new ElementProcessedEncoder(0.0, 100.0, 2);
+        MDAPReader reader = new MDAPReader(st1201.encode(dimensions, data), 0);
+        assertEquals(reader.getAlgorithm(), ArrayProcessingAlgorithm.ST1201);
+        double[] decoded = reader.readDoubles();
+        for (int i = 0; i < data.length; ++i) {
+            assertEquals(decoded[i], data[i], 0.01);
+        }
+    }
+
+    @Test
+    public void streamRows() throws KlvParseException {
+        int[] dimensions = {3, 2};
+        double[] data = {1.0, 2.0, 3.0, 4.0, 5.0, 6.0};
+        ElementProcessedEncoder st1201 = new ElementProcessedEncoder(0.0, 10.0, 3);
+        MDAPReader reader = new MDAPReader(st1201.encode(dimensions, data), 0);
+        double[] row = new double[2];
+        int r = 0;
+        while (reader.hasNextRow()) {
+            reader.nextRow(row);
+            assertEquals(row[0], data[2 * r], 0.001);
+            assertEquals(row[1], data[2 * r + 1], 0.001);
+            ++r;
+        }
+        assertEquals(r, 3);
+        reader.rewind();
+        assertTrue(reader.hasNextRow());
+        reader.nextRow(row);
+        assertEquals(row[0], 1.0, 0.001);
+    }
+
+    @Test
+    public void readDirectBuffers() throws KlvParseException {
+        byte[] bytes = encoder.encodeUnsignedInteger(new int[] {2, 2}, new long[] {1, 2, 3, 400});
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+        direct.put((byte) 0x7F);
+        direct.put(bytes);
+        direct.put((byte) 0x7F);
+        direct.flip();
+        direct.position(1);
+        direct.limit(1 + bytes.length);
+        MDAPReader reader = new MDAPReader(direct);
+        assertEquals(direct.position(), 1);
+
+        LongBuffer longs = ByteBuffer.allocateDirect(4 * Long.BYTES).asLongBuffer();
+        reader.readUnsignedIntegers(longs);
+        assertEquals(longs.position(), 4);
+        assertEquals(longs.get(3), 400);
+
+        DoubleBuffer doubles = ByteBuffer.allocateDirect(4 * Double.BYTES).asDoubleBuffer();
+        reader.readDoubles(doubles);
+        assertEquals(doubles.get(0), 1.0);
+        assertEquals(doubles.get(3), 400.0);
+    }
+
+    @Test
+    public void readBooleans() throws KlvParseException {
+        boolean[] data = {true, false, true, true, false, false, false, false, true, true};
+        MDAPReader reader = new MDAPReader(encoder.encodeBoolean(new int[] {2, 5}, data), 0);
+        assertEquals(reader.readBooleans(), data);
+        boolean[] row = new boolean[5];
+        reader.readRow(1, row, 0);
+        assertEquals(row, new boolean[] {false, false, false, true, true});
+    }
+
+    @Test
+    public void readUnsignedInteger() throws KlvParseException {
+        long[] data = {1000, 1010, 1255, 1001};
+        MDAPReader reader = new MDAPReader(encoder.encodeUnsignedInteger(new int[] {4}, data), 0);
+        assertEquals(reader.getElementBytes(), 1);
+        assertEquals(reader.readUnsignedIntegers(), data);
+        assertEquals(reader.readDoubles(), new double[] {1000.0, 1010.0, 1255.0, 1001.0});
+    }
+
+    @Test
+    public void readRunLengthOverlapping() throws KlvParseException {
+        // 3 x 4, default 1, patch 5 over rows 0-1 columns 0-2, then patch 8 over row 1 column 2-3
+        byte[] bytes = {
+            0x02, 0x03, 0x04, 0x01, 0x05, 0x01, 0x05, 0x00, 0x00, 0x02, 0x03, 0x08, 0x01, 0x02,
+            0x01, 0x02
+        };
+        MDAPReader reader = new MDAPReader(bytes, 0);
+        long[] expected = {5, 5, 5, 1, 5, 5, 8, 8, 1, 1, 1, 1};
+        assertEquals(reader.readUnsignedIntegers(), expected);
+        long[] row = new long[4];
+        for (int r = 0; r < 3; ++r) {
+            reader.readRow(r, row, 0);
+            for (int c = 0; c < 4; ++c) {
+                assertEquals(row[c], expected[r * 4 + c]);
+            }
+        }
+        boolean[] flags = reader.readBooleans();
+        assertTrue(flags[0]);
+        assertTrue(flags[11]);
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void readRunLengthPatchOutOfBounds() throws KlvParseException {
+        new MDAPReader(new byte[] {0x01, 0x04, 0x01, 0x05, 0x00, 0x01, 0x03, 0x02}, 0);
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void readBooleansAsDoubles() throws KlvParseException {
+        MDAPReader reader =
+                new MDAPReader(encoder.encodeBoolean(new int[] {1}, new boolean[] {true}), 0);
+        reader.readDoubles();
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void readFloatsAsBooleans() throws KlvParseException {
+        MDAPReader reader =
+                new MDAPReader(encoder.encodeNatural(new int[] {1}, new double[] {1.0}, 8), 0);
+        reader.readBooleans();
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void readTruncated() throws KlvParseException {
+        byte[] bytes = encoder.encodeNatural(new int[] {2, 2}, new double[4], 8);
+        new MDAPReader(Arrays.copyOf(bytes, bytes.length - 1), 0);
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void readTooManyDimensions() throws KlvParseException {
+        // BER-OID dimension count of 0x7FFFFFFF
+        new MDAPReader(
+                new byte[] {(byte) 0x87, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F, 0x01}, 0);
+    }
+
+    @Test(expectedExceptions = KlvParseException.class)
+    public void readBadElementBytes() throws KlvParseException {
+        new MDAPReader(new byte[] {0x01, 0x01, 0x09, 0x01, 0, 0, 0, 0, 0, 0, 0, 0, 0}, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void readDestinationTooSmall() throws KlvParseException {
+        MDAPReader reader =
+                new MDAPReader(encoder.encodeNatural(new int[] {3}, new double[3], 8), 0);
+        reader.readDoubles(new double[4], 2);
+    }
+}
@@ -0,0 +1,107 @@
+package org.jmisb.api.video;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class FrameIndexTest {
+    /**
+     * Build the bytes of an index file.
+     *
+     * @param frameCount The frame count to write
+     * @param frames The number of frame records actually written
+     * @param keyLength The key frame byte count to write
+     * @param metadataCount The metadata count to write
+     * @return The file contents
+     * @throws IOException if writing fails
+     */
+    private static byte[] indexBytes(int frameCount, int frames, int keyLength, int metadataCount)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0x4A4D4958);
+            out.writeInt(1);
+            out.writeLong(1000L);
+            out.writeLong(2000L);
+            out.writeInt(1);
+            out.writeInt(90000);
+            out.writeInt(frameCount);
+            for (int i = 0; i < frames; ++i) {
+                out.writeLong(6000L * i);
+                out.writeLong(188L * i);
+            }
+            out.writeInt(keyLength);
+            for (int i = 0; i < Math.max(keyLength, 0); ++i) {
+                out.write(1);
+            }
+            out.writeInt(metadataCount);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static FrameIndex load(byte[] contents) throws IOException {
+        Path path = Files.createTempFile("frameindex", FrameIndex.SIDECAR_EXTENSION);
+        try {
+            Files.write(path, contents);
+            return FrameIndex.load(path);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        FrameIndex index = load(indexBytes(3, 3, 1, 0));
+        Assert.assertEquals(index.getFrameCount(), 3);
+        Assert.assertTrue(index.isKeyFrame(0));
+        Assert.assertFalse(index.isKeyFrame(1));
+        Assert.assertEquals(index.getFramePts(2), 12000.0 / 90000.0, 1e-9);
+        Assert.assertEquals(index.findFrame(0.1), 1);
+        Assert.assertEquals(index.getMetadataPacketCount(), 0);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNegativeFrameCount() throws IOException {
+        load(indexBytes(-1, 0, 0, 0));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testHugeFrameCount() throws IOException {
+        load(indexBytes(Integer.MAX_VALUE, 2, 0, 0));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNegativeKeyLength() throws IOException {
+        load(indexBytes(2, 2, -5, 0));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testHugeMetadataCount() throws IOException {
+        load(indexBytes(2, 2, 1, 1 << 30));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTruncated() throws IOException {
+        byte[] contents = indexBytes(3, 3, 1, 0);
+        byte[] truncated = new byte[contents.length - 10];
+        System.arraycopy(contents, 0, truncated, 0, truncated.length);
+        load(truncated);
+    }
+
+    @Test
+    public void testCorruptSidecarIgnored() throws IOException {
+        Path video = Files.createTempFile("frameindex", ".ts");
+        Path sidecar = FrameIndex.getSidecarPath(video.toString());
+        try {
+            Files.write(sidecar, indexBytes(Integer.MAX_VALUE, 0, 0, 0));
+            Assert.assertNull(FrameIndex.loadSidecar(video.toString()));
+        } finally {
+            Files.deleteIfExists(sidecar);
+            Files.delete(video);
+        }
+    }
+}
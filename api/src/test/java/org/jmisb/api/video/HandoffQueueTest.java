@@ -0,0 +1,151 @@
+package org.jmisb.api.video;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class HandoffQueueTest {
+    @Test
+    public void testDropOldest() {
+        List<Integer> discarded = new ArrayList<>();
+        HandoffQueue<Integer> queue =
+                new HandoffQueue<>(2, BackpressurePolicy.DropOldest, discarded::add);
+        Assert.assertTrue(queue.put(1, () -> false));
+        Assert.assertTrue(queue.put(2, () -> false));
+        Assert.assertTrue(queue.put(3, () -> false));
+        Assert.assertEquals(discarded.size(), 1);
+        Assert.assertEquals(discarded.get(0).intValue(), 1);
+        Assert.assertEquals(queue.getDroppedCount(), 1);
+        Assert.assertEquals(queue.size(), 2);
+        Assert.assertEquals(queue.take(() -> false).intValue(), 2);
+        Assert.assertEquals(queue.take(() -> false).intValue(), 3);
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(queue.size(), 0);
+    }
+
+    @Test
+    public void testDropNewest() {
+        List<Integer> discarded = new ArrayList<>();
+        HandoffQueue<Integer> queue =
+                new HandoffQueue<>(2, BackpressurePolicy.DropNewest, discarded::add);
+        Assert.assertTrue(queue.put(1, () -> false));
+        Assert.assertTrue(queue.put(2, () -> false));
+        Assert.assertFalse(queue.put(3, () -> false));
+        Assert.assertEquals(discarded.size(), 1);
+        Assert.assertEquals(discarded.get(0).intValue(), 3);
+        Assert.assertEquals(queue.getDroppedCount(), 1);
+        Assert.assertEquals(queue.take(() -> false).intValue(), 1);
+        Assert.assertEquals(queue.take(() -> false).intValue(), 2);
+    }
+
+    @Test
+    public void testBlockUntilTaken() throws InterruptedException {
+        HandoffQueue<Integer> queue = new HandoffQueue<>(1, BackpressurePolicy.Block, i -> {});
+        Assert.assertTrue(queue.put(1, () -> false));
+        Thread producer = new Thread(() -> queue.put(2, () -> false));
+        producer.start();
+        Assert.assertEquals(queue.take(() -> false).intValue(), 1);
+        Assert.assertEquals(queue.take(() -> false).intValue(), 2);
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertEquals(queue.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void testTimedPutExpires() {
+        List<Integer> discarded = new ArrayList<>();
+        HandoffQueue<Integer> queue =
+                new HandoffQueue<>(1, BackpressurePolicy.Block, discarded::add);
+        Assert.assertTrue(queue.put(1, 10, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(queue.put(2, 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(discarded.size(), 1);
+        Assert.assertEquals(discarded.get(0).intValue(), 2);
+        Assert.assertEquals(queue.size(), 1);
+    }
+
+    @Test
+    public void testTimedPutUntilTaken() throws InterruptedException {
+        HandoffQueue<Integer> queue = new HandoffQueue<>(1, BackpressurePolicy.Block, i -> {});
+        Assert.assertTrue(queue.put(1, () -> false));
+        AtomicBoolean queued = new AtomicBoolean();
+        Thread producer = new Thread(() -> queued.set(queue.put(2, 5, TimeUnit.SECONDS)));
+        producer.start();
+        Assert.assertEquals(queue.take(() -> false).intValue(), 1);
+        Assert.assertEquals(queue.take(() -> false).intValue(), 2);
+        producer.join(5000);
+        Assert.assertTrue(queued.get());
+    }
+
+    @Test
+    public void testBlockedPutAborted() throws InterruptedException {
+        List<Integer> discarded = new ArrayList<>();
+        HandoffQueue<Integer> queue =
+                new HandoffQueue<>(1, BackpressurePolicy.Block, discarded::add);
+        queue.put(1, () -> false);
+        AtomicBoolean abort = new AtomicBoolean(false);
+        AtomicBoolean result = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> result.set(queue.put(2, abort::get)));
+        producer.start();
+        abort.set(true);
+        queue.wakeAll();
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertFalse(result.get());
+        Assert.assertEquals(discarded.size(), 1);
+        Assert.assertEquals(discarded.get(0).intValue(), 2);
+    }
+
+    @Test
+    public void testBlockedTakeAborted() throws InterruptedException {
+        HandoffQueue<Integer> queue = new HandoffQueue<>(1, BackpressurePolicy.Block, i -> {});
+        AtomicBoolean abort = new AtomicBoolean(false);
+        AtomicBoolean gotNull = new AtomicBoolean(false);
+        Thread consumer = new Thread(() -> gotNull.set(queue.take(abort::get) == null));
+        consumer.start();
+        abort.set(true);
+        queue.wakeAll();
+        consumer.join(5000);
+        Assert.assertFalse(consumer.isAlive());
+        Assert.assertTrue(gotNull.get());
+    }
+
+    @Test
+    public void testClear() {
+        List<Integer> discarded = new ArrayList<>();
+        HandoffQueue<Integer> queue =
+                new HandoffQueue<>(4, BackpressurePolicy.Block, discarded::add);
+        queue.put(1, () -> false);
+        queue.put(2, () -> false);
+        queue.clear();
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(discarded.size(), 2);
+        Assert.assertEquals(queue.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void testOfferAbortedKeepsItem() {
+        List<Integer> discarded = new ArrayList<>();
+        HandoffQueue<Integer> queue =
+                new HandoffQueue<>(1, BackpressurePolicy.Block, discarded::add);
+        Assert.assertTrue(queue.offer(1, () -> false));
+        Assert.assertFalse(queue.offer(2, () -> true));
+        Assert.assertTrue(discarded.isEmpty());
+        Assert.assertEquals(queue.take(() -> false).intValue(), 1);
+        Assert.assertTrue(queue.offer(2, () -> true));
+        Assert.assertEquals(queue.take(() -> false).intValue(), 2);
+    }
+
+    @Test
+    public void testOfferDroppedByPolicy() {
+        List<Integer> discarded = new ArrayList<>();
+        HandoffQueue<Integer> queue =
+                new HandoffQueue<>(1, BackpressurePolicy.DropNewest, discarded::add);
+        Assert.assertTrue(queue.offer(1, () -> true));
+        Assert.assertTrue(queue.offer(2, () -> true));
+        Assert.assertEquals(discarded.size(), 1);
+        Assert.assertEquals(queue.getDroppedCount(), 1);
+    }
+}
@@ -0,0 +1,105 @@
+package org.jmisb.api.video;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class InputStatisticsTest {
+    private static final byte[] UAS_DATALINK_UL = {
+        0x06, 0x0E, 0x2B, 0x34, 0x02, 0x0B, 0x01, 0x01, 0x0E, 0x01, 0x03, 0x01, 0x01, 0x00, 0x00,
+        0x00
+    };
+
+    private HandoffQueue<Integer> video;
+    private HandoffQueue<Integer> metadata;
+
+    @BeforeMethod
+    public void createQueues() {
+        video = new HandoffQueue<>(2, BackpressurePolicy.DropOldest, item -> {});
+        metadata = new HandoffQueue<>(2, BackpressurePolicy.DropNewest, item -> {});
+    }
+
+    @Test
+    public void testCounts() {
+        InputStatistics statistics = new InputStatistics(video, metadata);
+        statistics.videoPacketDemuxed();
+        statistics.videoPacketDemuxed();
+        statistics.videoFrameDecoded(2_000);
+        statistics.videoFrameDelivered();
+        statistics.metadataPacketDemuxed();
+        statistics.metadataPacketParsed(3, 4_000);
+        statistics.metadataFrameDelivered();
+        statistics.metadataFrameDelivered();
+
+        Assert.assertEquals(statistics.getVideoPacketsDemuxed(), 2);
+        Assert.assertEquals(statistics.getVideoFramesDecoded(), 1);
+        Assert.assertEquals(statistics.getVideoFramesDelivered(), 1);
+        Assert.assertEquals(statistics.getMetadataPacketsDemuxed(), 1);
+        Assert.assertEquals(statistics.getMetadataFramesDecoded(), 3);
+        Assert.assertEquals(statistics.getMetadataFramesDelivered(), 2);
+        Assert.assertEquals(statistics.getDecodeLatency().getCount(), 1);
+        Assert.assertEquals(statistics.getDecodeLatencyMeanMicros(), 2.0);
+        Assert.assertEquals(statistics.getParseLatency().getCount(), 1);
+        Assert.assertEquals(statistics.getParseLatencyMaxMicros(), 4.0);
+    }
+
+    @Test
+    public void testQueues() {
+        InputStatistics statistics = new InputStatistics(video, metadata);
+        Assert.assertEquals(statistics.getVideoPacketQueueDepth(), 0);
+        Assert.assertEquals(statistics.getMetadataPacketQueueDepth(), 0);
+        statistics.setPacketQueues(() -> 5, () -> 7);
+        Assert.assertEquals(statistics.getVideoPacketQueueDepth(), 5);
+        Assert.assertEquals(statistics.getMetadataPacketQueueDepth(), 7);
+        statistics.setPacketQueues(null, null);
+        Assert.assertEquals(statistics.getVideoPacketQueueDepth(), 0);
+
+        for (int i = 0; i < 3; ++i) {
+            video.put(i, () -> false);
+            metadata.put(i, () -> false);
+        }
+        Assert.assertEquals(statistics.getDecodedVideoQueueDepth(), 2);
+        Assert.assertEquals(statistics.getDecodedMetadataQueueDepth(), 2);
+        Assert.assertEquals(statistics.getVideoFramesDropped(), 1);
+        Assert.assertEquals(statistics.getMetadataFramesDropped(), 1);
+    }
+
+    @Test
+    public void testParseFailures() {
+        InputStatistics statistics = new InputStatistics(video, metadata);
+        ByteBuffer packet = ByteBuffer.allocate(20);
+        packet.put(UAS_DATALINK_UL).flip();
+        packet.limit(20);
+        statistics.metadataParseFailed(packet, 1_000);
+        statistics.metadataParseFailed(packet, 1_000);
+        statistics.metadataParseFailed(ByteBuffer.wrap(new byte[] {0x06, 0x0E}), 1_000);
+        Assert.assertEquals(packet.position(), 0);
+
+        Map<String, Long> failures = statistics.getParseFailures();
+        Assert.assertEquals(failures.size(), 2);
+        Assert.assertEquals(
+                failures.get("06.0E.2B.34.02.0B.01.01.0E.01.03.01.01.00.00.00").longValue(), 2);
+        Assert.assertEquals(failures.get(InputStatistics.UNKNOWN_KEY).longValue(), 1);
+        Assert.assertEquals(statistics.getParseLatency().getCount(), 3);
+    }
+
+    @Test
+    public void testReset() {
+        InputStatistics statistics = new InputStatistics(video, metadata);
+        for (int i = 0; i < 3; ++i) {
+            video.put(i, () -> false);
+        }
+        statistics.videoPacketDemuxed();
+        statistics.metadataParseFailed(ByteBuffer.allocate(0), 1_000);
+        Assert.assertEquals(statistics.getVideoFramesDropped(), 1);
+
+        statistics.reset();
+        Assert.assertEquals(statistics.getVideoPacketsDemuxed(), 0);
+        Assert.assertEquals(statistics.getVideoFramesDropped(), 0);
+        Assert.assertTrue(statistics.getParseFailures().isEmpty());
+        Assert.assertEquals(statistics.getParseLatency().getCount(), 0);
+        Assert.assertEquals(statistics.getInvalidChecksumCount(), 0);
+    }
+}
@@ -0,0 +1,248 @@
+package org.jmisb.api.video;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jmisb.api.klv.st0601.IUasDatalinkValue;
+import org.jmisb.api.klv.st0601.SensorLatitude;
+import org.jmisb.api.klv.st0601.SensorLongitude;
+import org.jmisb.api.klv.st0601.UasDatalinkMessage;
+import org.jmisb.api.klv.st0601.UasDatalinkTag;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KlvExtractorTest {
+    private static final int KLV_PID = 0x101;
+    private static final int PMT_PID = 0x100;
+
+    private static byte[] message(double latitude) {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.SensorLatitude, new SensorLatitude(latitude));
+        values.put(UasDatalinkTag.SensorLongitude, new SensorLongitude(-71.1284));
+        return new UasDatalinkMessage(values).frameMessage(false);
+    }
+
+    private static double latitude(MetadataFrame frame) {
+        UasDatalinkMessage message = (UasDatalinkMessage) frame.getMisbMessage();
+        return ((SensorLatitude) message.getField(UasDatalinkTag.SensorLatitude)).getDegrees();
+    }
+
+    private static List<MetadataFrame> collect(Stream<MetadataFrame> stream) {
+        try (Stream<MetadataFrame> frames = stream) {
+            return frames.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void checkRawKlv() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(message(10.0));
+        bytes.write(message(20.0));
+        bytes.write(message(30.0));
+        List<MetadataFrame> frames =
+                collect(
+                        KlvExtractor.extractKlv(
+                                Channels.newChannel(
+                                        new ByteArrayInputStream(bytes.toByteArray()))));
+        Assert.assertEquals(frames.size(), 3);
+        Assert.assertEquals(latitude(frames.get(0)), 10.0, 1e-6);
+        Assert.assertEquals(latitude(frames.get(2)), 30.0, 1e-6);
+        Assert.assertTrue(Double.isNaN(frames.get(0).getPts()));
+    }
+
+    @Test
+    public void checkRawKlvTruncated() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(message(10.0));
+        byte[] second = message(20.0);
+        bytes.write(second, 0, second.length - 3);
+        List<MetadataFrame> frames =
+                collect(
+                        KlvExtractor.extractKlv(
+                                Channels.newChannel(
+                                        new ByteArrayInputStream(bytes.toByteArray()))));
+        Assert.assertEquals(frames.size(), 1);
+    }
+
+    @Test
+    public void checkTransportStreamAsynchronous() throws Exception {
+        ByteArrayOutputStream ts = new ByteArrayOutputStream();
+        writePsi(ts);
+        // Large enough to span several transport packets
+        byte[] payload = concat(message(10.0), message(11.0));
+        for (int i = 0; i < 20; ++i) {
+            payload = concat(payload, message(12.0 + i));
+        }
+        writePes(ts, 0xBD, 90000L * 10, payload);
+        writePes(ts, 0xBD, 90000L * 11, message(40.0));
+
+        List<MetadataFrame> frames =
+                collect(
+                        KlvExtractor.extractTransportStream(
+                                Channels.newChannel(new ByteArrayInputStream(ts.toByteArray()))));
+        Assert.assertEquals(frames.size(), 23);
+        Assert.assertEquals(frames.get(0).getPts(), 10.0, 1e-9);
+        Assert.assertEquals(latitude(frames.get(21)), 31.0, 1e-6);
+        Assert.assertEquals(frames.get(22).getPts(), 11.0, 1e-9);
+        Assert.assertEquals(latitude(frames.get(22)), 40.0, 1e-6);
+    }
+
+    @Test
+    public void checkTransportStreamSynchronous() throws Exception {
+        ByteArrayOutputStream ts = new ByteArrayOutputStream();
+        writePsi(ts);
+        writePes(ts, 0xFC, 900, concat(auCell(message(10.0)), auCell(message(20.0))));
+        // Some garbage, which should be skipped while resynchronising
+        ts.write(new byte[] {1, 2, 3});
+        writePes(ts, 0xFC, 1800, auCell(message(30.0)));
+
+        List<MetadataFrame> frames =
+                collect(
+                        KlvExtractor.extractTransportStream(
+                                Channels.newChannel(new ByteArrayInputStream(ts.toByteArray()))));
+        Assert.assertEquals(frames.size(), 3);
+        Assert.assertEquals(frames.get(0).getPts(), 0.01, 1e-9);
+        Assert.assertEquals(latitude(frames.get(1)), 20.0, 1e-6);
+        Assert.assertEquals(frames.get(2).getPts(), 0.02, 1e-9);
+    }
+
+    @Test
+    public void checkTransportStreamWithoutKlv() {
+        byte[] packet = new byte[188];
+        Arrays.fill(packet, (byte) 0xFF);
+        packet[0] = 0x47;
+        packet[1] = 0x1F;
+        packet[2] = (byte) 0xFF;
+        packet[3] = 0x10;
+        List<MetadataFrame> frames =
+                collect(
+                        KlvExtractor.extractTransportStream(
+                                Channels.newChannel(new ByteArrayInputStream(packet))));
+        Assert.assertTrue(frames.isEmpty());
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static byte[] auCell(byte[] klv) {
+        byte[] header = {0x00, 0x01, (byte) 0xDF, (byte) (klv.length >> 8), (byte) klv.length};
+        return concat(header, klv);
+    }
+
+    private static void writePsi(ByteArrayOutputStream ts) {
+        byte[] pat = {
+            0x00,
+            (byte) 0xB0,
+            0x0D,
+            0x00,
+            0x01,
+            (byte) 0xC1,
+            0x00,
+            0x00,
+            0x00,
+            0x01,
+            (byte) (0xE0 | (PMT_PID >> 8)),
+            (byte) PMT_PID,
+            0,
+            0,
+            0,
+            0
+        };
+        writePacket(ts, 0, true, concat(new byte[] {0}, pat));
+        byte[] pmt = {
+            0x02,
+            (byte) 0xB0,
+            0x1D,
+            0x00,
+            0x01,
+            (byte) 0xC1,
+            0x00,
+            0x00,
+            (byte) 0xE1,
+            0x00,
+            (byte) 0xF0,
+            0x00,
+            // Video stream, no descriptors
+            0x1B,
+            (byte) 0xE1,
+            0x02,
+            (byte) 0xF0,
+            0x00,
+            // KLV stream with a registration descriptor
+            0x06,
+            (byte) (0xE0 | (KLV_PID >> 8)),
+            (byte) KLV_PID,
+            (byte) 0xF0,
+            0x06,
+            0x05,
+            0x04,
+            'K',
+            'L',
+            'V',
+            'A',
+            0,
+            0,
+            0,
+            0
+        };
+        writePacket(ts, PMT_PID, true, concat(new byte[] {0}, pmt));
+    }
+
+    private static void writePes(ByteArrayOutputStream ts, int streamId, long pts, byte[] data) {
+        byte[] header = {
+            0x00,
+            0x00,
+            0x01,
+            (byte) streamId,
+            (byte) ((data.length + 8) >> 8),
+            (byte) (data.length + 8),
+            (byte) 0x84,
+            (byte) 0x80,
+            0x05,
+            (byte) (0x21 | ((pts >> 29) & 0x0E)),
+            (byte) (pts >> 22),
+            (byte) (0x01 | ((pts >> 14) & 0xFE)),
+            (byte) (pts >> 7),
+            (byte) (0x01 | ((pts << 1) & 0xFE))
+        };
+        byte[] pes = concat(header, data);
+        int offset = 0;
+        while (offset < pes.length) {
+            int count = Math.min(184, pes.length - offset);
+            writePacket(ts, KLV_PID, offset == 0, Arrays.copyOfRange(pes, offset, offset + count));
+            offset += count;
+        }
+    }
+
+    private static void writePacket(
+            ByteArrayOutputStream ts, int pid, boolean unitStart, byte[] payload) {
+        byte[] packet = new byte[188];
+        packet[0] = 0x47;
+        packet[1] = (byte) ((unitStart ? 0x40 : 0) | (pid >> 8));
+        packet[2] = (byte) pid;
+        int stuffing = 184 - payload.length;
+        if (stuffing == 0) {
+            packet[3] = 0x10;
+            System.arraycopy(payload, 0, packet, 4, payload.length);
+        } else {
+            // Pad the end of the PES with an adaptation field
+            packet[3] = 0x30;
+            packet[4] = (byte) (stuffing - 1);
+            if (stuffing > 1) {
+                packet[5] = 0x00;
+                Arrays.fill(packet, 6, 4 + stuffing, (byte) 0xFF);
+            }
+            System.arraycopy(payload, 0, packet, 4 + stuffing, payload.length);
+        }
+        ts.write(packet, 0, packet.length);
+    }
+}
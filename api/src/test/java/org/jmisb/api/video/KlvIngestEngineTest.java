@@ -0,0 +1,46 @@
+package org.jmisb.api.video;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KlvIngestEngineTest {
+    @Test
+    public void testOpenMissingFile() {
+        try (KlvIngestEngine engine = new KlvIngestEngine(1)) {
+            try {
+                engine.open("no_such_file.ts", frame -> Assert.fail("Unexpected metadata"));
+                Assert.fail("Expected an IOException");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("no_such_file.ts"));
+            }
+            Assert.assertEquals(engine.getStreamCount(), 0);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadMaxPendingPackets() {
+        try (KlvIngestEngine engine = new KlvIngestEngine(1)) {
+            engine.setMaxPendingPackets(0);
+        }
+    }
+
+    @Test
+    public void testSuppliedPoolNotShutdown() {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try (KlvIngestEngine engine = new KlvIngestEngine(pool, Thread::new)) {
+            Assert.assertEquals(engine.getStreamCount(), 0);
+        }
+        Assert.assertFalse(pool.isShutdown());
+        pool.shutdown();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testOpenAfterClose() throws IOException {
+        KlvIngestEngine engine = new KlvIngestEngine(1);
+        engine.close();
+        engine.open("no_such_file.ts", frame -> {});
+    }
+}
@@ -0,0 +1,277 @@
+package org.jmisb.api.video;
+
+import static org.bytedeco.ffmpeg.global.avcodec.AV_PKT_DATA_MPEGTS_STREAM_ID;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_get_side_data;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_unref;
+import static org.bytedeco.ffmpeg.global.avformat.av_read_frame;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_close_input;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_find_stream_info;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_open_input;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.jmisb.api.klv.IMisbMessage;
+import org.jmisb.api.klv.st0601.IUasDatalinkValue;
+import org.jmisb.api.klv.st0601.PrecisionTimeStamp;
+import org.jmisb.api.klv.st0601.UasDatalinkMessage;
+import org.jmisb.api.klv.st0601.UasDatalinkString;
+import org.jmisb.api.klv.st0601.UasDatalinkTag;
+import org.jmisb.core.video.FfmpegUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/** Integration test for {@link KlvRemuxer} */
+@Test(groups = {"integration-tests"})
+public class KlvRemuxerIT {
+    private static final double FRAME_RATE = 15.0;
+    private static final int NUM_FRAMES = 60;
+
+    private static UasDatalinkMessage message(long micros, String missionId) {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(UasDatalinkTag.PrecisionTimeStamp, new PrecisionTimeStamp(micros));
+        values.put(
+                UasDatalinkTag.MissionId,
+                new UasDatalinkString(UasDatalinkString.MISSION_ID, missionId));
+        return new UasDatalinkMessage(values);
+    }
+
+    private static void createFile(String filename, VideoOutputOptions options) throws IOException {
+        BufferedImage image = ImageIO.read(new File("test.jpg"));
+        try (VideoFileOutput output = new VideoFileOutput(options)) {
+            output.open(filename);
+            for (int i = 0; i < NUM_FRAMES; ++i) {
+                double pts = i / FRAME_RATE;
+                output.addVideoFrame(new VideoFrame(image, pts));
+                if (options.hasKlvStream()) {
+                    output.addMetadataFrame(new MetadataFrame(message(i * 1000L, "Original"), pts));
+                }
+            }
+        }
+    }
+
+    private static VideoOutputOptions options(KlvFormat format) {
+        return new VideoOutputOptions(640, 480, 1_500_000, FRAME_RATE, 30, format);
+    }
+
+    private static List<MetadataFrame> metadata(String filename) throws IOException {
+        try (Stream<MetadataFrame> frames = KlvExtractor.extractWithFfmpeg(filename)) {
+            return frames.collect(Collectors.toList());
+        }
+    }
+
+    /** Get the stream ID, timestamps, flags and size of every video packet. */
+    private static List<String> videoPackets(String filename) throws IOException {
+        List<String> packets = new ArrayList<>();
+        AVFormatContext context = new AVFormatContext(null);
+        Assert.assertTrue(avformat_open_input(context, filename, null, null) >= 0);
+        AVPacket packet = av_packet_alloc();
+        try {
+            avformat_find_stream_info(context, (PointerPointer) null);
+            int videoIndex = FfmpegUtils.getVideoStreamIndex(context);
+            int id = context.streams(videoIndex).id();
+            while (av_read_frame(context, packet) >= 0) {
+                if (packet.stream_index() == videoIndex) {
+                    packets.add(
+                            id
+                                    + " "
+                                    + packet.pts()
+                                    + " "
+                                    + packet.dts()
+                                    + " "
+                                    + packet.flags()
+                                    + " "
+                                    + packet.size());
+                }
+                av_packet_unref(packet);
+            }
+        } finally {
+            av_packet_free(packet);
+            avformat_close_input(context);
+        }
+        return packets;
+    }
+
+    /**
+     * Get the PES stream ID of the first KLV packet.
+     *
+     * <p>This is {@code 0xBD} for asynchronous KLV and {@code 0xFC} for synchronous KLV.
+     */
+    private static int klvStreamId(String filename) {
+        AVFormatContext context = new AVFormatContext(null);
+        Assert.assertTrue(avformat_open_input(context, filename, null, null) >= 0);
+        AVPacket packet = av_packet_alloc();
+        try {
+            avformat_find_stream_info(context, (PointerPointer) null);
+            int klvIndex = FfmpegUtils.getDataStreamIndex(context);
+            while (av_read_frame(context, packet) >= 0) {
+                try {
+                    if (packet.stream_index() == klvIndex) {
+                        BytePointer streamId =
+                                av_packet_get_side_data(
+                                        packet, AV_PKT_DATA_MPEGTS_STREAM_ID, (IntPointer) null);
+                        return streamId == null || streamId.isNull() ? -1 : streamId.get() & 0xFF;
+                    }
+                } finally {
+                    av_packet_unref(packet);
+                }
+            }
+            Assert.fail("No KLV packets in " + filename);
+            return -1;
+        } finally {
+            av_packet_free(packet);
+            avformat_close_input(context);
+        }
+    }
+
+    private static String missionId(MetadataFrame frame) {
+        return ((UasDatalinkMessage) frame.getMisbMessage())
+                .getField(UasDatalinkTag.MissionId)
+                .getDisplayableValue();
+    }
+
+    @Test
+    public void testPassthrough() throws IOException {
+        final String inputFile = "testRemuxPassthroughIn.ts";
+        final String outputFile = "testRemuxPassthroughOut.ts";
+        createFile(inputFile, options(KlvFormat.Asynchronous));
+
+        KlvRemuxer remuxer = new KlvRemuxer((messages, pts) -> null);
+        remuxer.remux(inputFile, outputFile);
+        Assert.assertEquals(remuxer.getKlvPacketsModified(), 0);
+
+        Assert.assertEquals(videoPackets(outputFile), videoPackets(inputFile));
+        Assert.assertEquals(klvStreamId(outputFile), 0xBD);
+        List<MetadataFrame> original = metadata(inputFile);
+        List<MetadataFrame> copied = metadata(outputFile);
+        Assert.assertEquals(copied.size(), NUM_FRAMES);
+        for (int i = 0; i < NUM_FRAMES; ++i) {
+            Assert.assertEquals(copied.get(i).getPts(), original.get(i).getPts(), 1e-6);
+            Assert.assertEquals(
+                    copied.get(i).getMisbMessage().frameMessage(false),
+                    original.get(i).getMisbMessage().frameMessage(false));
+        }
+    }
+
+    @Test
+    public void testUnchangedMessagesNotModified() throws IOException {
+        final String inputFile = "testRemuxUnchangedIn.ts";
+        final String outputFile = "testRemuxUnchangedOut.ts";
+        createFile(inputFile, options(KlvFormat.Asynchronous));
+
+        // Hand back the same messages, alternately in the same list and in a copy
+        KlvRemuxer remuxer =
+                new KlvRemuxer(
+                        new IKlvRemuxHandler() {
+                            private int count;
+
+                            @Override
+                            public List<IMisbMessage> onMetadata(
+                                    List<IMisbMessage> messages, double pts) {
+                                return count++ % 2 == 0 ? messages : new ArrayList<>(messages);
+                            }
+                        });
+        remuxer.remux(inputFile, outputFile);
+        Assert.assertEquals(remuxer.getKlvPacketsModified(), 0);
+        Assert.assertEquals(metadata(outputFile).size(), NUM_FRAMES);
+
+        // Replacing a message in the list given is a modification
+        remuxer =
+                new KlvRemuxer(
+                        (messages, pts) -> {
+                            messages.set(0, message(0, "Modified"));
+                            return messages;
+                        });
+        remuxer.remux(inputFile, outputFile);
+        Assert.assertEquals(remuxer.getKlvPacketsModified(), NUM_FRAMES);
+        Assert.assertEquals(missionId(metadata(outputFile).get(0)), "Modified");
+    }
+
+    @Test
+    public void testModifySynchronous() throws IOException {
+        final String inputFile = "testRemuxModifyIn.ts";
+        final String outputFile = "testRemuxModifyOut.ts";
+        createFile(inputFile, options(KlvFormat.Synchronous));
+
+        KlvRemuxer remuxer =
+                new KlvRemuxer(
+                        (messages, pts) -> {
+                            List<IMisbMessage> replacement = new ArrayList<>();
+                            for (IMisbMessage message : messages) {
+                                UasDatalinkMessage local = (UasDatalinkMessage) message;
+                                PrecisionTimeStamp time =
+                                        (PrecisionTimeStamp)
+                                                local.getField(UasDatalinkTag.PrecisionTimeStamp);
+                                if (time.getMicroseconds() % 2000 != 0) {
+                                    // Drop odd messages
+                                    continue;
+                                }
+                                replacement.add(message(time.getMicroseconds(), "Modified"));
+                            }
+                            return replacement;
+                        });
+        remuxer.remux(inputFile, outputFile);
+        Assert.assertEquals(remuxer.getKlvPacketsModified(), NUM_FRAMES);
+
+        Assert.assertEquals(videoPackets(outputFile), videoPackets(inputFile));
+        Assert.assertEquals(klvStreamId(inputFile), 0xFC);
+        Assert.assertEquals(klvStreamId(outputFile), 0xFC);
+        List<MetadataFrame> original = metadata(inputFile);
+        List<MetadataFrame> modified = metadata(outputFile);
+        Assert.assertEquals(modified.size(), NUM_FRAMES / 2);
+        for (int i = 0; i < modified.size(); ++i) {
+            Assert.assertEquals(missionId(modified.get(i)), "Modified");
+            Assert.assertEquals(modified.get(i).getPts(), original.get(2 * i).getPts(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testInsert() throws IOException {
+        final String inputFile = "testRemuxInsertIn.ts";
+        final String outputFile = "testRemuxInsertOut.ts";
+        createFile(inputFile, new VideoOutputOptions(640, 480, 1_500_000, FRAME_RATE, 30, false));
+        Assert.assertTrue(metadata(inputFile).isEmpty());
+
+        KlvRemuxer remuxer =
+                new KlvRemuxer(
+                        new IKlvRemuxHandler() {
+                            @Override
+                            public List<IMisbMessage> onMetadata(
+                                    List<IMisbMessage> messages, double pts) {
+                                return null;
+                            }
+
+                            @Override
+                            public List<IMisbMessage> onVideoPacket(double pts, boolean keyFrame) {
+                                return Collections.singletonList(
+                                        message(Math.round(pts * 1e6), "Inserted"));
+                            }
+                        });
+        remuxer.setAddedKlvFormat(KlvFormat.Synchronous);
+        remuxer.remux(inputFile, outputFile);
+        Assert.assertEquals(remuxer.getKlvPacketsInserted(), NUM_FRAMES);
+
+        Assert.assertEquals(videoPackets(outputFile), videoPackets(inputFile));
+        Assert.assertEquals(klvStreamId(outputFile), 0xFC);
+        List<MetadataFrame> inserted = metadata(outputFile);
+        Assert.assertEquals(inserted.size(), NUM_FRAMES);
+        for (MetadataFrame frame : inserted) {
+            Assert.assertEquals(missionId(frame), "Inserted");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.jmisb.api.video;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getMeanMicros(), 0.0);
+        Assert.assertEquals(histogram.getMaxMicros(), 0.0);
+        Assert.assertEquals(histogram.getPercentileMicros(99), 0);
+        Assert.assertEquals(histogram.getBucketCounts().length, LatencyHistogram.NUM_BUCKETS);
+    }
+
+    @Test
+    public void testBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500); // 0 us
+        histogram.record(1_000); // 1 us
+        histogram.record(3_000); // 3 us
+        histogram.record(1_000_000); // 1000 us
+        long[] counts = histogram.getBucketCounts();
+        Assert.assertEquals(counts[0], 1);
+        Assert.assertEquals(counts[1], 1);
+        Assert.assertEquals(counts[2], 1);
+        Assert.assertEquals(counts[10], 1);
+        Assert.assertEquals(histogram.getCount(), 4);
+        Assert.assertEquals(histogram.getMeanMicros(), 1004.5 / 4, 1e-9);
+        Assert.assertEquals(histogram.getMaxMicros(), 1000.0);
+    }
+
+    @Test
+    public void testLongLatency() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE / 2);
+        Assert.assertEquals(histogram.getBucketCounts()[LatencyHistogram.NUM_BUCKETS - 1], 1);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; ++i) {
+            histogram.record(10_000); // 10 us, in the bucket below 16 us
+        }
+        histogram.record(100_000); // 100 us, in the bucket below 128 us
+        Assert.assertEquals(histogram.getPercentileMicros(0), 16);
+        Assert.assertEquals(histogram.getPercentileMicros(50), 16);
+        Assert.assertEquals(histogram.getPercentileMicros(99), 16);
+        Assert.assertEquals(histogram.getPercentileMicros(100), 128);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadPercentile() {
+        new LatencyHistogram().getPercentileMicros(101);
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000);
+        histogram.reset();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getMaxMicros(), 0.0);
+        Assert.assertEquals(histogram.getBucketCounts()[3], 0);
+    }
+}
@@ -0,0 +1,75 @@
+package org.jmisb.api.video;
+
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24;
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_NV12;
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P;
+
+import java.nio.ByteBuffer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RawVideoFrameTest {
+    private static ByteBuffer[] planes(int... sizes) {
+        ByteBuffer[] planes = new ByteBuffer[sizes.length];
+        for (int i = 0; i < sizes.length; ++i) {
+            planes[i] = ByteBuffer.allocateDirect(sizes[i]);
+        }
+        return planes;
+    }
+
+    @Test
+    public void testWrapYuv420p() {
+        ByteBuffer[] planes = planes(64 * 48, 32 * 24, 32 * 24);
+        planes[0].put(0, (byte) 17);
+        try (RawVideoFrame frame =
+                RawVideoFrame.wrap(
+                        AV_PIX_FMT_YUV420P, 64, 48, planes, new int[] {64, 32, 32}, 1.5)) {
+            Assert.assertEquals(frame.getWidth(), 64);
+            Assert.assertEquals(frame.getHeight(), 48);
+            Assert.assertEquals(frame.getPixelFormatName(), "yuv420p");
+            Assert.assertEquals(frame.getPlaneCount(), 3);
+            Assert.assertEquals(frame.getLineSize(1), 32);
+            Assert.assertEquals(frame.getPts(), 1.5);
+            // Not copied
+            Assert.assertEquals(frame.getPlane(0).get(0), 17);
+            planes[0].put(0, (byte) 18);
+            Assert.assertEquals(frame.getPlane(0).get(0), 18);
+            Assert.assertTrue(frame.getPlane(0).isReadOnly());
+        }
+    }
+
+    @Test
+    public void testWrapFromPosition() {
+        ByteBuffer[] planes = planes(16 + 64 * 48, 64 * 24);
+        planes[0].put(16, (byte) 5);
+        planes[0].position(16);
+        try (RawVideoFrame frame =
+                RawVideoFrame.wrap(AV_PIX_FMT_NV12, 64, 48, planes, new int[] {64, 64}, 0.0)) {
+            Assert.assertEquals(frame.getPlaneCount(), 2);
+            Assert.assertEquals(frame.getPlane(0).get(0), 5);
+            Assert.assertEquals(frame.getPlane(0).remaining(), 64 * 48);
+        }
+        Assert.assertEquals(planes[0].position(), 16);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongPlaneCount() {
+        RawVideoFrame.wrap(AV_PIX_FMT_YUV420P, 64, 48, planes(64 * 48), new int[] {64}, 0.0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPlaneTooSmall() {
+        RawVideoFrame.wrap(AV_PIX_FMT_BGR24, 64, 48, planes(64 * 48), new int[] {64 * 3}, 0.0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testHeapBuffer() {
+        RawVideoFrame.wrap(
+                AV_PIX_FMT_BGR24,
+                64,
+                48,
+                new ByteBuffer[] {ByteBuffer.allocate(64 * 48 * 3)},
+                new int[] {64 * 3},
+                0.0);
+    }
+}
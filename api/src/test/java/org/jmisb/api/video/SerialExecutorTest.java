@@ -0,0 +1,132 @@
+package org.jmisb.api.video;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SerialExecutorTest {
+    @Test
+    public void testOrderingOnSharedPool() throws InterruptedException {
+        final int numStreams = 8;
+        final int numTasks = 1000;
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<List<Integer>> results = new ArrayList<>();
+            List<SerialExecutor> executors = new ArrayList<>();
+            for (int i = 0; i < numStreams; i++) {
+                results.add(Collections.synchronizedList(new ArrayList<>()));
+                executors.add(new SerialExecutor(pool));
+            }
+            CountDownLatch done = new CountDownLatch(numStreams * numTasks);
+            AtomicInteger concurrent = new AtomicInteger();
+            AtomicInteger maxConcurrent = new AtomicInteger();
+            for (int t = 0; t < numTasks; t++) {
+                for (int i = 0; i < numStreams; i++) {
+                    final int value = t;
+                    final List<Integer> result = results.get(i);
+                    final boolean track = i == 0;
+                    executors
+                            .get(i)
+                            .execute(
+                                    () -> {
+                                        if (track) {
+                                            maxConcurrent.accumulateAndGet(
+                                                    concurrent.incrementAndGet(), Math::max);
+                                        }
+                                        result.add(value);
+                                        if (track) {
+                                            concurrent.decrementAndGet();
+                                        }
+                                        done.countDown();
+                                    });
+                }
+            }
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (List<Integer> result : results) {
+                Assert.assertEquals(result.size(), numTasks);
+                for (int t = 0; t < numTasks; t++) {
+                    Assert.assertEquals(result.get(t).intValue(), t);
+                }
+            }
+            Assert.assertEquals(maxConcurrent.get(), 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTaskExceptionDoesNotStall() throws InterruptedException {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            SerialExecutor executor = new SerialExecutor(pool);
+            CountDownLatch done = new CountDownLatch(1);
+            executor.execute(
+                    () -> {
+                        throw new IllegalStateException("expected");
+                    });
+            executor.execute(done::countDown);
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void testRejected() {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        pool.shutdown();
+        SerialExecutor executor = new SerialExecutor(pool);
+        executor.execute(() -> {});
+    }
+
+    @Test
+    public void testRejectedAfterShutdown() throws InterruptedException {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch handled = new CountDownLatch(1);
+        AtomicReference<List<Runnable>> dropped = new AtomicReference<>();
+        SerialExecutor executor =
+                new SerialExecutor(
+                        pool,
+                        tasks -> {
+                            dropped.set(tasks);
+                            handled.countDown();
+                        });
+        Runnable second = () -> {};
+        Runnable third = () -> {};
+        executor.execute(
+                () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        executor.execute(second);
+        executor.execute(third);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+        release.countDown();
+        Assert.assertTrue(handled.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(dropped.get().size(), 2);
+        Assert.assertSame(dropped.get().get(0), second);
+        Assert.assertSame(dropped.get().get(1), third);
+        try {
+            executor.execute(() -> {});
+            Assert.fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+}
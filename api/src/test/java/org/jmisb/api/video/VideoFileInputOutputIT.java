@@ -1,13 +1,70 @@
 package org.jmisb.api.video;
 
+import static org.bytedeco.ffmpeg.global.avcodec.AV_CODEC_FLAG_GLOBAL_HEADER;
+import static org.bytedeco.ffmpeg.global.avcodec.AV_CODEC_ID_MPEG2VIDEO;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_free;
+import static org.bytedeco.ffmpeg.global.avcodec.av_packet_rescale_ts;
+import static org.bytedeco.ffmpeg.global.avcodec.avcodec_alloc_context3;
+import static org.bytedeco.ffmpeg.global.avcodec.avcodec_find_encoder;
+import static org.bytedeco.ffmpeg.global.avcodec.avcodec_free_context;
+import static org.bytedeco.ffmpeg.global.avcodec.avcodec_open2;
+import static org.bytedeco.ffmpeg.global.avcodec.avcodec_parameters_from_context;
+import static org.bytedeco.ffmpeg.global.avcodec.avcodec_receive_packet;
+import static org.bytedeco.ffmpeg.global.avcodec.avcodec_send_frame;
+import static org.bytedeco.ffmpeg.global.avformat.AVFMT_GLOBALHEADER;
+import static org.bytedeco.ffmpeg.global.avformat.AVIO_FLAG_WRITE;
+import static org.bytedeco.ffmpeg.global.avformat.av_interleaved_write_frame;
+import static org.bytedeco.ffmpeg.global.avformat.av_write_trailer;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_alloc_output_context2;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_free_context;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_new_stream;
+import static org.bytedeco.ffmpeg.global.avformat.avformat_write_header;
+import static org.bytedeco.ffmpeg.global.avformat.avio_closep;
+import static org.bytedeco.ffmpeg.global.avformat.avio_open;
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24;
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_NV12;
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_alloc;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_free;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_get_buffer;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_make_writable;
+import static org.bytedeco.ffmpeg.global.avutil.av_make_q;
+
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.imageio.ImageIO;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.bytedeco.ffmpeg.avcodec.AVCodec;
+import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.ffmpeg.avformat.AVIOContext;
+import org.bytedeco.ffmpeg.avformat.AVStream;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.avutil.AVFrame;
+import org.bytedeco.javacpp.BytePointer;
 import org.jmisb.api.klv.IMisbMessage;
 import org.jmisb.api.klv.st0102.*;
 import org.jmisb.api.klv.st0102.localset.CcMethod;
@@ -144,23 +201,599 @@ public class VideoFileInputOutputIT {
         }
     }
 
+    @Test
+    public void testIngestEngine() throws InterruptedException {
+        final double frameRate = 15.0;
+        final int numFrames = 60;
+        final String filename = "testIngestEngine.ts";
+
+        createFile(filename, frameRate, numFrames);
+
+        MetadataCounter counter1 = new MetadataCounter();
+        MetadataCounter counter2 = new MetadataCounter();
+        try (KlvIngestEngine engine = new KlvIngestEngine(2)) {
+            IngestStream stream1 = engine.open(filename, counter1);
+            IngestStream stream2 = engine.open(filename, counter2);
+            Assert.assertEquals(engine.getStreamCount(), 2);
+            Assert.assertTrue(stream1.awaitEnd(10, TimeUnit.SECONDS));
+            Assert.assertTrue(stream2.awaitEnd(10, TimeUnit.SECONDS));
+        } catch (IOException e) {
+            logger.error("Failed to read file", e);
+            Assert.fail("Failed to read file");
+        }
+
+        // Each message is delivered exactly once, in order, per stream
+        Assert.assertEquals(counter1.getCount(), numFrames);
+        Assert.assertEquals(counter2.getCount(), numFrames);
+        Assert.assertTrue(counter1.isOrdered());
+        Assert.assertTrue(counter2.isOrdered());
+    }
+
+    @Test
+    public void testPooledFrames() throws InterruptedException {
+        final double frameRate = 15.0;
+        final int numFrames = 120;
+        final String filename = "testPooledFrames.ts";
+
+        createFile(filename, frameRate, numFrames);
+
+        VideoFileInputOptions options = new VideoFileInputOptions();
+        options.setFramePooling(true);
+        Set<BufferedImage> images = Collections.newSetFromMap(new IdentityHashMap<>());
+        AtomicInteger frames = new AtomicInteger();
+        CountDownLatch endOfFile = new CountDownLatch(1);
+        try (IVideoFileInput input = new VideoFileInput(options)) {
+            input.addFrameListener(
+                    frame -> {
+                        try (VideoFrame pooled = frame) {
+                            Assert.assertTrue(pooled.isPooled());
+                            images.add(pooled.getImage());
+                            frames.incrementAndGet();
+                        }
+                    });
+            input.addFileEventListener(endOfFile::countDown);
+            input.setPlaybackSpeed(Double.MAX_VALUE);
+            input.open(filename);
+            Assert.assertTrue(endOfFile.await(10, TimeUnit.SECONDS));
+        } catch (IOException e) {
+            logger.error("Failed to read file", e);
+            Assert.fail("Failed to read file");
+        }
+
+        // Every frame was delivered, and image buffers were reused rather than reallocated
+        Assert.assertEquals(frames.get(), numFrames);
+        Assert.assertTrue(images.size() < numFrames);
+    }
+
+    @Test
+    public void testInputStatistics() throws Exception {
+        final double frameRate = 15.0;
+        final int numFrames = 60;
+        final String filename = "testInputStatistics.ts";
+
+        createFile(filename, frameRate, numFrames);
+
+        VideoFileInputOptions options = new VideoFileInputOptions();
+        options.setStatisticsMBean(true);
+        ObjectName name =
+                new ObjectName("org.jmisb:type=VideoInput,name=" + ObjectName.quote(filename));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        CountDownLatch endOfFile = new CountDownLatch(1);
+        try (IVideoFileInput input = new VideoFileInput(options)) {
+            input.addFrameListener(VideoFrame::close);
+            input.addMetadataListener(frame -> {});
+            input.addFileEventListener(endOfFile::countDown);
+            input.setPlaybackSpeed(Double.MAX_VALUE);
+            input.open(filename);
+            Assert.assertTrue(endOfFile.await(10, TimeUnit.SECONDS));
+
+            InputStatistics statistics = input.getStatistics();
+            Assert.assertEquals(statistics.getVideoPacketsDemuxed(), numFrames);
+            Assert.assertEquals(statistics.getVideoFramesDecoded(), numFrames);
+            Assert.assertEquals(statistics.getVideoFramesDelivered(), numFrames);
+            Assert.assertEquals(statistics.getMetadataPacketsDemuxed(), numFrames);
+            Assert.assertEquals(statistics.getMetadataFramesDecoded(), numFrames);
+            Assert.assertEquals(statistics.getMetadataFramesDelivered(), numFrames);
+            Assert.assertEquals(statistics.getVideoFramesDropped(), 0);
+            Assert.assertEquals(statistics.getDecodedVideoQueueDepth(), 0);
+            Assert.assertEquals(statistics.getDecodeLatency().getCount(), numFrames);
+            Assert.assertTrue(statistics.getParseLatencyMaxMicros() > 0);
+            Assert.assertTrue(statistics.getParseFailures().isEmpty());
+            Assert.assertEquals(statistics.getInvalidChecksumCount(), 0);
+
+            Assert.assertTrue(server.isRegistered(name));
+            Assert.assertEquals(
+                    server.getAttribute(name, "VideoFramesDelivered"), (long) numFrames);
+        }
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testInputStatisticsWithFullQueue() throws Exception {
+        final double frameRate = 15.0;
+        final int numFrames = 300;
+        final String filename = "testInputStatisticsFullQueue.ts";
+
+        createFile(filename, frameRate, numFrames);
+
+        VideoFileInputOptions options =
+                new VideoFileInputOptions(false, true, true, true, BackpressurePolicy.Block, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch endOfFile = new CountDownLatch(1);
+        try (IVideoFileInput input = new VideoFileInput(options)) {
+            input.addFrameListener(
+                    frame -> {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        frame.close();
+                    });
+            input.addMetadataListener(frame -> {});
+            input.addFileEventListener(endOfFile::countDown);
+            input.setPlaybackSpeed(Double.MAX_VALUE);
+            input.open(filename);
+            input.play();
+
+            // Interrupt the demuxer while it waits on the full packet queue
+            FileDemuxer demuxer = ((VideoFileInput) input).getDemuxer();
+            for (int i = 0; i < 5; ++i) {
+                Thread.sleep(100);
+                demuxer.pause();
+                Thread.sleep(50);
+                demuxer.play();
+            }
+            release.countDown();
+            Assert.assertTrue(endOfFile.await(20, TimeUnit.SECONDS));
+
+            InputStatistics statistics = input.getStatistics();
+            Assert.assertEquals(statistics.getVideoPacketsDemuxed(), numFrames);
+            Assert.assertEquals(statistics.getVideoFramesDelivered(), numFrames);
+            Assert.assertEquals(statistics.getMetadataPacketsDemuxed(), numFrames);
+        }
+        Files.delete(new File(filename).toPath());
+    }
+
+    @Test
+    public void testSeekToFrame() throws IOException, InterruptedException {
+        final double frameRate = 15.0;
+        final int numFrames = 120;
+        final String filename = "testSeekToFrame.ts";
+
+        createFile(filename, frameRate, numFrames);
+        Files.deleteIfExists(FrameIndex.getSidecarPath(filename));
+
+        VideoFileInputOptions options =
+                new VideoFileInputOptions(false, true, true, true, BackpressurePolicy.Block, true);
+        try (IVideoFileInput input = new VideoFileInput(options)) {
+            BlockingQueue<Double> delivered = new LinkedBlockingQueue<>();
+            input.addFrameListener(frame -> delivered.add(frame.getPts()));
+            input.open(filename);
+
+            FrameIndex index = input.getFrameIndex();
+            Assert.assertEquals(input.getNumFrames(), numFrames);
+            Assert.assertEquals(index.getFrameCount(), numFrames);
+            Assert.assertTrue(index.isKeyFrame(0));
+            Assert.assertEquals(index.getMetadataPacketCount(), numFrames);
+            Assert.assertTrue(Files.exists(FrameIndex.getSidecarPath(filename)));
+
+            // Frames in the middle of a GOP are delivered exactly, not from the key frame
+            for (int frame : new int[] {47, 3, 100, 31}) {
+                Assert.assertTrue(index.findKeyFrame(frame) <= frame);
+                delivered.clear();
+                input.seekToFrame(frame);
+                Double pts = delivered.poll(5, TimeUnit.SECONDS);
+                Assert.assertNotNull(pts);
+                Assert.assertEquals(pts, index.getFramePts(frame), 1e-6);
+            }
+
+            // Seeking by time lands on the frame displayed at that time
+            double time = index.getFramePts(64) + 0.5 / frameRate;
+            Assert.assertEquals(index.findFrame(time), 64);
+            delivered.clear();
+            input.seek(time);
+            Double pts = delivered.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(pts);
+            Assert.assertEquals(pts, index.getFramePts(64), 1e-6);
+        }
+
+        // The cached index is reused when the file is opened again
+        FrameIndex cached = FrameIndex.loadSidecar(filename);
+        Assert.assertNotNull(cached);
+        FrameIndex rebuilt = FrameIndex.build(filename);
+        Assert.assertEquals(cached.getFrameCount(), rebuilt.getFrameCount());
+        for (int i = 0; i < rebuilt.getFrameCount(); ++i) {
+            Assert.assertEquals(cached.getFramePts(i), rebuilt.getFramePts(i));
+            Assert.assertEquals(cached.getFramePosition(i), rebuilt.getFramePosition(i));
+            Assert.assertEquals(cached.isKeyFrame(i), rebuilt.isKeyFrame(i));
+        }
+        Files.delete(FrameIndex.getSidecarPath(filename));
+    }
+
+    @Test
+    public void testSeekToFrameWithBFrames() throws IOException, InterruptedException {
+        final double frameRate = 15.0;
+        final int numFrames = 90;
+        final String filename = "testSeekToFrameWithBFrames.ts";
+
+        createFileWithBFrames(filename, frameRate, numFrames);
+
+        VideoFileInputOptions options =
+                new VideoFileInputOptions(false, true, true, true, BackpressurePolicy.Block, false);
+        try (IVideoFileInput input = new VideoFileInput(options)) {
+            BlockingQueue<Double> delivered = new LinkedBlockingQueue<>();
+            input.addFrameListener(frame -> delivered.add(frame.getPts()));
+            input.open(filename);
+
+            FrameIndex index = input.getFrameIndex();
+            Assert.assertEquals(index.getFrameCount(), numFrames);
+
+            // Decode order differs from presentation order
+            boolean reordered = false;
+            for (int i = 1; i < numFrames; ++i) {
+                reordered |= index.getFramePosition(i) < index.getFramePosition(i - 1);
+            }
+            Assert.assertTrue(reordered);
+
+            for (int frame = 0; frame < numFrames; frame += 7) {
+                delivered.clear();
+                input.seekToFrame(frame);
+                Double pts = delivered.poll(5, TimeUnit.SECONDS);
+                Assert.assertNotNull(pts);
+                Assert.assertEquals(pts, index.getFramePts(frame), 1e-6);
+            }
+        }
+        Files.delete(new File(filename).toPath());
+    }
+
+    @Test
+    public void testExtractMetadata() throws IOException {
+        final double frameRate = 15.0;
+        final int numFrames = 60;
+        final String filename = "testExtractMetadata.ts";
+        final String klvFilename = "testExtractMetadata.klv";
+
+        createFile(filename, frameRate, numFrames);
+
+        List<MetadataFrame> fromJava;
+        try (Stream<MetadataFrame> frames = KlvExtractor.extract(filename)) {
+            fromJava = frames.collect(Collectors.toList());
+        }
+        List<MetadataFrame> fromFfmpeg;
+        try (Stream<MetadataFrame> frames = KlvExtractor.extractWithFfmpeg(filename)) {
+            fromFfmpeg = frames.collect(Collectors.toList());
+        }
+
+        Assert.assertEquals(fromJava.size(), numFrames);
+        Assert.assertEquals(fromFfmpeg.size(), numFrames);
+        for (int i = 0; i < numFrames; ++i) {
+            Assert.assertEquals(fromJava.get(i).getPts(), fromFfmpeg.get(i).getPts(), 1e-6);
+            Assert.assertEquals(
+                    fromJava.get(i).getMisbMessage().frameMessage(false),
+                    fromFfmpeg.get(i).getMisbMessage().frameMessage(false));
+        }
+
+        // Dump as raw KLV, and read it back
+        try (OutputStream out = new FileOutputStream(klvFilename)) {
+            for (MetadataFrame frame : fromJava) {
+                out.write(frame.getMisbMessage().frameMessage(false));
+            }
+        }
+        try (Stream<MetadataFrame> frames = KlvExtractor.extract(klvFilename)) {
+            Assert.assertEquals(frames.count(), numFrames);
+        }
+        new File(klvFilename).delete();
+    }
+
+    @Test
+    public void testPipelined() throws IOException {
+        final double frameRate = 15.0;
+        final int numFrames = 90;
+        final String filename = "testPipelined.ts";
+
+        VideoOutputOptions options = createOptions(frameRate);
+        options.setPipelineDepth(4);
+        options.setEncoderThreads(0);
+        options.setSliceThreading(true);
+        createFile(filename, options, numFrames);
+        checkFileDuration(filename, frameRate, numFrames);
+
+        try (Stream<MetadataFrame> frames = KlvExtractor.extract(filename)) {
+            List<MetadataFrame> metadata = frames.collect(Collectors.toList());
+            Assert.assertEquals(metadata.size(), numFrames);
+            for (int i = 0; i < numFrames; ++i) {
+                Assert.assertEquals(metadata.get(i).getPts(), i / frameRate, 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testRawFrameOutput() throws IOException, InterruptedException {
+        final double frameRate = 15.0;
+        final int numFrames = 30;
+        final int width = 640;
+        final int height = 480;
+        final int luma = 100;
+
+        // YUV420P, as used by the encoder
+        ByteBuffer[] yuv = {
+            ByteBuffer.allocateDirect(width * height),
+            ByteBuffer.allocateDirect(width * height / 4),
+            ByteBuffer.allocateDirect(width * height / 4)
+        };
+        fill(yuv[0], luma);
+        fill(yuv[1], 128);
+        fill(yuv[2], 128);
+        int[] yuvLineSizes = {width, width / 2, width / 2};
+        writeRawFrames("testRawOutputYuv.ts", AV_PIX_FMT_YUV420P, yuv, yuvLineSizes, 0);
+        writeRawFrames("testRawOutputYuvPipelined.ts", AV_PIX_FMT_YUV420P, yuv, yuvLineSizes, 4);
+
+        // NV12, converted
+        ByteBuffer[] nv12 = {
+            ByteBuffer.allocateDirect(width * height), ByteBuffer.allocateDirect(width * height / 2)
+        };
+        fill(nv12[0], luma);
+        fill(nv12[1], 128);
+        writeRawFrames("testRawOutputNv12.ts", AV_PIX_FMT_NV12, nv12, new int[] {width, width}, 0);
+
+        // Packed BGR24 grey, converted (to limited range luma 16 + 98 * 219 / 255)
+        ByteBuffer[] bgr = {ByteBuffer.allocateDirect(width * height * 3)};
+        fill(bgr[0], 98);
+        writeRawFrames("testRawOutputBgr.ts", AV_PIX_FMT_BGR24, bgr, new int[] {width * 3}, 4);
+
+        for (String filename :
+                new String[] {
+                    "testRawOutputYuv.ts",
+                    "testRawOutputYuvPipelined.ts",
+                    "testRawOutputNv12.ts",
+                    "testRawOutputBgr.ts"
+                }) {
+            checkFileDuration(filename, frameRate, numFrames);
+            Assert.assertEquals(firstLuma(filename), luma, 3, filename);
+        }
+    }
+
+    @Test
+    public void testOutputClosesFrames() throws IOException {
+        final double frameRate = 15.0;
+        final int numFrames = 30;
+
+        for (int depth : new int[] {0, 4}) {
+            String filename = "testOutputClosesFrames" + depth + ".ts";
+            VideoFramePool pool = new VideoFramePool(8);
+            VideoOutputOptions options = createOptions(frameRate);
+            options.setPipelineDepth(depth);
+            try (IVideoFileOutput output = new VideoFileOutput(options)) {
+                output.open(filename);
+                for (int i = 0; i < numFrames; ++i) {
+                    BufferedImage image = pool.acquire(640, 480);
+                    output.addVideoFrame(new VideoFrame(image, i / frameRate, pool));
+                    if (depth == 0) {
+                        // Converted and closed before returning
+                        Assert.assertEquals(pool.getAvailableCount(), 1);
+                    }
+                }
+            }
+
+            // Every frame was closed, so its image was returned to the pool for reuse
+            Assert.assertEquals(pool.getAvailableCount(), pool.getAllocatedCount());
+            Assert.assertTrue(pool.getAllocatedCount() <= depth + 2);
+            checkFileDuration(filename, frameRate, numFrames);
+            Files.delete(new File(filename).toPath());
+        }
+    }
+
+    private void writeRawFrames(
+            String filename, int pixelFormat, ByteBuffer[] planes, int[] lineSizes, int depth)
+            throws IOException {
+        VideoOutputOptions options = createOptions(15.0);
+        options.setPipelineDepth(depth);
+        try (IVideoFileOutput output = new VideoFileOutput(options)) {
+            output.open(filename);
+            for (int i = 0; i < 30; ++i) {
+                // The output closes the frame
+                output.addRawVideoFrame(
+                        RawVideoFrame.wrap(pixelFormat, 640, 480, planes, lineSizes, i / 15.0));
+            }
+        }
+    }
+
+    private static void fill(ByteBuffer buffer, int value) {
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) value);
+        }
+        buffer.flip();
+    }
+
+    /** Decode the first frame of a file, and get the luma value at its centre. */
+    private int firstLuma(String filename) throws InterruptedException {
+        AtomicInteger value = new AtomicInteger(-1);
+        CountDownLatch received = new CountDownLatch(1);
+        VideoFileInputOptions options = new VideoFileInputOptions();
+        options.setRawVideo(true);
+        try (IVideoFileInput input = new VideoFileInput(options)) {
+            input.addRawFrameListener(
+                    frame -> {
+                        try (RawVideoFrame raw = frame) {
+                            if (received.getCount() > 0) {
+                                int centre =
+                                        raw.getLineSize(0) * (raw.getHeight() / 2)
+                                                + raw.getWidth() / 2;
+                                value.set(raw.getPlane(0).get(centre) & 0xFF);
+                                received.countDown();
+                            }
+                        }
+                    });
+            input.open(filename);
+            Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        } catch (IOException e) {
+            logger.error("Failed to read file", e);
+            Assert.fail("Failed to read file");
+        }
+        return value.get();
+    }
+
+    @Test
+    public void testRawFrames() throws InterruptedException {
+        final double frameRate = 15.0;
+        final int numFrames = 30;
+        final String filename = "testRawFrames.ts";
+
+        createFile(filename, frameRate, numFrames);
+
+        // Native format (yuv420p for the files we write), straight from the decoder
+        VideoFileInputOptions options = new VideoFileInputOptions();
+        options.setRawVideo(true);
+        checkRawFrames(filename, options, numFrames, "yuv420p", 640, 480, 3);
+
+        // Converted and scaled
+        options.setRawPixelFormat("gray");
+        options.setOutputSize(320, 240);
+        checkRawFrames(filename, options, numFrames, "gray", 320, 240, 1);
+    }
+
+    private void checkRawFrames(
+            String filename,
+            VideoFileInputOptions options,
+            int numFrames,
+            String pixelFormat,
+            int width,
+            int height,
+            int planes)
+            throws InterruptedException {
+        AtomicInteger frames = new AtomicInteger();
+        AtomicInteger videoFrames = new AtomicInteger();
+        CountDownLatch endOfFile = new CountDownLatch(1);
+        try (IVideoFileInput input = new VideoFileInput(options)) {
+            input.addRawFrameListener(
+                    frame -> {
+                        try (RawVideoFrame raw = frame) {
+                            Assert.assertEquals(raw.getPixelFormatName(), pixelFormat);
+                            Assert.assertEquals(raw.getWidth(), width);
+                            Assert.assertEquals(raw.getHeight(), height);
+                            Assert.assertEquals(raw.getPlaneCount(), planes);
+                            Assert.assertTrue(raw.getLineSize(0) >= width);
+                            Assert.assertTrue(raw.getPlane(0).isDirect());
+                            Assert.assertTrue(
+                                    raw.getPlane(0).remaining() >= raw.getLineSize(0) * height);
+                            frames.incrementAndGet();
+                        }
+                    });
+            input.addFrameListener(frame -> videoFrames.incrementAndGet());
+            input.addFileEventListener(endOfFile::countDown);
+            input.setPlaybackSpeed(Double.MAX_VALUE);
+            input.open(filename);
+            Assert.assertTrue(endOfFile.await(10, TimeUnit.SECONDS));
+        } catch (IOException e) {
+            logger.error("Failed to read file", e);
+            Assert.fail("Failed to read file");
+        }
+
+        Assert.assertEquals(frames.get(), numFrames);
+        Assert.assertEquals(videoFrames.get(), 0);
+    }
+
     private void createFile(String filename, double frameRate, int numFrames) {
+        createFile(filename, createOptions(frameRate), numFrames);
+    }
+
+    /**
+     * Create a video only file with B-frames.
+     *
+     * <p>{@link VideoFileOutput} disables B-frames, so this encodes MPEG-2 video directly.
+     */
+    private void createFileWithBFrames(String filename, double frameRate, int numFrames)
+            throws IOException {
+        final int width = 320;
+        final int height = 240;
+        AVFormatContext formatContext = new AVFormatContext(null);
+        Assert.assertTrue(
+                avformat_alloc_output_context2(formatContext, null, "mpegts", filename) >= 0);
+        AVCodec codec = avcodec_find_encoder(AV_CODEC_ID_MPEG2VIDEO);
+        AVStream stream = avformat_new_stream(formatContext, null);
+        AVCodecContext codecContext = avcodec_alloc_context3(codec);
+        codecContext.width(width);
+        codecContext.height(height);
+        codecContext.pix_fmt(AV_PIX_FMT_YUV420P);
+        codecContext.time_base(av_make_q(1, (int) frameRate));
+        codecContext.framerate(av_make_q((int) frameRate, 1));
+        codecContext.gop_size(12);
+        codecContext.max_b_frames(2);
+        codecContext.bit_rate(1_000_000);
+        if ((formatContext.oformat().flags() & AVFMT_GLOBALHEADER) != 0) {
+            codecContext.flags(codecContext.flags() | AV_CODEC_FLAG_GLOBAL_HEADER);
+        }
+        Assert.assertTrue(avcodec_open2(codecContext, codec, (AVDictionary) null) >= 0);
+        avcodec_parameters_from_context(stream.codecpar(), codecContext);
+        stream.time_base(codecContext.time_base());
+
+        AVIOContext pb = new AVIOContext(null);
+        Assert.assertTrue(avio_open(pb, filename, AVIO_FLAG_WRITE) >= 0);
+        formatContext.pb(pb);
+        Assert.assertTrue(avformat_write_header(formatContext, (AVDictionary) null) >= 0);
+
+        AVFrame frame = av_frame_alloc();
+        frame.format(AV_PIX_FMT_YUV420P);
+        frame.width(width);
+        frame.height(height);
+        av_frame_get_buffer(frame, 32);
+        AVPacket packet = av_packet_alloc();
+        for (int i = 0; i < numFrames; ++i) {
+            av_frame_make_writable(frame);
+            for (int plane = 0; plane < 3; ++plane) {
+                int planeHeight = plane == 0 ? height : height / 2;
+                BytePointer data = frame.data(plane);
+                int lineSize = frame.linesize(plane);
+                for (int y = 0; y < planeHeight; ++y) {
+                    for (int x = 0; x < lineSize; ++x) {
+                        data.put(
+                                (long) y * lineSize + x, (byte) (plane == 0 ? x + y + 3 * i : 128));
+                    }
+                }
+            }
+            frame.pts(i);
+            avcodec_send_frame(codecContext, frame);
+            writePackets(formatContext, codecContext, stream, packet);
+        }
+        avcodec_send_frame(codecContext, null);
+        writePackets(formatContext, codecContext, stream, packet);
+        av_write_trailer(formatContext);
+
+        av_packet_free(packet);
+        av_frame_free(frame);
+        avcodec_free_context(codecContext);
+        avio_closep(formatContext.pb());
+        avformat_free_context(formatContext);
+    }
+
+    private static void writePackets(
+            AVFormatContext formatContext,
+            AVCodecContext codecContext,
+            AVStream stream,
+            AVPacket packet) {
+        while (avcodec_receive_packet(codecContext, packet) >= 0) {
+            av_packet_rescale_ts(packet, codecContext.time_base(), stream.time_base());
+            packet.stream_index(stream.index());
+            av_interleaved_write_frame(formatContext, packet);
+        }
+    }
+
+    private VideoOutputOptions createOptions(double frameRate) {
         final int width = 640;
         final int height = 480;
         final int bitRate = 500_000;
         final int gopSize = 30;
-        final boolean hasKlv = true;
-        final double frameDuration = 1.0 / frameRate;
+        return new VideoOutputOptions(
+                width, height, bitRate, frameRate, gopSize, KlvFormat.Synchronous);
+    }
 
-        try (IVideoFileOutput output =
-                new VideoFileOutput(
-                        new VideoOutputOptions(
-                                width,
-                                height,
-                                bitRate,
-                                frameRate,
-                                gopSize,
-                                KlvFormat.Synchronous))) {
+    private void createFile(String filename, VideoOutputOptions options, int numFrames) {
+        final int width = options.getWidth();
+        final int height = options.getHeight();
+        final double frameDuration = 1.0 / options.getFrameRate();
+
+        try (IVideoFileOutput output = new VideoFileOutput(options)) {
             output.open(filename);
 
             // Write some frames
@@ -283,16 +916,26 @@ public class VideoFileInputOutputIT {
     }
 
     private static class MetadataCounter implements IMetadataListener {
-        private int count = 0;
+        private volatile int count = 0;
+        private volatile double lastPts = Double.NEGATIVE_INFINITY;
+        private volatile boolean ordered = true;
 
         @Override
         public void onMetadataReceived(MetadataFrame metadataFrame) {
+            if (metadataFrame.getPts() < lastPts) {
+                ordered = false;
+            }
+            lastPts = metadataFrame.getPts();
             count++;
         }
 
         int getCount() {
             return count;
         }
+
+        boolean isOrdered() {
+            return ordered;
+        }
     }
 
     private class MetadataListener implements IMetadataListener {
@@ -0,0 +1,52 @@
+package org.jmisb.api.video;
+
+import java.awt.image.BufferedImage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class VideoFramePoolTest {
+    @Test
+    public void testReuse() {
+        VideoFramePool pool = new VideoFramePool(2);
+        BufferedImage image1 = pool.acquire(64, 48);
+        Assert.assertEquals(image1.getType(), BufferedImage.TYPE_3BYTE_BGR);
+        Assert.assertEquals(image1.getWidth(), 64);
+        Assert.assertEquals(image1.getHeight(), 48);
+        BufferedImage image2 = pool.acquire(64, 48);
+        Assert.assertNotSame(image1, image2);
+        Assert.assertEquals(pool.getAllocatedCount(), 2);
+
+        pool.release(image1);
+        Assert.assertEquals(pool.getAvailableCount(), 1);
+        Assert.assertSame(pool.acquire(64, 48), image1);
+        Assert.assertEquals(pool.getAllocatedCount(), 2);
+    }
+
+    @Test
+    public void testBounded() {
+        VideoFramePool pool = new VideoFramePool(1);
+        BufferedImage image1 = pool.acquire(8, 8);
+        BufferedImage image2 = pool.acquire(8, 8);
+        pool.release(image1);
+        pool.release(image2);
+        Assert.assertEquals(pool.getAvailableCount(), 1);
+    }
+
+    @Test
+    public void testSizeChange() {
+        VideoFramePool pool = new VideoFramePool(4);
+        BufferedImage small = pool.acquire(8, 8);
+        pool.release(small);
+        BufferedImage large = pool.acquire(16, 16);
+        Assert.assertEquals(large.getWidth(), 16);
+        Assert.assertEquals(pool.getAvailableCount(), 0);
+        // Buffers of the old size are not retained
+        pool.release(small);
+        Assert.assertEquals(pool.getAvailableCount(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadCapacity() {
+        new VideoFramePool(0);
+    }
+}
@@ -19,4 +19,38 @@ public class VideoFrameTest {
         Assert.assertEquals(frame1.getImage(), image1);
         Assert.assertEquals(frame2.getImage(), image2);
     }
+
+    @Test
+    public void testUnpooledClose() {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR);
+        VideoFrame frame = new VideoFrame(image, 1.0);
+        Assert.assertFalse(frame.isPooled());
+        frame.close();
+        Assert.assertSame(frame.getImage(), image);
+    }
+
+    @Test
+    public void testPooledRelease() {
+        VideoFramePool pool = new VideoFramePool(4);
+        try (VideoFrame frame = new VideoFrame(pool.acquire(16, 16), 1.0, pool)) {
+            Assert.assertTrue(frame.isPooled());
+            Assert.assertEquals(pool.getAvailableCount(), 0);
+        }
+        Assert.assertEquals(pool.getAvailableCount(), 1);
+    }
+
+    @Test
+    public void testPooledReferences() {
+        VideoFramePool pool = new VideoFramePool(4);
+        VideoFrame frame = new VideoFrame(pool.acquire(16, 16), 1.0, pool);
+        // Two listeners
+        frame.retain(1);
+        frame.close();
+        Assert.assertEquals(pool.getAvailableCount(), 0);
+        frame.close();
+        Assert.assertEquals(pool.getAvailableCount(), 1);
+        // Closing too many times must not return the image twice
+        frame.close();
+        Assert.assertEquals(pool.getAvailableCount(), 1);
+    }
 }
@@ -46,4 +46,28 @@ public class VideoOutputOptionsTest {
         assertEquals(uut.getMultiplexingMethod(), KlvFormat.Synchronous);
         assertTrue(uut.hasKlvStream());
     }
+
+    @Test
+    public void checkEncoderSettings() {
+        VideoOutputOptions uut = new VideoOutputOptions(640, 480);
+        assertEquals(uut.getEncoderThreads(), 1);
+        assertFalse(uut.isSliceThreading());
+        assertEquals(uut.getPipelineDepth(), 0);
+        uut.setEncoderThreads(0);
+        uut.setSliceThreading(true);
+        uut.setPipelineDepth(8);
+        assertEquals(uut.getEncoderThreads(), 0);
+        assertTrue(uut.isSliceThreading());
+        assertEquals(uut.getPipelineDepth(), 8);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void checkNegativeThreads() {
+        new VideoOutputOptions(640, 480).setEncoderThreads(-1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void checkNegativePipelineDepth() {
+        new VideoOutputOptions(640, 480).setPipelineDepth(-1);
+    }
 }
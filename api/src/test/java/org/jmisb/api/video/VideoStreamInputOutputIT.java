@@ -1,8 +1,12 @@
 package org.jmisb.api.video;
 
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24;
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P;
+
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -118,6 +122,58 @@ public class VideoStreamInputOutputIT {
         }
     }
 
+    @Test
+    public void testRawVideo() throws IOException, InterruptedException {
+        final String url = "udp://225.1.1.1:31200";
+        final double frameDuration = 1.0 / frameRate;
+        final int numFrames = 40;
+
+        ByteBuffer[] planes = {
+            ByteBuffer.allocateDirect(width * height),
+            ByteBuffer.allocateDirect(width * height / 4),
+            ByteBuffer.allocateDirect(width * height / 4)
+        };
+        int[] lineSizes = {width, width / 2, width / 2};
+
+        try (IVideoStreamOutput output =
+                new VideoStreamOutput(
+                        new VideoOutputOptions(
+                                width, height, bitRate, frameRate, gopSize, KlvFormat.NoKlv))) {
+            output.open(url);
+
+            // The stream closes each frame once it has been encoded
+            double pts = 0.0;
+            for (int i = 0; i < numFrames; ++i) {
+                output.queueRawVideoFrame(
+                        RawVideoFrame.wrap(
+                                AV_PIX_FMT_YUV420P, width, height, planes, lineSizes, pts));
+                pts += frameDuration;
+            }
+
+            OutputStatistics statistics = output.getStatistics();
+            for (int i = 0; i < 100 && statistics.getNumVideoFramesEncoded() < numFrames; ++i) {
+                Thread.sleep(50);
+            }
+            Assert.assertEquals(statistics.getNumVideoFramesQueued(), numFrames);
+            Assert.assertEquals(statistics.getNumVideoFramesEncoded(), numFrames);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRawVideoInvalidSize() throws IOException {
+        ByteBuffer[] planes = {ByteBuffer.allocateDirect(32 * 32 * 3)};
+        try (IVideoStreamOutput output =
+                new VideoStreamOutput(
+                        new VideoOutputOptions(
+                                width, height, bitRate, frameRate, gopSize, KlvFormat.NoKlv))) {
+            output.open("udp://225.1.1.1:31200");
+            try (RawVideoFrame frame =
+                    RawVideoFrame.wrap(AV_PIX_FMT_BGR24, 32, 32, planes, new int[] {96}, 0.0)) {
+                output.queueRawVideoFrame(frame);
+            }
+        }
+    }
+
     @Test
     public void testClose() {
         final String url = "udp://225.1.1.1:31200";
@@ -1,6 +1,7 @@
 package org.jmisb.api.video;
 
 import java.io.IOException;
+import org.bytedeco.ffmpeg.global.swscale;
 import org.jmisb.api.klv.LoggerChecks;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -26,4 +27,43 @@ public class VideoStreamInputTest extends LoggerChecks {
             stream.open("This url does not exist");
         }
     }
+
+    @Test
+    public void checkBackpressureOptions() {
+        Assert.assertEquals(
+                new VideoStreamInputOptions().getBackpressurePolicy(), BackpressurePolicy.Block);
+        VideoStreamInputOptions options =
+                new VideoStreamInputOptions(
+                        false, true, true, 1000, 1000, BackpressurePolicy.DropOldest);
+        Assert.assertEquals(options.getBackpressurePolicy(), BackpressurePolicy.DropOldest);
+        try (VideoStreamInput stream = new VideoStreamInput(options)) {
+            Assert.assertEquals(
+                    stream.getOptions().getBackpressurePolicy(), BackpressurePolicy.DropOldest);
+            Assert.assertEquals(stream.getDroppedFrameCount(), 0);
+        }
+    }
+
+    @Test
+    public void checkRawVideoOptions() {
+        VideoStreamInputOptions options = new VideoStreamInputOptions();
+        Assert.assertFalse(options.isRawVideo());
+        Assert.assertNull(options.getRawPixelFormat());
+        Assert.assertEquals(options.getOutputWidth(), 0);
+        Assert.assertEquals(options.getOutputHeight(), 0);
+        Assert.assertEquals(options.getScalingFlags(), swscale.SWS_FAST_BILINEAR);
+        options.setRawVideo(true);
+        options.setRawPixelFormat("nv12");
+        options.setOutputSize(320, 240);
+        options.setScalingFlags(swscale.SWS_POINT);
+        Assert.assertTrue(options.isRawVideo());
+        Assert.assertEquals(options.getRawPixelFormat(), "nv12");
+        Assert.assertEquals(options.getOutputWidth(), 320);
+        Assert.assertEquals(options.getOutputHeight(), 240);
+        Assert.assertEquals(options.getScalingFlags(), swscale.SWS_POINT);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void checkNegativeOutputSize() {
+        new VideoStreamInputOptions().setOutputSize(-1, 240);
+    }
 }
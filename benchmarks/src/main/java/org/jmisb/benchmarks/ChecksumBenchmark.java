@@ -0,0 +1,128 @@
+package org.jmisb.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.jmisb.api.klv.st0601.Checksum;
+import org.jmisb.core.klv.CRC32MPEG2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the ST 0601 16-bit checksum and the ISO/IEC 13818-1 CRC32 used by ST 0806.
+ *
+ * <p>The {@code legacy} benchmarks are copies of the previous implementations (a {@code
+ * ByteBuffer.wrap} per word, and a byte-at-a-time table loop), kept as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChecksumBenchmark {
+    /** Number of VMTI targets nested in the packet, which controls the packet size. */
+    @Param({"0", "20", "200"})
+    public int numTargets;
+
+    private byte[] packet;
+    private ByteBuffer directPacket;
+    private int[] legacyTable;
+
+    /** Build the corpus. */
+    @Setup
+    public void setup() {
+        packet = KlvCorpus.denseUasDatalinkMessage(1, numTargets).frameMessage(false);
+        directPacket = ByteBuffer.allocateDirect(packet.length);
+        directPacket.put(packet).flip();
+        legacyTable = new int[256];
+        for (int b = 0; b < 256; ++b) {
+            int crc = b << 24;
+            for (int bit = 0; bit < 8; ++bit) {
+                crc = (crc < 0) ? (crc << 1) ^ 0x04C11DB7 : crc << 1;
+            }
+            legacyTable[b] = crc;
+        }
+    }
+
+    /**
+     * Compute the ST 0601 checksum over a full packet.
+     *
+     * @return the checksum
+     */
+    @Benchmark
+    public byte[] st0601Checksum() {
+        return Checksum.compute(packet, false);
+    }
+
+    /**
+     * Verify the ST 0601 checksum of a full packet in a direct buffer, as done when parsing.
+     *
+     * @return the verification result
+     */
+    @Benchmark
+    public boolean st0601VerifyDirect() {
+        return Checksum.verify(directPacket, 0, directPacket.limit());
+    }
+
+    /**
+     * Compute the ST 0601 checksum over a full packet using the previous implementation.
+     *
+     * @return the checksum
+     */
+    @Benchmark
+    public int st0601ChecksumLegacy() {
+        int sum = 0;
+        final int lastShortIndex = packet.length - 4;
+        for (int i = 0; i <= lastShortIndex; i += 2) {
+            sum += Short.toUnsignedInt(ByteBuffer.wrap(packet, i, 2).getShort());
+        }
+        if (packet.length % 2 == 1) {
+            sum += Short.toUnsignedInt(packet[packet.length - 3]) << 8;
+        }
+        return sum & 0xFFFF;
+    }
+
+    /**
+     * Compute the CRC32 (MPEG-2) over the same packet.
+     *
+     * @return the CRC
+     */
+    @Benchmark
+    public byte[] crc32Mpeg2() {
+        return CRC32MPEG2.compute(packet);
+    }
+
+    /**
+     * Compute the CRC32 (MPEG-2) over the packet in a direct buffer.
+     *
+     * @return the CRC
+     */
+    @Benchmark
+    public int crc32Mpeg2Direct() {
+        return CRC32MPEG2.crc32(directPacket, 0, directPacket.limit() - 4);
+    }
+
+    /**
+     * Compute the CRC32 (MPEG-2) over the packet using the previous byte-at-a-time loop.
+     *
+     * @return the CRC
+     */
+    @Benchmark
+    public long crc32Mpeg2Legacy() {
+        long crcAccum = 0xFFFFFFFFL;
+        for (int i = 0; i < packet.length - 4; ++i) {
+            int index = (int) ((crcAccum >>> 24) ^ (packet[i] & 0xFF)) & 0xFF;
+            crcAccum = ((crcAccum << 8) ^ legacyTable[index]) & 0xFFFFFFFFL;
+        }
+        return crcAccum;
+    }
+}
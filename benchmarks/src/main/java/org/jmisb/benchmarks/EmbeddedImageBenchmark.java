@@ -0,0 +1,91 @@
+package org.jmisb.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.st0903.vchip.EmbeddedImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for parsing and re-serializing ST 0903 VChip embedded image chips. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmbeddedImageBenchmark {
+    /** Number of chips in the packet. */
+    private static final int NUM_CHIPS = 50;
+
+    /** Width and height of each chip, in pixels. */
+    @Param({"32", "128"})
+    public int chipSize;
+
+    private byte[][] chips;
+    private EmbeddedImage[] parsed;
+
+    /**
+     * Build the corpus.
+     *
+     * @throws IOException if the chips cannot be encoded
+     * @throws KlvParseException if the chips cannot be parsed
+     */
+    @Setup
+    public void setup() throws IOException, KlvParseException {
+        chips = new byte[NUM_CHIPS][];
+        parsed = new EmbeddedImage[NUM_CHIPS];
+        for (int i = 0; i < NUM_CHIPS; ++i) {
+            BufferedImage image =
+                    new BufferedImage(chipSize, chipSize, BufferedImage.TYPE_3BYTE_BGR);
+            for (int y = 0; y < chipSize; ++y) {
+                for (int x = 0; x < chipSize; ++x) {
+                    image.setRGB(x, y, (x * 7 + y * 13 + i * 31) * 0x010203);
+                }
+            }
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                ImageIO.write(image, "png", out);
+                chips[i] = out.toByteArray();
+            }
+            parsed[i] = new EmbeddedImage(chips[i]);
+        }
+    }
+
+    /**
+     * Parse all of the chips in a packet, as done when parsing VMTI.
+     *
+     * @param blackhole sink for the parsed chips
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public void parse(Blackhole blackhole) throws KlvParseException {
+        for (byte[] chip : chips) {
+            blackhole.consume(new EmbeddedImage(chip));
+        }
+    }
+
+    /**
+     * Re-serialize all of the parsed chips in a packet.
+     *
+     * @param blackhole sink for the encoded chips
+     */
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (EmbeddedImage chip : parsed) {
+            blackhole.consume(chip.getBytes());
+        }
+    }
+}
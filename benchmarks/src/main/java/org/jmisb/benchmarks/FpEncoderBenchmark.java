@@ -0,0 +1,105 @@
+package org.jmisb.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.jmisb.api.klv.st1201.FpEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for ST 1201 IMAPB floating point encoding and decoding. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FpEncoderBenchmark {
+    private static final int NUM_VALUES = 1024;
+
+    /** Encoded field length, in bytes. */
+    @Param({"2", "3", "4", "8"})
+    public int fieldLength;
+
+    private FpEncoder encoder;
+    private double[] values;
+    private byte[][] encoded;
+    private ByteBuffer packed;
+    private double[] decoded;
+
+    /** Build the corpus. */
+    @Setup
+    public void setup() {
+        encoder = new FpEncoder(-900.0, 19000.0, fieldLength);
+        values = KlvCorpus.spreadValues(NUM_VALUES, -900.0, 19000.0);
+        encoded = new byte[NUM_VALUES][];
+        for (int i = 0; i < NUM_VALUES; ++i) {
+            encoded[i] = encoder.encode(values[i]);
+        }
+        packed = ByteBuffer.allocate(NUM_VALUES * fieldLength);
+        encoder.encode(values, packed);
+        decoded = new double[NUM_VALUES];
+    }
+
+    /**
+     * Encode values one at a time.
+     *
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public void encode(Blackhole blackhole) {
+        for (double value : values) {
+            blackhole.consume(encoder.encode(value));
+        }
+    }
+
+    /**
+     * Decode values one at a time.
+     *
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public void decode(Blackhole blackhole) {
+        for (byte[] bytes : encoded) {
+            blackhole.consume(encoder.decode(bytes));
+        }
+    }
+
+    /**
+     * Encode all the values into one buffer.
+     *
+     * @return the buffer, so the work is not eliminated
+     */
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public ByteBuffer encodeBatch() {
+        packed.clear();
+        encoder.encode(values, packed);
+        return packed;
+    }
+
+    /**
+     * Decode all the values from one buffer.
+     *
+     * @return the decoded values, so the work is not eliminated
+     */
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public double[] decodeBatch() {
+        packed.clear();
+        encoder.decode(packed, decoded);
+        return decoded;
+    }
+}
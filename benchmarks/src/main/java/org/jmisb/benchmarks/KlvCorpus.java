@@ -0,0 +1,333 @@
+package org.jmisb.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.jmisb.api.klv.st0102.Classification;
+import org.jmisb.api.klv.st0102.CountryCodingMethod;
+import org.jmisb.api.klv.st0102.ISecurityMetadataValue;
+import org.jmisb.api.klv.st0102.ObjectCountryCodeString;
+import org.jmisb.api.klv.st0102.ST0102Version;
+import org.jmisb.api.klv.st0102.SecurityMetadataKey;
+import org.jmisb.api.klv.st0102.SecurityMetadataString;
+import org.jmisb.api.klv.st0102.localset.CcMethod;
+import org.jmisb.api.klv.st0102.localset.ClassificationLocal;
+import org.jmisb.api.klv.st0102.localset.OcMethod;
+import org.jmisb.api.klv.st0102.localset.SecurityMetadataLocalSet;
+import org.jmisb.api.klv.st0601.FrameCenterElevation;
+import org.jmisb.api.klv.st0601.FrameCenterLatitude;
+import org.jmisb.api.klv.st0601.FrameCenterLongitude;
+import org.jmisb.api.klv.st0601.HorizontalFov;
+import org.jmisb.api.klv.st0601.IUasDatalinkValue;
+import org.jmisb.api.klv.st0601.NestedSARMILocalSet;
+import org.jmisb.api.klv.st0601.NestedSecurityMetadata;
+import org.jmisb.api.klv.st0601.NestedVmtiLocalSet;
+import org.jmisb.api.klv.st0601.PlatformHeadingAngle;
+import org.jmisb.api.klv.st0601.PlatformPitchAngle;
+import org.jmisb.api.klv.st0601.PlatformRollAngle;
+import org.jmisb.api.klv.st0601.PrecisionTimeStamp;
+import org.jmisb.api.klv.st0601.ST0601Version;
+import org.jmisb.api.klv.st0601.SensorLatitude;
+import org.jmisb.api.klv.st0601.SensorLongitude;
+import org.jmisb.api.klv.st0601.SensorRelativeAzimuth;
+import org.jmisb.api.klv.st0601.SensorRelativeElevation;
+import org.jmisb.api.klv.st0601.SensorRelativeRoll;
+import org.jmisb.api.klv.st0601.SensorTrueAltitude;
+import org.jmisb.api.klv.st0601.SlantRange;
+import org.jmisb.api.klv.st0601.TargetWidth;
+import org.jmisb.api.klv.st0601.UasDatalinkMessage;
+import org.jmisb.api.klv.st0601.UasDatalinkString;
+import org.jmisb.api.klv.st0601.UasDatalinkTag;
+import org.jmisb.api.klv.st0601.VerticalFov;
+import org.jmisb.api.klv.st0903.FrameHeight;
+import org.jmisb.api.klv.st0903.FrameWidth;
+import org.jmisb.api.klv.st0903.IVmtiMetadataValue;
+import org.jmisb.api.klv.st0903.ST0903Version;
+import org.jmisb.api.klv.st0903.VTargetSeries;
+import org.jmisb.api.klv.st0903.VmtiLocalSet;
+import org.jmisb.api.klv.st0903.VmtiMetadataKey;
+import org.jmisb.api.klv.st0903.VmtiReportedTargetCount;
+import org.jmisb.api.klv.st0903.VmtiTotalTargetCount;
+import org.jmisb.api.klv.st0903.shared.LocationPack;
+import org.jmisb.api.klv.st0903.shared.VmtiTextString;
+import org.jmisb.api.klv.st0903.vmask.BitMaskSeries;
+import org.jmisb.api.klv.st0903.vmask.PixelPolygon;
+import org.jmisb.api.klv.st0903.vmask.PixelRunPair;
+import org.jmisb.api.klv.st0903.vmask.VMaskLS;
+import org.jmisb.api.klv.st0903.vmask.VMaskMetadataKey;
+import org.jmisb.api.klv.st0903.vtarget.BoundaryBottomRight;
+import org.jmisb.api.klv.st0903.vtarget.BoundaryTopLeft;
+import org.jmisb.api.klv.st0903.vtarget.CentroidPixelColumn;
+import org.jmisb.api.klv.st0903.vtarget.CentroidPixelRow;
+import org.jmisb.api.klv.st0903.vtarget.PercentageOfTargetPixels;
+import org.jmisb.api.klv.st0903.vtarget.TargetConfidenceLevel;
+import org.jmisb.api.klv.st0903.vtarget.TargetLocation;
+import org.jmisb.api.klv.st0903.vtarget.TargetPriority;
+import org.jmisb.api.klv.st0903.vtarget.VMask;
+import org.jmisb.api.klv.st0903.vtarget.VTargetMetadataKey;
+import org.jmisb.api.klv.st0903.vtarget.VTargetPack;
+import org.jmisb.api.klv.st1206.DocumentVersion;
+import org.jmisb.api.klv.st1206.GrazingAngle;
+import org.jmisb.api.klv.st1206.GroundPlaneSquintAngle;
+import org.jmisb.api.klv.st1206.ISARMIMetadataValue;
+import org.jmisb.api.klv.st1206.LookDirection;
+import org.jmisb.api.klv.st1206.SARMILocalSet;
+import org.jmisb.api.klv.st1206.SARMIMetadataKey;
+
+/**
+ * Realistic KLV test data for the benchmarks.
+ *
+ * <p>The packets are built through the public API (rather than loaded from files) so that the
+ * corpus always matches the current encoder. Values vary from packet to packet so that the JIT
+ * cannot constant-fold anything.
+ */
+public class KlvCorpus {
+    /** Frame width used for VMTI pixel numbers. */
+    public static final int FRAME_WIDTH = 1920;
+
+    /** Frame height used for VMTI pixel numbers. */
+    public static final int FRAME_HEIGHT = 1080;
+
+    private KlvCorpus() {}
+
+    /**
+     * Build a minimal ST 0601 message containing only the mandatory and commonly-used tags.
+     *
+     * @param i sequence number, used to vary the values
+     * @return the message
+     */
+    public static UasDatalinkMessage basicUasDatalinkMessage(int i) {
+        return new UasDatalinkMessage(basicValues(i));
+    }
+
+    /**
+     * Build a dense ST 0601 message with nested security, VMTI and SARMI local sets.
+     *
+     * @param i sequence number, used to vary the values
+     * @param numTargets number of VMTI targets to include in the nested VMTI local set
+     * @return the message
+     */
+    public static UasDatalinkMessage denseUasDatalinkMessage(int i, int numTargets) {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = basicValues(i);
+        values.put(
+                UasDatalinkTag.SecurityLocalMetadataSet,
+                new NestedSecurityMetadata(securityLocalSet(i)));
+        values.put(
+                UasDatalinkTag.VmtiLocalDataSet,
+                new NestedVmtiLocalSet(vmtiLocalSet(i, numTargets)));
+        values.put(
+                UasDatalinkTag.SarMotionImageryMetadata, new NestedSARMILocalSet(sarmiLocalSet(i)));
+        return new UasDatalinkMessage(values);
+    }
+
+    /**
+     * Build a sequence of framed dense ST 0601 packets.
+     *
+     * @param count number of packets
+     * @param numTargets number of VMTI targets in each packet
+     * @return list of framed packets, each starting with the 16-byte UL
+     */
+    public static List<byte[]> densePackets(int count, int numTargets) {
+        List<byte[]> packets = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            packets.add(denseUasDatalinkMessage(i, numTargets).frameMessage(false));
+        }
+        return packets;
+    }
+
+    /**
+     * Concatenate packets into a single buffer, as they would appear in a KLV data stream.
+     *
+     * @param packets the packets to concatenate
+     * @return the concatenated bytes
+     */
+    public static byte[] concatenate(List<byte[]> packets) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] packet : packets) {
+            out.write(packet, 0, packet.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Build a VMTI local set with a large target series.
+     *
+     * @param i sequence number, used to vary the values
+     * @param numTargets number of targets in the VTargetSeries
+     * @return the local set
+     */
+    public static VmtiLocalSet vmtiLocalSet(int i, int numTargets) {
+        Map<VmtiMetadataKey, IVmtiMetadataValue> values = new TreeMap<>();
+        values.put(VmtiMetadataKey.VersionNumber, new ST0903Version(5));
+        values.put(
+                VmtiMetadataKey.SystemName,
+                new VmtiTextString(VmtiTextString.SYSTEM_NAME, "Benchmark VMTI"));
+        values.put(
+                VmtiMetadataKey.NumberOfReportedTargets, new VmtiReportedTargetCount(numTargets));
+        values.put(VmtiMetadataKey.TotalTargetsInFrame, new VmtiTotalTargetCount(numTargets));
+        values.put(VmtiMetadataKey.FrameWidth, new FrameWidth(FRAME_WIDTH));
+        values.put(VmtiMetadataKey.FrameHeight, new FrameHeight(FRAME_HEIGHT));
+        List<VTargetPack> targets = new ArrayList<>(numTargets);
+        for (int t = 0; t < numTargets; ++t) {
+            targets.add(new VTargetPack(t + 1, target(i, t)));
+        }
+        values.put(VmtiMetadataKey.VTargetSeries, new VTargetSeries(targets));
+        return new VmtiLocalSet(values);
+    }
+
+    /**
+     * Get the nested (value only) encoding of a VMTI local set, as carried in ST 0601 Tag 74.
+     *
+     * @param i sequence number, used to vary the values
+     * @param numTargets number of targets in the VTargetSeries
+     * @return the encoded local set
+     */
+    public static byte[] nestedVmtiBytes(int i, int numTargets) {
+        return vmtiLocalSet(i, numTargets).frameMessage(true);
+    }
+
+    /**
+     * Build an array of values spread over a range, for the floating point benchmarks.
+     *
+     * @param count number of values
+     * @param min minimum value
+     * @param max maximum value
+     * @return the values
+     */
+    public static double[] spreadValues(int count, double min, double max) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = min + (max - min) * ((i * 7919L) % count) / count;
+        }
+        return values;
+    }
+
+    /**
+     * Copy a packet, clearing the trailing checksum bytes.
+     *
+     * @param packet the packet
+     * @param checksumLength number of trailing checksum bytes
+     * @return the copy
+     */
+    public static byte[] withZeroChecksum(byte[] packet, int checksumLength) {
+        byte[] copy = Arrays.copyOf(packet, packet.length);
+        Arrays.fill(copy, copy.length - checksumLength, copy.length, (byte) 0);
+        return copy;
+    }
+
+    private static SortedMap<UasDatalinkTag, IUasDatalinkValue> basicValues(int i) {
+        SortedMap<UasDatalinkTag, IUasDatalinkValue> values = new TreeMap<>();
+        values.put(
+                UasDatalinkTag.PrecisionTimeStamp,
+                new PrecisionTimeStamp(1_600_000_000_000_000L + i * 33_333L));
+        values.put(UasDatalinkTag.UasLdsVersionNumber, new ST0601Version((byte) 16));
+        values.put(
+                UasDatalinkTag.MissionId,
+                new UasDatalinkString(UasDatalinkString.MISSION_ID, "BENCHMARK"));
+        values.put(
+                UasDatalinkTag.PlatformDesignation,
+                new UasDatalinkString(UasDatalinkString.PLATFORM_DESIGNATION, "MQ-1B"));
+        values.put(
+                UasDatalinkTag.ImageSourceSensor,
+                new UasDatalinkString(UasDatalinkString.IMAGE_SOURCE_SENSOR, "EO"));
+        values.put(UasDatalinkTag.PlatformHeadingAngle, new PlatformHeadingAngle(i % 360));
+        values.put(UasDatalinkTag.PlatformPitchAngle, new PlatformPitchAngle((i % 40) - 20.0));
+        values.put(UasDatalinkTag.PlatformRollAngle, new PlatformRollAngle((i % 100) - 50.0));
+        values.put(UasDatalinkTag.SensorLatitude, new SensorLatitude(-35.35 + i * 1e-5));
+        values.put(UasDatalinkTag.SensorLongitude, new SensorLongitude(149.08 + i * 1e-5));
+        values.put(UasDatalinkTag.SensorTrueAltitude, new SensorTrueAltitude(1258.3));
+        values.put(UasDatalinkTag.SensorHorizontalFov, new HorizontalFov(7.0));
+        values.put(UasDatalinkTag.SensorVerticalFov, new VerticalFov(5.0));
+        values.put(UasDatalinkTag.SensorRelativeAzimuthAngle, new SensorRelativeAzimuth(i % 360));
+        values.put(UasDatalinkTag.SensorRelativeElevationAngle, new SensorRelativeElevation(-70.0));
+        values.put(UasDatalinkTag.SensorRelativeRollAngle, new SensorRelativeRoll(0.0));
+        values.put(UasDatalinkTag.SlantRange, new SlantRange(2000.0 + i));
+        values.put(UasDatalinkTag.TargetWidth, new TargetWidth(100.0));
+        values.put(UasDatalinkTag.FrameCenterLatitude, new FrameCenterLatitude(-35.353));
+        values.put(UasDatalinkTag.FrameCenterLongitude, new FrameCenterLongitude(149.089));
+        values.put(UasDatalinkTag.FrameCenterElevation, new FrameCenterElevation(12.0));
+        return values;
+    }
+
+    private static SecurityMetadataLocalSet securityLocalSet(int i) {
+        SortedMap<SecurityMetadataKey, ISecurityMetadataValue> values = new TreeMap<>();
+        values.put(
+                SecurityMetadataKey.SecurityClassification,
+                new ClassificationLocal(Classification.UNCLASSIFIED));
+        values.put(
+                SecurityMetadataKey.CcCodingMethod,
+                new CcMethod(CountryCodingMethod.GENC_TWO_LETTER));
+        values.put(
+                SecurityMetadataKey.ClassifyingCountry,
+                new SecurityMetadataString(SecurityMetadataString.CLASSIFYING_COUNTRY, "//AU"));
+        values.put(
+                SecurityMetadataKey.OcCodingMethod,
+                new OcMethod(CountryCodingMethod.GENC_TWO_LETTER));
+        values.put(
+                SecurityMetadataKey.ObjectCountryCodes,
+                new ObjectCountryCodeString(i % 2 == 0 ? "US" : "AU;NZ"));
+        values.put(SecurityMetadataKey.Version, new ST0102Version(12));
+        return new SecurityMetadataLocalSet(values);
+    }
+
+    private static SARMILocalSet sarmiLocalSet(int i) {
+        Map<SARMIMetadataKey, ISARMIMetadataValue> values = new TreeMap<>();
+        values.put(SARMIMetadataKey.GrazingAngle, new GrazingAngle(4.3 + (i % 10)));
+        values.put(SARMIMetadataKey.GroundPlaneSquintAngle, new GroundPlaneSquintAngle(5.2));
+        values.put(SARMIMetadataKey.LookDirection, new LookDirection((byte) 0));
+        values.put(SARMIMetadataKey.DocumentVersion, new DocumentVersion(1));
+        return new SARMILocalSet(values);
+    }
+
+    private static Map<VTargetMetadataKey, IVmtiMetadataValue> target(int i, int t) {
+        int row = 10 + ((t * 37 + i) % (FRAME_HEIGHT - 40));
+        int column = 10 + ((t * 53 + i) % (FRAME_WIDTH - 40));
+        Map<VTargetMetadataKey, IVmtiMetadataValue> values = new TreeMap<>();
+        values.put(VTargetMetadataKey.CentroidPixRow, new CentroidPixelRow(row));
+        values.put(VTargetMetadataKey.CentroidPixColumn, new CentroidPixelColumn(column));
+        values.put(
+                VTargetMetadataKey.BoundaryTopLeft,
+                new BoundaryTopLeft(pixelNumber(row - 8, column - 8)));
+        values.put(
+                VTargetMetadataKey.BoundaryBottomRight,
+                new BoundaryBottomRight(pixelNumber(row + 8, column + 8)));
+        values.put(VTargetMetadataKey.TargetPriority, new TargetPriority((short) (1 + t % 255)));
+        values.put(
+                VTargetMetadataKey.TargetConfidenceLevel,
+                new TargetConfidenceLevel((short) (t % 101)));
+        values.put(
+                VTargetMetadataKey.PercentageOfTargetPixels,
+                new PercentageOfTargetPixels((short) 40));
+        values.put(
+                VTargetMetadataKey.TargetLocation,
+                new TargetLocation(
+                        new LocationPack(
+                                -34.2 + t * 1e-4, 143.2 + t * 1e-4, 651.0, 8.0, 12.0, 14.0)));
+        values.put(VTargetMetadataKey.VMask, new VMask(mask(row, column)));
+        return values;
+    }
+
+    private static VMaskLS mask(int row, int column) {
+        List<Long> polygon = new ArrayList<>();
+        polygon.add(pixelNumber(row - 8, column - 8));
+        polygon.add(pixelNumber(row - 8, column + 8));
+        polygon.add(pixelNumber(row + 8, column + 8));
+        polygon.add(pixelNumber(row + 8, column - 8));
+        List<PixelRunPair> runs = new ArrayList<>();
+        for (int r = row - 8; r <= row + 8; r += 2) {
+            runs.add(new PixelRunPair(pixelNumber(r, column - 6), 12));
+        }
+        Map<VMaskMetadataKey, IVmtiMetadataValue> values = new TreeMap<>();
+        values.put(VMaskMetadataKey.polygon, new PixelPolygon(polygon));
+        values.put(VMaskMetadataKey.bitMaskSeries, new BitMaskSeries(runs));
+        return new VMaskLS(values);
+    }
+
+    private static long pixelNumber(int row, int column) {
+        return column + (row - 1L) * FRAME_WIDTH;
+    }
+}
@@ -0,0 +1,115 @@
+package org.jmisb.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.BerDecoder;
+import org.jmisb.api.klv.BerField;
+import org.jmisb.api.klv.IMisbMessage;
+import org.jmisb.api.klv.KlvParser;
+import org.jmisb.api.klv.LdsField;
+import org.jmisb.api.klv.LdsParser;
+import org.jmisb.api.klv.UniversalLabel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for the generic KLV parsing layer: top-level messages, LDS fields and BER. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KlvParserBenchmark {
+    /** Number of VMTI targets nested in each ST 0601 packet. */
+    @Param({"0", "20", "200"})
+    public int numTargets;
+
+    private byte[] singlePacket;
+    private byte[] packetStream;
+    private ByteBuffer directPacketStream;
+    private int valueOffset;
+    private int valueLength;
+    private final byte[] berBytes = new byte[] {(byte) 0x83, 0x01, 0x02, 0x03, (byte) 0x81, 0x7f};
+
+    /** Build the corpus. */
+    @Setup
+    public void setup() {
+        List<byte[]> packets = KlvCorpus.densePackets(30, numTargets);
+        singlePacket = packets.get(0);
+        packetStream = KlvCorpus.concatenate(packets);
+        directPacketStream = ByteBuffer.allocateDirect(packetStream.length);
+        directPacketStream.put(packetStream);
+        directPacketStream.flip();
+        BerField length = BerDecoder.decode(singlePacket, UniversalLabel.LENGTH, false);
+        valueOffset = UniversalLabel.LENGTH + length.getLength();
+        valueLength = length.getValue();
+    }
+
+    /**
+     * Parse one second (30 packets) of a concatenated KLV stream.
+     *
+     * @return the parsed messages
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public List<IMisbMessage> parseBytesStream() throws KlvParseException {
+        return KlvParser.parseBytes(packetStream);
+    }
+
+    /**
+     * Parse the same stream from a direct buffer, as delivered by the demuxer.
+     *
+     * @return the parsed messages
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public List<IMisbMessage> parseBufferStream() throws KlvParseException {
+        return KlvParser.parseBytes(directPacketStream);
+    }
+
+    /**
+     * Parse a single top-level packet.
+     *
+     * @return the parsed messages
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public List<IMisbMessage> parseBytesSingle() throws KlvParseException {
+        return KlvParser.parseBytes(singlePacket);
+    }
+
+    /**
+     * Split the value of a single ST 0601 packet into LDS fields.
+     *
+     * @return the fields
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public List<LdsField> ldsParseFields() throws KlvParseException {
+        return LdsParser.parseFields(singlePacket, valueOffset, valueLength);
+    }
+
+    /**
+     * Decode long form and short form BER lengths, and a BER-OID tag.
+     *
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    public void berDecode(Blackhole blackhole) {
+        blackhole.consume(BerDecoder.decode(berBytes, 0, false));
+        blackhole.consume(BerDecoder.decode(berBytes, 4, false));
+        blackhole.consume(BerDecoder.decode(berBytes, 1, true));
+    }
+}
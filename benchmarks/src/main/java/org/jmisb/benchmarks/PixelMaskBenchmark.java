@@ -0,0 +1,137 @@
+package org.jmisb.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.st0903.vmask.BitMaskSeries;
+import org.jmisb.api.klv.st0903.vmask.PixelMask;
+import org.jmisb.api.klv.st0903.vmask.PixelRunPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for decoding, rasterizing and comparing ST 0903 target masks on a 4K frame. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PixelMaskBenchmark {
+    private static final int FRAME_WIDTH = 3840;
+    private static final int FRAME_HEIGHT = 2160;
+
+    /** Radius of the (disk shaped) target mask, in pixels. */
+    @Param({"16", "128", "512"})
+    public int radius;
+
+    private byte[] bitMaskBytes;
+    private long[] polygon;
+    private PixelMask mask;
+    private PixelMask shifted;
+    private long[] bitmap;
+
+    /**
+     * Build the corpus.
+     *
+     * @throws KlvParseException if the corpus cannot be decoded
+     */
+    @Setup
+    public void setup() throws KlvParseException {
+        bitMaskBytes = new BitMaskSeries(disk(FRAME_HEIGHT / 2, FRAME_WIDTH / 2)).getBytes();
+        mask = PixelMask.fromBitMaskSeriesBytes(bitMaskBytes);
+        shifted = PixelMask.fromRuns(disk(FRAME_HEIGHT / 2 + radius / 2, FRAME_WIDTH / 2));
+        polygon = new long[64];
+        for (int i = 0; i < polygon.length; ++i) {
+            double angle = 2 * Math.PI * i / polygon.length;
+            long row = FRAME_HEIGHT / 2 + Math.round(radius * Math.sin(angle));
+            long column = FRAME_WIDTH / 2 + Math.round(radius * Math.cos(angle));
+            polygon[i] = column + (row - 1) * FRAME_WIDTH;
+        }
+        bitmap = new long[(FRAME_WIDTH * FRAME_HEIGHT + 63) / 64];
+    }
+
+    private List<PixelRunPair> disk(int centreRow, int centreColumn) {
+        List<PixelRunPair> runs = new ArrayList<>();
+        for (int dr = -radius; dr <= radius; ++dr) {
+            int half = (int) Math.sqrt((double) radius * radius - (double) dr * dr);
+            long row = centreRow + dr;
+            runs.add(
+                    new PixelRunPair(
+                            (centreColumn - half) + (row - 1) * FRAME_WIDTH, 2 * half + 1));
+        }
+        return runs;
+    }
+
+    /**
+     * Decode a Bit Mask Series and rasterize it, using the list based representation.
+     *
+     * @return the rasterized frame
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public BitSet decodeAndRasterizeList() throws KlvParseException {
+        BitSet frame = new BitSet(FRAME_WIDTH * FRAME_HEIGHT);
+        for (PixelRunPair run : new BitMaskSeries(bitMaskBytes).getRuns()) {
+            int from = (int) run.getPixelNumber() - 1;
+            frame.set(from, from + run.getRun());
+        }
+        return frame;
+    }
+
+    /**
+     * Decode a Bit Mask Series and rasterize it, using PixelMask.
+     *
+     * @return the rasterized frame
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public long[] decodeAndRasterizeMask() throws KlvParseException {
+        Arrays.fill(bitmap, 0L);
+        PixelMask.fromBitMaskSeriesBytes(bitMaskBytes).rasterize(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Scan convert a 64 vertex polygon.
+     *
+     * @return the mask
+     */
+    @Benchmark
+    public PixelMask scanConvertPolygon() {
+        return PixelMask.fromPolygon(polygon, FRAME_WIDTH);
+    }
+
+    /**
+     * Intersection over union of two overlapping masks.
+     *
+     * @return the IoU
+     */
+    @Benchmark
+    public double iou() {
+        return mask.iou(shifted);
+    }
+
+    /**
+     * Build a mask from a frame-sized bitmap and encode the minimal Bit Mask Series.
+     *
+     * @return the encoded series
+     */
+    @Benchmark
+    public byte[] encodeFromBitmap() {
+        Arrays.fill(bitmap, 0L);
+        mask.rasterize(bitmap);
+        return PixelMask.fromBitmap(bitmap).toBitMaskSeriesBytes();
+    }
+}
@@ -0,0 +1,104 @@
+package org.jmisb.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.st0601.UasDatalinkMessage;
+import org.jmisb.api.klv.st0601.UasDatalinkTag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for parsing and framing ST 0601 UAS Datalink messages. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UasDatalinkMessageBenchmark {
+    /** Number of VMTI targets nested in the packet. */
+    @Param({"0", "20", "200"})
+    public int numTargets;
+
+    private byte[] basicPacket;
+    private byte[] densePacket;
+    private UasDatalinkMessage basicMessage;
+    private UasDatalinkMessage denseMessage;
+
+    /** Build the corpus. */
+    @Setup
+    public void setup() {
+        basicMessage = KlvCorpus.basicUasDatalinkMessage(1);
+        denseMessage = KlvCorpus.denseUasDatalinkMessage(1, numTargets);
+        basicPacket = basicMessage.frameMessage(false);
+        densePacket = denseMessage.frameMessage(false);
+    }
+
+    /**
+     * Parse a packet holding only the common sensor/platform tags.
+     *
+     * @return the message
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public UasDatalinkMessage parseBasic() throws KlvParseException {
+        return new UasDatalinkMessage(basicPacket);
+    }
+
+    /**
+     * Parse a packet with nested security, VMTI and SARMI local sets.
+     *
+     * @return the message
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public UasDatalinkMessage parseDense() throws KlvParseException {
+        return new UasDatalinkMessage(densePacket);
+    }
+
+    /**
+     * Parse the dense packet in lazy mode, and read a handful of position and attitude tags.
+     *
+     * @param blackhole sink for the values
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public void parseDenseLazy(Blackhole blackhole) throws KlvParseException {
+        UasDatalinkMessage message = new UasDatalinkMessage(ByteBuffer.wrap(densePacket), true);
+        blackhole.consume(message.getField(UasDatalinkTag.PrecisionTimeStamp));
+        blackhole.consume(message.getField(UasDatalinkTag.SensorLatitude));
+        blackhole.consume(message.getField(UasDatalinkTag.SensorLongitude));
+        blackhole.consume(message.getField(UasDatalinkTag.SensorTrueAltitude));
+        blackhole.consume(message.getField(UasDatalinkTag.PlatformHeadingAngle));
+    }
+
+    /**
+     * Frame a packet holding only the common sensor/platform tags.
+     *
+     * @return the framed packet
+     */
+    @Benchmark
+    public byte[] frameBasic() {
+        return basicMessage.frameMessage(false);
+    }
+
+    /**
+     * Frame a packet with nested security, VMTI and SARMI local sets.
+     *
+     * @return the framed packet
+     */
+    @Benchmark
+    public byte[] frameDense() {
+        return denseMessage.frameMessage(false);
+    }
+}
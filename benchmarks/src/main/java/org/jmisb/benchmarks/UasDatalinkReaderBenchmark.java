@@ -0,0 +1,82 @@
+package org.jmisb.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.st0601.SensorLatitude;
+import org.jmisb.api.klv.st0601.SensorLongitude;
+import org.jmisb.api.klv.st0601.UasDatalinkMessage;
+import org.jmisb.api.klv.st0601.UasDatalinkReader;
+import org.jmisb.api.klv.st0601.UasDatalinkTag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare reading a few numeric tags through the object model with the streaming reader.
+ *
+ * <p>Run with {@code -prof gc} to see the allocation rate of each approach.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UasDatalinkReaderBenchmark {
+    /** Number of VMTI targets nested in the ST 0601 packet. */
+    @Param({"0", "20"})
+    public int numTargets;
+
+    private ByteBuffer packet;
+    private final UasDatalinkReader reader = new UasDatalinkReader();
+
+    /** Build the corpus. */
+    @Setup
+    public void setup() {
+        packet =
+                ByteBuffer.wrap(
+                        KlvCorpus.denseUasDatalinkMessage(1, numTargets).frameMessage(false));
+    }
+
+    /**
+     * Parse into a {@link UasDatalinkMessage} and read position, heading and time.
+     *
+     * @param blackhole sink for the values
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public void message(Blackhole blackhole) throws KlvParseException {
+        UasDatalinkMessage message = new UasDatalinkMessage(packet);
+        blackhole.consume(
+                ((SensorLatitude) message.getField(UasDatalinkTag.SensorLatitude)).getDegrees());
+        blackhole.consume(
+                ((SensorLongitude) message.getField(UasDatalinkTag.SensorLongitude)).getDegrees());
+        blackhole.consume(message.getField(UasDatalinkTag.PlatformHeadingAngle));
+        blackhole.consume(message.getField(UasDatalinkTag.PrecisionTimeStamp));
+    }
+
+    /**
+     * Read the same values with a reused {@link UasDatalinkReader}.
+     *
+     * @param blackhole sink for the values
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public void reader(Blackhole blackhole) throws KlvParseException {
+        reader.reset(packet);
+        blackhole.consume(reader.sensorLatitude());
+        blackhole.consume(reader.sensorLongitude());
+        blackhole.consume(reader.platformHeadingDegrees());
+        blackhole.consume(reader.precisionTimeStampMicros());
+    }
+}
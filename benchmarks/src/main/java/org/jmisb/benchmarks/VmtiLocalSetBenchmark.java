@@ -0,0 +1,90 @@
+package org.jmisb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.jmisb.api.common.KlvParseException;
+import org.jmisb.api.klv.st0903.VTargetColumns;
+import org.jmisb.api.klv.st0903.VmtiLocalSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for parsing and framing ST 0903 VMTI local sets with large target series. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VmtiLocalSetBenchmark {
+    /** Number of targets in the VTargetSeries. */
+    @Param({"10", "100", "500"})
+    public int numTargets;
+
+    private byte[] nestedBytes;
+    private VmtiLocalSet localSet;
+    private VTargetColumns columns;
+
+    /**
+     * Build the corpus.
+     *
+     * @throws KlvParseException if the corpus cannot be decoded into columns
+     */
+    @Setup
+    public void setup() throws KlvParseException {
+        localSet = KlvCorpus.vmtiLocalSet(1, numTargets);
+        nestedBytes = localSet.frameMessage(true);
+        columns = new VTargetColumns();
+        columns.decodeLocalSet(nestedBytes, 0, nestedBytes.length);
+    }
+
+    /**
+     * Parse a nested VMTI local set.
+     *
+     * @return the local set
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public VmtiLocalSet parse() throws KlvParseException {
+        return new VmtiLocalSet(nestedBytes);
+    }
+
+    /**
+     * Frame a standalone VMTI local set.
+     *
+     * @return the framed local set
+     */
+    @Benchmark
+    public byte[] frame() {
+        return localSet.frameMessage(false);
+    }
+
+    /**
+     * Decode the target series of a nested VMTI local set into reused columns.
+     *
+     * @return the columns
+     * @throws KlvParseException if parsing fails
+     */
+    @Benchmark
+    public VTargetColumns parseColumns() throws KlvParseException {
+        columns.decodeLocalSet(nestedBytes, 0, nestedBytes.length);
+        return columns;
+    }
+
+    /**
+     * Encode the target series from columns.
+     *
+     * @return the encoded series
+     */
+    @Benchmark
+    public byte[] encodeColumns() {
+        return columns.getBytes();
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * JMH micro-benchmarks for jMISB.
+ *
+ * <p>These are not part of the API. They exist to measure the KLV parsing, framing and
+ * floating-point hot paths so that changes can be compared before and after.
+ */
+package org.jmisb.benchmarks;
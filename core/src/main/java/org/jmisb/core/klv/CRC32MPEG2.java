@@ -1,13 +1,21 @@
 package org.jmisb.core.klv;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
 /**
  * Calculate CRC32 per ISO/IEC 13818-1.
  *
  * <p>This is one of several incompatible CRC32 implementations.
+ *
+ * <p>The CRC can be accumulated incrementally using the {@link Checksum} methods, or computed in
+ * one call using the static {@code crc32} methods. Data is processed eight bytes at a time using
+ * the slicing-by-8 algorithm.
  */
-public class CRC32MPEG2 {
-    private static final long INT_MASK = 0x00000000FFFFFFFFL;
-    private long m_crcAccum = 0x00000000FFFFFFFFL;
+public class CRC32MPEG2 implements Checksum {
+    private static final int INITIAL_VALUE = 0xFFFFFFFF;
+    private int m_crcAccum = INITIAL_VALUE;
     private static final int[] m_crcTable =
             new int[] {
                 0x00000000, 0x04C11DB7, 0x09823B6E, 0x0D4326D9, 0x130476DC, 0x17C56B6B,
@@ -55,19 +63,160 @@ public class CRC32MPEG2 {
                 0xBCB4666D, 0xB8757BDA, 0xB5365D03, 0xB1F740B4
             };
 
+    /**
+     * Lookup tables for slicing-by-8.
+     *
+     * <p>Table {@code k} (at offset {@code 256 * k}) gives the effect of a byte followed by {@code
+     * k} zero bytes. Table 0 is {@link #m_crcTable}.
+     */
+    private static final int[] SLICING_TABLES = new int[8 * 256];
+
+    static {
+        System.arraycopy(m_crcTable, 0, SLICING_TABLES, 0, 256);
+        for (int k = 1; k < 8; ++k) {
+            for (int b = 0; b < 256; ++b) {
+                int previous = SLICING_TABLES[256 * (k - 1) + b];
+                SLICING_TABLES[256 * k + b] = (previous << 8) ^ m_crcTable[previous >>> 24];
+            }
+        }
+    }
+
     public CRC32MPEG2() {};
 
     public void update(byte[] bytes, int meaningfulLength) {
-        for (int byteIndex = 0; byteIndex < meaningfulLength; ++byteIndex) {
-            int ub = ((int) bytes[byteIndex]) & 0xff;
-            int i = (int) ((m_crcAccum >>> 24) ^ ub) & 0x000000ff;
-            m_crcAccum = (m_crcAccum << 8) ^ m_crcTable[i];
-            m_crcAccum = m_crcAccum & INT_MASK;
-        }
+        update(bytes, 0, meaningfulLength);
+    }
+
+    @Override
+    public void update(int b) {
+        m_crcAccum = (m_crcAccum << 8) ^ m_crcTable[((m_crcAccum >>> 24) ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        m_crcAccum = update(m_crcAccum, b, off, len);
+    }
+
+    /**
+     * Update the CRC with the bytes of a buffer.
+     *
+     * <p>The bytes between the buffer's position and limit are added, and the position is advanced
+     * to the limit.
+     *
+     * @param buffer The buffer
+     */
+    public void update(ByteBuffer buffer) {
+        m_crcAccum = update(m_crcAccum, buffer, buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Get the CRC.
+     *
+     * @return The CRC, in the lower 32 bits
+     */
+    @Override
+    public long getValue() {
+        return m_crcAccum & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        m_crcAccum = INITIAL_VALUE;
     }
 
     public byte[] getCRC32() {
-        return PrimitiveConverter.uint32ToBytes(m_crcAccum);
+        return PrimitiveConverter.uint32ToBytes(getValue());
+    }
+
+    /**
+     * Compute the CRC32 of part of an array.
+     *
+     * @param bytes The array
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     * @return The CRC
+     */
+    public static int crc32(byte[] bytes, int offset, int length) {
+        return update(INITIAL_VALUE, bytes, offset, length);
+    }
+
+    /**
+     * Compute the CRC32 of part of a buffer.
+     *
+     * <p>The buffer is read using absolute indexing, so its position and limit are not modified.
+     *
+     * @param buffer The buffer
+     * @param index Absolute index of the first byte
+     * @param length Number of bytes
+     * @return The CRC
+     */
+    public static int crc32(ByteBuffer buffer, int index, int length) {
+        return update(INITIAL_VALUE, buffer, index, length);
+    }
+
+    private static int update(int crc, byte[] bytes, int offset, int length) {
+        final int[] t = SLICING_TABLES;
+        int i = offset;
+        final int end = offset + length;
+        for (; i + 8 <= end; i += 8) {
+            int high =
+                    crc
+                            ^ (((bytes[i] & 0xFF) << 24)
+                                    | ((bytes[i + 1] & 0xFF) << 16)
+                                    | ((bytes[i + 2] & 0xFF) << 8)
+                                    | (bytes[i + 3] & 0xFF));
+            int low =
+                    ((bytes[i + 4] & 0xFF) << 24)
+                            | ((bytes[i + 5] & 0xFF) << 16)
+                            | ((bytes[i + 6] & 0xFF) << 8)
+                            | (bytes[i + 7] & 0xFF);
+            crc = slice(t, high, low);
+        }
+        for (; i < end; ++i) {
+            crc = (crc << 8) ^ t[((crc >>> 24) ^ bytes[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    private static int update(int crc, ByteBuffer buffer, int index, int length) {
+        if (buffer.hasArray()) {
+            return update(crc, buffer.array(), buffer.arrayOffset() + index, length);
+        }
+        final int[] t = SLICING_TABLES;
+        final boolean swap = buffer.order() != ByteOrder.BIG_ENDIAN;
+        int i = index;
+        final int end = index + length;
+        for (; i + 8 <= end; i += 8) {
+            long word = buffer.getLong(i);
+            if (swap) {
+                word = Long.reverseBytes(word);
+            }
+            crc = slice(t, crc ^ (int) (word >>> 32), (int) word);
+        }
+        for (; i < end; ++i) {
+            crc = (crc << 8) ^ t[((crc >>> 24) ^ buffer.get(i)) & 0xFF];
+        }
+        return crc;
+    }
+
+    /**
+     * Advance the CRC over eight bytes.
+     *
+     * @param t The slicing tables
+     * @param high The first four bytes, big-endian, XORed with the current CRC
+     * @param low The last four bytes, big-endian
+     * @return The new CRC
+     */
+    private static int slice(int[] t, int high, int low) {
+        return t[0x700 + (high >>> 24)]
+                ^ t[0x600 + ((high >>> 16) & 0xFF)]
+                ^ t[0x500 + ((high >>> 8) & 0xFF)]
+                ^ t[0x400 + (high & 0xFF)]
+                ^ t[0x300 + (low >>> 24)]
+                ^ t[0x200 + ((low >>> 16) & 0xFF)]
+                ^ t[0x100 + ((low >>> 8) & 0xFF)]
+                ^ t[low & 0xFF];
     }
 
     /**
@@ -83,9 +232,8 @@ public class CRC32MPEG2 {
      * @return 4-byte checksum
      */
     public static byte[] compute(byte[] fullMessage) {
-        CRC32MPEG2 crc32 = new CRC32MPEG2();
-        crc32.update(fullMessage, fullMessage.length - 4);
-        byte[] result = crc32.getCRC32();
+        int crc = crc32(fullMessage, 0, fullMessage.length - 4);
+        byte[] result = PrimitiveConverter.uint32ToBytes(crc & 0xFFFFFFFFL);
         System.arraycopy(result, 0, fullMessage, fullMessage.length - 4, 4);
         return result;
     }
@@ -110,14 +258,11 @@ public class CRC32MPEG2 {
         if (expected.length != 4) {
             return false;
         }
-        CRC32MPEG2 crc32 = new CRC32MPEG2();
-        crc32.update(fullMessage, fullMessage.length - 4);
-        byte[] result = crc32.getCRC32();
-        boolean matches =
-                (result[0] == expected[0])
-                        && (result[1] == expected[1])
-                        && (result[2] == expected[2])
-                        && (result[3] == expected[3]);
-        return matches;
+        int crc = crc32(fullMessage, 0, fullMessage.length - 4);
+        return crc
+                == (((expected[0] & 0xFF) << 24)
+                        | ((expected[1] & 0xFF) << 16)
+                        | ((expected[2] & 0xFF) << 8)
+                        | (expected[3] & 0xFF));
     }
 }
@@ -0,0 +1,148 @@
+package org.jmisb.core.klv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * Calculate the 16-bit running sum used by ST 0601 and ST 0903.
+ *
+ * <p>The data is treated as a sequence of big-endian 16-bit words, which are summed into a 16-bit
+ * register with overflow ignored. If there is an odd number of bytes, the last byte is the high
+ * byte of a final word. Because the sum does not depend on how the data is split, it can be
+ * accumulated incrementally using the {@link Checksum} methods, or computed in one call using the
+ * static {@code sum} methods.
+ *
+ * <p>This is not the same checksum as the CRC32 used in ST 0806, see {@link CRC32MPEG2}.
+ */
+public class Checksum16 implements Checksum {
+    /** Number of 64-bit words that can be summed before a 32-bit lane could overflow. */
+    private static final int WORDS_PER_FOLD = 0x8000;
+
+    private static final long LANE_MASK = 0x0000FFFF0000FFFFL;
+
+    private int sum;
+    private boolean odd;
+
+    /** Constructor. */
+    public Checksum16() {}
+
+    @Override
+    public void update(int b) {
+        sum += odd ? (b & 0xFF) : (b & 0xFF) << 8;
+        odd = !odd;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (len <= 0) {
+            return;
+        }
+        if (odd) {
+            update(b[off]);
+            off++;
+            len--;
+        }
+        sum += sum(b, off, len);
+        odd = (len & 1) != 0;
+    }
+
+    /**
+     * Update the checksum with the bytes of a buffer.
+     *
+     * <p>The bytes between the buffer's position and limit are added, and the position is advanced
+     * to the limit.
+     *
+     * @param buffer The buffer
+     */
+    public void update(ByteBuffer buffer) {
+        int len = buffer.remaining();
+        if (len <= 0) {
+            return;
+        }
+        int off = buffer.position();
+        if (odd) {
+            update(buffer.get(off));
+            off++;
+            len--;
+        }
+        sum += sum(buffer, off, len);
+        odd = (len & 1) != 0;
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Get the checksum.
+     *
+     * @return The checksum, in the lower 16 bits
+     */
+    @Override
+    public long getValue() {
+        return sum & 0xFFFF;
+    }
+
+    @Override
+    public void reset() {
+        sum = 0;
+        odd = false;
+    }
+
+    /**
+     * Compute the checksum of part of an array.
+     *
+     * @param bytes The array
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     * @return The checksum, in the lower 16 bits
+     */
+    public static int sum(byte[] bytes, int offset, int length) {
+        return sumWords(ByteBuffer.wrap(bytes), offset, length);
+    }
+
+    /**
+     * Compute the checksum of part of a buffer.
+     *
+     * <p>The buffer is read using absolute indexing, so its position and limit are not modified.
+     *
+     * @param buffer The buffer
+     * @param index Absolute index of the first byte
+     * @param length Number of bytes
+     * @return The checksum, in the lower 16 bits
+     */
+    public static int sum(ByteBuffer buffer, int index, int length) {
+        return sumWords(buffer, index, length);
+    }
+
+    private static int sumWords(ByteBuffer buffer, int index, int length) {
+        // Read eight bytes at a time, adding the four 16-bit words into two accumulators of two
+        // 32-bit lanes each, which are folded together at the end of each block
+        final boolean swap = buffer.order() != ByteOrder.BIG_ENDIAN;
+        final int wordsEnd = index + (length & ~7);
+        long total = 0;
+        int i = index;
+        while (i < wordsEnd) {
+            long even = 0;
+            long oddWords = 0;
+            final int blockEnd = Math.min(wordsEnd, i + WORDS_PER_FOLD * 8);
+            for (; i < blockEnd; i += 8) {
+                long word = buffer.getLong(i);
+                if (swap) {
+                    word = Long.reverseBytes(word);
+                }
+                even += word & LANE_MASK;
+                oddWords += (word >>> 16) & LANE_MASK;
+            }
+            total += (even >>> 32) + (even & 0xFFFFFFFFL);
+            total += (oddWords >>> 32) + (oddWords & 0xFFFFFFFFL);
+        }
+        int result = (int) total;
+        final int end = index + length;
+        for (; i + 1 < end; i += 2) {
+            result += ((buffer.get(i) & 0xFF) << 8) | (buffer.get(i + 1) & 0xFF);
+        }
+        if (i < end) {
+            result += (buffer.get(i) & 0xFF) << 8;
+        }
+        return result & 0xFFFF;
+    }
+}
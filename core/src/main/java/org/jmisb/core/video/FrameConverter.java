@@ -17,6 +17,8 @@ public class FrameConverter {
     /**
      * Convert an AVFrame to a BufferedImage
      *
+     * <p>The returned image is cached and overwritten by the next call.
+     *
      * @param frame The AVFrame; must be 3-byte BGR format
      * @return The BufferedImage
      */
@@ -25,10 +27,6 @@ public class FrameConverter {
             throw new IllegalArgumentException("Input frame cannot be null");
         }
 
-        if (frame.format() != AV_PIX_FMT_BGR24) {
-            throw new IllegalArgumentException("Input format must be BGR24");
-        }
-
         // Allocate bufferedImage if needed
         if (bufferedImage == null
                 || bufferedImage.getWidth() != frame.width()
@@ -38,9 +36,36 @@ public class FrameConverter {
                     new BufferedImage(frame.width(), frame.height(), BufferedImage.TYPE_3BYTE_BGR);
         }
 
+        return convert(frame, bufferedImage);
+    }
+
+    /**
+     * Convert an AVFrame into an existing BufferedImage
+     *
+     * @param frame The AVFrame; must be 3-byte BGR format
+     * @param destination The image to write to; must be {@link BufferedImage#TYPE_3BYTE_BGR} and
+     *     the same size as the frame
+     * @return The destination image
+     */
+    public BufferedImage convert(AVFrame frame, BufferedImage destination) {
+        if (frame == null) {
+            throw new IllegalArgumentException("Input frame cannot be null");
+        }
+
+        if (frame.format() != AV_PIX_FMT_BGR24) {
+            throw new IllegalArgumentException("Input format must be BGR24");
+        }
+
+        if (destination.getType() != BufferedImage.TYPE_3BYTE_BGR
+                || destination.getWidth() != frame.width()
+                || destination.getHeight() != frame.height()) {
+            throw new IllegalArgumentException(
+                    "Destination must be a TYPE_3BYTE_BGR image the same size as the frame");
+        }
+
         // Output buffer
-        SampleModel sm = bufferedImage.getSampleModel();
-        Raster r = bufferedImage.getRaster();
+        SampleModel sm = destination.getSampleModel();
+        Raster r = destination.getRaster();
         DataBuffer out = r.getDataBuffer();
 
         int x = -r.getSampleModelTranslateX();
@@ -52,29 +77,21 @@ public class FrameConverter {
 
         byte[] a = ((DataBufferByte) out).getData();
 
-        ByteBuffer src = frame.data(0).capacity(frame.width() * frame.linesize(0)).asBuffer();
-        copy(src, frame.linesize(0), ByteBuffer.wrap(a, start, a.length - start), step);
+        ByteBuffer src = frame.data(0).capacity(frame.height() * frame.linesize(0)).asBuffer();
+        copy(src, frame.linesize(0), a, start, step);
 
-        return bufferedImage;
+        return destination;
     }
 
-    private static void copy(ByteBuffer srcBuf, int srcStep, ByteBuffer dstBuf, int dstStep) {
-        assert srcBuf != dstBuf;
-        int srcLine = srcBuf.position();
-        int dstLine = dstBuf.position();
+    private static void copy(
+            ByteBuffer srcBuf, int srcStep, byte[] dst, int dstStart, int dstStep) {
+        // Bulk copy each row straight into the raster's array, without intermediate buffers
         final int w = Math.min(srcStep, dstStep);
-
-        while (srcLine < srcBuf.capacity() && dstLine < dstBuf.capacity()) {
+        int srcLine = srcBuf.position();
+        int dstLine = dstStart;
+        while (srcLine + w <= srcBuf.capacity() && dstLine + w <= dst.length) {
             srcBuf.position(srcLine);
-            dstBuf.position(dstLine);
-
-            ByteBuffer srcRow = srcBuf.slice();
-            ByteBuffer dstRow = dstBuf.slice();
-
-            srcRow.limit(w);
-            dstRow.limit(w);
-
-            dstRow.put(srcRow);
+            srcBuf.get(dst, dstLine, w);
 
             srcLine += srcStep;
             dstLine += dstStep;
@@ -2,6 +2,9 @@ package org.jmisb.core.klv;
 
 import static org.testng.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
 import org.testng.annotations.Test;
 
 /**
@@ -595,4 +598,52 @@ public class CRC32MPEG2Test {
                         new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff},
                         new byte[] {(byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00}));
     }
+
+    /** Byte-at-a-time reference implementation, bit by bit. */
+    private static int reference(byte[] bytes, int offset, int length) {
+        int crc = 0xFFFFFFFF;
+        for (int i = offset; i < offset + length; ++i) {
+            crc ^= (bytes[i] & 0xFF) << 24;
+            for (int bit = 0; bit < 8; ++bit) {
+                crc = (crc < 0) ? (crc << 1) ^ 0x04C11DB7 : crc << 1;
+            }
+        }
+        return crc;
+    }
+
+    @Test
+    public void checkSlicingMatchesReference() {
+        Random random = new Random(1234);
+        for (int length = 0; length < 100; ++length) {
+            byte[] bytes = new byte[length + 3];
+            random.nextBytes(bytes);
+            int expected = reference(bytes, 3, length);
+            assertEquals(CRC32MPEG2.crc32(bytes, 3, length), expected);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes);
+            assertEquals(CRC32MPEG2.crc32(direct, 3, length), expected);
+            direct.order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(CRC32MPEG2.crc32(direct, 3, length), expected);
+        }
+    }
+
+    @Test
+    public void checkIncremental() {
+        byte[] bytes = new byte[1000];
+        new Random(99).nextBytes(bytes);
+        int expected = reference(bytes, 0, bytes.length);
+        CRC32MPEG2 crc32 = new CRC32MPEG2();
+        crc32.update(bytes, 0, 7);
+        crc32.update(bytes[7]);
+        crc32.update(ByteBuffer.wrap(bytes, 8, 500));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - 508);
+        direct.put(bytes, 508, bytes.length - 508).flip();
+        crc32.update(direct);
+        assertFalse(direct.hasRemaining());
+        assertEquals(crc32.getValue(), expected & 0xFFFFFFFFL);
+        crc32.reset();
+        crc32.update(bytes, 0, bytes.length);
+        assertEquals(crc32.getValue(), expected & 0xFFFFFFFFL);
+    }
 }
@@ -0,0 +1,77 @@
+package org.jmisb.core.klv;
+
+import static org.testng.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/** Tests for the 16-bit running sum. */
+public class Checksum16Test {
+    /** Word-at-a-time reference implementation, as listed in ST 0601. */
+    private static int reference(byte[] bytes, int offset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; ++i) {
+            sum += (bytes[offset + i] & 0xFF) << (8 * ((i + 1) % 2));
+        }
+        return sum & 0xFFFF;
+    }
+
+    @Test
+    public void checkFromSt() {
+        // 060E 2B34 0200 81BB gives B4FD
+        byte[] bytes = {0x06, 0x0e, 0x2b, 0x34, 0x02, 0x00, (byte) 0x81, (byte) 0xbb};
+        assertEquals(Checksum16.sum(bytes, 0, bytes.length), 0xB4FD);
+    }
+
+    @Test
+    public void checkMatchesReference() {
+        Random random = new Random(42);
+        for (int length = 0; length < 100; ++length) {
+            byte[] bytes = new byte[length + 1];
+            random.nextBytes(bytes);
+            int expected = reference(bytes, 1, length);
+            assertEquals(Checksum16.sum(bytes, 1, length), expected);
+            assertEquals(Checksum16.sum(ByteBuffer.wrap(bytes), 1, length), expected);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes);
+            assertEquals(Checksum16.sum(direct, 1, length), expected);
+            direct.order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(Checksum16.sum(direct, 1, length), expected);
+        }
+    }
+
+    @Test
+    public void checkLargeDirectBuffer() {
+        // Large enough to need the lane accumulators folding several times
+        byte[] bytes = new byte[1 << 20];
+        Arrays.fill(bytes, (byte) 0xFF);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        assertEquals(Checksum16.sum(direct, 0, bytes.length), reference(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void checkIncremental() {
+        byte[] bytes = new byte[257];
+        new Random(7).nextBytes(bytes);
+        int expected = reference(bytes, 0, bytes.length);
+        Checksum16 checksum = new Checksum16();
+        checksum.update(bytes, 0, 3);
+        checksum.update(bytes[3]);
+        checksum.update(bytes[4]);
+        checksum.update(ByteBuffer.wrap(bytes, 5, 101));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - 106);
+        direct.put(bytes, 106, bytes.length - 106).flip();
+        checksum.update(direct);
+        assertFalse(direct.hasRemaining());
+        assertEquals(checksum.getValue(), expected);
+        checksum.reset();
+        assertEquals(checksum.getValue(), 0);
+        checksum.update(bytes, 0, bytes.length);
+        assertEquals(checksum.getValue(), expected);
+    }
+}
@@ -0,0 +1,78 @@
+package org.jmisb.core.video;
+
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_alloc;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_free;
+import static org.bytedeco.ffmpeg.global.avutil.av_frame_get_buffer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import org.bytedeco.ffmpeg.avutil.AVFrame;
+import org.bytedeco.javacpp.BytePointer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class FrameConverterTest {
+    private static AVFrame createFrame(int width, int height) {
+        AVFrame frame = av_frame_alloc();
+        frame.format(AV_PIX_FMT_BGR24);
+        frame.width(width);
+        frame.height(height);
+        Assert.assertTrue(av_frame_get_buffer(frame, 32) >= 0);
+        BytePointer data = frame.data(0);
+        int lineSize = frame.linesize(0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width * 3; x++) {
+                data.put((long) y * lineSize + x, (byte) (y * 7 + x));
+            }
+        }
+        return frame;
+    }
+
+    private static void checkImage(BufferedImage image, int width, int height) {
+        // TYPE_3BYTE_BGR stores packed BGR bytes, matching the AVFrame layout without padding
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width * 3; x++) {
+                Assert.assertEquals(data[y * width * 3 + x], (byte) (y * 7 + x));
+            }
+        }
+    }
+
+    @Test
+    public void testConvertCached() {
+        // Odd width so that linesize has padding
+        AVFrame frame = createFrame(37, 11);
+        FrameConverter converter = new FrameConverter();
+        BufferedImage image = converter.convert(frame);
+        checkImage(image, 37, 11);
+        Assert.assertSame(converter.convert(frame), image);
+        av_frame_free(frame);
+    }
+
+    @Test
+    public void testConvertToDestination() {
+        AVFrame frame = createFrame(21, 40);
+        BufferedImage destination = new BufferedImage(21, 40, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage result = new FrameConverter().convert(frame, destination);
+        Assert.assertSame(result, destination);
+        checkImage(destination, 21, 40);
+        av_frame_free(frame);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongDestinationSize() {
+        AVFrame frame = createFrame(16, 16);
+        try {
+            new FrameConverter()
+                    .convert(frame, new BufferedImage(8, 16, BufferedImage.TYPE_3BYTE_BGR));
+        } finally {
+            av_frame_free(frame);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNullFrame() {
+        new FrameConverter().convert(null);
+    }
+}
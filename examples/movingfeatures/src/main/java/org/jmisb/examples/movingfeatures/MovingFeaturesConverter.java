@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.stream.Stream;
 import org.jmisb.api.klv.IMisbMessage;
 import org.jmisb.api.klv.st0601.FrameCenterLatitude;
 import org.jmisb.api.klv.st0601.FrameCenterLongitude;
@@ -20,28 +21,22 @@ import org.jmisb.api.klv.st0903.vtarget.TargetLocationOffsetLat;
 import org.jmisb.api.klv.st0903.vtarget.TargetLocationOffsetLon;
 import org.jmisb.api.klv.st0903.vtarget.VTargetMetadataKey;
 import org.jmisb.api.klv.st0903.vtarget.VTargetPack;
-import org.jmisb.api.video.IFileEventListener;
 import org.jmisb.api.video.IMetadataListener;
-import org.jmisb.api.video.IVideoFileInput;
+import org.jmisb.api.video.KlvExtractor;
 import org.jmisb.api.video.MetadataFrame;
-import org.jmisb.api.video.VideoFileInput;
-import org.jmisb.api.video.VideoFileInputOptions;
 
-public class MovingFeaturesConverter implements IMetadataListener, IFileEventListener {
+public class MovingFeaturesConverter implements IMetadataListener {
 
-    private IVideoFileInput fileInput;
     private MovingFeaturesCollection movingFeaturesCollection = new MovingFeaturesCollection();
 
     public MovingFeaturesConverter() {}
 
     public void play(String filename) throws IOException {
-        // These options configure for metadata decode only
-        VideoFileInputOptions videoFileInputOptions =
-                new VideoFileInputOptions(false, true, false, false);
-        fileInput = new VideoFileInput(videoFileInputOptions);
-        fileInput.addMetadataListener(this);
-        fileInput.addFileEventListener(this);
-        fileInput.open(filename);
+        // Only metadata is needed, so read it as fast as possible rather than playing the file
+        try (Stream<MetadataFrame> metadataFrames = KlvExtractor.extract(filename)) {
+            metadataFrames.forEach(this::onMetadataReceived);
+        }
+        serialiseOutTrajectoryJSON();
     }
 
     @Override
@@ -151,17 +146,6 @@ public class MovingFeaturesConverter implements IMetadataListener, IFileEventLis
         return hae;
     }
 
-    @Override
-    // This is from IFileEventListener
-    public void onEndOfFile() {
-        try {
-            fileInput.close();
-        } catch (IOException ex) {
-            System.out.println("Failed to close file: " + ex.getMessage());
-        }
-        serialiseOutTrajectoryJSON();
-    }
-
     private void serialiseOutTrajectoryJSON() {
         ObjectMapper objectMapper = new ObjectMapper();
         try {
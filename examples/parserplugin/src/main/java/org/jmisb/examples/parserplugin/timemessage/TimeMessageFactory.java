@@ -3,6 +3,7 @@ package org.jmisb.examples.parserplugin.timemessage;
 import org.jmisb.api.common.KlvParseException;
 import org.jmisb.api.klv.IMisbMessage;
 import org.jmisb.api.klv.IMisbMessageFactory;
+import org.jmisb.api.klv.UniversalLabel;
 
 /**
  * Factory for TimeMessage example.
@@ -12,6 +13,11 @@ import org.jmisb.api.klv.IMisbMessageFactory;
  */
 public class TimeMessageFactory implements IMisbMessageFactory {
 
+    @Override
+    public UniversalLabel getUniversalLabel() {
+        return TimeMessageConstants.TIME_STAMP_UL;
+    }
+
     @Override
     public IMisbMessage create(byte[] bytes) throws KlvParseException {
         return new TimeMessage(bytes);